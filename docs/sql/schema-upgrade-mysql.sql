@@ -0,0 +1,110 @@
+-- Schemaändringar för en befintlig MySQL-databas. Prod-profilen kör ddl-auto=validate och startar inte
+-- förrän tabellerna nedan finns. Kör filen en gång före första starten med den nya versionen. Tabeller och
+-- index är desamma som Hibernate genererar för entiteterna med MySQLDialect; bara villkoren har fått namn.
+
+-- Platsräknare per passtillfälle (ClassSession). Raderna öppnas av appen vid start och varje natt.
+create table class_sessions (
+    seats_taken integer not null,
+    session_date date not null,
+    waitlist_length integer not null,
+    id bigint not null auto_increment,
+    training_class_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_session_date
+    on class_sessions (session_date);
+
+alter table class_sessions
+    add constraint uk_class_sessions_class_date unique (training_class_id, session_date);
+
+alter table class_sessions
+    add constraint fk_class_sessions_class
+    foreign key (training_class_id)
+    references training_classes (id)
+    on delete cascade;
+
+-- Utkorgen för e-post (EmailOutbox). Breven skrivs i samma transaktion som bokningen och skickas efteråt.
+create table email_outbox (
+    attempts integer not null,
+    created_at datetime(6) not null,
+    id bigint not null auto_increment,
+    next_attempt_at datetime(6) not null,
+    sent_at datetime(6),
+    claim_token varchar(36),
+    last_error varchar(500),
+    body TEXT not null,
+    html_body TEXT,
+    recipient varchar(255) not null,
+    subject varchar(255) not null,
+    status enum ('FAILED','PENDING','SENT') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_outbox_due
+    on email_outbox (status, next_attempt_at);
+
+create index idx_outbox_claim
+    on email_outbox (claim_token);
+
+-- Medlemmarnas statistikräknare (MemberStatsBucket). Fylls från bokningarna med
+-- app.member-stats.rebuild-on-startup=true vid första starten, annars vid nattens ombyggnad.
+create table member_stats (
+    booking_count integer not null,
+    id bigint not null auto_increment,
+    member_id bigint not null,
+    bucket_key varchar(100) not null,
+    kind enum ('ATTENDED','CATEGORY','CLASS','MONTH','TOTAL','WEEK') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_member_stats_counter
+    on member_stats (kind, bucket_key, booking_count, member_id);
+
+alter table member_stats
+    add constraint uk_member_stats_bucket unique (member_id, kind, bucket_key);
+
+alter table member_stats
+    add constraint fk_member_stats_member
+    foreign key (member_id)
+    references users (id)
+    on delete cascade;
+
+-- Bokningar per pass, dag och status (BookingDailyRollup) för adminpanelen. Fylls från bokningarna med
+-- app.rollup.rebuild-on-startup=true vid första starten, annars vid nattens ombyggnad.
+create table booking_daily_rollup (
+    booking_count integer not null,
+    rollup_date date not null,
+    id bigint not null auto_increment,
+    training_class_id bigint not null,
+    booking_status enum ('CANCELLED','CANCELLED_BY_MEMBER','CONFIRMED','EXPIRED','PENDING','WAITLISTED') not null,
+    category enum ('BJJ','BOXNING','FYS','SPARRING','THAIBOXNING'),
+    primary key (id)
+) engine=InnoDB;
+
+alter table booking_daily_rollup
+    add constraint uk_booking_daily_rollup_day unique (rollup_date, training_class_id, booking_status);
+
+alter table booking_daily_rollup
+    add constraint fk_booking_daily_rollup_class
+    foreign key (training_class_id)
+    references training_classes (id)
+    on delete cascade;
+
+-- Index för bläddringen bland bokningar i adminvyn, som ersätter de två gamla enkolumnsindexen. De nya
+-- skapas först, så att främmande nycklarna på member_id hela tiden har ett index.
+create index idx_booking_date_id
+    on bookings (booking_date, id);
+
+create index idx_booking_member_date
+    on bookings (member_id, booking_date, id);
+
+create index idx_booking_class_date
+    on bookings (training_class_id, booking_date, id);
+
+create index idx_booking_status_date
+    on bookings (booking_status, booking_date, id);
+
+drop index idx_booking_date on bookings;
+
+drop index idx_booking_member on bookings;
@@ -0,0 +1,212 @@
+package com.jarnvilja.benchmark;
+
+import com.jarnvilja.dto.BatchBookingResultDTO;
+import com.jarnvilja.model.*;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.ClassSessionRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import com.jarnvilja.repository.UserRepository;
+import com.jarnvilja.service.BookingService;
+import com.jarnvilja.service.MemberService;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives booking admission from many concurrent members against one class and checks that the
+ * capacity invariants hold. Subclasses pick the database. Run with {@code ./mvnw test -Pbenchmark};
+ * {@code -Dbenchmark.threads} and {@code -Dbenchmark.capacity} tune the load.
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "management.health.mail.enabled=false"
+})
+abstract class BookingAdmissionBenchmark {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 300);
+    private static final int CAPACITY = Integer.getInteger("benchmark.capacity", 20);
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private MemberService memberService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TrainingClassRepository trainingClassRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ClassSessionRepository classSessionRepository;
+
+    // Ingen riktig SMTP-server under benchmark
+    @MockitoBean
+    private JavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() {
+        // Passet måste starta senare idag för att bokningen ska godtas
+        assumeTrue(LocalTime.now().isBefore(LocalTime.of(23, 50)), "Too close to midnight to book today's class");
+        when(mailSender.createMimeMessage()).thenAnswer(inv -> new MimeMessage((Session) null));
+    }
+
+    @Test
+    void testMemberServiceAdmission() throws Exception {
+        run("member", memberService::createBooking);
+    }
+
+    @Test
+    void testBookingServiceAdmission() throws Exception {
+        run("booking", bookingService::createBooking);
+    }
+
+    @Test
+    void testBatchBookingAdmission() throws Exception {
+        run("batch", (memberId, classId) -> {
+            BatchBookingResultDTO result = bookingService.createBookings(memberId, List.of(classId)).get(0);
+            if (result.getOutcome() == BatchBookingResultDTO.Outcome.REJECTED) {
+                throw new IllegalStateException(result.getMessage());
+            }
+            Booking booking = new Booking();
+            booking.setId(result.getBookingId());
+            booking.setBookingStatus(BookingStatus.valueOf(result.getOutcome().name()));
+            return booking;
+        });
+    }
+
+    private void run(String label, BiFunction<Long, Long, Booking> createBooking) throws Exception {
+        String prefix = "bench-" + label;
+        TrainingClass trainingClass = createClassForToday(prefix);
+        List<Long> memberIds = createMembers(prefix);
+
+        long[] latencies = new long[THREADS];
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+        AtomicInteger lockFailures = new AtomicInteger();
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                long begin = System.nanoTime();
+                for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                    try {
+                        Booking booking = createBooking.apply(memberIds.get(index), trainingClass.getId());
+                        if (booking.getBookingStatus() == BookingStatus.CONFIRMED) confirmed.incrementAndGet();
+                        if (booking.getBookingStatus() == BookingStatus.WAITLISTED) waitlisted.incrementAndGet();
+                        break;
+                    } catch (TransientDataAccessException e) {
+                        if (e instanceof PessimisticLockingFailureException) lockFailures.incrementAndGet();
+                        if (attempt == MAX_ATTEMPTS) {
+                            failures.add(e);
+                        } else {
+                            retries.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        failures.add(e);
+                        break;
+                    }
+                }
+                latencies[index] = System.nanoTime() - begin;
+                return null;
+            }));
+        }
+
+        long wallStart = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) future.get(2, TimeUnit.MINUTES);
+        long wallNanos = System.nanoTime() - wallStart;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        double seconds = wallNanos / 1_000_000_000.0;
+        log.info(String.format("%n=== %s / %s ===%n" +
+                        "threads=%d capacity=%d%n" +
+                        "throughput=%.1f bookings/s  wall=%.0f ms%n" +
+                        "latency p50=%.1f ms  p99=%.1f ms  max=%.1f ms%n" +
+                        "confirmed=%d waitlisted=%d retries=%d lockFailures=%d failures=%d",
+                getClass().getSimpleName(), label, THREADS, CAPACITY,
+                (confirmed.get() + waitlisted.get()) / seconds, wallNanos / 1_000_000.0,
+                percentile(latencies, 50), percentile(latencies, 99), latencies[THREADS - 1] / 1_000_000.0,
+                confirmed.get(), waitlisted.get(), retries.get(), lockFailures.get(), failures.size()));
+
+        assertTrue(failures.isEmpty(), () -> "Bookings failed: " + failures);
+        assertInvariants(trainingClass.getId(), confirmed.get(), waitlisted.get());
+    }
+
+    private void assertInvariants(Long trainingClassId, int confirmed, int waitlisted) {
+        LocalDate today = LocalDate.now();
+        long confirmedRows = bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, today, List.of(BookingStatus.CONFIRMED));
+        long waitlistedRows = bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, today, List.of(BookingStatus.WAITLISTED));
+        ClassSession session = classSessionRepository.findByTrainingClassIdAndSessionDate(trainingClassId, today)
+                .orElseThrow(() -> new AssertionError("No session row for class " + trainingClassId));
+
+        assertTrue(confirmedRows <= CAPACITY, "Over capacity: " + confirmedRows + " confirmed for " + CAPACITY + " seats");
+        assertEquals(Math.min(CAPACITY, THREADS), confirmedRows, "Seats left unused while members were waitlisted");
+        assertEquals(confirmed, confirmedRows);
+        assertEquals(waitlisted, waitlistedRows);
+        assertEquals(confirmedRows, session.getSeatsTaken(), "Session seat counter drifted from bookings");
+        assertEquals(waitlistedRows, session.getWaitlistLength(), "Session waitlist counter drifted from bookings");
+    }
+
+    private TrainingClass createClassForToday(String prefix) {
+        TrainingClass trainingClass = new TrainingClass("Benchmark " + prefix, "Kapacitetstest",
+                LocalDate.now().getDayOfWeek(), Matta.MATTA_1, LocalTime.of(23, 55), LocalTime.of(23, 59));
+        trainingClass.setCategory(TrainingCategory.BJJ);
+        trainingClass.setMaxCapacity(CAPACITY);
+        return trainingClassRepository.save(trainingClass);
+    }
+
+    private List<Long> createMembers(String prefix) {
+        List<User> members = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            User user = new User();
+            user.setUsername(prefix + "-" + i);
+            user.setEmail(prefix + "-" + i + "@bench.local");
+            user.setPassword("benchmark-password");
+            user.setRole(Role.ROLE_MEMBER);
+            members.add(user);
+        }
+        return userRepository.saveAll(members).stream().map(User::getId).toList();
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
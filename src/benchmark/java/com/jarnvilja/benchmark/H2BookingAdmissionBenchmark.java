@@ -0,0 +1,10 @@
+package com.jarnvilja.benchmark;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Admission benchmark against plain in-memory H2.
+ */
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1")
+class H2BookingAdmissionBenchmark extends BookingAdmissionBenchmark {
+}
@@ -0,0 +1,74 @@
+package com.jarnvilja.benchmark;
+
+import com.jarnvilja.service.MailTemplateService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures what it costs to produce the body of one notification at bulk-send volumes: the old string
+ * concatenation, a cached template rendered per message, and a class cancellation rendered once and
+ * reused for every member. Run with {@code ./mvnw test -Pbenchmark}; {@code -Dbenchmark.messages} sets
+ * the batch size.
+ */
+@Slf4j
+class MailTemplateRenderBenchmark {
+
+    private static final int MESSAGES = Integer.getInteger("benchmark.messages", 20_000);
+    private static final int ROUNDS = 5;
+
+    private final MailTemplateService mailTemplateService = new MailTemplateService();
+
+    @Test
+    void renderCostPerMessage() {
+        IntFunction<String> concatenated = i -> "Hej member" + i + ",\n\n" +
+                "Din bokning för träningspasset BJJ den " + DayOfWeek.MONDAY + " kl. " +
+                LocalTime.of(17, 0) + " har bekräftats.\n\n" +
+                "Vänliga hälsningar,\n" +
+                "Järnvilja";
+        IntFunction<String> perMessage = i -> mailTemplateService.render(new MailTemplateService.BookingConfirmed(
+                "member" + i, "BJJ", DayOfWeek.MONDAY, LocalTime.of(17, 0))).text();
+        MailTemplateService.Rendered notice = mailTemplateService.render(
+                new MailTemplateService.ClassCancelled("BJJ", "Tränaren är sjuk"));
+        IntFunction<String> reused = i -> notice.text();
+
+        // Första varvet räknas inte: JIT och mallcachen värms upp
+        double concatenatedNanos = measure(concatenated);
+        double perMessageNanos = measure(perMessage);
+        double reusedNanos = measure(reused);
+
+        log.info("Body per message over {} messages: concatenation {} µs, template {} µs, rendered once {} µs",
+                MESSAGES, micros(concatenatedNanos), micros(perMessageNanos), micros(reusedNanos));
+
+        assertEquals(concatenated.apply(7) + "\n", perMessage.apply(7));
+        assertTrue(reusedNanos < perMessageNanos, "Reusing a rendered body should be cheaper than rendering it");
+        // Text och HTML ska tillsammans hålla sig långt under tiden för en SMTP-runda
+        assertTrue(perMessageNanos < 1_000_000, "Rendering one message took " + micros(perMessageNanos) + " µs");
+    }
+
+    private static double measure(IntFunction<String> body) {
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                sink += body.apply(i).length();
+            }
+            double nanosPerMessage = (double) (System.nanoTime() - start) / MESSAGES;
+            if (round > 0) {
+                best = Math.min(best, nanosPerMessage);
+            }
+        }
+        assertTrue(sink > 0);
+        return best;
+    }
+
+    private static String micros(double nanos) {
+        return String.format("%.2f", nanos / 1000);
+    }
+}
@@ -0,0 +1,11 @@
+package com.jarnvilja.benchmark;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Admission benchmark against H2 in MySQL compatibility mode, closer to the dev and production database.
+ */
+@TestPropertySource(properties =
+        "spring.datasource.url=jdbc:h2:mem:benchmark_mysql;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1")
+class MySqlModeBookingAdmissionBenchmark extends BookingAdmissionBenchmark {
+}
@@ -0,0 +1,55 @@
+package com.jarnvilja.actuator;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exposes hit, miss and put counts of the second-level cache regions and the query cache at
+ * /actuator/hibernatecache.
+ */
+@Component
+@Endpoint(id = "hibernatecache")
+public class HibernateCacheEndpoint {
+
+    private final Statistics statistics;
+
+    public HibernateCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public record Counters(long hits, long misses, long puts, double hitRatio) {
+
+        static Counters of(long hits, long misses, long puts) {
+            long requests = hits + misses;
+            return new Counters(hits, misses, puts, requests > 0 ? (double) hits / requests : 0);
+        }
+    }
+
+    public record CacheStats(boolean statisticsEnabled, Counters secondLevel, Counters queryCache,
+                             Map<String, Counters> regions) { }
+
+    @ReadOperation
+    public CacheStats cache() {
+        Map<String, Counters> regions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+            if (stats != null) {
+                regions.put(region, Counters.of(stats.getHitCount(), stats.getMissCount(), stats.getPutCount()));
+            }
+        }
+        return new CacheStats(statistics.isStatisticsEnabled(),
+                Counters.of(statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                        statistics.getSecondLevelCachePutCount()),
+                Counters.of(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                        statistics.getQueryCachePutCount()),
+                regions);
+    }
+}
@@ -0,0 +1,35 @@
+package com.jarnvilja.actuator;
+
+import com.jarnvilja.service.SeatLedger;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Exposes the per-session seat and waitlist counters at /actuator/seatledger. A POST with
+ * {@code trainingClassId} and {@code sessionDate} recounts that one session from the bookings.
+ */
+@Component
+@Endpoint(id = "seatledger")
+public class SeatLedgerEndpoint {
+
+    private final SeatLedger seatLedger;
+
+    public SeatLedgerEndpoint(SeatLedger seatLedger) {
+        this.seatLedger = seatLedger;
+    }
+
+    @ReadOperation
+    public Map<LocalDate, Map<Long, SeatLedger.SessionCounters>> ledger() {
+        return seatLedger.snapshot();
+    }
+
+    @WriteOperation
+    public SeatLedger.SessionCounters recount(Long trainingClassId, String sessionDate) {
+        return seatLedger.recount(trainingClassId, LocalDate.parse(sessionDate));
+    }
+}
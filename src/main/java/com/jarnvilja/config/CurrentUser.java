@@ -0,0 +1,13 @@
+package com.jarnvilja.config;
+
+import java.lang.annotation.*;
+
+/**
+ * Injects the logged-in {@link com.jarnvilja.service.AuthenticatedUser} into a controller method, or null
+ * when the request is not authenticated.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,55 @@
+package com.jarnvilja.config;
+
+import com.jarnvilja.model.User;
+import com.jarnvilja.service.UserSearchIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@link UserSearchIndex} in step with the users table. JPA calls it for every insert, update and
+ * delete of a {@link User}, whichever service saved it, and the index is changed once the transaction has
+ * committed, so a rollback leaves it untouched.
+ */
+public class UserSearchIndexListener {
+
+    // Hämtas först vid användning, eftersom lyssnaren skapas medan JPA startar
+    private final ObjectProvider<UserSearchIndex> userSearchIndex;
+
+    public UserSearchIndexListener(ObjectProvider<UserSearchIndex> userSearchIndex) {
+        this.userSearchIndex = userSearchIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(User user) {
+        UserSearchIndex.Entry entry = UserSearchIndex.Entry.of(user);
+        afterCommit(index -> index.put(entry));
+    }
+
+    @PostRemove
+    public void onRemoved(User user) {
+        Long id = user.getId();
+        afterCommit(index -> index.remove(id));
+    }
+
+    private void afterCommit(Consumer<UserSearchIndex> change) {
+        UserSearchIndex index = userSearchIndex.getIfAvailable();
+        if (index == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(index);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.accept(index);
+            }
+        });
+    }
+}
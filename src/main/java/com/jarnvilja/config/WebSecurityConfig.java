@@ -42,6 +42,8 @@ public class WebSecurityConfig {
                         "/kontakt", "/om_klubben", "/tranare", "/traningsschema", "/om_projektet",
                         "/forgot-password", "/reset-password",
                         "/error", "/h2-console/**", "/styles.css", "/js/**", "/images/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
                 .requestMatchers("/adminPage/**").hasAuthority("ROLE_ADMIN")
                 .requestMatchers("/memberPage/**").hasAuthority("ROLE_MEMBER")
                 .requestMatchers("/trainerPage/**").hasAuthority("ROLE_TRAINER")
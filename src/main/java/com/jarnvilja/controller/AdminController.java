@@ -1,16 +1,23 @@
 package com.jarnvilja.controller;
 
 import com.jarnvilja.dto.AdminDashboardStatsDTO;
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.BookingPageDTO;
 import com.jarnvilja.dto.BookingStatsDTO;
 import com.jarnvilja.dto.MemberStatsDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
 import com.jarnvilja.dto.TrainingClassStatsDTO;
+import com.jarnvilja.dto.UserDTO;
 import com.jarnvilja.model.*;
 import com.jarnvilja.model.EditableContent;
-import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.BookingBrowseRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.service.AdminService;
 import com.jarnvilja.service.ContentService;
+import com.jarnvilja.service.TrainingClassChangedEvent;
+import com.jarnvilja.service.TrainingClassService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -25,7 +32,6 @@ import org.springframework.web.servlet.view.RedirectView;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.time.format.TextStyle;
 import java.time.temporal.WeekFields;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -37,20 +43,26 @@ public class AdminController {
 
     private final AdminService adminService;
     private final TrainingClassRepository trainingClassRepository;
-    private final BookingRepository bookingRepository;
     private final ContentService contentService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TrainingClassService trainingClassService;
 
     @Autowired
     public AdminController(AdminService adminService, TrainingClassRepository trainingClassRepository,
-                           BookingRepository bookingRepository, ContentService contentService) {
+                           ContentService contentService,
+                           ApplicationEventPublisher eventPublisher,
+                           TrainingClassService trainingClassService) {
         this.adminService = adminService;
         this.trainingClassRepository = trainingClassRepository;
-        this.bookingRepository = bookingRepository;
         this.contentService = contentService;
+        this.eventPublisher = eventPublisher;
+        this.trainingClassService = trainingClassService;
     }
 
     private static final int USERS_PAGE_SIZE = 20;
     private static final int BOOKINGS_PAGE_SIZE = 20;
+    private static final int MAX_BROWSE_SIZE = 100;
+    private static final int MAX_SEARCH_LIMIT = 50;
 
     @GetMapping
     public String adminPage(
@@ -59,13 +71,14 @@ public class AdminController {
             @RequestParam(defaultValue = "username") String sortBy,
             @RequestParam(defaultValue = "month") String range,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "0") int bookingPage,
+            @RequestParam(required = false) String bookingCursor,
+            @RequestParam(required = false) String bookingStatus,
+            @RequestParam(required = false) Long bookingClassId,
+            @RequestParam(required = false) String bookingMember,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bookingFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate bookingTo,
             Model model) {
 
-        Map<Long, Long> bookingCounts = bookingRepository.findAll().stream()
-                .filter(b -> b.getBookingStatus() == BookingStatus.CONFIRMED)
-                .collect(Collectors.groupingBy(b -> b.getMember().getId(), Collectors.counting()));
-
         Role roleEnum = null;
         if (role != null && !role.isBlank()) {
             try {
@@ -73,32 +86,29 @@ public class AdminController {
             } catch (IllegalArgumentException ignored) { }
         }
 
-        Page<User> usersPage = adminService.getUsersPage(roleEnum, search, sortBy, page, USERS_PAGE_SIZE, bookingCounts);
+        Page<User> usersPage = adminService.getUsersPage(roleEnum, search, sortBy, page, USERS_PAGE_SIZE);
         model.addAttribute("usersPage", usersPage);
         model.addAttribute("users", usersPage.getContent());
-        model.addAttribute("bookingCounts", bookingCounts);
+        // Räknarna läses bara för användarna på sidan
+        model.addAttribute("bookingCounts", adminService.getConfirmedBookingCounts(
+                usersPage.getContent().stream().map(User::getId).toList()));
         model.addAttribute("selectedRole", role);
         model.addAttribute("searchQuery", search);
         model.addAttribute("sortBy", sortBy);
         model.addAttribute("selectedRange", range);
         model.addAttribute("currentPage", page);
 
-        List<Booking> allBookings = adminService.getAllBookings();
-        Page<Booking> bookingsPage = adminService.getBookingsPage(bookingPage, BOOKINGS_PAGE_SIZE);
+        BookingBrowseRepository.Filter bookingFilter = new BookingBrowseRepository.Filter(parseBookingStatus(bookingStatus),
+                bookingClassId, bookingMember, bookingFrom, bookingTo);
+        AdminService.BookingBrowsePage bookingsPage = adminService.browseBookings(bookingFilter, bookingCursor, BOOKINGS_PAGE_SIZE);
         model.addAttribute("bookingsPage", bookingsPage);
-        model.addAttribute("bookings", bookingsPage.getContent());
-        model.addAttribute("currentBookingPage", bookingPage);
-
-        String popularClass = allBookings.stream()
-                .filter(b -> b.getTrainingClass() != null)
-                .collect(Collectors.groupingBy(b -> b.getTrainingClass().getTitle(), Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("–");
-        model.addAttribute("popularClass", popularClass);
-
-        AdminDashboardStatsDTO dashStats = computeDashboardStats(allBookings, range);
+        model.addAttribute("bookings", bookingsPage.bookings());
+        model.addAttribute("bookingCursor", bookingCursor != null && !bookingCursor.isBlank() ? bookingCursor : null);
+        model.addAttribute("bookingFilter", bookingFilter);
+
+        model.addAttribute("popularClass", adminService.getMostPopularClass());
+
+        AdminDashboardStatsDTO dashStats = adminService.computeDashboardStats(range);
         model.addAttribute("dashStats", dashStats);
 
         List<TrainingClass> trainingClasses = trainingClassRepository.findAll();
@@ -110,61 +120,13 @@ public class AdminController {
         return "adminPage";
     }
 
-    private AdminDashboardStatsDTO computeDashboardStats(List<Booking> bookings, String range) {
-        AdminDashboardStatsDTO dto = new AdminDashboardStatsDTO();
-        dto.setTotalBookings(bookings.size());
-
-        long cancelled = bookings.stream().filter(b -> b.getBookingStatus() == BookingStatus.CANCELLED).count();
-        dto.setCancellationRate(bookings.isEmpty() ? 0 : (double) cancelled / bookings.size() * 100);
-
-        Map<String, Long> byDay = new LinkedHashMap<>();
-        String[] dayNames = {"Måndag", "Tisdag", "Onsdag", "Torsdag", "Fredag", "Lördag", "Söndag"};
-        for (String d : dayNames) byDay.put(d, 0L);
-
-        Map<String, Long> byCat = new LinkedHashMap<>();
-
-        LocalDate cutoff = switch (range) {
-            case "week" -> LocalDate.now().minusWeeks(1);
-            case "year" -> LocalDate.now().minusYears(1);
-            default -> LocalDate.now().minusMonths(1);
-        };
-
-        Map<String, Long> overTime = new TreeMap<>();
-
-        for (Booking b : bookings) {
-            if (b.getBookingDate() == null || b.getBookingDate().isBefore(cutoff)) continue;
-            if (b.getTrainingClass() == null) continue;
-
-            DayOfWeek dow = b.getTrainingClass().getTrainingDay();
-            if (dow != null) {
-                String dayLabel = dow.getDisplayName(TextStyle.FULL, new Locale("sv", "SE"));
-                dayLabel = dayLabel.substring(0, 1).toUpperCase() + dayLabel.substring(1);
-                byDay.merge(dayLabel, 1L, Long::sum);
-            }
-
-            if (b.getTrainingClass().getCategory() != null) {
-                byCat.merge(b.getTrainingClass().getCategory().name(), 1L, Long::sum);
-            }
-
-            if ("week".equals(range)) {
-                overTime.merge(b.getBookingDate().toString(), 1L, Long::sum);
-            } else {
-                String monthKey = b.getBookingDate().getYear() + "-" +
-                        String.format("%02d", b.getBookingDate().getMonthValue());
-                overTime.merge(monthKey, 1L, Long::sum);
-            }
+    private static BookingStatus parseBookingStatus(String status) {
+        if (status == null || status.isBlank()) return null;
+        try {
+            return BookingStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
-
-        dto.setBookingsByDay(byDay);
-        dto.setBookingsByCategory(byCat);
-        dto.setBookingsOverTime(overTime);
-
-        byDay.entrySet().stream().max(Map.Entry.comparingByValue())
-                .ifPresent(e -> dto.setBusiestDay(e.getKey()));
-        byCat.entrySet().stream().max(Map.Entry.comparingByValue())
-                .ifPresent(e -> dto.setMostPopularClass(e.getKey()));
-
-        return dto;
     }
 
     // --- Training Class CRUD ---
@@ -191,7 +153,8 @@ public class AdminController {
         if (trainingClass.getStatus() == null) {
             trainingClass.setStatus(ClassStatus.ACTIVE);
         }
-        trainingClassRepository.save(trainingClass);
+        TrainingClass saved = trainingClassRepository.save(trainingClass);
+        eventPublisher.publishEvent(new TrainingClassChangedEvent(saved.getId()));
         redirectAttributes.addFlashAttribute("successMessage", "Träningspasset har skapats!");
         return "redirect:/adminPage";
     }
@@ -232,13 +195,14 @@ public class AdminController {
             existing.setTrainer(null);
         }
         trainingClassRepository.save(existing);
+        eventPublisher.publishEvent(new TrainingClassChangedEvent(id));
         redirectAttributes.addFlashAttribute("successMessage", "Träningspasset har uppdaterats!");
         return "redirect:/adminPage";
     }
 
     @PostMapping("/classes/{id}/delete")
     public String deleteClass(@PathVariable Long id, RedirectAttributes redirectAttributes) {
-        trainingClassRepository.deleteById(id);
+        trainingClassService.deleteTrainingClass(id);
         redirectAttributes.addFlashAttribute("successMessage", "Träningspasset har tagits bort!");
         return "redirect:/adminPage";
     }
@@ -246,12 +210,12 @@ public class AdminController {
     // --- Existing endpoints ---
 
     @PostMapping
-    public ResponseEntity<User> createUser(@RequestBody User user) {
+    public ResponseEntity<UserDTO> createUser(@RequestBody User user) {
         User createdUser = adminService.createUser(user);
         if (createdUser == null) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
-        return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
+        return new ResponseEntity<>(new UserDTO(createdUser), HttpStatus.CREATED);
     }
 
     @DeleteMapping("/{id}")
@@ -260,52 +224,61 @@ public class AdminController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserId(@PathVariable Long id) {
+    public ResponseEntity<UserDTO> getUserId(@PathVariable Long id) {
         User user = adminService.getUserById(id);
         if (user == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(user, HttpStatus.OK);
+        return new ResponseEntity<>(new UserDTO(user), HttpStatus.OK);
+    }
+
+
+    @GetMapping("/users/search")
+    public ResponseEntity<List<UserDTO>> searchUsers(@RequestParam String q,
+                                                     @RequestParam(required = false) Role role,
+                                                     @RequestParam(defaultValue = "10") int limit) {
+        List<User> users = adminService.searchUsers(q, role, Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT)));
+        return new ResponseEntity<>(users.stream().map(UserDTO::new).toList(), HttpStatus.OK);
     }
 
 
     @GetMapping("/role/{role}")
-    public ResponseEntity<List<User>> getUsersByRole(@PathVariable Role role) {
+    public ResponseEntity<List<UserDTO>> getUsersByRole(@PathVariable Role role) {
         List<User> users = adminService.getUsersByRole(role);
 
         if (users.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
-        return new ResponseEntity<>(users, HttpStatus.OK);
+        return new ResponseEntity<>(users.stream().map(UserDTO::new).toList(), HttpStatus.OK);
     }
 
 
     @PatchMapping("/{id}/role")
-    public ResponseEntity<User> assignRoleToUser (@PathVariable Long id, @RequestBody Role role) {
+    public ResponseEntity<UserDTO> assignRoleToUser (@PathVariable Long id, @RequestBody Role role) {
         User updatedUser  = adminService.assignRoleToUser (id, role);
         if (updatedUser  == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(updatedUser , HttpStatus.OK);
+        return new ResponseEntity<>(new UserDTO(updatedUser), HttpStatus.OK);
     }
 
     @PatchMapping("/{id}/password")
-    public ResponseEntity<User> resetUserPassword(@PathVariable Long id, @RequestBody String newPassword) {
+    public ResponseEntity<UserDTO> resetUserPassword(@PathVariable Long id, @RequestBody String newPassword) {
         User updatedUser = adminService.resetUserPassword(id, newPassword);
 
         if (updatedUser == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(updatedUser , HttpStatus.OK);
+        return new ResponseEntity<>(new UserDTO(updatedUser), HttpStatus.OK);
     }
 
     @PostMapping("/classes/{classId}/trainer/{trainerId}")
-    public ResponseEntity<TrainingClass> assignTrainerToClass(@PathVariable Long classId, @PathVariable Long trainerId) {
+    public ResponseEntity<TrainingClassDTO> assignTrainerToClass(@PathVariable Long classId, @PathVariable Long trainerId) {
         TrainingClass updatedTrainingClass = adminService.assignTrainerToClass(classId, trainerId);
         if (updatedTrainingClass == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(updatedTrainingClass, HttpStatus.OK);
+        return new ResponseEntity<>(new TrainingClassDTO(updatedTrainingClass), HttpStatus.OK);
     }
 
     @DeleteMapping("/classes/{classId}/trainer/{trainerId}")
@@ -322,11 +295,11 @@ public class AdminController {
     }
 
     @GetMapping("/classes/{classId}/trainer")
-    public ResponseEntity<User> getTrainerFromClass(@PathVariable Long classId) {
+    public ResponseEntity<UserDTO> getTrainerFromClass(@PathVariable Long classId) {
         Optional<User> trainerOpt = adminService.getTrainerFromClass(classId);
 
         if (trainerOpt.isPresent()) {
-            return new ResponseEntity<>(trainerOpt.get(), HttpStatus.OK);
+            return new ResponseEntity<>(new UserDTO(trainerOpt.get()), HttpStatus.OK);
         }
 
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -334,29 +307,48 @@ public class AdminController {
 
     @PostMapping("/content")
     public RedirectView saveContent(@RequestParam Map<String, String> allParams, RedirectAttributes redirectAttributes) {
+        Map<String, String> values = new HashMap<>();
         for (Map.Entry<String, String> e : allParams.entrySet()) {
             if (e.getKey() != null && e.getKey().startsWith("value_")) {
                 String contentKey = e.getKey().substring("value_".length());
-                String value = e.getValue() != null ? e.getValue() : "";
-                contentService.save(contentKey, value);
+                values.put(contentKey, e.getValue() != null ? e.getValue() : "");
             }
         }
+        // Alla nycklar i en batchad upsert i stället för find + save per nyckel
+        contentService.saveAll(values);
         redirectAttributes.addFlashAttribute("successMessage", "Innehållet har sparats.");
         return new RedirectView("/adminPage#content-section");
     }
 
     @GetMapping("/trainers")
-    public ResponseEntity<List<User>> getAllTrainers() {
+    public ResponseEntity<List<UserDTO>> getAllTrainers() {
         List<User> trainers = adminService.getAllTrainers();
-        return new ResponseEntity<>(trainers, HttpStatus.OK);
+        return new ResponseEntity<>(trainers.stream().map(UserDTO::new).toList(), HttpStatus.OK);
     }
 
 
 
     @GetMapping("/bookings")
-    public ResponseEntity<List<Booking>> getAllBookings() {
+    public ResponseEntity<List<BookingDTO>> getAllBookings() {
         List<Booking> bookings = adminService.getAllBookings();
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
+    }
+
+
+    @GetMapping("/bookings/browse")
+    public ResponseEntity<BookingPageDTO> browseBookings(
+            @RequestParam(required = false) BookingStatus status,
+            @RequestParam(required = false) Long classId,
+            @RequestParam(required = false) String member,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        BookingBrowseRepository.Filter filter = new BookingBrowseRepository.Filter(status, classId, member, from, to);
+        AdminService.BookingBrowsePage page = adminService.browseBookings(filter, cursor,
+                Math.max(1, Math.min(size, MAX_BROWSE_SIZE)));
+        return new ResponseEntity<>(new BookingPageDTO(page.bookings().stream().map(BookingDTO::new).toList(),
+                page.nextCursor()), HttpStatus.OK);
     }
 
 
@@ -376,10 +368,10 @@ public class AdminController {
     }
 
     @GetMapping("/bookings/{id}")
-    public ResponseEntity<Booking> getBookingById(@PathVariable Long id) {
+    public ResponseEntity<BookingDTO> getBookingById(@PathVariable Long id) {
         try {
             Booking booking = adminService.getBookingById(id);
-            return new ResponseEntity<>(booking, HttpStatus.OK);
+            return new ResponseEntity<>(new BookingDTO(booking), HttpStatus.OK);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -387,16 +379,16 @@ public class AdminController {
 
 
     @PatchMapping("/classes/{trainingClassId}/bookings")
-    public ResponseEntity<List<Booking>> cancelAllBookingsForClass(@PathVariable Long trainingClassId) {
-        List<Booking> cancelledBookings = adminService.cancelAllBookingsForClass(trainingClassId);
-        return new ResponseEntity<>(cancelledBookings, HttpStatus.OK);
+    public ResponseEntity<Integer> cancelAllBookingsForClass(@PathVariable Long trainingClassId) {
+        int cancelled = adminService.cancelAllBookingsForClass(trainingClassId);
+        return new ResponseEntity<>(cancelled, HttpStatus.OK);
     }
 
 
     @GetMapping("/bookings/status/{status}")
-    public ResponseEntity<List<Booking>> getBookingsByStatus(@PathVariable BookingStatus status) {
+    public ResponseEntity<List<BookingDTO>> getBookingsByStatus(@PathVariable BookingStatus status) {
         List<Booking> bookings = adminService.getBookingsByStatus(status);
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
 
@@ -437,12 +429,12 @@ public class AdminController {
     }
 
     @GetMapping("/period")
-    public ResponseEntity<List<Booking>> getBookingsByPeriod(
+    public ResponseEntity<List<BookingDTO>> getBookingsByPeriod(
             @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
         try {
             List<Booking> bookings = adminService.getBookingsByPeriod(startDate, endDate);
-            return ResponseEntity.ok(bookings);
+            return ResponseEntity.ok(bookings.stream().map(BookingDTO::new).toList());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -450,10 +442,10 @@ public class AdminController {
 
 
     @GetMapping("/{memberId}/bookings")
-    public ResponseEntity<List<Booking>> getAllBookingsForMember(@PathVariable Long memberId) {
+    public ResponseEntity<List<BookingDTO>> getAllBookingsForMember(@PathVariable Long memberId) {
         try {
             List<Booking> bookings = adminService.getAllBookingsForMember(memberId);
-            return ResponseEntity.ok(bookings);
+            return ResponseEntity.ok(bookings.stream().map(BookingDTO::new).toList());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -1,11 +1,15 @@
 package com.jarnvilja.controller;
 
+import com.jarnvilja.dto.BatchBookingResultDTO;
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
 import com.jarnvilja.model.Booking;
 import com.jarnvilja.model.TrainingClass;
 import com.jarnvilja.model.User;
 import com.jarnvilja.repository.UserRepository;
 import com.jarnvilja.service.BookingService;
 import com.jarnvilja.service.EmailService;
+import com.jarnvilja.service.IdempotencyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,6 +17,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Controller
@@ -23,16 +28,27 @@ public class BookingController {
 
     private final EmailService emailService;
     private final UserRepository userRepository;
+    private final IdempotencyService idempotencyService;
 
     @Autowired
-    public BookingController(BookingService bookingService, EmailService emailService, UserRepository userRepository) {
+    public BookingController(BookingService bookingService, EmailService emailService, UserRepository userRepository,
+                             IdempotencyService idempotencyService) {
         this.bookingService = bookingService;
         this.emailService = emailService;
         this.userRepository = userRepository;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/members/{userId}/bookings")
-    public ResponseEntity<Booking> createBooking(@PathVariable Long userId, @RequestBody Booking booking) {
+    public ResponseEntity<BookingDTO> createBooking(@PathVariable Long userId, @RequestBody Booking booking,
+                                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // Upprepad förfrågan med samma nyckel får det första svaret utan nya frågor mot databasen
+        Long trainingClassId = booking.getTrainingClass() != null ? booking.getTrainingClass().getId() : null;
+        return idempotencyService.execute("api-booking:" + userId, idempotencyKey, trainingClassId,
+                () -> doCreateBooking(userId, booking));
+    }
+
+    private ResponseEntity<BookingDTO> doCreateBooking(Long userId, Booking booking) {
         // Hämta användaren
         Optional<User> userOptional = userRepository.findById(userId);
         if (userOptional.isEmpty()) {
@@ -52,7 +68,18 @@ public class BookingController {
 
         // Skapa bokningen
         Booking createdBooking = bookingService.createBooking(userId, trainingClass.getId());
-        return new ResponseEntity<>(createdBooking, HttpStatus.CREATED);
+        return new ResponseEntity<>(new BookingDTO(createdBooking), HttpStatus.CREATED);
+    }
+
+    @PostMapping("/members/{userId}/bookings/batch")
+    public ResponseEntity<List<BatchBookingResultDTO>> createBookings(@PathVariable Long userId, @RequestBody List<Long> trainingClassIds,
+                                                                      @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // Tomma listor och null-id i listan är felaktiga förfrågningar, inte enskilda avvisade pass
+        if (trainingClassIds == null || trainingClassIds.isEmpty() || trainingClassIds.stream().anyMatch(Objects::isNull)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return idempotencyService.execute("api-booking-batch:" + userId, idempotencyKey, trainingClassIds,
+                () -> new ResponseEntity<>(bookingService.createBookings(userId, trainingClassIds), HttpStatus.OK));
     }
 
     public boolean validateBookingTime(Booking booking, TrainingClass trainingClass) {
@@ -60,27 +87,28 @@ public class BookingController {
     }
 
     @DeleteMapping("/bookings/{bookingId}")
-    public ResponseEntity<Booking> cancelBooking(@PathVariable Long bookingId) {
-        Booking cancelledBooking = bookingService.cancelBooking(bookingId);
-        return new ResponseEntity<>(cancelledBooking, HttpStatus.OK);
+    public ResponseEntity<BookingDTO> cancelBooking(@PathVariable Long bookingId,
+                                                    @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("api-cancel:" + bookingId, idempotencyKey,
+                () -> new ResponseEntity<>(new BookingDTO(bookingService.cancelBooking(bookingId)), HttpStatus.OK));
     }
 
     @GetMapping("/bookings/{bookingId}")
-    public ResponseEntity<Booking> getBookingById(@PathVariable Long bookingId) {
+    public ResponseEntity<BookingDTO> getBookingById(@PathVariable Long bookingId) {
         Booking booking = bookingService.getBookingById(bookingId);
-        return new ResponseEntity<>(booking, HttpStatus.OK);
+        return new ResponseEntity<>(new BookingDTO(booking), HttpStatus.OK);
     }
 
     @GetMapping
-    public ResponseEntity<List<Booking>> getAllBookings() {
+    public ResponseEntity<List<BookingDTO>> getAllBookings() {
         List<Booking> bookings = bookingService.getAllBookings();
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/members/{memberId}/bookings")
-    public ResponseEntity<List<Booking>> getAllBookingsByMemberId(@PathVariable Long memberId) {
+    public ResponseEntity<List<BookingDTO>> getAllBookingsByMemberId(@PathVariable Long memberId) {
         List<Booking> bookings = bookingService.getAllBookingsByMemberId(memberId);
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/classes/{trainingClassId}/bookings/total")
@@ -96,33 +124,33 @@ public class BookingController {
     }
 
     @GetMapping("/members/{memberId}/upcoming")
-    public ResponseEntity<List<Booking>> getUpcomingBookingsForMember(@PathVariable Long memberId) {
+    public ResponseEntity<List<BookingDTO>> getUpcomingBookingsForMember(@PathVariable Long memberId) {
         List<Booking> upcomingBookings = bookingService.getUpcomingBookingsForMember(memberId);
-        return new ResponseEntity<>(upcomingBookings, HttpStatus.OK);
+        return new ResponseEntity<>(upcomingBookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/members/{memberId}/past")
-    public ResponseEntity<List<Booking>> getPastBookingsForMember(@PathVariable Long memberId) {
+    public ResponseEntity<List<BookingDTO>> getPastBookingsForMember(@PathVariable Long memberId) {
         List<Booking> pastBookings = bookingService.getPastBookingsForMember(memberId);
-        return new ResponseEntity<>(pastBookings, HttpStatus.OK);
+        return new ResponseEntity<>(pastBookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @PutMapping("/{bookingId}")
-    public ResponseEntity<Booking> updateBooking(@PathVariable Long bookingId, @RequestBody Booking updatedBooking) {
+    public ResponseEntity<BookingDTO> updateBooking(@PathVariable Long bookingId, @RequestBody Booking updatedBooking) {
         Booking booking = bookingService.updateBooking(bookingId, updatedBooking);
         if (booking == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Returnera 404 om bokningen inte hittas
         }
-        return new ResponseEntity<>(booking, HttpStatus.OK); // Returnera den uppdaterade bokningen med 200 OK
+        return new ResponseEntity<>(new BookingDTO(booking), HttpStatus.OK); // Returnera den uppdaterade bokningen med 200 OK
     }
 
     @PatchMapping("/{bookingId}/confirm")
-    public ResponseEntity<Booking> confirmBooking(@PathVariable Long bookingId) {
+    public ResponseEntity<BookingDTO> confirmBooking(@PathVariable Long bookingId) {
         Booking booking = bookingService.confirmBooking(bookingId);
         if (booking == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Returnera 404 om bokningen inte hittas
         }
-        return new ResponseEntity<>(booking, HttpStatus.OK); // Returnera den bekräftade bokningen med 200 OK
+        return new ResponseEntity<>(new BookingDTO(booking), HttpStatus.OK); // Returnera den bekräftade bokningen med 200 OK
     }
 
 
@@ -133,9 +161,9 @@ public class BookingController {
     }
 
     @GetMapping("/classes/available")
-    public ResponseEntity<List<TrainingClass>> getAvailableTrainingClasses() {
+    public ResponseEntity<List<TrainingClassDTO>> getAvailableTrainingClasses() {
         List<TrainingClass> availableClasses = bookingService.getAvailableTrainingClasses();
-        return new ResponseEntity<>(availableClasses, HttpStatus.OK); // Returnera listan med tillgängliga klasser med 200 OK
+        return new ResponseEntity<>(availableClasses.stream().map(TrainingClassDTO::new).toList(), HttpStatus.OK); // Returnera listan med tillgängliga klasser med 200 OK
     }
 
     @PostMapping("/{bookingId}/confirm")
@@ -1,17 +1,26 @@
 package com.jarnvilja.controller;
 
+import com.jarnvilja.config.CurrentUser;
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.BookingTicketDTO;
 import com.jarnvilja.dto.MemberProfileDTO;
 import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
+import com.jarnvilja.dto.UserDTO;
+import com.jarnvilja.dto.WaitlistPositionDTO;
 import com.jarnvilja.model.*;
+import com.jarnvilja.service.AuthenticatedUser;
+import com.jarnvilja.service.BookingIntakeService;
 import com.jarnvilja.service.BookingService;
 import com.jarnvilja.service.DemoGuard;
+import com.jarnvilja.service.IdempotencyService;
+import com.jarnvilja.service.MemberDashboardService;
 import com.jarnvilja.service.MemberService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -19,12 +28,13 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.servlet.view.RedirectView;
 
+import java.net.URI;
 import java.time.DayOfWeek;
-import java.time.LocalDate;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @Controller
@@ -35,40 +45,40 @@ public class MemberController {
     private final BookingService bookingService;
     private final PasswordEncoder passwordEncoder;
     private final DemoGuard demoGuard;
+    private final BookingIntakeService bookingIntakeService;
+    private final IdempotencyService idempotencyService;
+    private final MemberDashboardService memberDashboardService;
 
     @Autowired
     public MemberController(MemberService memberService, BookingService bookingService,
-                            PasswordEncoder passwordEncoder, DemoGuard demoGuard) {
+                            PasswordEncoder passwordEncoder, DemoGuard demoGuard,
+                            BookingIntakeService bookingIntakeService, IdempotencyService idempotencyService,
+                            MemberDashboardService memberDashboardService) {
         this.memberService = memberService;
         this.bookingService = bookingService;
         this.passwordEncoder = passwordEncoder;
         this.demoGuard = demoGuard;
+        this.bookingIntakeService = bookingIntakeService;
+        this.idempotencyService = idempotencyService;
+        this.memberDashboardService = memberDashboardService;
     }
 
     @GetMapping
     @PreAuthorize("hasAuthority('ROLE_MEMBER')")
     public String memberPage(Model model,
-                             @AuthenticationPrincipal UserDetails userDetails,
+                             @CurrentUser AuthenticatedUser currentUser,
                              @RequestParam(required = false) String search,
                              @RequestParam(required = false) String sort,
                              @RequestParam(required = false, defaultValue = "false") boolean reset) {
-        String username = userDetails.getUsername();
-        User member = memberService.getMemberByUsername(username);
+        // Sidans alla rader i ett fast antal frågor; reset visar hela listan osorterad
+        MemberDashboardService.Dashboard dashboard = memberDashboardService.getDashboard(
+                currentUser.getId(), reset ? null : search, reset ? null : sort);
+        User member = dashboard.member();
+        List<TrainingClass> trainingClasses = dashboard.classes();
 
         model.addAttribute("member", member);
-        model.addAttribute("memberId", member.getId());
-        model.addAttribute("username", username);
-
-        List<TrainingClass> trainingClasses = memberService.getAvailableClasses();
-
-        if (!reset) {
-            if (search != null && !search.isEmpty()) {
-                trainingClasses = memberService.searchAvailableClasses(search);
-            }
-            if (sort != null) {
-                trainingClasses = memberService.sortClasses(trainingClasses, sort);
-            }
-        }
+        model.addAttribute("memberId", currentUser.getId());
+        model.addAttribute("username", currentUser.getUsername());
 
         model.addAttribute("search", search);
         model.addAttribute("trainingClasses", trainingClasses);
@@ -77,28 +87,17 @@ public class MemberController {
         model.addAttribute("matta2Pass", trainingClasses.stream()
                 .filter(tc -> tc.getMatta() == Matta.MATTA_2).collect(Collectors.toList()));
 
-        List<Booking> bookings = memberService.getBookingsForMember(member.getId());
-        List<Booking> activeBookings = bookings.stream()
-                .filter(b -> !b.getBookingStatus().equals(BookingStatus.CANCELLED))
-                .collect(Collectors.toList());
-        model.addAttribute("bookings", activeBookings);
-
-        List<Booking> upcomingBookings = memberService.getUpcomingBookingsForMember(member.getId());
-        List<Booking> pastBookings = memberService.getPastBookingsForMember(member.getId());
-        model.addAttribute("upcomingBookings", upcomingBookings);
-        model.addAttribute("pastBookings", pastBookings);
+        model.addAttribute("bookings", dashboard.activeBookings());
+        model.addAttribute("upcomingBookings", dashboard.upcomingBookings());
+        model.addAttribute("waitlistPositions", dashboard.waitlistPositions());
+        model.addAttribute("pastBookings", dashboard.pastBookings());
 
         model.addAttribute("daysOfWeek", DayOfWeek.values());
+        // Ny nyckel per sidvisning, så dubbelklick på samma formulär bara bokar en gång
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 
-        Map<Long, Integer> capacityUsed = new HashMap<>();
-        LocalDate today = LocalDate.now();
-        for (TrainingClass tc : trainingClasses) {
-            capacityUsed.put(tc.getId(), bookingService.getConfirmedCountForClassOnDate(tc.getId(), today));
-        }
-        model.addAttribute("capacityUsed", capacityUsed);
-
-        MembershipStatsDTO stats = memberService.getMembershipStats(member.getId());
-        model.addAttribute("stats", stats);
+        model.addAttribute("capacityUsed", dashboard.capacityUsed());
+        model.addAttribute("stats", dashboard.stats());
 
         model.addAttribute("onboarding", member.isDemo());
 
@@ -106,17 +105,17 @@ public class MemberController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<User> createMember(@RequestBody User user) {
+    public ResponseEntity<UserDTO> createMember(@RequestBody User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
 
         User createdUser  = memberService.createMember(user);
-        return new ResponseEntity<>(createdUser , HttpStatus.CREATED);
+        return new ResponseEntity<>(new UserDTO(createdUser), HttpStatus.CREATED);
     }
 
     @PutMapping("/{memberId}")
-    public ResponseEntity<User> updateMember(@PathVariable Long memberId, @RequestBody User user) {
+    public ResponseEntity<UserDTO> updateMember(@PathVariable Long memberId, @RequestBody User user) {
         User updatedUser  = memberService.updateMember(memberId, user);
-        return new ResponseEntity<>(updatedUser , HttpStatus.OK);
+        return new ResponseEntity<>(new UserDTO(updatedUser), HttpStatus.OK);
     }
 
     @DeleteMapping("/{memberId}")
@@ -126,101 +125,168 @@ public class MemberController {
     }
 
     @GetMapping("/{memberId}")
-    public ResponseEntity<User> getMemberById(@PathVariable Long memberId) {
+    public ResponseEntity<UserDTO> getMemberById(@PathVariable Long memberId) {
         Optional<User> user = Optional.ofNullable(memberService.getMemberById(memberId));
-        return user.map(ResponseEntity::ok) // Om medlemmen finns, returnera 200 OK med medlemmen
+        return user.map(UserDTO::new).map(ResponseEntity::ok) // Om medlemmen finns, returnera 200 OK med medlemmen
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND)); // Annars returnera 404 NOT FOUND
     }
 
     @GetMapping("/all")
-    public ResponseEntity<List<User>> getAllMembers() {
+    public ResponseEntity<List<UserDTO>> getAllMembers() {
         List<User> members = memberService.getAllMembers();
-        return new ResponseEntity<>(members, HttpStatus.OK);
+        return new ResponseEntity<>(members.stream().map(UserDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/email/{email}")
-    public ResponseEntity<User> getMemberByEmail(@PathVariable String email) {
+    public ResponseEntity<UserDTO> getMemberByEmail(@PathVariable String email) {
         Optional<User> user = Optional.ofNullable(memberService.getMemberByEmail(email));
-        return user.map(ResponseEntity::ok) // Om medlemmen finns, returnera 200 OK med medlemmen
+        return user.map(UserDTO::new).map(ResponseEntity::ok) // Om medlemmen finns, returnera 200 OK med medlemmen
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND)); // Annars returnera 404 NOT FOUND
     }
 
     @PatchMapping("/{memberId}/password")
-    public ResponseEntity<User> updateMemberPassword(@PathVariable Long memberId, @RequestBody String newPassword) {
+    public ResponseEntity<UserDTO> updateMemberPassword(@PathVariable Long memberId, @RequestBody String newPassword) {
         User updatedUser  = memberService.updateMemberPassword(memberId, newPassword);
-        return new ResponseEntity<>(updatedUser , HttpStatus.OK);
+        return new ResponseEntity<>(new UserDTO(updatedUser), HttpStatus.OK);
     }
 
     @PostMapping("/{memberId}/bookings")
-    public String createBooking(@PathVariable Long memberId, @RequestParam Long trainingClassId, Model model, RedirectAttributes redirectAttributes) {
-        // Kontrollera bokningsstatus
-        String bookingMessage = memberService.checkBookingStatus(memberId, trainingClassId);
+    public String createBooking(@PathVariable Long memberId, @RequestParam Long trainingClassId,
+                                @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyHeader,
+                                @RequestParam(required = false) String idempotencyKey,
+                                Model model, RedirectAttributes redirectAttributes) {
+        // Formulären skickar nyckeln som dolt fält, API-klienter som header
+        String key = idempotencyHeader != null ? idempotencyHeader : idempotencyKey;
+        String bookingMessage = idempotencyService.execute("member-booking:" + memberId + ":" + trainingClassId, key,
+                () -> submitBooking(memberId, trainingClassId));
 
         if (bookingMessage != null) {
-            // Om användaren redan har bokat passet, skicka meddelandet via RedirectAttributes
             redirectAttributes.addFlashAttribute("bookingMessage", bookingMessage);
-            return "redirect:/memberPage";  // Omdirigera till medlemssidan med meddelandet
+        }
+        return "redirect:/memberPage";
+    }
+
+    // Returnerar meddelandet som ska visas för medlemmen, eller null om bokningen gick igenom direkt
+    private String submitBooking(Long memberId, Long trainingClassId) {
+        // Kontrollera bokningsstatus
+        String bookingMessage = memberService.checkBookingStatus(memberId, trainingClassId);
+        if (bookingMessage != null) {
+            // Om användaren redan har bokat passet visas meddelandet på medlemssidan
+            return bookingMessage;
         }
 
         try {
+            if (bookingIntakeService.isEnabled()) {
+                // Köat läge: bokningen behandlas i turordning av intagskön
+                bookingIntakeService.submit(memberId, trainingClassId);
+                return "Din bokning är mottagen och behandlas i turordning.";
+            }
             memberService.createBooking(memberId, trainingClassId);
+            return null;
         } catch (RuntimeException e) {
-            redirectAttributes.addFlashAttribute("bookingMessage", e.getMessage());
-            return "redirect:/memberPage";
+            return e.getMessage();
         }
+    }
 
-        return "redirect:/memberPage";
+    @PostMapping("/{memberId}/bookings/intake")
+    public ResponseEntity<BookingTicketDTO> enqueueBooking(@PathVariable Long memberId, @RequestParam Long trainingClassId) {
+        if (!bookingIntakeService.isEnabled()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        String bookingMessage = memberService.checkBookingStatus(memberId, trainingClassId);
+        if (bookingMessage != null) {
+            return new ResponseEntity<>(BookingTicketDTO.rejected(trainingClassId, bookingMessage), HttpStatus.CONFLICT);
+        }
+        try {
+            BookingTicketDTO ticket = bookingIntakeService.submit(memberId, trainingClassId);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/memberPage/bookings/tickets/" + ticket.getTicketId()))
+                    .body(ticket);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(BookingTicketDTO.rejected(trainingClassId, e.getMessage()));
+        }
+    }
+
+    // Andras biljetter och köplatser ger 404, precis som okända, så att id:n inte går att pröva fram
+    @GetMapping("/bookings/tickets/{ticketId}")
+    public ResponseEntity<BookingTicketDTO> getBookingTicket(@CurrentUser AuthenticatedUser currentUser,
+                                                             @PathVariable String ticketId) {
+        if (currentUser == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return bookingIntakeService.getTicket(ticketId, currentUser.getId())
+                .map(ticket -> new ResponseEntity<>(ticket, HttpStatus.OK))
+                .orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("/bookings/{bookingId}/waitlist-position")
+    public ResponseEntity<WaitlistPositionDTO> getWaitlistPosition(@CurrentUser AuthenticatedUser currentUser,
+                                                                   @PathVariable Long bookingId) {
+        if (currentUser == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        OptionalInt position = bookingService.getWaitlistPosition(bookingId, currentUser.getId());
+        if (position.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(new WaitlistPositionDTO(bookingId, position.getAsInt()), HttpStatus.OK);
     }
 
     @PatchMapping("/bookings/{bookingId}/confirm")
-    public ResponseEntity<Booking> confirmBooking(@PathVariable Long bookingId) {
+    public ResponseEntity<BookingDTO> confirmBooking(@PathVariable Long bookingId) {
         Booking confirmedBooking = memberService.confirmBooking(bookingId);
-        return new ResponseEntity<>(confirmedBooking, HttpStatus.OK);
+        return new ResponseEntity<>(new BookingDTO(confirmedBooking), HttpStatus.OK);
     }
 
     @PostMapping("/bookings/{bookingId}")
-    public RedirectView cancelBooking(@PathVariable Long bookingId, @RequestParam("_method") String method) {
+    public RedirectView cancelBooking(@PathVariable Long bookingId, @RequestParam("_method") String method,
+                                      @RequestParam(required = false) String idempotencyKey) {
         if ("delete".equalsIgnoreCase(method)) {
-            memberService.cancelBooking(bookingId);
+            idempotencyService.execute("member-cancel:" + bookingId, idempotencyKey, () -> {
+                memberService.cancelBooking(bookingId);
+                return Boolean.TRUE;
+            });
             return new RedirectView("/memberPage");
         }
         return new RedirectView("/error"); // Omdirigera till en fel-sida om metoden inte är DELETE
     }
 
     @GetMapping("/{userId}/bookings")
-    public ResponseEntity<List<Booking>> getBookingsForMember(@PathVariable Long userId) {
+    public ResponseEntity<List<BookingDTO>> getBookingsForMember(@PathVariable Long userId) {
         List<Booking> bookings = memberService.getBookingsForMember(userId);
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/{userId}/bookings/upcoming")
-    public ResponseEntity<List<Booking>> getUpcomingBookingsForMember(@PathVariable Long userId) {
+    public ResponseEntity<List<BookingDTO>> getUpcomingBookingsForMember(@PathVariable Long userId) {
         List<Booking> upcomingBookings = memberService.getUpcomingBookingsForMember(userId);
-        return new ResponseEntity<>(upcomingBookings, HttpStatus.OK);
+        return new ResponseEntity<>(upcomingBookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/{userId}/bookings/past")
-    public ResponseEntity<List<Booking>> getPastBookingsForMember(@PathVariable Long userId) {
+    public ResponseEntity<List<BookingDTO>> getPastBookingsForMember(@PathVariable Long userId) {
         List<Booking> pastBookings = memberService.getPastBookingsForMember(userId);
-        return new ResponseEntity<>(pastBookings, HttpStatus.OK);
+        return new ResponseEntity<>(pastBookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/bookings/{bookingId}")
-    public ResponseEntity<Booking> getBookingById(@PathVariable Long bookingId) {
+    public ResponseEntity<BookingDTO> getBookingById(@PathVariable Long bookingId) {
         Booking booking = memberService.getBookingById(bookingId);
-        return new ResponseEntity<>(booking, HttpStatus.OK);
+        return new ResponseEntity<>(new BookingDTO(booking), HttpStatus.OK);
     }
 
     @GetMapping("/available-classes")
-    public ResponseEntity<List<TrainingClass>> getAvailableClasses() {
+    public ResponseEntity<List<TrainingClassDTO>> getAvailableClasses() {
         List<TrainingClass> availableClasses = memberService.getAvailableClasses();
-        return new ResponseEntity<>(availableClasses, HttpStatus.OK);
+        return new ResponseEntity<>(availableClasses.stream().map(TrainingClassDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/{memberId}/classes")
-    public ResponseEntity<List<TrainingClass>> getAllClassesForMember(@PathVariable Long memberId) {
+    public ResponseEntity<List<TrainingClassDTO>> getAllClassesForMember(@PathVariable Long memberId) {
         List<TrainingClass> memberClasses = memberService.getAllClassesForMember(memberId);
-        return new ResponseEntity<>(memberClasses, HttpStatus.OK);
+        return new ResponseEntity<>(memberClasses.stream().map(TrainingClassDTO::new).toList(), HttpStatus.OK);
     }
 
 
@@ -238,39 +304,37 @@ public class MemberController {
 
     @PostMapping("/bookings/cancel-all")
     @PreAuthorize("hasAuthority('ROLE_MEMBER')")
-    public String cancelAllBookings(@AuthenticationPrincipal UserDetails userDetails,
+    public String cancelAllBookings(@CurrentUser AuthenticatedUser currentUser,
                                     RedirectAttributes redirectAttributes) {
-        User member = memberService.getMemberByUsername(userDetails.getUsername());
         if (demoGuard.isDemoUser()) {
             redirectAttributes.addFlashAttribute("successMessage", "Demo: Alla bokningar avbokade (simulerat).");
             return "redirect:/memberPage";
         }
-        bookingService.cancelAllBookingsForMember(member.getId());
+        bookingService.cancelAllBookingsForMember(currentUser.getId());
         redirectAttributes.addFlashAttribute("successMessage", "Alla bokningar har avbokats.");
         return "redirect:/memberPage";
     }
 
     @PostMapping("/profile/update")
     @PreAuthorize("hasAuthority('ROLE_MEMBER')")
-    public String updateProfile(@AuthenticationPrincipal UserDetails userDetails,
+    public String updateProfile(@CurrentUser AuthenticatedUser currentUser,
                                 @RequestParam String email,
                                 RedirectAttributes redirectAttributes) {
-        User member = memberService.getMemberByUsername(userDetails.getUsername());
         User updated = new User();
-        updated.setUsername(member.getUsername());
+        updated.setUsername(currentUser.getUsername());
         updated.setEmail(email);
-        memberService.updateMember(member.getId(), updated);
+        memberService.updateMember(currentUser.getId(), updated);
         redirectAttributes.addFlashAttribute("successMessage", "Profil uppdaterad!");
         return "redirect:/memberPage";
     }
 
     @PostMapping("/profile/password")
     @PreAuthorize("hasAuthority('ROLE_MEMBER')")
-    public String changePassword(@AuthenticationPrincipal UserDetails userDetails,
+    public String changePassword(@CurrentUser AuthenticatedUser currentUser,
                                  @RequestParam String currentPassword,
                                  @RequestParam String newPassword,
                                  RedirectAttributes redirectAttributes) {
-        User member = memberService.getMemberByUsername(userDetails.getUsername());
+        User member = memberService.getMemberById(currentUser.getId());
         if (!passwordEncoder.matches(currentPassword, member.getPassword())) {
             redirectAttributes.addFlashAttribute("errorMessage", "Nuvarande lösenord är felaktigt.");
             return "redirect:/memberPage";
@@ -282,9 +346,9 @@ public class MemberController {
 
     @PostMapping("/profile/visibility")
     @PreAuthorize("hasAuthority('ROLE_MEMBER')")
-    public String toggleVisibility(@AuthenticationPrincipal UserDetails userDetails,
+    public String toggleVisibility(@CurrentUser AuthenticatedUser currentUser,
                                    RedirectAttributes redirectAttributes) {
-        User member = memberService.getMemberByUsername(userDetails.getUsername());
+        User member = memberService.getMemberById(currentUser.getId());
         member.setProfileVisible(!member.isProfileVisible());
         memberService.updateMember(member.getId(), member);
         redirectAttributes.addFlashAttribute("successMessage",
@@ -1,22 +1,26 @@
 package com.jarnvilja.controller;
 
-import com.jarnvilja.model.TrainingClass;
-import com.jarnvilja.repository.TrainingClassRepository;
+import com.jarnvilja.service.ScheduleService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.WebRequest;
 
-import java.time.DayOfWeek;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
 
 @Controller
 public class NavigationController {
 
-    private final TrainingClassRepository trainingClassRepository;
+    private final ScheduleService scheduleService;
 
-    public NavigationController(TrainingClassRepository trainingClassRepository) {
-        this.trainingClassRepository = trainingClassRepository;
+    public NavigationController(ScheduleService scheduleService) {
+        this.scheduleService = scheduleService;
     }
 
     @GetMapping("/index")
@@ -35,23 +39,21 @@ public class NavigationController {
     }
 
     @GetMapping("/traningsschema")
-    public String showTrainingSchedulePage(Model model) {
-        List<TrainingClass> allClasses = trainingClassRepository.findAll();
-        Map<DayOfWeek, List<TrainingClass>> byDay = allClasses.stream()
-                .collect(Collectors.groupingBy(TrainingClass::getTrainingDay));
-
-        List<DayOfWeek> orderedDays = List.of(
-                DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY,
-                DayOfWeek.THURSDAY, DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
-
-        LinkedHashMap<DayOfWeek, List<TrainingClass>> orderedSchedule = new LinkedHashMap<>();
-        for (DayOfWeek day : orderedDays) {
-            List<TrainingClass> dayClasses = byDay.getOrDefault(day, Collections.emptyList());
-            dayClasses.sort(Comparator.comparing(TrainingClass::getStartTime));
-            orderedSchedule.put(day, dayClasses);
+    public String showTrainingSchedulePage(Model model, WebRequest webRequest,
+                                           HttpServletRequest request, HttpServletResponse response) {
+        ScheduleService.Schedule schedule = scheduleService.getSchedule();
+
+        // Sidan innehåller inloggningsmeny och CSRF-token, så ETag:en gäller bara inom samma session
+        HttpSession session = request.getSession(false);
+        String sessionPart = session != null
+                ? DigestUtils.md5DigestAsHex(session.getId().getBytes(StandardCharsets.UTF_8)).substring(0, 12)
+                : "anon";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        if (webRequest.checkNotModified(schedule.hash() + "-" + sessionPart, schedule.lastModified().toEpochMilli())) {
+            return null;
         }
 
-        model.addAttribute("scheduleByDay", orderedSchedule);
+        model.addAttribute("scheduleByDay", schedule.byDay());
         return "traningsschema";
     }
 
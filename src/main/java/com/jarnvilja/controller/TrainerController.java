@@ -1,5 +1,8 @@
 package com.jarnvilja.controller;
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
 import com.jarnvilja.dto.TrainingClassStatsDTO;
+import com.jarnvilja.dto.UserDTO;
 import com.jarnvilja.model.Booking;
 import com.jarnvilja.model.TrainingClass;
 import com.jarnvilja.model.User;
@@ -24,22 +27,22 @@ public class TrainerController {
     }
 
     @GetMapping("/{trainerId}/classes/{trainingClassId}")
-    public ResponseEntity<TrainingClass> getTrainingClassDetails(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
+    public ResponseEntity<TrainingClassDTO> getTrainingClassDetails(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
         TrainingClass trainingClass = trainerService.getTrainingClassDetails(trainerId, trainingClassId);
-        return new ResponseEntity<>(trainingClass, HttpStatus.OK);
+        return new ResponseEntity<>(new TrainingClassDTO(trainingClass), HttpStatus.OK);
     }
 
 
     @GetMapping("/{trainerId}/classes/{trainingClassId}/bookings")
-    public ResponseEntity<List<Booking>> getBookingsForMyTrainingClass(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
+    public ResponseEntity<List<BookingDTO>> getBookingsForMyTrainingClass(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
         List<Booking> bookings = trainerService.getBookingsForMyTrainingClass(trainerId, trainingClassId);
-        return new ResponseEntity<>(bookings, HttpStatus.OK);
+        return new ResponseEntity<>(bookings.stream().map(BookingDTO::new).toList(), HttpStatus.OK);
     }
 
     @GetMapping("/{trainerId}/classes/{trainingClassId}/members")
-    public ResponseEntity<List<User>> getMembersForMyTrainingClass(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
+    public ResponseEntity<List<UserDTO>> getMembersForMyTrainingClass(@PathVariable Long trainerId, @PathVariable Long trainingClassId) {
         List<User> members = trainerService.getMembersForMyTrainingClass(trainerId, trainingClassId);
-        return new ResponseEntity<>(members, HttpStatus.OK);
+        return new ResponseEntity<>(members.stream().map(UserDTO::new).toList(), HttpStatus.OK);
     }
 
     @DeleteMapping("/{trainerId}/classes/{trainingClassId}/members/{memberId}")
@@ -79,9 +82,9 @@ public class TrainerController {
     }
 
     @GetMapping("/{trainerId}/classes/popular")
-    public ResponseEntity<TrainingClass> getMostPopularOfMyTrainingClasses(@PathVariable Long trainerId) {
+    public ResponseEntity<TrainingClassDTO> getMostPopularOfMyTrainingClasses(@PathVariable Long trainerId) {
         TrainingClass popularClass = trainerService.getMostPopularOfMyTrainingClasses(trainerId);
-        return new ResponseEntity<>(popularClass, HttpStatus.OK);
+        return new ResponseEntity<>(new TrainingClassDTO(popularClass), HttpStatus.OK);
     }
 
 }
@@ -0,0 +1,36 @@
+package com.jarnvilja.dto;
+
+import com.jarnvilja.model.BookingStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Outcome of one class in a batch booking request.
+ */
+@Getter
+@Setter
+public class BatchBookingResultDTO {
+
+    public enum Outcome { CONFIRMED, WAITLISTED, REJECTED }
+
+    private Long trainingClassId;
+    private Outcome outcome;
+    private Long bookingId;
+    private String message;
+
+    public BatchBookingResultDTO(Long trainingClassId, Outcome outcome) {
+        this.trainingClassId = trainingClassId;
+        this.outcome = outcome;
+    }
+
+    public static BatchBookingResultDTO admitted(Long trainingClassId, BookingStatus status) {
+        return new BatchBookingResultDTO(trainingClassId,
+                status == BookingStatus.CONFIRMED ? Outcome.CONFIRMED : Outcome.WAITLISTED);
+    }
+
+    public static BatchBookingResultDTO rejected(Long trainingClassId, String message) {
+        BatchBookingResultDTO dto = new BatchBookingResultDTO(trainingClassId, Outcome.REJECTED);
+        dto.setMessage(message);
+        return dto;
+    }
+}
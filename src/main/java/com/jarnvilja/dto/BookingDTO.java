@@ -1,22 +1,39 @@
 package com.jarnvilja.dto;
 
 import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A booking as the JSON endpoints return it: the member and class are referenced by id and name only.
+ */
+@Getter
+@EqualsAndHashCode
 public class BookingDTO {
-    private Long id;
-    private String trainingTitle;
-    private String username;
+
+    private final Long id;
+    private final Long memberId;
+    private final String username;
+    private final Long trainingClassId;
+    private final String trainingTitle;
+    private final LocalDate bookingDate;
+    private final BookingStatus bookingStatus;
+    private final LocalDateTime bookingTimeStamp;
+    private final boolean attended;
 
     public BookingDTO(Booking booking) {
         this.id = booking.getId();
-        this.trainingTitle = booking.getTrainingClass().getTitle();
-        this.username = booking.getMember().getUsername();
+        this.memberId = booking.getMember() != null ? booking.getMember().getId() : null;
+        this.username = booking.getMember() != null ? booking.getMember().getUsername() : null;
+        this.trainingClassId = booking.getTrainingClass() != null ? booking.getTrainingClass().getId() : null;
+        this.trainingTitle = booking.getTrainingClass() != null ? booking.getTrainingClass().getTitle() : null;
+        this.bookingDate = booking.getBookingDate();
+        this.bookingStatus = booking.getBookingStatus();
+        this.bookingTimeStamp = booking.getBookingTimeStamp();
+        this.attended = booking.isAttended();
     }
-
-    // getters
-    public Long getId() { return id; }
-    public String getTrainingTitle() { return trainingTitle; }
-    public String getUsername() { return username; }
-
 }
-
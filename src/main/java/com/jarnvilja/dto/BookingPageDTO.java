@@ -0,0 +1,23 @@
+package com.jarnvilja.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of the admin bookings browser. Pass {@code nextCursor} back as {@code cursor} for the next page;
+ * it is null on the last one.
+ */
+@Getter
+@EqualsAndHashCode
+public class BookingPageDTO {
+
+    private final List<BookingDTO> bookings;
+    private final String nextCursor;
+
+    public BookingPageDTO(List<BookingDTO> bookings, String nextCursor) {
+        this.bookings = bookings;
+        this.nextCursor = nextCursor;
+    }
+}
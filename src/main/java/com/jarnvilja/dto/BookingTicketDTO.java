@@ -0,0 +1,38 @@
+package com.jarnvilja.dto;
+
+import com.jarnvilja.model.BookingStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of a booking request accepted by the intake queue, returned on submit and when polling.
+ */
+@Getter
+@Setter
+public class BookingTicketDTO {
+
+    public enum State { QUEUED, DONE, FAILED, REJECTED }
+
+    private String ticketId;
+    private State state;
+    private Long trainingClassId;
+    private LocalDateTime acceptedAt;
+    private Long bookingId;
+    private BookingStatus bookingStatus;
+    private String message;
+
+    public BookingTicketDTO(String ticketId, State state, Long trainingClassId, LocalDateTime acceptedAt) {
+        this.ticketId = ticketId;
+        this.state = state;
+        this.trainingClassId = trainingClassId;
+        this.acceptedAt = acceptedAt;
+    }
+
+    public static BookingTicketDTO rejected(Long trainingClassId, String message) {
+        BookingTicketDTO dto = new BookingTicketDTO(null, State.REJECTED, trainingClassId, LocalDateTime.now());
+        dto.setMessage(message);
+        return dto;
+    }
+}
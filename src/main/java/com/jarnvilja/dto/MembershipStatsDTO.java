@@ -17,6 +17,7 @@ public class MembershipStatsDTO {
     private LocalDate memberSince;
     private double avgSessionsPerWeek;
     private int currentStreak;
+    private int attendedSessions;
     private Map<String, Integer> categoryBreakdown = new LinkedHashMap<>();
     private Map<String, Integer> monthlyTrend = new LinkedHashMap<>();
 
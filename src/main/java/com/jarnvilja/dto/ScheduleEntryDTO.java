@@ -0,0 +1,33 @@
+package com.jarnvilja.dto;
+
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingCategory;
+import lombok.Getter;
+
+import java.time.LocalTime;
+
+/**
+ * One class in the public weekly schedule. Immutable, so a built schedule can be shared between requests.
+ */
+@Getter
+public class ScheduleEntryDTO {
+
+    private final Long id;
+    private final String title;
+    private final TrainingCategory category;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final Matta matta;
+    private final String trainerName;
+
+    public ScheduleEntryDTO(Long id, String title, TrainingCategory category, LocalTime startTime,
+                            LocalTime endTime, Matta matta, String trainerName) {
+        this.id = id;
+        this.title = title;
+        this.category = category;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.matta = matta;
+        this.trainerName = trainerName;
+    }
+}
@@ -0,0 +1,48 @@
+package com.jarnvilja.dto;
+
+import com.jarnvilja.model.ClassStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingCategory;
+import com.jarnvilja.model.TrainingClass;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+/**
+ * A training class as the JSON endpoints return it, with the trainer by id and username and without the
+ * class's bookings.
+ */
+@Getter
+@EqualsAndHashCode
+public class TrainingClassDTO {
+
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final DayOfWeek trainingDay;
+    private final Matta matta;
+    private final LocalTime startTime;
+    private final LocalTime endTime;
+    private final TrainingCategory category;
+    private final int maxCapacity;
+    private final ClassStatus status;
+    private final Long trainerId;
+    private final String trainerName;
+
+    public TrainingClassDTO(TrainingClass trainingClass) {
+        this.id = trainingClass.getId();
+        this.title = trainingClass.getTitle();
+        this.description = trainingClass.getDescription();
+        this.trainingDay = trainingClass.getTrainingDay();
+        this.matta = trainingClass.getMatta();
+        this.startTime = trainingClass.getStartTime();
+        this.endTime = trainingClass.getEndTime();
+        this.category = trainingClass.getCategory();
+        this.maxCapacity = trainingClass.getMaxCapacity();
+        this.status = trainingClass.getStatus();
+        this.trainerId = trainingClass.getTrainer() != null ? trainingClass.getTrainer().getId() : null;
+        this.trainerName = trainingClass.getTrainer() != null ? trainingClass.getTrainer().getUsername() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.jarnvilja.dto;
+
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * A user as the JSON endpoints return it; the password hash never leaves the server.
+ */
+@Getter
+@EqualsAndHashCode
+public class UserDTO {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final Role role;
+    private final boolean profileVisible;
+    private final LocalDate createdAt;
+
+    public UserDTO(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.email = user.getEmail();
+        this.firstName = user.getFirstName();
+        this.lastName = user.getLastName();
+        this.role = user.getRole();
+        this.profileVisible = user.isProfileVisible();
+        this.createdAt = user.getCreatedAt();
+    }
+}
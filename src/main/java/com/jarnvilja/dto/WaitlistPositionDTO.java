@@ -0,0 +1,20 @@
+package com.jarnvilja.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A waitlisted booking's place in the queue of its class session (1 = next to get a seat).
+ */
+@Getter
+@Setter
+public class WaitlistPositionDTO {
+
+    private Long bookingId;
+    private int position;
+
+    public WaitlistPositionDTO(Long bookingId, int position) {
+        this.bookingId = bookingId;
+        this.position = position;
+    }
+}
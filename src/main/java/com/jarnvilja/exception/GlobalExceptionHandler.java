@@ -5,6 +5,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Slf4j
@@ -31,6 +32,14 @@ public class GlobalExceptionHandler {
         return "redirect:/index";
     }
 
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public String handleIdempotencyKeyReused(IdempotencyKeyReusedException ex, Model model) {
+        model.addAttribute("status", HttpStatus.UNPROCESSABLE_ENTITY.value());
+        model.addAttribute("message", ex.getMessage());
+        return "error";
+    }
+
     @ExceptionHandler(Exception.class)
     public String handleGeneral(Exception ex, Model model) {
         log.error("Unexpected error", ex);
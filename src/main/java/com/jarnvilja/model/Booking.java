@@ -1,6 +1,7 @@
 package com.jarnvilja.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,8 +17,11 @@ import java.time.LocalDateTime;
 @Table(name = "bookings", uniqueConstraints = @UniqueConstraint(
         columnNames = {"member_id", "training_class_id", "booking_date"}
 ), indexes = {
-        @Index(name = "idx_booking_date", columnList = "booking_date"),
-        @Index(name = "idx_booking_member", columnList = "member_id")
+        // Bläddringen i adminvyn söker på (booking_date, id) efter valfria filter; varje filter har sitt index
+        @Index(name = "idx_booking_date_id", columnList = "booking_date, id"),
+        @Index(name = "idx_booking_member_date", columnList = "member_id, booking_date, id"),
+        @Index(name = "idx_booking_class_date", columnList = "training_class_id, booking_date, id"),
+        @Index(name = "idx_booking_status_date", columnList = "booking_status, booking_date, id")
 })
 public class Booking {
 
@@ -25,12 +29,13 @@ public class Booking {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore
     @JoinColumn(name = "member_id", nullable = false)
     private User member;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @JoinColumn(name = "training_class_id", nullable = false)
     private TrainingClass trainingClass;
 
@@ -57,10 +62,4 @@ public class Booking {
     public boolean isCancelledByMember() {
         return BookingStatus.CANCELLED_BY_MEMBER.equals(this.bookingStatus);
     }
-
-    public boolean isExpired() {
-        return bookingStatus == BookingStatus.PENDING
-                && bookingTimeStamp != null
-                && bookingTimeStamp.isBefore(LocalDateTime.now().minusMinutes(30));
-    }
 }
@@ -0,0 +1,59 @@
+package com.jarnvilja.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDate;
+
+/**
+ * Number of bookings of one class on one day in one status. The class's category is copied onto the row so
+ * the admin dashboard can group by it without touching the bookings. Rows are adjusted with a single UPDATE
+ * as bookings are created, change status or are removed, so the dashboard reads one row per class, day and
+ * status instead of every booking.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString(exclude = "trainingClass")
+@Entity
+@Table(name = "booking_daily_rollup", uniqueConstraints = @UniqueConstraint(
+        columnNames = {"rollup_date", "training_class_id", "booking_status"}
+))
+public class BookingDailyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "training_class_id", nullable = false)
+    private TrainingClass trainingClass;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "category")
+    private TrainingCategory category;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "booking_status", nullable = false)
+    private BookingStatus bookingStatus;
+
+    @Column(name = "booking_count", nullable = false)
+    private int count;
+
+    public BookingDailyRollup(LocalDate rollupDate, TrainingClass trainingClass, BookingStatus bookingStatus, int count) {
+        this.rollupDate = rollupDate;
+        this.trainingClass = trainingClass;
+        this.category = trainingClass.getCategory();
+        this.bookingStatus = bookingStatus;
+        this.count = count;
+    }
+}
@@ -1,10 +1,17 @@
 package com.jarnvilja.model;
 
+import java.util.List;
+
 public enum BookingStatus {
     CONFIRMED,
     CANCELLED,
     PENDING,
     CANCELLED_BY_MEMBER,
     EXPIRED,
-    WAITLISTED
+    WAITLISTED;
+
+    /**
+     * Statuses of a booking that still holds, or waits for, a place in its class.
+     */
+    public static final List<BookingStatus> ACTIVE = List.of(PENDING, CONFIRMED, WAITLISTED);
 }
@@ -0,0 +1,51 @@
+package com.jarnvilja.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDate;
+
+/**
+ * One occurrence of a {@link TrainingClass} on a specific date. Carries the seat and waitlist
+ * counters so capacity can be checked and claimed with a single conditional UPDATE.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString(exclude = "trainingClass")
+@Entity
+@Table(name = "class_sessions", uniqueConstraints = @UniqueConstraint(
+        columnNames = {"training_class_id", "session_date"}
+), indexes = {
+        @Index(name = "idx_session_date", columnList = "session_date")
+})
+public class ClassSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "training_class_id", nullable = false)
+    private TrainingClass trainingClass;
+
+    @Column(name = "session_date", nullable = false)
+    private LocalDate sessionDate;
+
+    @Column(name = "seats_taken", nullable = false)
+    private int seatsTaken = 0;
+
+    @Column(name = "waitlist_length", nullable = false)
+    private int waitlistLength = 0;
+
+    public ClassSession(TrainingClass trainingClass, LocalDate sessionDate) {
+        this.trainingClass = trainingClass;
+        this.sessionDate = sessionDate;
+    }
+}
@@ -0,0 +1,80 @@
+package com.jarnvilja.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be sent. Rows are written in the same transaction as the booking change that
+ * caused them and delivered later by the outbox dispatcher, so SMTP never sits on the booking path.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString(exclude = {"body", "htmlBody"})
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_outbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_claim", columnList = "claim_token")
+})
+public class EmailOutbox {
+
+    public enum Status { PENDING, SENT, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    // TEXT, eftersom tränarens fritext (t.ex. orsaken till ett inställt pass) renderas in utan längdgräns
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    // Valfritt HTML-alternativ; utan det skickas brevet som ren text
+    @Column(name = "html_body", columnDefinition = "TEXT")
+    private String htmlBody;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    public EmailOutbox(String recipient, String subject, String body) {
+        this(recipient, subject, body, null);
+    }
+
+    public EmailOutbox(String recipient, String subject, String body, String htmlBody) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.htmlBody = htmlBody;
+        this.createdAt = LocalDateTime.now();
+        this.nextAttemptAt = this.createdAt;
+    }
+}
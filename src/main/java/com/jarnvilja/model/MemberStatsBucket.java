@@ -0,0 +1,57 @@
+package com.jarnvilja.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * One counter of a member's training statistics, counting CONFIRMED bookings. {@link Kind#TOTAL} and
+ * {@link Kind#ATTENDED} have an empty key; the others are keyed by class title, category name, ISO week
+ * ({@code 2026-W42}) or month ({@code 2026-10}). Counters are adjusted with a single UPDATE as bookings
+ * change, so reading a member's stats is one indexed lookup regardless of how many bookings they have.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString(exclude = "member")
+@Entity
+@Table(name = "member_stats", uniqueConstraints = @UniqueConstraint(
+        columnNames = {"member_id", "kind", "bucket_key"}
+), indexes = {
+        // Medlemmarna i räknarordning, för användarlistan sorterad på bokningar
+        @Index(name = "idx_member_stats_counter", columnList = "kind, bucket_key, booking_count, member_id")
+})
+public class MemberStatsBucket {
+
+    public enum Kind { TOTAL, ATTENDED, CLASS, CATEGORY, WEEK, MONTH }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "member_id", nullable = false)
+    private User member;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 16)
+    private Kind kind;
+
+    @Column(name = "bucket_key", nullable = false, length = 100)
+    private String bucketKey;
+
+    @Column(name = "booking_count", nullable = false)
+    private int count;
+
+    public MemberStatsBucket(User member, Kind kind, String bucketKey, int count) {
+        this.member = member;
+        this.kind = kind;
+        this.bucketKey = bucketKey;
+        this.count = count;
+    }
+}
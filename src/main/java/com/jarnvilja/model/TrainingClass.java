@@ -1,5 +1,6 @@
 package com.jarnvilja.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -43,7 +44,8 @@ public class TrainingClass {
     @Column(name = "max_capacity")
     private int maxCapacity = 20;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonIgnore
     @JoinColumn(name = "trainer_id")
     private User trainer;
 
@@ -51,6 +53,7 @@ public class TrainingClass {
     private ClassStatus status = ClassStatus.ACTIVE;
 
     @OneToMany(mappedBy = "trainingClass", cascade = CascadeType.ALL)
+    @JsonIgnore
     private List<Booking> bookings = new ArrayList<>();
 
     public TrainingClass(String title, String description, DayOfWeek trainingDay, Matta matta, LocalTime startTime, LocalTime endTime) {
@@ -1,5 +1,7 @@
 package com.jarnvilja.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jarnvilja.config.UserSearchIndexListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -16,6 +18,7 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @ToString(exclude = "password")
 @Entity
+@EntityListeners(UserSearchIndexListener.class)
 @Table(name = "users")
 public class User {
 
@@ -36,6 +39,7 @@ public class User {
     @NotBlank
     @Size(min = 8)
     @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
 
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,16 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.Booking;
+
+import java.util.List;
+
+/**
+ * Bulk writes for bookings that bypass the per-entity persist of JPA.
+ */
+public interface BookingBatchRepository {
+
+    /**
+     * Inserts new bookings with JDBC batching. Generated ids are not set on the given objects.
+     */
+    void insertAll(List<Booking> bookings);
+}
@@ -0,0 +1,40 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.Booking;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link BookingBatchRepository}. Booking ids are IDENTITY columns, which stops
+ * Hibernate from batching inserts, so the batch goes through {@link JdbcTemplate} on the same
+ * transactional connection instead.
+ */
+public class BookingBatchRepositoryImpl implements BookingBatchRepository {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String INSERT_SQL = "INSERT INTO bookings " +
+            "(member_id, training_class_id, booking_status, booking_date, booking_time_stamp, attended) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<Booking> bookings) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, bookings, BATCH_SIZE, (ps, booking) -> {
+            ps.setLong(1, booking.getMember().getId());
+            ps.setLong(2, booking.getTrainingClass().getId());
+            ps.setString(3, booking.getBookingStatus().name());
+            ps.setDate(4, Date.valueOf(booking.getBookingDate()));
+            ps.setTimestamp(5, Timestamp.valueOf(booking.getBookingTimeStamp()));
+            ps.setBoolean(6, booking.isAttended());
+        });
+    }
+}
@@ -0,0 +1,27 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keyset-paginated reads of the bookings for the admin browser, newest first by booking date and id.
+ */
+public interface BookingBrowseRepository {
+
+    /**
+     * Optional filters; null fields are left out of the query. {@code from} and {@code to} are inclusive.
+     */
+    record Filter(BookingStatus status, Long trainingClassId, String memberUsername, LocalDate from, LocalDate to) {
+
+        public static final Filter NONE = new Filter(null, null, null, null, null);
+    }
+
+    /**
+     * Up to {@code limit} bookings matching the filter that sort after the booking at ({@code afterDate},
+     * {@code afterId}); a null position starts from the newest. Member and class come in the same query.
+     */
+    List<Booking> findPageAfter(Filter filter, LocalDate afterDate, Long afterId, int limit);
+}
@@ -0,0 +1,63 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.Booking;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JPQL implementation of {@link BookingBrowseRepository}. Only the filters that are set become predicates,
+ * so each combination seeks one of the composite indexes on {@code bookings} ending in (booking_date, id)
+ * and reads {@code limit} rows, however deep into the history the page is.
+ */
+public class BookingBrowseRepositoryImpl implements BookingBrowseRepository {
+
+    private final EntityManager entityManager;
+
+    public BookingBrowseRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Booking> findPageAfter(Filter filter, LocalDate afterDate, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT b FROM Booking b JOIN FETCH b.member m JOIN FETCH b.trainingClass tc WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (filter.status() != null) {
+            jpql.append(" AND b.bookingStatus = :status");
+            params.put("status", filter.status());
+        }
+        if (filter.trainingClassId() != null) {
+            jpql.append(" AND tc.id = :classId");
+            params.put("classId", filter.trainingClassId());
+        }
+        if (filter.memberUsername() != null && !filter.memberUsername().isBlank()) {
+            // Användarnamnet är unikt, så medlemmen slås upp först och bokningarna läses via dess index
+            jpql.append(" AND m.username = :username");
+            params.put("username", filter.memberUsername().trim());
+        }
+        if (filter.from() != null) {
+            jpql.append(" AND b.bookingDate >= :from");
+            params.put("from", filter.from());
+        }
+        if (filter.to() != null) {
+            jpql.append(" AND b.bookingDate <= :to");
+            params.put("to", filter.to());
+        }
+        if (afterDate != null && afterId != null) {
+            jpql.append(" AND (b.bookingDate < :afterDate OR (b.bookingDate = :afterDate AND b.id < :afterId))");
+            params.put("afterDate", afterDate);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY b.bookingDate DESC, b.id DESC");
+
+        TypedQuery<Booking> query = entityManager.createQuery(jpql.toString(), Booking.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
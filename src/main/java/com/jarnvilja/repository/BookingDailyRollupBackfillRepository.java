@@ -0,0 +1,20 @@
+package com.jarnvilja.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Recomputes the daily booking rollup from the bookings table inside the database.
+ */
+public interface BookingDailyRollupBackfillRepository {
+
+    /**
+     * Replaces one class's rollup rows of the given days, both inclusive, with counts grouped from its bookings.
+     * Returns the number of rows written.
+     */
+    int backfillClass(Long trainingClassId, LocalDate from, LocalDate to);
+
+    /**
+     * Replaces one class's rollup rows with counts grouped from its whole booking history.
+     */
+    int backfillClass(Long trainingClassId);
+}
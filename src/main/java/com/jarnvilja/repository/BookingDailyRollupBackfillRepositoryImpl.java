@@ -0,0 +1,43 @@
+package com.jarnvilja.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * JDBC implementation of {@link BookingDailyRollupBackfillRepository}. A DELETE of the class's affected days
+ * followed by one INSERT ... SELECT ... GROUP BY, so the backfill never pulls a booking into the application and
+ * the same SQL runs on MySQL and on H2.
+ */
+public class BookingDailyRollupBackfillRepositoryImpl implements BookingDailyRollupBackfillRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO booking_daily_rollup (rollup_date, training_class_id, category, booking_status, booking_count) " +
+            "SELECT b.booking_date, b.training_class_id, tc.category, b.booking_status, COUNT(*) " +
+            "FROM bookings b JOIN training_classes tc ON tc.id = b.training_class_id ";
+
+    private static final String GROUP_BY = " GROUP BY b.booking_date, b.training_class_id, tc.category, b.booking_status";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingDailyRollupBackfillRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int backfillClass(Long trainingClassId, LocalDate from, LocalDate to) {
+        Date first = Date.valueOf(from);
+        Date last = Date.valueOf(to);
+        jdbcTemplate.update("DELETE FROM booking_daily_rollup WHERE training_class_id = ? AND rollup_date BETWEEN ? AND ?",
+                trainingClassId, first, last);
+        return jdbcTemplate.update(INSERT_SQL + "WHERE b.training_class_id = ? AND b.booking_date BETWEEN ? AND ?" + GROUP_BY,
+                trainingClassId, first, last);
+    }
+
+    @Override
+    public int backfillClass(Long trainingClassId) {
+        jdbcTemplate.update("DELETE FROM booking_daily_rollup WHERE training_class_id = ?", trainingClassId);
+        return jdbcTemplate.update(INSERT_SQL + "WHERE b.training_class_id = ?" + GROUP_BY, trainingClassId);
+    }
+}
@@ -0,0 +1,50 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.BookingDailyRollup;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.TrainingCategory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface BookingDailyRollupRepository extends JpaRepository<BookingDailyRollup, Long>, BookingDailyRollupBackfillRepository {
+
+    // Justerar en dagsrad i en sats; 0 rader betyder att raden saknas (eller skulle bli negativ)
+    @Modifying
+    @Query("UPDATE BookingDailyRollup r SET r.count = r.count + :delta WHERE r.trainingClass.id = :classId " +
+            "AND r.rollupDate = :date AND r.bookingStatus = :status AND r.count + :delta >= 0")
+    int adjust(@Param("classId") Long classId, @Param("date") LocalDate date,
+               @Param("status") BookingStatus status, @Param("delta") int delta);
+
+    @Modifying
+    @Query("DELETE FROM BookingDailyRollup r WHERE r.trainingClass.id = :classId")
+    int deleteForClass(@Param("classId") Long classId);
+
+    // Passets kategori kopieras till raderna; följer med när passet byter kategori
+    @Modifying
+    @Query("UPDATE BookingDailyRollup r SET r.category = :category WHERE r.trainingClass.id = :classId")
+    int updateCategory(@Param("classId") Long classId, @Param("category") TrainingCategory category);
+
+    @Query("SELECT r.bookingStatus, SUM(r.count) FROM BookingDailyRollup r GROUP BY r.bookingStatus")
+    List<Object[]> sumByStatus();
+
+    // Dag, passets veckodag, kategori och antal från och med ett datum, för instrumentpanelens diagram
+    @Query("SELECT r.rollupDate, tc.trainingDay, r.category, SUM(r.count) FROM BookingDailyRollup r " +
+            "JOIN r.trainingClass tc WHERE r.rollupDate >= :from AND r.count > 0 " +
+            "GROUP BY r.rollupDate, tc.trainingDay, r.category ORDER BY r.rollupDate")
+    List<Object[]> sumByDayFrom(@Param("from") LocalDate from);
+
+    @Query("SELECT tc.title, SUM(r.count) FROM BookingDailyRollup r JOIN r.trainingClass tc " +
+            "GROUP BY tc.title HAVING SUM(r.count) > 0")
+    List<Object[]> getClassStats();
+
+    @Query("SELECT tc.title FROM BookingDailyRollup r JOIN r.trainingClass tc " +
+            "GROUP BY tc.title HAVING SUM(r.count) > 0 ORDER BY SUM(r.count) DESC, tc.title LIMIT 1")
+    String findMostPopularClass();
+}
@@ -2,24 +2,34 @@ package com.jarnvilja.repository;
 
 import com.jarnvilja.model.Booking;
 import com.jarnvilja.model.BookingStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookingRepository extends JpaRepository<Booking, Long> {
+public interface BookingRepository extends JpaRepository<Booking, Long>, BookingBatchRepository, BookingBrowseRepository {
 
-    long countByBookingStatus(BookingStatus status);
+    // Listorna visar medlem och pass för varje bokning; de hämtas i samma fråga i stället för en per rad
+    @Override
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
+    List<Booking> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
+    Page<Booking> findAll(Pageable pageable);
 
-    @Query("SELECT b.trainingClass.title FROM Booking b GROUP BY b.trainingClass.title ORDER BY COUNT(b.id) DESC LIMIT 1")
-    String findMostPopularClass();
+    long countByBookingStatus(BookingStatus status);
 
     @Query("SELECT COUNT(DISTINCT b.member.id) FROM Booking b")
     long countActiveMembers();
@@ -30,34 +40,143 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     @Query("SELECT COUNT(b.id) FROM Booking b WHERE b.trainingClass.id = :classId")
     Long countBookingsForClass(@Param("classId") Long classId);
 
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     @Query("SELECT b FROM Booking b WHERE b.bookingDate BETWEEN :startDate AND :endDate")
     List<Booking> findBookingsByDateBetween(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     @Query("SELECT b FROM Booking b WHERE b.member.id = :memberId")
     List<Booking> findBookingsByMemberId(@Param("memberId") Long memberId);
 
-    @Query("SELECT b.trainingClass.title, COUNT(b.id) FROM Booking b GROUP BY b.trainingClass.title")
-    List<Object[]> getClassStats();
-
     List<Booking> findByMemberIdAndTrainingClassIdAndBookingDate(Long userId, Long trainingClassId, LocalDate bookingDay);
 
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     List<Booking> findByTrainingClassId(long trainingClassId);
 
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     List<Booking> findByBookingStatus(BookingStatus status);
 
-    @EntityGraph(attributePaths = {"trainingClass", "member"})
+    @EntityGraph(attributePaths = {"trainingClass", "trainingClass.trainer", "member"})
     List<Booking> findByMemberId(Long memberId);
 
+    // Medlemmens alla bokningar med pass och tränare, så sidan kan visa dem utan fler frågor
+    @Query("SELECT b FROM Booking b JOIN FETCH b.member JOIN FETCH b.trainingClass tc LEFT JOIN FETCH tc.trainer " +
+            "WHERE b.member.id = :memberId ORDER BY b.id")
+    List<Booking> findAllForMemberWithClass(@Param("memberId") Long memberId);
+
     void deleteByTrainingClassId(Long trainingClassId);
 
+    // Ägarkontroll innan en bokning visas för en inloggad medlem
+    boolean existsByIdAndMemberId(Long id, Long memberId);
+
     Optional<Booking> findByTrainingClassIdAndMemberId(Long classId, Long memberId);
 
     @Query("SELECT b FROM Booking b WHERE b.bookingStatus = 'PENDING' AND b.bookingTimeStamp < :threshold")
     List<Booking> findPendingBookingsBefore(@Param("threshold") LocalDateTime threshold);
 
+    @Query("SELECT b.id, b.bookingTimeStamp FROM Booking b WHERE b.bookingStatus = 'PENDING' AND b.bookingTimeStamp IS NOT NULL")
+    List<Object[]> findPendingHolds();
+
+    // Väntelistor i bokningsordning, för att bygga upp köerna i minnet
+    @Query("SELECT b.id, b.trainingClass.id, b.bookingDate FROM Booking b " +
+            "WHERE b.bookingStatus = 'WAITLISTED' AND b.bookingDate >= :from " +
+            "ORDER BY b.bookingTimeStamp, b.id")
+    List<Object[]> findWaitlistFrom(@Param("from") LocalDate from);
+
+    @Query("SELECT b.id FROM Booking b WHERE b.trainingClass.id = :classId AND b.bookingDate = :date " +
+            "AND b.bookingStatus = 'WAITLISTED' ORDER BY b.bookingTimeStamp, b.id")
+    List<Long> findWaitlistedIds(@Param("classId") Long classId, @Param("date") LocalDate date);
+
+    // Datum från och med from där passet har någon i kö, äldst först
+    @Query("SELECT DISTINCT b.bookingDate FROM Booking b WHERE b.trainingClass.id = :classId " +
+            "AND b.bookingStatus = 'WAITLISTED' AND b.bookingDate >= :from ORDER BY b.bookingDate")
+    List<LocalDate> findWaitlistedDates(@Param("classId") Long classId, @Param("from") LocalDate from);
+
+    // Villkorad flytt från väntelistan, så två noder aldrig ger samma bokning samma plats
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingStatus = 'CONFIRMED' WHERE b.id = :id AND b.bookingStatus = 'WAITLISTED'")
+    int promoteWaitlisted(@Param("id") Long id);
+
+    // Medlemmens aktiva bokningar (id, pass, datum, status, kapacitet) inför en massavbokning
+    @Query("SELECT b.id, b.trainingClass.id, b.bookingDate, b.bookingStatus, b.trainingClass.maxCapacity FROM Booking b " +
+            "WHERE b.member.id = :memberId AND b.bookingStatus IN :statuses")
+    List<Object[]> findClaimsForMember(@Param("memberId") Long memberId,
+                                       @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Det medlemsstatistiken räknar per bokning: medlem, passets titel och kategori, datum och närvaro
+    String STATS_ROW = "SELECT b.member.id, b.trainingClass.title, b.trainingClass.category, b.bookingDate, b.attended " +
+            "FROM Booking b ";
+
+    @Query(STATS_ROW + "WHERE b.id IN :ids")
+    List<Object[]> findStatsRowsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(STATS_ROW + "WHERE b.trainingClass.id = :classId AND b.bookingStatus = 'CONFIRMED'")
+    List<Object[]> findConfirmedStatsRowsForClass(@Param("classId") Long classId);
+
+    @Query(STATS_ROW + "WHERE b.member.id = :memberId AND b.bookingStatus = 'CONFIRMED'")
+    List<Object[]> findConfirmedStatsRowsForMember(@Param("memberId") Long memberId);
+
+    // Bokningar per pass, dag och status inför en massändring, så att dagsrullningen kan följa med
+    String ROLLUP_ROW = "SELECT b.trainingClass.id, b.bookingDate, b.bookingStatus, COUNT(b.id) FROM Booking b ";
+    String ROLLUP_GROUP = " GROUP BY b.trainingClass.id, b.bookingDate, b.bookingStatus";
+
+    @Query(ROLLUP_ROW + "WHERE b.trainingClass.id = :classId AND b.bookingStatus IN :statuses" + ROLLUP_GROUP)
+    List<Object[]> countRollupRowsForClass(@Param("classId") Long classId,
+                                           @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Samma villkor som expirePending
+    @Query(ROLLUP_ROW + "WHERE b.id IN :ids AND b.bookingStatus = 'PENDING' AND b.bookingTimeStamp <= :threshold" + ROLLUP_GROUP)
+    List<Object[]> countRollupRowsDueToExpire(@Param("ids") Collection<Long> ids,
+                                              @Param("threshold") LocalDateTime threshold);
+
+    // Samma villkor som deleteExpired
+    @Query(ROLLUP_ROW + "WHERE b.bookingStatus = 'EXPIRED' " +
+            "OR (b.bookingStatus = 'PENDING' AND b.bookingTimeStamp < :threshold)" + ROLLUP_GROUP)
+    List<Object[]> countRollupRowsExpiredBefore(@Param("threshold") LocalDateTime threshold);
+
+    // Tränarens bekräftade bokningar per pass och dag från ett datum, med antal närvarande
+    @Query("SELECT b.trainingClass.id, b.bookingDate, COUNT(b.id), SUM(CASE WHEN b.attended = true THEN 1 ELSE 0 END) " +
+            "FROM Booking b WHERE b.trainingClass.trainer.id = :trainerId AND b.bookingStatus = 'CONFIRMED' " +
+            "AND b.bookingDate >= :from GROUP BY b.trainingClass.id, b.bookingDate")
+    List<Object[]> countConfirmedForTrainerFrom(@Param("trainerId") Long trainerId, @Param("from") LocalDate from);
+
+    @Query("SELECT b FROM Booking b JOIN FETCH b.member JOIN FETCH b.trainingClass tc " +
+            "WHERE tc.trainer.id = :trainerId AND b.bookingStatus = 'CONFIRMED' AND b.bookingDate >= :from " +
+            "ORDER BY b.bookingDate, b.id")
+    List<Booking> findConfirmedForTrainerFrom(@Param("trainerId") Long trainerId, @Param("from") LocalDate from);
+
+    @Query("SELECT DISTINCT b.member.email FROM Booking b " +
+            "WHERE b.trainingClass.id = :classId AND b.bookingStatus IN :statuses")
+    List<String> findMemberEmailsForClass(@Param("classId") Long classId,
+                                          @Param("statuses") Collection<BookingStatus> statuses);
+
+    // Massövergångar i en sats; bokningar i andra statusar än :from rörs inte
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingStatus = :to WHERE b.member.id = :memberId AND b.bookingStatus IN :from")
+    int transitionForMember(@Param("memberId") Long memberId, @Param("from") Collection<BookingStatus> from,
+                            @Param("to") BookingStatus to);
+
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingStatus = :to WHERE b.trainingClass.id = :classId AND b.bookingStatus IN :from")
+    int transitionForClass(@Param("classId") Long classId, @Param("from") Collection<BookingStatus> from,
+                           @Param("to") BookingStatus to);
+
+    // Flippar förfallna PENDING-bokningar till EXPIRED i en sats; redan bekräftade/avbokade rörs inte
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingStatus = 'EXPIRED' " +
+            "WHERE b.id IN :ids AND b.bookingStatus = 'PENDING' AND b.bookingTimeStamp <= :threshold")
+    int expirePending(@Param("ids") Collection<Long> ids, @Param("threshold") LocalDateTime threshold);
+
+    @Modifying
+    @Query("DELETE FROM Booking b WHERE b.bookingStatus = 'EXPIRED' " +
+            "OR (b.bookingStatus = 'PENDING' AND b.bookingTimeStamp < :threshold)")
+    int deleteExpired(@Param("threshold") LocalDateTime threshold);
+
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     @Query("SELECT b FROM Booking b WHERE b.member.id = :memberId AND b.bookingDate >= :today")
     List<Booking> findUpcomingBookingsForMember(@Param("memberId") Long memberId, @Param("today") LocalDate today);
 
+    @EntityGraph(attributePaths = {"member", "trainingClass"})
     @Query("SELECT b FROM Booking b WHERE b.member.id = :memberId AND b.bookingDate < :today")
     List<Booking> findPastBookingsForMember(@Param("memberId") Long memberId, @Param("today") LocalDate today);
 
@@ -66,4 +185,16 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     long countByTrainingClassIdAndBookingDateAndBookingStatusIn(
             Long trainingClassId, LocalDate bookingDate, List<BookingStatus> statuses);
 
+    // Klass-id och boknings-id för medlemmens bokningar på de angivna passen en viss dag
+    @Query("SELECT b.trainingClass.id, b.id FROM Booking b " +
+            "WHERE b.member.id = :memberId AND b.bookingDate = :date AND b.trainingClass.id IN :classIds")
+    List<Object[]> findBookingIdsByClass(@Param("memberId") Long memberId, @Param("date") LocalDate date,
+                                         @Param("classIds") Collection<Long> classIds);
+
+    @Query("SELECT b.trainingClass.id, b.bookingDate, b.bookingStatus, COUNT(b.id) FROM Booking b " +
+            "WHERE b.bookingDate >= :fromDate AND b.bookingStatus IN :statuses " +
+            "GROUP BY b.trainingClass.id, b.bookingDate, b.bookingStatus")
+    List<Object[]> countClaimsPerSessionFrom(@Param("fromDate") LocalDate fromDate,
+                                             @Param("statuses") List<BookingStatus> statuses);
+
 }
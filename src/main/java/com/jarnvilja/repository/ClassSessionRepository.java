@@ -0,0 +1,71 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.ClassSession;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ClassSessionRepository extends JpaRepository<ClassSession, Long> {
+
+    Optional<ClassSession> findByTrainingClassIdAndSessionDate(Long trainingClassId, LocalDate sessionDate);
+
+    List<ClassSession> findBySessionDate(LocalDate sessionDate);
+
+    List<ClassSession> findBySessionDateGreaterThanEqual(LocalDate sessionDate);
+
+    // Radlås på sessionen, så att en omräkning inte tappar samtidiga antagningar
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ClassSession s WHERE s.trainingClass.id = :classId AND s.sessionDate = :date")
+    Optional<ClassSession> findForUpdate(@Param("classId") Long classId, @Param("date") LocalDate date);
+
+    // Tar en plats endast om passet inte är fullt och ingen står på väntelistan
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.seatsTaken = s.seatsTaken + 1 " +
+            "WHERE s.trainingClass.id = :classId AND s.sessionDate = :date " +
+            "AND s.seatsTaken < :capacity AND s.waitlistLength = 0")
+    int takeSeatIfAvailable(@Param("classId") Long classId, @Param("date") LocalDate date,
+                            @Param("capacity") int capacity);
+
+    // Ställer sig i kö endast om passet faktiskt är fullt eller redan har en väntelista
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.waitlistLength = s.waitlistLength + 1 " +
+            "WHERE s.trainingClass.id = :classId AND s.sessionDate = :date " +
+            "AND (s.seatsTaken >= :capacity OR s.waitlistLength > 0)")
+    int joinWaitlistIfFull(@Param("classId") Long classId, @Param("date") LocalDate date,
+                           @Param("capacity") int capacity);
+
+    // Flyttar en köande till en ledig plats: båda räknarna ändras i samma sats
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.seatsTaken = s.seatsTaken + 1, s.waitlistLength = s.waitlistLength - 1 " +
+            "WHERE s.trainingClass.id = :classId AND s.sessionDate = :date " +
+            "AND s.seatsTaken < :capacity AND s.waitlistLength > 0")
+    int promoteIfSeatFree(@Param("classId") Long classId, @Param("date") LocalDate date,
+                          @Param("capacity") int capacity);
+
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.seatsTaken = s.seatsTaken + :delta " +
+            "WHERE s.trainingClass.id = :classId AND s.sessionDate = :date AND s.seatsTaken + :delta >= 0")
+    int adjustSeatsTaken(@Param("classId") Long classId, @Param("date") LocalDate date, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.waitlistLength = s.waitlistLength + :delta " +
+            "WHERE s.trainingClass.id = :classId AND s.sessionDate = :date AND s.waitlistLength + :delta >= 0")
+    int adjustWaitlistLength(@Param("classId") Long classId, @Param("date") LocalDate date, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.seatsTaken = 0, s.waitlistLength = 0 WHERE s.trainingClass.id = :classId")
+    int resetCountersForClass(@Param("classId") Long classId);
+
+    @Modifying
+    @Query("DELETE FROM ClassSession s WHERE s.trainingClass.id = :classId")
+    int deleteByTrainingClassId(@Param("classId") Long classId);
+}
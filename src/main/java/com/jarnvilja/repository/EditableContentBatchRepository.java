@@ -0,0 +1,16 @@
+package com.jarnvilja.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Bulk writes for editable content that bypass the per-entity find-then-save of JPA.
+ */
+public interface EditableContentBatchRepository {
+
+    /**
+     * Updates the given keys and inserts the ones that do not exist yet, using one JDBC batch per
+     * statement. Returns the number of keys written.
+     */
+    int upsertAll(Map<String, String> values, LocalDateTime lastModified);
+}
@@ -0,0 +1,69 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.EditableContent;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC implementation of {@link EditableContentBatchRepository}. A portable UPDATE batch followed by an
+ * INSERT batch for the keys no row matched, instead of a dialect-specific MERGE, so the same code runs
+ * on MySQL and on H2. The writes bypass Hibernate, so the cached content rows are evicted afterwards.
+ */
+public class EditableContentBatchRepositoryImpl implements EditableContentBatchRepository {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String UPDATE_SQL =
+            "UPDATE editable_content SET content_value = ?, last_modified = ? WHERE content_key = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO editable_content (content_key, content_value, last_modified) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public EditableContentBatchRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public int upsertAll(Map<String, String> values, LocalDateTime lastModified) {
+        if (values.isEmpty()) return 0;
+        Timestamp timestamp = Timestamp.valueOf(lastModified);
+        List<Map.Entry<String, String>> entries = new ArrayList<>(values.entrySet());
+
+        int[][] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            ps.setString(1, entry.getValue());
+            ps.setTimestamp(2, timestamp);
+            ps.setString(3, entry.getKey());
+        });
+
+        // 0 betyder att nyckeln saknas; drivrutiner som inte rapporterar antal (SUCCESS_NO_INFO) räknas som träff
+        List<Map.Entry<String, String>> missing = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : updated) {
+            for (int count : batch) {
+                if (count == 0) {
+                    missing.add(entries.get(index));
+                }
+                index++;
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing, BATCH_SIZE, (ps, entry) -> {
+                ps.setString(1, entry.getKey());
+                ps.setString(2, entry.getValue());
+                ps.setTimestamp(3, timestamp);
+            });
+        }
+        entityManagerFactory.getCache().evict(EditableContent.class);
+        return entries.size();
+    }
+}
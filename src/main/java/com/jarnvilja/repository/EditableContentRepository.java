@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface EditableContentRepository extends JpaRepository<EditableContent, Long> {
+public interface EditableContentRepository extends JpaRepository<EditableContent, Long>, EditableContentBatchRepository {
 
     Optional<EditableContent> findByKey(String key);
 
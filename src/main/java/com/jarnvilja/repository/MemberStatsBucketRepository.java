@@ -0,0 +1,34 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.MemberStatsBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MemberStatsBucketRepository extends JpaRepository<MemberStatsBucket, Long> {
+
+    List<MemberStatsBucket> findByMemberId(Long memberId);
+
+    // Medlem och antal för de givna medlemmarnas hinkar av ett slag med ett tomt nyckelvärde, t.ex. TOTAL
+    @Query("SELECT s.member.id, s.count FROM MemberStatsBucket s WHERE s.kind = :kind AND s.bucketKey = '' " +
+            "AND s.member.id IN :memberIds AND s.count > 0")
+    List<Object[]> findCountsByKind(@Param("kind") MemberStatsBucket.Kind kind,
+                                    @Param("memberIds") Collection<Long> memberIds);
+
+    // Justerar en räknare i en sats; 0 rader betyder att hinken saknas (eller skulle bli negativ)
+    @Modifying
+    @Query("UPDATE MemberStatsBucket s SET s.count = s.count + :delta WHERE s.member.id = :memberId " +
+            "AND s.kind = :kind AND s.bucketKey = :key AND s.count + :delta >= 0")
+    int adjust(@Param("memberId") Long memberId, @Param("kind") MemberStatsBucket.Kind kind,
+               @Param("key") String key, @Param("delta") int delta);
+
+    @Modifying
+    @Query("DELETE FROM MemberStatsBucket s WHERE s.member.id = :memberId")
+    int deleteForMember(@Param("memberId") Long memberId);
+}
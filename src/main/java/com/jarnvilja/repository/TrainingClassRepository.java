@@ -2,8 +2,14 @@ package com.jarnvilja.repository;
 
 import com.jarnvilja.model.TrainingClass;
 import org.springframework.data.domain.Sort;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -16,30 +22,49 @@ import java.util.Optional;
 @Repository
 public interface TrainingClassRepository extends JpaRepository<TrainingClass, Long> {
 
-    // Hämta alla träningspass
+    // Hämta alla träningspass, med tränaren i samma fråga
+    @Override
+    @EntityGraph(attributePaths = "trainer")
     List<TrainingClass> findAll();
 
+    // Frågecachad en kort stund för visning; bokningen läser kapaciteten direkt från databasen
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")})
     List<TrainingClass> findByTrainerId(Long trainerId);
 
+    // Hela veckoschemat med tränaren i samma fråga, sorterat på starttid
+    @Query("SELECT tc FROM TrainingClass tc LEFT JOIN FETCH tc.trainer ORDER BY tc.startTime, tc.id")
+    List<TrainingClass> findScheduleWithTrainer();
+
+    // Ett pass med tränaren, t.ex. för att indexera om det efter en ändring
+    @Query("SELECT tc FROM TrainingClass tc LEFT JOIN FETCH tc.trainer WHERE tc.id = :id")
+    Optional<TrainingClass> findByIdWithTrainer(@Param("id") Long id);
+
+    // Alla pass med tränare och dagens tagna platser i en fråga; pass utan sessionsrad får 0
+    @Query("SELECT tc, COALESCE(s.seatsTaken, 0) FROM TrainingClass tc LEFT JOIN FETCH tc.trainer " +
+            "LEFT JOIN ClassSession s ON s.trainingClass = tc AND s.sessionDate = :date ORDER BY tc.id")
+    List<Object[]> findAllWithSeatsTakenOn(@Param("date") LocalDate date);
+
 
     // Hämta alla tillgängliga träningspass som har en tränare och inte har startat än
-    @Query("SELECT tc FROM TrainingClass tc WHERE tc.trainer IS NOT NULL AND tc.startTime > CURRENT_TIME")
+    @Query("SELECT tc FROM TrainingClass tc JOIN FETCH tc.trainer WHERE tc.startTime > CURRENT_TIME")
     List<TrainingClass> findAvailableClasses();
 
     // Hämta träningspass som en specifik medlem har bokat
-    @Query("SELECT b.trainingClass FROM Booking b WHERE b.member.id = :memberId")
+    @Query("SELECT tc FROM Booking b JOIN b.trainingClass tc LEFT JOIN FETCH tc.trainer WHERE b.member.id = :memberId")
     List<TrainingClass> findTrainingClassesForMember(@Param("memberId") Long memberId);
 
     // Hämta det mest populära träningspasset för en tränare (baserat på flest bokningar)
-    @Query("SELECT t FROM TrainingClass t WHERE t.trainer.id = :trainerId ORDER BY (SELECT COUNT(b) FROM Booking b WHERE b.trainingClass = t) DESC")
+    @Query("SELECT t FROM TrainingClass t LEFT JOIN Booking b ON b.trainingClass = t WHERE t.trainer.id = :trainerId " +
+            "GROUP BY t ORDER BY COUNT(b.id) DESC, t.id LIMIT 1")
     Optional<TrainingClass> findMostPopularTrainingClassByTrainer(@Param("trainerId") Long trainerId);
 
 
     @Query("SELECT tc FROM TrainingClass tc WHERE tc.trainingDay >= :currentDate")
     List<TrainingClass> findUpcomingTrainingClasses(@Param("currentDate") LocalDate currentDate);
 
-    List<TrainingClass> findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(String title, String description);
-
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")})
     List<TrainingClass> findAll(Sort sort);
 
     Optional<TrainingClass> findByTitleAndTrainingDayAndStartTime(String title, DayOfWeek trainingDay, LocalTime startTime);
@@ -47,7 +72,13 @@ public interface TrainingClassRepository extends JpaRepository<TrainingClass, Lo
     @Query("SELECT tc FROM TrainingClass tc WHERE tc.trainingDay < :currentDate")
     List<TrainingClass> findPastTrainingClasses(@Param("currentDate") LocalDate currentDate);
 
-    List<TrainingClass> findByTitleContainingIgnoreCase(String title);
+    @Query("SELECT tc.id FROM TrainingClass tc ORDER BY tc.id")
+    List<Long> findAllIds();
+
+    // Radlås på passet, serialiserar skapandet av saknade sessionsrader
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT tc FROM TrainingClass tc WHERE tc.id = :id")
+    Optional<TrainingClass> findByIdForUpdate(@Param("id") Long id);
 
 
 
@@ -0,0 +1,20 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.MemberStatsBucket;
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Pages of users sorted by one of their member-stats counters, read from the counter index rather than
+ * sorting every user.
+ */
+public interface UserCounterPageRepository {
+
+    /**
+     * Users with the given role (or any role when null) whose counter of the kind is above zero, highest
+     * first and then by descending id, followed by the users without such a counter by username.
+     */
+    Page<User> findPageOrderedByCounter(MemberStatsBucket.Kind kind, Role role, Pageable pageable);
+}
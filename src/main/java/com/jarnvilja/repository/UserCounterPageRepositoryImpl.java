@@ -0,0 +1,86 @@
+package com.jarnvilja.repository;
+
+import com.jarnvilja.model.MemberStatsBucket;
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * JPQL implementation of {@link UserCounterPageRepository}. The counted users are read in the order of
+ * the (kind, bucket_key, booking_count, member_id) index on {@code member_stats}, so a page costs its own
+ * rows plus the offset; only a page past the last counted user reads from {@code users}.
+ */
+public class UserCounterPageRepositoryImpl implements UserCounterPageRepository {
+
+    private static final String ROLE_FILTER = " AND (:role IS NULL OR s.member.role = :role)";
+
+    private final EntityManager entityManager;
+
+    public UserCounterPageRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Page<User> findPageOrderedByCounter(MemberStatsBucket.Kind kind, Role role, Pageable pageable) {
+        long offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+
+        long counted = entityManager.createQuery("SELECT COUNT(s) FROM MemberStatsBucket s " +
+                        "WHERE s.kind = :kind AND s.bucketKey = '' AND s.count > 0" + ROLE_FILTER, Long.class)
+                .setParameter("kind", kind)
+                .setParameter("role", role)
+                .getSingleResult();
+        long total = entityManager.createQuery("SELECT COUNT(u) FROM User u WHERE (:role IS NULL OR u.role = :role)",
+                        Long.class)
+                .setParameter("role", role)
+                .getSingleResult();
+
+        List<User> content = new ArrayList<>(size);
+        if (offset < counted) {
+            List<Long> ids = entityManager.createQuery("SELECT s.member.id FROM MemberStatsBucket s " +
+                            "WHERE s.kind = :kind AND s.bucketKey = '' AND s.count > 0" + ROLE_FILTER +
+                            " ORDER BY s.count DESC, s.member.id DESC", Long.class)
+                    .setParameter("kind", kind)
+                    .setParameter("role", role)
+                    .setFirstResult((int) offset)
+                    .setMaxResults(size)
+                    .getResultList();
+            content.addAll(findInOrder(ids));
+        }
+
+        // Sidan räcker längre än de räknade användarna: resten fylls med användare utan räknare
+        int remaining = size - content.size();
+        if (remaining > 0 && offset + content.size() < total) {
+            TypedQuery<User> rest = entityManager.createQuery("SELECT u FROM User u " +
+                            "WHERE (:role IS NULL OR u.role = :role) AND NOT EXISTS (SELECT 1 FROM MemberStatsBucket s " +
+                            "WHERE s.member = u AND s.kind = :kind AND s.bucketKey = '' AND s.count > 0) " +
+                            "ORDER BY u.username ASC", User.class)
+                    .setParameter("kind", kind)
+                    .setParameter("role", role);
+            content.addAll(rest.setFirstResult((int) Math.max(0, offset - counted))
+                    .setMaxResults(remaining)
+                    .getResultList());
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private List<User> findInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, User> byId = new HashMap<>();
+        entityManager.createQuery("SELECT u FROM User u WHERE u.id IN :ids", User.class)
+                .setParameter("ids", ids)
+                .getResultList()
+                .forEach(u -> byId.put(u.getId(), u));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+}
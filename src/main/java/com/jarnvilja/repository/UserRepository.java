@@ -4,19 +4,39 @@ import com.jarnvilja.model.Role;
 import com.jarnvilja.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserCounterPageRepository {
     Optional<User> findByEmail(String email);
     Optional<User> findByUsername(String username);
+    // Frågecachad en kort stund, t.ex. tränarlistan i formulären; används inte för inloggning
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "reference-queries")})
     List<User> findUsersByRole(Role role);
     Page<User> findUsersByRole(Role role, Pageable pageable);
-    Page<User> findByUsernameContainingIgnoreCase(String username, Pageable pageable);
-    Page<User> findUsersByRoleAndUsernameContainingIgnoreCase(Role role, String username, Pageable pageable);
     long count();
+
+    @Query("SELECT u.id FROM User u ORDER BY u.id")
+    List<Long> findAllIds();
+
+    // Fälten som sökindexet byggs av, utan att ladda entiteterna
+    @Query("SELECT u.id, u.username, u.email, u.firstName, u.lastName, u.role, u.createdAt FROM User u")
+    List<Object[]> findSearchRows();
+
+    // Radlås på medlemmen, serialiserar skapandet av saknade statistikhinkar
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findByIdForUpdate(@Param("id") Long id);
 }
@@ -4,6 +4,8 @@ import com.jarnvilja.model.*;
 import com.jarnvilja.repository.BookingRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.repository.UserRepository;
+import com.jarnvilja.service.BookingRollupService;
+import com.jarnvilja.service.MemberStatsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.annotation.Order;
@@ -22,11 +24,16 @@ public class BookingSeeder implements CommandLineRunner {
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final TrainingClassRepository trainingClassRepository;
+    private final MemberStatsService memberStatsService;
+    private final BookingRollupService bookingRollupService;
 
-    public BookingSeeder(BookingRepository bookingRepository, UserRepository userRepository, TrainingClassRepository trainingClassRepository) {
+    public BookingSeeder(BookingRepository bookingRepository, UserRepository userRepository, TrainingClassRepository trainingClassRepository,
+                         MemberStatsService memberStatsService, BookingRollupService bookingRollupService) {
         this.bookingRepository = bookingRepository;
         this.userRepository = userRepository;
         this.trainingClassRepository = trainingClassRepository;
+        this.memberStatsService = memberStatsService;
+        this.bookingRollupService = bookingRollupService;
     }
 
     @Override
@@ -69,6 +76,10 @@ public class BookingSeeder implements CommandLineRunner {
             }
         }
 
+        // Bokningarna sparas förbi tjänsterna, så räknarna byggs här i stället för vid varje nodstart
+        memberStatsService.rebuildAll();
+        bookingRollupService.rebuildAll();
+
         log.info("Seeded {} bookings across {} members", count, members.size());
     }
 }
@@ -1,19 +1,26 @@
 package com.jarnvilja.service;
 
+import com.jarnvilja.dto.AdminDashboardStatsDTO;
 import com.jarnvilja.dto.BookingStatsDTO;
 import com.jarnvilja.dto.MemberStatsDTO;
 import com.jarnvilja.model.*;
+import com.jarnvilja.repository.BookingBrowseRepository;
+import com.jarnvilja.repository.BookingDailyRollupRepository;
 import com.jarnvilja.repository.BookingRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.TextStyle;
 import java.util.*;
-import java.util.stream.Collectors;
 
 
 @Service
@@ -23,12 +30,30 @@ public class AdminService {
     private final PasswordEncoder passwordEncoder;
     private final TrainingClassRepository trainingClassRepository;
     private final BookingRepository bookingRepository;
-
-    public AdminService(UserRepository userRepository, PasswordEncoder passwordEncoder, TrainingClassRepository trainingClassRepository, BookingRepository bookingRepository) {
+    private final WaitlistService waitlistService;
+    private final PendingExpiryService pendingExpiryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MemberStatsService memberStatsService;
+    private final BookingDailyRollupRepository rollupRepository;
+    private final BookingRollupService bookingRollupService;
+    private final UserSearchIndex userSearchIndex;
+
+    public AdminService(UserRepository userRepository, PasswordEncoder passwordEncoder, TrainingClassRepository trainingClassRepository,
+                        BookingRepository bookingRepository, WaitlistService waitlistService, PendingExpiryService pendingExpiryService,
+                        ApplicationEventPublisher eventPublisher, MemberStatsService memberStatsService,
+                        BookingDailyRollupRepository rollupRepository, BookingRollupService bookingRollupService,
+                        UserSearchIndex userSearchIndex) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.trainingClassRepository = trainingClassRepository;
         this.bookingRepository = bookingRepository;
+        this.waitlistService = waitlistService;
+        this.pendingExpiryService = pendingExpiryService;
+        this.eventPublisher = eventPublisher;
+        this.memberStatsService = memberStatsService;
+        this.rollupRepository = rollupRepository;
+        this.bookingRollupService = bookingRollupService;
+        this.userSearchIndex = userSearchIndex;
     }
 
 
@@ -74,63 +99,130 @@ public class AdminService {
     }
 
     /**
-     * Paginated user list with optional role and username search. Sort by "bookings" is done in-memory.
+     * Paginated user list with optional role filter and search. A search is answered by
+     * {@link UserSearchIndex} and only the page's users are loaded; otherwise the page comes from the
+     * database, sorted by "bookings" on the members' confirmed-booking counters.
      */
-    public Page<User> getUsersPage(Role role, String search, String sortBy, int page, int size,
-                                   Map<Long, Long> bookingCounts) {
-        Pageable pageable;
-        String sortField = "username";
-        boolean descending = false;
-        if (!"bookings".equals(sortBy)) {
-            switch (sortBy != null ? sortBy : "username") {
-                case "role" -> { sortField = "role"; }
-                case "email" -> { sortField = "email"; }
-                case "createdAt" -> { sortField = "createdAt"; descending = true; }
-                default -> { sortField = "username"; }
-            }
-            Sort sort = descending ? Sort.by(sortField).descending() : Sort.by(sortField).ascending();
-            pageable = PageRequest.of(page, size, sort);
-        } else {
-            pageable = PageRequest.of(page, size);
-        }
-
-        Page<User> usersPage;
+    public Page<User> getUsersPage(Role role, String search, String sortBy, int page, int size) {
         boolean hasRole = role != null && !role.name().isEmpty();
         boolean hasSearch = search != null && !search.isBlank();
 
-        if (hasRole && hasSearch) {
-            usersPage = userRepository.findUsersByRoleAndUsernameContainingIgnoreCase(role, search.trim(), pageable);
-        } else if (hasRole) {
-            usersPage = userRepository.findUsersByRole(role, pageable);
-        } else if (hasSearch) {
-            usersPage = userRepository.findByUsernameContainingIgnoreCase(search.trim(), pageable);
-        } else {
-            usersPage = userRepository.findAll(pageable);
+        if (hasSearch) {
+            return searchUsersPage(hasRole ? role : null, search.trim(), sortBy, page, size);
         }
-
         if ("bookings".equals(sortBy)) {
-            List<User> allFiltered;
-            if (hasRole && hasSearch) {
-                allFiltered = userRepository.findUsersByRoleAndUsernameContainingIgnoreCase(role, search.trim(), Pageable.unpaged()).getContent();
-            } else if (hasRole) {
-                allFiltered = userRepository.findUsersByRole(role, Pageable.unpaged()).getContent();
-            } else if (hasSearch) {
-                allFiltered = userRepository.findByUsernameContainingIgnoreCase(search.trim(), Pageable.unpaged()).getContent();
-            } else {
-                allFiltered = userRepository.findAll();
-            }
-            allFiltered.sort(Comparator.comparingLong((User u) -> bookingCounts.getOrDefault(u.getId(), 0L)).reversed());
-            int start = (int) pageable.getOffset();
-            int end = Math.min(start + pageable.getPageSize(), allFiltered.size());
-            List<User> pageContent = start >= allFiltered.size() ? List.of() : allFiltered.subList(start, end);
-            return new PageImpl<>(pageContent, pageable, allFiltered.size());
+            return userRepository.findPageOrderedByCounter(MemberStatsBucket.Kind.TOTAL, hasRole ? role : null,
+                    PageRequest.of(page, size));
         }
 
-        return usersPage;
+        String sortField;
+        boolean descending = false;
+        switch (sortBy != null ? sortBy : "username") {
+            case "role" -> { sortField = "role"; }
+            case "email" -> { sortField = "email"; }
+            case "createdAt" -> { sortField = "createdAt"; descending = true; }
+            default -> { sortField = "username"; }
+        }
+        Sort sort = descending ? Sort.by(sortField).descending() : Sort.by(sortField).ascending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return hasRole ? userRepository.findUsersByRole(role, pageable) : userRepository.findAll(pageable);
+    }
+
+    // Träffarna sorteras på indexets fält; antalet följer av träfflistan, så ingen COUNT behövs
+    private Page<User> searchUsersPage(Role role, String search, String sortBy, int page, int size) {
+        List<UserSearchIndex.Entry> hits = new ArrayList<>(userSearchIndex.search(search, role));
+        Comparator<UserSearchIndex.Entry> byUsername = Comparator.comparing(UserSearchIndex.Entry::username,
+                Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+        Comparator<UserSearchIndex.Entry> order = switch (sortBy != null ? sortBy : "username") {
+            case "role" -> Comparator.comparing((UserSearchIndex.Entry e) -> e.role() != null ? e.role().name() : null,
+                    Comparator.nullsLast(Comparator.<String>naturalOrder()));
+            case "email" -> Comparator.comparing(UserSearchIndex.Entry::email,
+                    Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+            case "createdAt" -> Comparator.comparing(UserSearchIndex.Entry::createdAt,
+                    Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()));
+            case "bookings" -> {
+                Map<Long, Long> counts = memberStatsService.getConfirmedCounts(
+                        hits.stream().map(UserSearchIndex.Entry::id).toList());
+                yield Comparator.comparingLong((UserSearchIndex.Entry e) -> counts.getOrDefault(e.id(), 0L)).reversed();
+            }
+            default -> byUsername;
+        };
+        hits.sort(order.thenComparing(byUsername).thenComparing(UserSearchIndex.Entry::id));
+
+        Pageable pageable = PageRequest.of(page, size);
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + size, hits.size());
+        List<Long> ids = hits.subList(from, to).stream().map(UserSearchIndex.Entry::id).toList();
+        return new PageImpl<>(loadInOrder(ids), pageable, hits.size());
     }
 
-    public Page<Booking> getBookingsPage(int page, int size) {
-        return bookingRepository.findAll(PageRequest.of(page, size));
+    /**
+     * Typeahead for the admin search: up to {@code limit} users matching the query, those whose username
+     * starts with it first.
+     */
+    public List<User> searchUsers(String query, Role role, int limit) {
+        if (query == null || query.isBlank()) return List.of();
+        // Vikt som i indexet, så att "goran" räknar "Göran" som ett prefix
+        String prefix = ClassSearchIndex.fold(query.trim());
+        List<Long> ids = userSearchIndex.search(query, role).stream()
+                .sorted(Comparator.comparing((UserSearchIndex.Entry e) ->
+                                e.username() == null || !ClassSearchIndex.fold(e.username()).startsWith(prefix))
+                        .thenComparing(UserSearchIndex.Entry::username, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                .limit(limit)
+                .map(UserSearchIndex.Entry::id)
+                .toList();
+        return loadInOrder(ids);
+    }
+
+    private List<User> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, User> byId = new HashMap<>();
+        userRepository.findAllById(ids).forEach(u -> byId.put(u.getId(), u));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * One page of the bookings browser. {@code nextCursor} points past the last booking and is null on the
+     * last page.
+     */
+    public record BookingBrowsePage(List<Booking> bookings, String nextCursor) { }
+
+    /**
+     * Bookings matching the filter, newest first, starting after the position in {@code cursor}; a null or
+     * unreadable cursor starts from the newest booking. Reads {@code size + 1} rows and no total count.
+     */
+    @Transactional(readOnly = true)
+    public BookingBrowsePage browseBookings(BookingBrowseRepository.Filter filter, String cursor, int size) {
+        BookingCursor after = BookingCursor.decode(cursor);
+        List<Booking> rows = bookingRepository.findPageAfter(filter,
+                after != null ? after.bookingDate() : null, after != null ? after.id() : null, size + 1);
+        if (rows.size() <= size) {
+            return new BookingBrowsePage(rows, null);
+        }
+        List<Booking> page = new ArrayList<>(rows.subList(0, size));
+        Booking last = page.get(size - 1);
+        return new BookingBrowsePage(page, new BookingCursor(last.getBookingDate(), last.getId()).encode());
+    }
+
+    // Positionen i bläddringen: sista radens (datum, id), som en URL-säker sträng
+    record BookingCursor(LocalDate bookingDate, Long id) {
+
+        String encode() {
+            String raw = bookingDate + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static BookingCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf(':');
+                return new BookingCursor(LocalDate.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
     }
 
     @Transactional
@@ -170,7 +262,9 @@ public class AdminService {
 
         trainingClass.setTrainer(trainer);  // Sätter en ny tränare istället för att lägga till i en lista
 
-        return trainingClassRepository.save(trainingClass);  // Sparar uppdateringen
+        TrainingClass saved = trainingClassRepository.save(trainingClass);  // Sparar uppdateringen
+        eventPublisher.publishEvent(new TrainingClassChangedEvent(classId));  // Tränarens namn visas i schemat
+        return saved;
     }
 
 
@@ -184,6 +278,7 @@ public class AdminService {
             if (trainingClass.getTrainer() != null && trainingClass.getTrainer().getId().equals(trainerId)) {
                 trainingClass.setTrainer(null);  // Ta bort tränaren genom att sätta den till null
                 trainingClassRepository.save(trainingClass);
+                eventPublisher.publishEvent(new TrainingClassChangedEvent(classId));
                 return "Trainer " + trainerId + " removed from the class: " + trainingClass.getTitle();
             } else {
                 return "Trainer " + trainerId + " is not assigned to this class.";
@@ -217,6 +312,8 @@ public class AdminService {
     public String deleteBooking(Long bookingId) {
         Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
         if (bookingOpt.isPresent()) {
+            Booking booking = bookingOpt.get();
+            waitlistService.transition(booking, null);
             bookingRepository.deleteById(bookingId);
             return "Booking " + bookingId + " deleted";
         }
@@ -228,13 +325,13 @@ public class AdminService {
     }
 
     @Transactional
-    public List<Booking> cancelAllBookingsForClass(Long trainingClassId) {
-        List<Booking> bookings = bookingRepository.findByTrainingClassId(trainingClassId);
-
-        for (Booking booking : bookings) {
-            booking.setBookingStatus(BookingStatus.CANCELLED);
-        }
-        return bookingRepository.saveAll(bookings);
+    public int cancelAllBookingsForClass(Long trainingClassId) {
+        // En UPDATE-sats för hela passet; räknarna nollställs och ingen flyttas upp från väntelistan
+        memberStatsService.releaseClass(trainingClassId);
+        bookingRollupService.recordClassTransition(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        int cancelled = bookingRepository.transitionForClass(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        waitlistService.clearClass(trainingClassId);
+        return cancelled;
     }
 
     public List<Booking> getBookingsByStatus(BookingStatus status) {
@@ -243,14 +340,10 @@ public class AdminService {
 
     @Transactional
     public void removeExpiredBookings() {
-        List<Booking> allBookings = bookingRepository.findAll();  // Hämta alla bokningar
-        List<Booking> expiredBookings = allBookings.stream()
-                .filter(Booking::isExpired)  // Filtrera ut bokningar som är expired
-                .collect(Collectors.toList());
-
-        if (!expiredBookings.isEmpty()) {
-            bookingRepository.deleteAll(expiredBookings);  // Ta bort de utlöpta bokningarna
-        }
+        // EXPIRED samt PENDING vars hålltid har löpt ut, i en DELETE-sats
+        LocalDateTime threshold = pendingExpiryService.expiryThreshold();
+        bookingRollupService.recordExpiredDeleted(threshold);
+        bookingRepository.deleteExpired(threshold);
     }
 
 
@@ -262,7 +355,7 @@ public class AdminService {
         long pendingBookings = bookingRepository.countByBookingStatus(BookingStatus.PENDING);
         long cancelledBookingsByMember = bookingRepository.countByBookingStatus((BookingStatus.CANCELLED_BY_MEMBER));
         long expiredBookings = bookingRepository.countByBookingStatus(BookingStatus.EXPIRED);
-        String mostPopularClass = bookingRepository.findMostPopularClass();
+        String mostPopularClass = rollupRepository.findMostPopularClass();
 
         return new BookingStatsDTO(totalBookings, confirmedBookings, cancelledBookings, pendingBookings, cancelledBookingsByMember, expiredBookings, mostPopularClass);
     }
@@ -290,13 +383,95 @@ public class AdminService {
     }
 
     public Map<String, Long> getClassStats() {
-        List<Object[]> results = bookingRepository.getClassStats();
+        List<Object[]> results = rollupRepository.getClassStats();
         Map<String, Long> classStats = new HashMap<>();
 
         for (Object[] result : results) {
-            classStats.put((String) result[0], (Long) result[1]);
+            classStats.put((String) result[0], ((Number) result[1]).longValue());
         }
         return classStats;
     }
+
+    // Instrumentpanelen, läst ur dagsrullningen
+
+    /**
+     * CONFIRMED bookings per member, read from the members' stats counters.
+     */
+    public Map<Long, Long> getConfirmedBookingCounts(Collection<Long> userIds) {
+        return memberStatsService.getConfirmedCounts(userIds);
+    }
+
+    public String getMostPopularClass() {
+        String title = rollupRepository.findMostPopularClass();
+        return title != null ? title : "–";
+    }
+
+    /**
+     * Dashboard figures for the last week, month (default) or year. Totals come from one GROUP BY over the
+     * status counters and the charts from one row per day, weekday and category in the range.
+     */
+    @Transactional(readOnly = true)
+    public AdminDashboardStatsDTO computeDashboardStats(String range) {
+        AdminDashboardStatsDTO dto = new AdminDashboardStatsDTO();
+
+        long total = 0;
+        long cancelled = 0;
+        for (Object[] row : rollupRepository.sumByStatus()) {
+            long count = ((Number) row[1]).longValue();
+            total += count;
+            if (row[0] == BookingStatus.CANCELLED) cancelled = count;
+        }
+        dto.setTotalBookings(total);
+        dto.setCancellationRate(total == 0 ? 0 : (double) cancelled / total * 100);
+
+        Map<String, Long> byDay = new LinkedHashMap<>();
+        String[] dayNames = {"Måndag", "Tisdag", "Onsdag", "Torsdag", "Fredag", "Lördag", "Söndag"};
+        for (String d : dayNames) byDay.put(d, 0L);
+
+        Map<String, Long> byCat = new LinkedHashMap<>();
+
+        LocalDate cutoff = switch (range) {
+            case "week" -> LocalDate.now().minusWeeks(1);
+            case "year" -> LocalDate.now().minusYears(1);
+            default -> LocalDate.now().minusMonths(1);
+        };
+
+        Map<String, Long> overTime = new TreeMap<>();
+
+        for (Object[] row : rollupRepository.sumByDayFrom(cutoff)) {
+            LocalDate date = (LocalDate) row[0];
+            DayOfWeek dow = (DayOfWeek) row[1];
+            TrainingCategory category = (TrainingCategory) row[2];
+            long count = ((Number) row[3]).longValue();
+
+            if (dow != null) {
+                String dayLabel = dow.getDisplayName(TextStyle.FULL, new Locale("sv", "SE"));
+                dayLabel = dayLabel.substring(0, 1).toUpperCase() + dayLabel.substring(1);
+                byDay.merge(dayLabel, count, Long::sum);
+            }
+
+            if (category != null) {
+                byCat.merge(category.name(), count, Long::sum);
+            }
+
+            if ("week".equals(range)) {
+                overTime.merge(date.toString(), count, Long::sum);
+            } else {
+                String monthKey = date.getYear() + "-" + String.format("%02d", date.getMonthValue());
+                overTime.merge(monthKey, count, Long::sum);
+            }
+        }
+
+        dto.setBookingsByDay(byDay);
+        dto.setBookingsByCategory(byCat);
+        dto.setBookingsOverTime(overTime);
+
+        byDay.entrySet().stream().max(Map.Entry.comparingByValue())
+                .ifPresent(e -> dto.setBusiestDay(e.getKey()));
+        byCat.entrySet().stream().max(Map.Entry.comparingByValue())
+                .ifPresent(e -> dto.setMostPopularClass(e.getKey()));
+
+        return dto;
+    }
 }
 
@@ -0,0 +1,28 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Role;
+import lombok.Getter;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.List;
+
+/**
+ * The logged-in user as stored in the security context. Carries the id, role and demo flag read at
+ * login, so request handling can identify the user without looking them up again. The values are a
+ * snapshot from login time and are not refreshed if the row changes during the session.
+ */
+@Getter
+public class AuthenticatedUser extends User {
+
+    private final Long id;
+    private final Role role;
+    private final boolean demo;
+
+    public AuthenticatedUser(com.jarnvilja.model.User user) {
+        super(user.getUsername(), user.getPassword(), List.of(new SimpleGrantedAuthority(user.getRole().name())));
+        this.id = user.getId();
+        this.role = user.getRole();
+        this.demo = user.isDemo();
+    }
+}
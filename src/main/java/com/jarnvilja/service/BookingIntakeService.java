@@ -0,0 +1,217 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.BookingTicketDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Optional asynchronous intake for bookings ({@code app.booking.intake.enabled}). Requests are accepted
+ * into a bounded queue and applied by a single writer per (class, date) lane in arrival order, using the
+ * same {@link MemberService#createBooking} path as synchronous bookings. Callers poll their ticket.
+ */
+@Slf4j
+@Service
+public class BookingIntakeService {
+
+    // Antal biljetter en lane behandlar innan den släpper tråden till nästa lane
+    private static final int LANE_BATCH = 32;
+    private static final Duration TICKET_TTL = Duration.ofMinutes(10);
+
+    private final MemberService memberService;
+    private final boolean enabled;
+    private final Semaphore slots;
+    private final ExecutorService workers;
+
+    private final Map<SeatLedger.SessionKey, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Timer waitTimer;
+    private final Timer processTimer;
+    private final Counter rejectedCounter;
+
+    public BookingIntakeService(MemberService memberService, MeterRegistry meterRegistry,
+                                @Value("${app.booking.intake.enabled:false}") boolean enabled,
+                                @Value("${app.booking.intake.capacity:1000}") int capacity,
+                                @Value("${app.booking.intake.workers:4}") int workerCount) {
+        this.memberService = memberService;
+        this.enabled = enabled;
+        this.slots = new Semaphore(capacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "booking-intake-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Gauge.builder("booking.intake.queue.depth", depth, AtomicInteger::get)
+                .description("Booking requests waiting in the intake queue")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("booking.intake.wait")
+                .description("Time from acceptance until a booking request is processed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.processTimer = Timer.builder("booking.intake.process")
+                .description("Time spent applying a queued booking request")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("booking.intake.rejected")
+                .description("Booking requests turned away because the intake queue was full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Accepts a booking request for today's occurrence of the class and returns its ticket.
+     * Throws {@link RejectedExecutionException} when the queue is full.
+     */
+    public BookingTicketDTO submit(Long memberId, Long trainingClassId) {
+        if (!slots.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Bokningskön är full, försök igen om en stund.");
+        }
+        // Inloggningen följer med till arbetstråden så att DemoGuard ser rätt användare
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), memberId, trainingClassId, context);
+        tickets.put(ticket.id, ticket);
+
+        Lane lane = lanes.computeIfAbsent(new SeatLedger.SessionKey(trainingClassId, LocalDate.now()), k -> new Lane());
+        depth.incrementAndGet();
+        lane.queue.add(ticket);
+        schedule(lane);
+        return ticket.toDto();
+    }
+
+    /**
+     * The ticket, if it exists and was submitted for the given member; anyone else gets an empty result.
+     */
+    public Optional<BookingTicketDTO> getTicket(String ticketId, Long memberId) {
+        return Optional.ofNullable(tickets.get(ticketId))
+                .filter(ticket -> ticket.memberId.equals(memberId))
+                .map(Ticket::toDto);
+    }
+
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Forgets finished tickets after their TTL and lanes of past dates.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpiredTickets() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(TICKET_TTL);
+        tickets.values().removeIf(t -> t.completedAt != null && t.completedAt.isBefore(cutoff));
+        LocalDate today = LocalDate.now();
+        lanes.entrySet().removeIf(e -> e.getKey().sessionDate().isBefore(today) && e.getValue().queue.isEmpty());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private void schedule(Lane lane) {
+        if (lane.running.compareAndSet(false, true)) {
+            workers.execute(() -> drain(lane));
+        }
+    }
+
+    // En lane körs av högst en tråd åt gången, så bokningar på samma pass skrivs i ankomstordning
+    private void drain(Lane lane) {
+        try {
+            Ticket ticket;
+            int processed = 0;
+            while (processed < LANE_BATCH && (ticket = lane.queue.poll()) != null) {
+                process(ticket);
+                processed++;
+            }
+        } finally {
+            lane.running.set(false);
+            if (!lane.queue.isEmpty()) {
+                schedule(lane);
+            }
+        }
+    }
+
+    private void process(Ticket ticket) {
+        depth.decrementAndGet();
+        waitTimer.record(System.nanoTime() - ticket.acceptedNanos, TimeUnit.NANOSECONDS);
+        long start = System.nanoTime();
+        SecurityContextHolder.setContext(ticket.securityContext);
+        try {
+            Booking booking = memberService.createBooking(ticket.memberId, ticket.trainingClassId);
+            ticket.bookingId = booking.getId();
+            ticket.bookingStatus = booking.getBookingStatus();
+            ticket.state = BookingTicketDTO.State.DONE;
+        } catch (RuntimeException e) {
+            log.debug("Queued booking {} failed: {}", ticket.id, e.getMessage());
+            ticket.message = e.getMessage();
+            ticket.state = BookingTicketDTO.State.FAILED;
+        } finally {
+            SecurityContextHolder.clearContext();
+            ticket.completedAt = LocalDateTime.now();
+            slots.release();
+            processTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Lane {
+        private final Queue<Ticket> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean running = new AtomicBoolean();
+    }
+
+    private static final class Ticket {
+        private final String id;
+        private final Long memberId;
+        private final Long trainingClassId;
+        private final SecurityContext securityContext;
+        private final LocalDateTime acceptedAt = LocalDateTime.now();
+        private final long acceptedNanos = System.nanoTime();
+        private volatile BookingTicketDTO.State state = BookingTicketDTO.State.QUEUED;
+        private volatile Long bookingId;
+        private volatile BookingStatus bookingStatus;
+        private volatile String message;
+        private volatile LocalDateTime completedAt;
+
+        private Ticket(String id, Long memberId, Long trainingClassId, SecurityContext securityContext) {
+            this.id = id;
+            this.memberId = memberId;
+            this.trainingClassId = trainingClassId;
+            this.securityContext = securityContext;
+        }
+
+        private BookingTicketDTO toDto() {
+            BookingTicketDTO dto = new BookingTicketDTO(id, state, trainingClassId, acceptedAt);
+            dto.setBookingId(bookingId);
+            dto.setBookingStatus(bookingStatus);
+            dto.setMessage(message);
+            return dto;
+        }
+    }
+}
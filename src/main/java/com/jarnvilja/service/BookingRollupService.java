@@ -0,0 +1,226 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingDailyRollup;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.BookingDailyRollupRepository;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Keeps {@code booking_daily_rollup} in step with the bookings table: one counter per class, day and status.
+ * Every write path that creates, moves or removes bookings adjusts the affected counters in the caller's
+ * transaction, so the admin dashboard reads rows per day rather than per booking. The table is rebuilt from
+ * the bookings every night, one class at a time with an INSERT ... SELECT under the class's row lock, which
+ * also corrects bookings changed outside the services.
+ */
+@Slf4j
+@Service
+public class BookingRollupService {
+
+    private final BookingDailyRollupRepository rollupRepository;
+    private final BookingRepository bookingRepository;
+    private final TrainingClassRepository trainingClassRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean rebuildOnStartup;
+
+    public BookingRollupService(BookingDailyRollupRepository rollupRepository, BookingRepository bookingRepository,
+                                TrainingClassRepository trainingClassRepository, PlatformTransactionManager transactionManager,
+                                @Value("${app.rollup.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.rollupRepository = rollupRepository;
+        this.bookingRepository = bookingRepository;
+        this.trainingClassRepository = trainingClassRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    record RollupKey(Long trainingClassId, LocalDate date, BookingStatus status) { }
+
+    // Fast ordning, så att samtidiga transaktioner låser raderna i samma ordning
+    private static final Comparator<RollupKey> ROLLUP_ORDER = Comparator.comparing(RollupKey::trainingClassId)
+            .thenComparing(RollupKey::date).thenComparing(RollupKey::status);
+
+    /**
+     * Mirrors a status change of one booking; a null {@code from} is a new booking and a null {@code to} a
+     * removed one.
+     */
+    @Transactional
+    public void recordTransition(Booking booking, BookingStatus from, BookingStatus to) {
+        if (!counts(booking) || from == to) return;
+        Map<RollupKey, Integer> deltas = new TreeMap<>(ROLLUP_ORDER);
+        Long classId = booking.getTrainingClass().getId();
+        if (from != null) deltas.merge(new RollupKey(classId, booking.getBookingDate(), from), -1, Integer::sum);
+        if (to != null) deltas.merge(new RollupKey(classId, booking.getBookingDate(), to), 1, Integer::sum);
+        apply(deltas);
+    }
+
+    /**
+     * Counts newly created bookings in the status they were saved with.
+     */
+    @Transactional
+    public void recordCreated(Collection<Booking> bookings) {
+        Map<RollupKey, Integer> deltas = new TreeMap<>(ROLLUP_ORDER);
+        for (Booking booking : bookings) {
+            if (!counts(booking) || booking.getBookingStatus() == null) continue;
+            deltas.merge(new RollupKey(booking.getTrainingClass().getId(), booking.getBookingDate(),
+                    booking.getBookingStatus()), 1, Integer::sum);
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Moves {@code count} bookings of one session from one status to another, e.g. after promotions from the
+     * waitlist or a bulk cancellation already written to the bookings table.
+     */
+    @Transactional
+    public void recordMoved(SeatLedger.SessionKey session, BookingStatus from, BookingStatus to, int count) {
+        if (count <= 0 || from == to) return;
+        Map<RollupKey, Integer> deltas = new TreeMap<>(ROLLUP_ORDER);
+        deltas.put(new RollupKey(session.trainingClassId(), session.sessionDate(), from), -count);
+        deltas.put(new RollupKey(session.trainingClassId(), session.sessionDate(), to), count);
+        apply(deltas);
+    }
+
+    /**
+     * Moves a class's bookings in the given statuses to {@code to}; call it before the bulk UPDATE.
+     */
+    @Transactional
+    public void recordClassTransition(Long trainingClassId, Collection<BookingStatus> from, BookingStatus to) {
+        apply(moved(bookingRepository.countRollupRowsForClass(trainingClassId, from), to));
+    }
+
+    /**
+     * Moves the due holds among {@code bookingIds} from PENDING to EXPIRED; call it before
+     * {@link BookingRepository#expirePending}, with the same threshold.
+     */
+    @Transactional
+    public void recordExpiring(Collection<Long> bookingIds, LocalDateTime threshold) {
+        if (bookingIds.isEmpty()) return;
+        apply(moved(bookingRepository.countRollupRowsDueToExpire(bookingIds, threshold), BookingStatus.EXPIRED));
+    }
+
+    /**
+     * Removes the bookings {@link BookingRepository#deleteExpired} is about to delete.
+     */
+    @Transactional
+    public void recordExpiredDeleted(LocalDateTime threshold) {
+        apply(moved(bookingRepository.countRollupRowsExpiredBefore(threshold), null));
+    }
+
+    /**
+     * Drops every counter of a class whose bookings are all being deleted.
+     */
+    @Transactional
+    public void forgetClass(Long trainingClassId) {
+        rollupRepository.deleteForClass(trainingClassId);
+    }
+
+    /**
+     * Recomputes the counters of the given days, both inclusive, from the bookings table, one class per
+     * transaction.
+     */
+    public int backfill(LocalDate from, LocalDate to) {
+        int rows = 0;
+        for (Long trainingClassId : trainingClassRepository.findAllIds()) {
+            rows += transactionTemplate.execute(status -> backfillClass(trainingClassId, from, to));
+        }
+        log.info("Booking rollup backfilled for {} to {} into {} rows", from, to, rows);
+        return rows;
+    }
+
+    /**
+     * Recomputes one class's counters of the given days. The class's row lock is the one {@link #openRow}
+     * takes, so no first booking of a day inserts a row while the class's rows are replaced, and counters
+     * adjusted meanwhile wait on the deleted rows.
+     */
+    @Transactional
+    public int backfillClass(Long trainingClassId, LocalDate from, LocalDate to) {
+        if (trainingClassRepository.findByIdForUpdate(trainingClassId).isEmpty()) return 0;
+        return rollupRepository.backfillClass(trainingClassId, from, to);
+    }
+
+    /**
+     * Recomputes every counter from the whole booking history, one class per transaction under its row lock.
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void rebuildAll() {
+        int rows = 0;
+        for (Long trainingClassId : trainingClassRepository.findAllIds()) {
+            rows += transactionTemplate.execute(status -> trainingClassRepository.findByIdForUpdate(trainingClassId)
+                    .map(tc -> rollupRepository.backfillClass(trainingClassId))
+                    .orElse(0));
+        }
+        log.info("Booking rollup rebuilt into {} rows", rows);
+    }
+
+    // Av som standard: tabellen hålls i takt av skrivvägarna, och flera noder startar samtidigt
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (rebuildOnStartup) rebuildAll();
+    }
+
+    // Kategorin är kopierad till raderna; efter commit, så att ändringen av passet syns
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onTrainingClassChanged(TrainingClassChangedEvent event) {
+        trainingClassRepository.findById(event.trainingClassId())
+                .ifPresent(tc -> rollupRepository.updateCategory(tc.getId(), tc.getCategory()));
+    }
+
+    private void apply(Map<RollupKey, Integer> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta == 0) return;
+            // Saknas raden räcker det att skapa den vid ökning; en minskning av en saknad rad rättas vid nästa ombyggnad
+            if (rollupRepository.adjust(key.trainingClassId(), key.date(), key.status(), delta) == 0 && delta > 0) {
+                openRow(key, delta);
+            }
+        });
+    }
+
+    /**
+     * Creates a missing counter. Callers serialize on a row lock of the class and re-probe with the UPDATE
+     * once they hold it, so two first bookings of the same day never insert the same row twice.
+     */
+    private void openRow(RollupKey key, int delta) {
+        Optional<TrainingClass> trainingClass = trainingClassRepository.findByIdForUpdate(key.trainingClassId());
+        if (trainingClass.isEmpty()) return;
+        if (rollupRepository.adjust(key.trainingClassId(), key.date(), key.status(), delta) == 1) return;
+        rollupRepository.saveAndFlush(new BookingDailyRollup(key.date(), trainingClass.get(), key.status(), delta));
+    }
+
+    // Rader (pass, dag, status, antal) lämnar sin status; en null-status betyder att bokningarna tas bort
+    private static Map<RollupKey, Integer> moved(List<Object[]> rows, BookingStatus to) {
+        Map<RollupKey, Integer> deltas = new TreeMap<>(ROLLUP_ORDER);
+        for (Object[] row : rows) {
+            Long classId = (Long) row[0];
+            LocalDate date = (LocalDate) row[1];
+            BookingStatus from = (BookingStatus) row[2];
+            int count = ((Number) row[3]).intValue();
+            if (from == to) continue;
+            deltas.merge(new RollupKey(classId, date, from), -count, Integer::sum);
+            if (to != null) deltas.merge(new RollupKey(classId, date, to), count, Integer::sum);
+        }
+        return deltas;
+    }
+
+    private static boolean counts(Booking booking) {
+        return booking != null && booking.getTrainingClass() != null && booking.getTrainingClass().getId() != null
+                && booking.getBookingDate() != null;
+    }
+}
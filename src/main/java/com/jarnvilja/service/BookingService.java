@@ -1,5 +1,6 @@
 package com.jarnvilja.service;
 
+import com.jarnvilja.dto.BatchBookingResultDTO;
 import com.jarnvilja.dto.BookingStatsDTO;
 import com.jarnvilja.model.Booking;
 import com.jarnvilja.model.BookingStatus;
@@ -20,15 +21,30 @@ import java.util.stream.Collectors;
 
 @Service
 public class BookingService {
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final TrainingClassRepository trainingClassRepository;
-    public BookingService(BookingRepository bookingRepository, UserRepository userRepository, TrainingClassRepository trainingClassRepository, EmailService emailService) {
+    private final SeatLedger seatLedger;
+    private final WaitlistService waitlistService;
+    private final MailTemplateService mailTemplateService;
+    private final MemberStatsService memberStatsService;
+    private final BookingRollupService bookingRollupService;
+    private final PendingExpiryService pendingExpiryService;
+    public BookingService(BookingRepository bookingRepository, UserRepository userRepository, TrainingClassRepository trainingClassRepository,
+                          EmailOutboxService emailOutboxService, SeatLedger seatLedger, WaitlistService waitlistService,
+                          MailTemplateService mailTemplateService, MemberStatsService memberStatsService,
+                          BookingRollupService bookingRollupService, PendingExpiryService pendingExpiryService) {
         this.bookingRepository = bookingRepository;
         this.userRepository = userRepository;
         this.trainingClassRepository = trainingClassRepository;
-        this.emailService = emailService;
+        this.emailOutboxService = emailOutboxService;
+        this.seatLedger = seatLedger;
+        this.waitlistService = waitlistService;
+        this.mailTemplateService = mailTemplateService;
+        this.memberStatsService = memberStatsService;
+        this.bookingRollupService = bookingRollupService;
+        this.pendingExpiryService = pendingExpiryService;
     }
 
     public BookingStatsDTO getBookingStats() {
@@ -39,7 +55,11 @@ public class BookingService {
         long cancelledBookings = allBookings.stream().filter(booking -> booking.getBookingStatus() == BookingStatus.CANCELLED).count();
         long pendingBookings = allBookings.stream().filter(booking -> booking.getBookingStatus() == BookingStatus.PENDING).count();
         long cancelledBookingsByMember = allBookings.stream().filter(booking -> booking.getBookingStatus() == BookingStatus.CANCELLED && booking.isCancelledByMember()).count();
-        long expiredBookings = allBookings.stream().filter(Booking::isExpired).count();
+        // Utgångna samt PENDING vars hålltid (app.booking.expiration-minutes) löpt ut men ännu inte flippats
+        LocalDateTime threshold = pendingExpiryService.expiryThreshold();
+        long expiredBookings = allBookings.stream().filter(booking -> booking.getBookingStatus() == BookingStatus.EXPIRED
+                || (booking.getBookingStatus() == BookingStatus.PENDING && booking.getBookingTimeStamp() != null
+                && booking.getBookingTimeStamp().isBefore(threshold))).count();
         String mostPopularClass = getMostPopularClass(allBookings); // Implementera logik för att hämta den mest populära klassen
 
         return new BookingStatsDTO(totalBookings, confirmedBookings, cancelledBookings, pendingBookings, cancelledBookingsByMember, expiredBookings, mostPopularClass);
@@ -50,6 +70,7 @@ public class BookingService {
     /**
      * Creates a booking for the given member and class. Validates: class not started,
      * member not already booked for today, and enforces max capacity (waitlist if full).
+     * Capacity is decided by the {@link SeatLedger} rather than a COUNT query.
      */
     @Transactional
     public Booking createBooking(Long userId, Long trainingClassId) {
@@ -79,11 +100,8 @@ public class BookingService {
             throw new RuntimeException("Du har redan bokat detta pass idag.");
         }
 
-        List<BookingStatus> countedStatuses = Arrays.asList(BookingStatus.CONFIRMED, BookingStatus.WAITLISTED);
-        long currentCount = bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
-                trainingClassId, today, countedStatuses);
         int maxCapacity = trainingClass.getMaxCapacity() > 0 ? trainingClass.getMaxCapacity() : 20;
-        BookingStatus status = (currentCount >= maxCapacity) ? BookingStatus.WAITLISTED : BookingStatus.CONFIRMED;
+        BookingStatus status = seatLedger.admit(trainingClassId, today, maxCapacity);
 
         Booking booking = new Booking();
         booking.setMember(user);
@@ -92,7 +110,86 @@ public class BookingService {
         booking.setBookingTimeStamp(LocalDateTime.now());
         booking.setBookingDate(today);
 
-        return bookingRepository.save(booking);
+        Booking saved = bookingRepository.save(booking);
+        bookingRollupService.recordCreated(List.of(saved));
+        if (status == BookingStatus.WAITLISTED) {
+            waitlistService.enqueue(saved);
+        } else {
+            memberStatsService.recordCreated(List.of(saved));
+        }
+        return saved;
+    }
+
+    /**
+     * Books several classes for one member in a single transaction. The member is fetched once, the
+     * classes with one findAllById, duplicates with one query, and the new rows are inserted as a JDBC
+     * batch. Each class gets its own CONFIRMED/WAITLISTED/REJECTED result, in request order.
+     */
+    @Transactional
+    public List<BatchBookingResultDTO> createBookings(Long userId, List<Long> trainingClassIds) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        LocalDate today = LocalDate.now();
+        LocalTime now = LocalTime.now();
+        // Sorterad ordning så att samtidiga batcher låser sessionsraderna i samma ordning
+        Set<Long> classIds = new TreeSet<>(trainingClassIds);
+        Map<Long, TrainingClass> classes = trainingClassRepository.findAllById(classIds).stream()
+                .collect(Collectors.toMap(TrainingClass::getId, tc -> tc));
+        Set<Long> alreadyBooked = bookingRepository.findBookingIdsByClass(userId, today, classIds).stream()
+                .map(row -> (Long) row[0])
+                .collect(Collectors.toSet());
+
+        Map<Long, BatchBookingResultDTO> results = new HashMap<>();
+        List<Booking> newBookings = new ArrayList<>();
+        for (Long classId : classIds) {
+            TrainingClass trainingClass = classes.get(classId);
+            String rejection = null;
+            if (trainingClass == null) {
+                rejection = "Training class not found";
+            } else if (!trainingClass.getTrainingDay().equals(today.getDayOfWeek())) {
+                rejection = "Passet är inte idag.";
+            } else if (trainingClass.getStartTime().isBefore(now)) {
+                rejection = "Passet har redan startat.";
+            } else if (alreadyBooked.contains(classId)) {
+                rejection = "Du har redan bokat detta pass idag.";
+            }
+            if (rejection != null) {
+                results.put(classId, BatchBookingResultDTO.rejected(classId, rejection));
+                continue;
+            }
+
+            int maxCapacity = trainingClass.getMaxCapacity() > 0 ? trainingClass.getMaxCapacity() : 20;
+            BookingStatus status = seatLedger.admit(classId, today, maxCapacity);
+
+            Booking booking = new Booking();
+            booking.setMember(user);
+            booking.setTrainingClass(trainingClass);
+            booking.setBookingStatus(status);
+            booking.setBookingTimeStamp(LocalDateTime.now());
+            booking.setBookingDate(today);
+            newBookings.add(booking);
+            results.put(classId, BatchBookingResultDTO.admitted(classId, status));
+        }
+
+        if (!newBookings.isEmpty()) {
+            bookingRepository.insertAll(newBookings);
+            memberStatsService.recordCreated(newBookings);
+            bookingRollupService.recordCreated(newBookings);
+            List<Long> insertedIds = newBookings.stream().map(b -> b.getTrainingClass().getId()).toList();
+            for (Object[] row : bookingRepository.findBookingIdsByClass(userId, today, insertedIds)) {
+                results.get((Long) row[0]).setBookingId((Long) row[1]);
+            }
+            for (Booking booking : newBookings) {
+                BatchBookingResultDTO result = results.get(booking.getTrainingClass().getId());
+                if (booking.getBookingStatus() == BookingStatus.WAITLISTED && result.getBookingId() != null) {
+                    booking.setId(result.getBookingId());
+                    waitlistService.enqueue(booking);
+                }
+            }
+        }
+
+        return new LinkedHashSet<>(trainingClassIds).stream().map(results::get).toList();
     }
 
     @Transactional
@@ -101,6 +198,7 @@ public class BookingService {
 
         if (bookingOptional.isPresent()) {
             Booking booking = bookingOptional.get();
+            recordTransition(booking, BookingStatus.CANCELLED);
             booking.setBookingStatus(BookingStatus.CANCELLED);
             return bookingRepository.save(booking); // Returnera den avbokade bokningen
         } else {
@@ -149,12 +247,47 @@ public class BookingService {
     }
 
     /**
-     * Count of CONFIRMED + WAITLISTED bookings for the given class on the given date (for capacity display).
+     * Seats taken (CONFIRMED bookings) for the given class on the given date, read from its session row.
      */
     public int getConfirmedCountForClassOnDate(Long trainingClassId, LocalDate date) {
-        List<BookingStatus> statuses = Arrays.asList(BookingStatus.CONFIRMED, BookingStatus.WAITLISTED);
-        return (int) bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
-                trainingClassId, date, statuses);
+        return seatLedger.getSeatsTaken(trainingClassId, date);
+    }
+
+    /**
+     * Seats taken per class id on the given date (for capacity display).
+     */
+    public Map<Long, Integer> getSeatsTakenOn(LocalDate date) {
+        return seatLedger.getSeatsTakenOn(date);
+    }
+
+    /**
+     * Position of a waitlisted booking in its session's queue (1 = next in line).
+     */
+    public OptionalInt getWaitlistPosition(Long bookingId) {
+        return waitlistService.getPosition(bookingId);
+    }
+
+    /**
+     * Like {@link #getWaitlistPosition(Long)}, but empty unless the booking belongs to the given member.
+     */
+    public OptionalInt getWaitlistPosition(Long bookingId, Long memberId) {
+        if (memberId == null || !bookingRepository.existsByIdAndMemberId(bookingId, memberId)) {
+            return OptionalInt.empty();
+        }
+        return waitlistService.getPosition(bookingId);
+    }
+
+    /**
+     * Queue positions of the waitlisted bookings among the given ones, keyed by booking id.
+     */
+    public Map<Long, Integer> getWaitlistPositions(List<Booking> bookings) {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (Booking booking : bookings) {
+            if (booking.getBookingStatus() == BookingStatus.WAITLISTED) {
+                waitlistService.getPosition(booking.getId()).ifPresent(p -> positions.put(booking.getId(), p));
+            }
+        }
+        return positions;
     }
 
     public int getTotalBookingsForMember(Long memberId) {
@@ -189,10 +322,22 @@ public class BookingService {
         }
 
         Booking existingBooking = bookingOptional.get();
-        existingBooking.setBookingStatus(updatedBooking.getBookingStatus());
+        BookingStatus oldStatus = existingBooking.getBookingStatus();
+        BookingStatus newStatus = updatedBooking.getBookingStatus();
+        boolean sameSession = Objects.equals(classIdOf(existingBooking), classIdOf(updatedBooking));
+        if (!sameSession) {
+            // Flyttad till ett annat pass: lämna den gamla sessionen innan passet byts, så att dess kö flyttas upp
+            recordTransition(existingBooking, null);
+        }
+        existingBooking.setBookingStatus(newStatus);
         existingBooking.setBookingTimeStamp(updatedBooking.getBookingTimeStamp());
         existingBooking.setMember(updatedBooking.getMember());
         existingBooking.setTrainingClass(updatedBooking.getTrainingClass());
+        if (!sameSession) {
+            waitlistService.transition(existingBooking, null, newStatus, false);
+        } else if (oldStatus != newStatus) {
+            waitlistService.transition(existingBooking, oldStatus, newStatus, true);
+        }
 
         return bookingRepository.save(existingBooking);
     }
@@ -204,13 +349,17 @@ public class BookingService {
             throw new RuntimeException("Booking with ID " + bookingId + " not found");
         }
         Booking booking = bookingOptional.get();
+        recordTransition(booking, BookingStatus.CONFIRMED);
         booking.setBookingStatus(BookingStatus.CONFIRMED);
         return bookingRepository.save(booking);
     }
 
     @Transactional
     public void deleteBookingsByClassId(Long trainingClassId) {
+        memberStatsService.releaseClass(trainingClassId);
+        bookingRollupService.forgetClass(trainingClassId);
         bookingRepository.deleteByTrainingClassId(trainingClassId);
+        seatLedger.clearClass(trainingClassId);
     }
 
     // Tillgänglighet:
@@ -225,11 +374,8 @@ public class BookingService {
         Optional<User> memberOptional = userRepository.findById(booking.getMember().getId());
         if (memberOptional.isPresent()) {
             User member = memberOptional.get();
-            String email = member.getEmail();
-            String subject = "Bokningsbekräftelse";
-            String message = "Din bokning för " + booking.getTrainingClass().getTitle() + " är bekräftad.";
-
-            emailService.sendEmail(email, subject, message);
+            emailOutboxService.enqueue(member.getEmail(), mailTemplateService.render(
+                    new MailTemplateService.BookingReceipt(booking.getTrainingClass().getTitle())));
         }
     }
 
@@ -241,12 +387,32 @@ public class BookingService {
     }
 
     @Transactional
-    public void cancelAllBookingsForMember(Long memberId) {
-        List<Booking> bookings = bookingRepository.findByMemberId(memberId);
-        for (Booking booking : bookings) {
-            booking.setBookingStatus(BookingStatus.CANCELLED);
-        }
-        bookingRepository.saveAll(bookings);
+    public int cancelAllBookingsForMember(Long memberId) {
+        // Läs bara det räknarna och väntelistorna behöver, avboka sedan allt i en UPDATE-sats
+        List<WaitlistService.Claim> claims = bookingRepository.findClaimsForMember(memberId, BookingStatus.ACTIVE).stream()
+                .map(row -> new WaitlistService.Claim((Long) row[0],
+                        new SeatLedger.SessionKey((Long) row[1], (LocalDate) row[2]),
+                        (BookingStatus) row[3], (Integer) row[4]))
+                .toList();
+        if (claims.isEmpty()) return 0;
+
+        int cancelled = bookingRepository.transitionForMember(memberId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        waitlistService.releaseAll(claims);
+        return cancelled;
+    }
+
+    /**
+     * Mirrors a status change of {@code booking} (current status -> {@code newStatus}) in the seat ledger and
+     * waitlist; a seat given up by a CONFIRMED booking goes to the head of the waitlist.
+     * Must be called before the new status is set on the entity.
+     */
+    public void recordTransition(Booking booking, BookingStatus newStatus) {
+        if (booking == null || booking.getTrainingClass() == null) return;
+        waitlistService.transition(booking, newStatus);
+    }
+
+    private static Long classIdOf(Booking booking) {
+        return booking.getTrainingClass() != null ? booking.getTrainingClass().getId() : null;
     }
 
     private String getMostPopularClass(List<Booking> bookings) {
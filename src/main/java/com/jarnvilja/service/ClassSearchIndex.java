@@ -0,0 +1,269 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.TrainingClassRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index over the training classes' title, description, category and trainer name,
+ * so class search never runs a {@code LIKE '%...%'} against the database. Text is folded to lower case
+ * without diacritics (å, ä → a, ö → o) and split into words. A query word matches a class when it equals,
+ * starts or sits inside one of the class's words, or is a word of four letters or more within one or two
+ * typos of one; every query word has to match. The index is built at startup, updated one class at a
+ * time on {@link TrainingClassChangedEvent} and rebuilt periodically to pick up changes made on other nodes.
+ */
+@Slf4j
+@Service
+public class ClassSearchIndex {
+
+    // Delar av ord kortare än så här indexeras inte, så "ox" träffar inte "boxning"
+    static final int MIN_INFIX_LENGTH = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Locale SWEDISH = Locale.forLanguageTag("sv-SE");
+
+    private static final int EXACT = 4;
+    private static final int PREFIX = 3;
+    private static final int INFIX = 2;
+    private static final int FUZZY = 1;
+
+    private final TrainingClassRepository trainingClassRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Set<String>> wordsByClass = new HashMap<>();
+    // Hela ord och orddelar från position 1, var för sig sorterade för prefixsökning
+    private final NavigableMap<String, Set<Long>> words = new TreeMap<>();
+    private final NavigableMap<String, Set<Long>> infixes = new TreeMap<>();
+    private volatile boolean built;
+
+    public ClassSearchIndex(TrainingClassRepository trainingClassRepository) {
+        this.trainingClassRepository = trainingClassRepository;
+    }
+
+    /**
+     * Ids of the classes matching every word of the query, best match first and then by id. A blank query
+     * matches every class.
+     */
+    public List<Long> search(String query) {
+        if (!built) ensureBuilt();
+        List<String> terms = tokenize(query);
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty()) {
+                List<Long> all = new ArrayList<>(wordsByClass.keySet());
+                Collections.sort(all);
+                return all;
+            }
+            Map<Long, Integer> scores = null;
+            for (String term : terms) {
+                Map<Long, Integer> matches = match(term);
+                if (scores == null) {
+                    scores = matches;
+                } else {
+                    scores.keySet().retainAll(matches.keySet());
+                    scores.replaceAll((id, score) -> score + matches.get(id));
+                }
+                if (scores.isEmpty()) return List.of();
+            }
+            List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            return ranked.stream().map(Map.Entry::getKey).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The matching classes in the order of {@link #search}, loaded by id in one query.
+     */
+    public List<TrainingClass> findClasses(String query) {
+        List<Long> ids = search(query);
+        if (ids.isEmpty()) return List.of();
+        Map<Long, TrainingClass> byId = new HashMap<>();
+        trainingClassRepository.findAllById(ids).forEach(tc -> byId.put(tc.getId(), tc));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Rebuilds the index from the table at startup and then every {@code app.search.refresh-ms}, since the
+     * change events only reach the node that made the change.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.search.refresh-ms:60000}", initialDelayString = "${app.search.refresh-ms:60000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    // Efter commit, så att passet läses som det sparades; ett borttaget pass tas ur indexet
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onTrainingClassChanged(TrainingClassChangedEvent event) {
+        if (!built) {
+            rebuild();
+            return;
+        }
+        Optional<TrainingClass> trainingClass = event.trainingClassId() != null
+                ? trainingClassRepository.findByIdWithTrainer(event.trainingClassId()) : Optional.empty();
+        lock.writeLock().lock();
+        try {
+            remove(event.trainingClassId());
+            trainingClass.ifPresent(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void ensureBuilt() {
+        if (!built) rebuild();
+    }
+
+    // Skrivningar går en i taget, så att en ombyggnad inte skriver över en senare ändring av ett pass
+    synchronized void rebuild() {
+        List<TrainingClass> classes = trainingClassRepository.findScheduleWithTrainer();
+        lock.writeLock().lock();
+        try {
+            wordsByClass.clear();
+            words.clear();
+            infixes.clear();
+            classes.forEach(this::add);
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Class search index built for {} classes", classes.size());
+    }
+
+    private void add(TrainingClass tc) {
+        if (tc.getId() == null) return;
+        Set<String> classWords = new HashSet<>();
+        classWords.addAll(tokenize(tc.getTitle()));
+        classWords.addAll(tokenize(tc.getDescription()));
+        if (tc.getCategory() != null) classWords.addAll(tokenize(tc.getCategory().name()));
+        User trainer = tc.getTrainer();
+        if (trainer != null) {
+            classWords.addAll(tokenize(trainer.getUsername()));
+            classWords.addAll(tokenize(trainer.getFirstName()));
+            classWords.addAll(tokenize(trainer.getLastName()));
+        }
+        wordsByClass.put(tc.getId(), classWords);
+        for (String word : classWords) {
+            words.computeIfAbsent(word, w -> new HashSet<>()).add(tc.getId());
+            for (String infix : infixesOf(word)) {
+                infixes.computeIfAbsent(infix, w -> new HashSet<>()).add(tc.getId());
+            }
+        }
+    }
+
+    private void remove(Long id) {
+        Set<String> classWords = wordsByClass.remove(id);
+        if (classWords == null) return;
+        for (String word : classWords) {
+            unlink(words, word, id);
+            for (String infix : infixesOf(word)) {
+                unlink(infixes, infix, id);
+            }
+        }
+    }
+
+    private static void unlink(Map<String, Set<Long>> postings, String key, Long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) postings.remove(key);
+    }
+
+    // Bästa träffen per pass för ett sökord: hela ordet, början av ordet, inuti ordet eller med stavfel
+    private Map<Long, Integer> match(String term) {
+        Map<Long, Integer> scores = new HashMap<>();
+        addScores(scores, words.get(term), EXACT);
+        for (Set<Long> ids : startingWith(words, term).values()) addScores(scores, ids, PREFIX);
+        if (term.length() >= MIN_INFIX_LENGTH) {
+            for (Set<Long> ids : startingWith(infixes, term).values()) addScores(scores, ids, INFIX);
+        }
+        int maxEdits = maxEdits(term);
+        if (maxEdits > 0) {
+            words.forEach((word, ids) -> {
+                if (Math.abs(word.length() - term.length()) <= maxEdits && withinEdits(term, word, maxEdits)) {
+                    addScores(scores, ids, FUZZY);
+                }
+            });
+        }
+        return scores;
+    }
+
+    private static void addScores(Map<Long, Integer> scores, Set<Long> ids, int score) {
+        if (ids == null) return;
+        for (Long id : ids) scores.merge(id, score, Math::max);
+    }
+
+    private static SortedMap<String, Set<Long>> startingWith(NavigableMap<String, Set<Long>> postings, String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static List<String> infixesOf(String word) {
+        List<String> result = new ArrayList<>();
+        for (int i = 1; i + MIN_INFIX_LENGTH <= word.length(); i++) {
+            result.add(word.substring(i));
+        }
+        return result;
+    }
+
+    static int maxEdits(String term) {
+        if (term.length() >= 8) return 2;
+        if (term.length() >= 4) return 1;
+        return 0;
+    }
+
+    /**
+     * Whether {@code a} turns into {@code b} with at most {@code max} insertions, deletions, substitutions
+     * or swaps of adjacent letters.
+     */
+    static boolean withinEdits(String a, String b, int max) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, d[i][j]);
+            }
+            // Hela raden är redan över gränsen, så avståndet kan inte bli mindre längre fram
+            if (rowMin > max) return false;
+        }
+        return d[a.length()][b.length()] <= max;
+    }
+
+    /**
+     * Lower case without diacritics, so "Göran" and "goran" fold to the same word.
+     */
+    static String fold(String text) {
+        String lower = text.toLowerCase(SWEDISH);
+        return DIACRITICS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(fold(text))) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+}
@@ -2,28 +2,49 @@ package com.jarnvilja.service;
 
 import com.jarnvilja.model.EditableContent;
 import com.jarnvilja.repository.EditableContentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Editable site text, served from an immutable in-memory snapshot of every key so page renders never
+ * query {@code editable_content}. The snapshot is loaded at startup, replaced after each committed save,
+ * and re-read periodically to pick up saves made on other nodes. Every replacement bumps the version.
+ */
+@Slf4j
 @Service
 public class ContentService {
 
     private final EditableContentRepository repository;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
 
     public ContentService(EditableContentRepository repository) {
         this.repository = repository;
     }
 
+    /**
+     * All content values at one point in time.
+     */
+    public record Snapshot(long version, Map<String, String> values) { }
+
     /**
      * Returns the value for the given key, or null if not found.
      */
     public String get(String key) {
-        return repository.findByKey(key)
-                .map(EditableContent::getValue)
-                .orElse(null);
+        return current().values().get(key);
     }
 
     /**
@@ -34,16 +55,48 @@ public class ContentService {
         return value != null && !value.isBlank() ? value : defaultValue;
     }
 
+    /**
+     * Version of the current snapshot; changes whenever any value does.
+     */
+    public long getVersion() {
+        return current().version();
+    }
+
     /**
      * Saves or updates content for the given key.
      */
     @Transactional
-    public EditableContent save(String key, String value) {
-        EditableContent content = repository.findByKey(key)
-                .orElse(new EditableContent(key, value));
-        content.setValue(value);
-        content.setLastModified(LocalDateTime.now());
-        return repository.save(content);
+    public void save(String key, String value) {
+        saveAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * Saves several keys in one batched upsert. Only keys whose value differs from the snapshot are
+     * written; the snapshot is replaced once the transaction commits. Returns the number of keys written.
+     */
+    @Transactional
+    public int saveAll(Map<String, String> values) {
+        Map<String, String> current = current().values();
+        Map<String, String> changed = new HashMap<>();
+        values.forEach((key, value) -> {
+            if (!current.containsKey(key) || !Objects.equals(current.get(key), value)) {
+                changed.put(key, value);
+            }
+        });
+        if (changed.isEmpty()) return 0;
+
+        repository.upsertAll(changed, LocalDateTime.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(changed);
+                }
+            });
+        } else {
+            publish(changed);
+        }
+        return changed.size();
     }
 
     /**
@@ -52,4 +105,40 @@ public class ContentService {
     public List<EditableContent> findAll() {
         return repository.findAll();
     }
+
+    /**
+     * Re-reads every key from the table. A save that lands while the rows are being read wins, so the
+     * reload never puts back an older value.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.content.refresh-ms:60000}", initialDelayString = "${app.content.refresh-ms:60000}")
+    public void reload() {
+        Snapshot before = snapshot.get();
+        Map<String, String> values = new HashMap<>();
+        for (EditableContent content : repository.findAll()) {
+            values.put(content.getKey(), content.getValue());
+        }
+        if (before != null && before.values().equals(values)) return;
+        Snapshot loaded = new Snapshot(before != null ? before.version() + 1 : 1, Collections.unmodifiableMap(values));
+        if (snapshot.compareAndSet(before, loaded)) {
+            log.debug("Loaded {} content keys, version {}", values.size(), loaded.version());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            reload();
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+    private void publish(Map<String, String> changed) {
+        snapshot.updateAndGet(old -> {
+            Map<String, String> values = new HashMap<>(old != null ? old.values() : Map.of());
+            values.putAll(changed);
+            return new Snapshot(old != null ? old.version() + 1 : 1, Collections.unmodifiableMap(values));
+        });
+    }
 }
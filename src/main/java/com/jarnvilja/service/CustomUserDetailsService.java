@@ -3,16 +3,11 @@ package com.jarnvilja.service;
 import com.jarnvilja.model.User;
 import com.jarnvilja.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-import java.util.List;
-
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
@@ -24,13 +19,8 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User  not found"));
 
-        // Hämta rollen som en GrantedAuthority
-        GrantedAuthority authority = new SimpleGrantedAuthority(user.getRole().name());
-
-        // Skapa en lista med en enda roll
-        List<GrantedAuthority> authorities = Collections.singletonList(authority);
-
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), authorities);
+        // Id, roll och demo-flagga följer med in i sessionen, så de inte behöver slås upp igen per anrop
+        return new AuthenticatedUser(user);
     }
 
 }
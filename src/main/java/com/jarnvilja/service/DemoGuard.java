@@ -18,6 +18,10 @@ public class DemoGuard {
     public boolean isDemoUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || auth.getName() == null) return false;
+        // Demo-flaggan lästes vid inloggningen; uppslag bara för principaler som inte kommer därifrån
+        if (auth.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.isDemo();
+        }
         User user = userRepository.findByUsername(auth.getName()).orElse(null);
         return user != null && user.isDemo();
     }
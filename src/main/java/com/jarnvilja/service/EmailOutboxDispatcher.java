@@ -0,0 +1,182 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.EmailOutbox;
+import com.jarnvilja.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the email outbox in the background. Due rows are claimed in batches with a conditional UPDATE
+ * (so several nodes never pick the same row), sent outside any transaction, then marked SENT. A failed
+ * send is retried with exponential backoff until {@code app.mail.outbox.max-attempts}, after which the
+ * row is parked as FAILED. Delivery is at-least-once: a node that dies mid-batch leaves its claim to
+ * expire and the rows are sent again.
+ */
+@Slf4j
+@Service
+public class EmailOutboxDispatcher {
+
+    // Hur länge en tagen rad är reserverad innan en annan nod får ta den
+    private static final Duration CLAIM_LEASE = Duration.ofMinutes(2);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final Duration SENT_RETENTION = Duration.ofDays(7);
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong oldestPendingSeconds = new AtomicLong();
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final Timer sendTimer;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository, EmailService emailService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.mail.outbox.batch-size:50}") int batchSize,
+                                 @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${app.mail.outbox.backoff-seconds:30}") long backoffSeconds) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = Duration.ofSeconds(backoffSeconds);
+
+        Gauge.builder("email.outbox.backlog", backlog, AtomicLong::get)
+                .description("Emails waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.oldest.age", oldestPendingSeconds, AtomicLong::get)
+                .description("Age in seconds of the oldest email waiting in the outbox")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("email.outbox.sent")
+                .description("Emails delivered from the outbox")
+                .register(meterRegistry);
+        this.retriedCounter = Counter.builder("email.outbox.retried")
+                .description("Failed sends scheduled for another attempt")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("email.outbox.failed")
+                .description("Emails given up after the last attempt")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("email.outbox.send")
+                .description("Time spent handing one batch of emails to the SMTP server")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends everything that is due, one batch at a time, and returns how many emails were delivered.
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:5000}")
+    public int dispatch() {
+        int delivered = 0;
+        List<EmailOutbox> batch;
+        do {
+            batch = claimBatch();
+            delivered += deliver(batch);
+        } while (batch.size() == batchSize);
+        refreshBacklog();
+        return delivered;
+    }
+
+    /**
+     * Removes sent rows after a week.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeSent() {
+        int removed = emailOutboxRepository.deleteSentBefore(LocalDateTime.now().minus(SENT_RETENTION));
+        log.debug("Purged {} sent emails from the outbox", removed);
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    private List<EmailOutbox> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = emailOutboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) return List.of();
+        String token = UUID.randomUUID().toString();
+        emailOutboxRepository.claim(dueIds, token, now, now.plus(CLAIM_LEASE));
+        return emailOutboxRepository.findByClaimToken(token);
+    }
+
+    // Hela batchen lämnas till transportpoolen, som skickar den över en och samma anslutning
+    private int deliver(List<EmailOutbox> batch) {
+        if (batch.isEmpty()) return 0;
+        List<EmailService.Email> emails = batch.stream()
+                .map(e -> new EmailService.Email(e.getRecipient(), e.getSubject(), e.getBody(), e.getHtmlBody()))
+                .toList();
+        long start = System.nanoTime();
+        List<RuntimeException> results;
+        try {
+            results = emailService.sendAll(emails);
+        } catch (RuntimeException e) {
+            results = Collections.nCopies(batch.size(), e);
+        }
+        sendTimer.record(Duration.ofNanos(System.nanoTime() - start));
+
+        List<Long> sentIds = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) == null) {
+                sentIds.add(batch.get(i).getId());
+            } else {
+                handleFailure(batch.get(i), results.get(i));
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            emailOutboxRepository.markSent(sentIds, LocalDateTime.now());
+            sentCounter.increment(sentIds.size());
+        }
+        return sentIds.size();
+    }
+
+    // attempts räknades upp när raden togs, så den speglar redan det här försöket
+    private void handleFailure(EmailOutbox email, RuntimeException e) {
+        String error = truncate(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        if (email.getAttempts() >= maxAttempts) {
+            log.warn("Giving up on email {} to {} after {} attempts: {}", email.getId(), email.getRecipient(),
+                    email.getAttempts(), error);
+            emailOutboxRepository.markFailed(email.getId(), error);
+            failedCounter.increment();
+        } else {
+            LocalDateTime next = LocalDateTime.now().plus(backoff(email.getAttempts()));
+            log.debug("Email {} failed (attempt {}), retrying at {}: {}", email.getId(), email.getAttempts(), next, error);
+            emailOutboxRepository.scheduleRetry(email.getId(), next, error);
+            retriedCounter.increment();
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private void refreshBacklog() {
+        backlog.set(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING));
+        LocalDateTime oldest = emailOutboxRepository.findOldestPendingCreatedAt();
+        oldestPendingSeconds.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,45 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.EmailOutbox;
+import com.jarnvilja.repository.EmailOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Queues outgoing email in the {@code email_outbox} table. Joins the caller's transaction, so the mail
+ * is only sent if the booking change behind it commits; {@link EmailOutboxDispatcher} does the sending.
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+    }
+
+    @Transactional
+    public EmailOutbox enqueue(String to, String subject, String body) {
+        return enqueue(new EmailOutbox(to, subject, body));
+    }
+
+    /**
+     * Queues a rendered template, keeping both the plain-text and the HTML body.
+     */
+    @Transactional
+    public EmailOutbox enqueue(String to, MailTemplateService.Rendered mail) {
+        return enqueue(new EmailOutbox(to, mail.subject(), mail.text(), mail.html()));
+    }
+
+    private EmailOutbox enqueue(EmailOutbox email) {
+        String to = email.getRecipient();
+        if (to == null || to.isBlank()) {
+            // Saknad adress ska inte rulla tillbaka bokningen
+            log.warn("Skipping email '{}' without recipient", email.getSubject());
+            return null;
+        }
+        return emailOutboxRepository.save(email);
+    }
+}
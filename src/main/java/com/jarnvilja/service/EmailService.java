@@ -6,25 +6,76 @@ import org.springframework.stereotype.Service;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class EmailService {
 
     private final JavaMailSender mailSender;
+    private final MailTransportPool transportPool;
 
-    public EmailService(JavaMailSender mailSender) {
+    public EmailService(JavaMailSender mailSender, MailTransportPool transportPool) {
         this.mailSender = mailSender;
+        this.transportPool = transportPool;
+    }
+
+    /**
+     * One outgoing email. {@code html} is optional; without it the message is sent as plain text.
+     */
+    public record Email(String to, String subject, String text, String html) {
+
+        public Email(String to, String subject, String text) {
+            this(to, subject, text, null);
+        }
     }
 
     public void sendEmail(String to, String subject, String text) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(text, true);
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Misslyckades att skicka e-post", e);
+        RuntimeException failure = sendAll(List.of(new Email(to, subject, text))).get(0);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Sends several emails over the pooled SMTP connections. Returns one entry per email, in order:
+     * null if it was sent, otherwise why it was not.
+     */
+    public List<RuntimeException> sendAll(List<Email> emails) {
+        List<RuntimeException> results = new ArrayList<>(emails.size());
+        List<MimeMessage> messages = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (Email email : emails) {
+            try {
+                messages.add(toMessage(email));
+                positions.add(results.size());
+                results.add(null);
+            } catch (MessagingException e) {
+                results.add(new RuntimeException("Misslyckades att skicka e-post", e));
+            } catch (RuntimeException e) {
+                results.add(e);
+            }
+        }
+
+        List<RuntimeException> sent = transportPool.send(messages);
+        for (int i = 0; i < sent.size(); i++) {
+            results.set(positions.get(i), sent.get(i));
+        }
+        return results;
+    }
+
+    private MimeMessage toMessage(Email email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        // Multipart bara när det finns ett HTML-alternativ; ren text blir ett enkelt text/plain-meddelande
+        boolean multipart = email.html() != null;
+        MimeMessageHelper helper = new MimeMessageHelper(message, multipart, "UTF-8");
+        helper.setTo(email.to());
+        helper.setSubject(email.subject());
+        if (multipart) {
+            helper.setText(email.text(), email.html());
+        } else {
+            helper.setText(email.text(), false);
         }
+        return message;
     }
 }
@@ -0,0 +1,125 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.exception.IdempotencyKeyReusedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of requests that carry an {@code Idempotency-Key}, so a double-click or a
+ * client retry replays the first response instead of running the booking or cancellation again.
+ * Entries live in a bounded map and expire after a fixed TTL; a duplicate that arrives while the
+ * first request is still running waits for its result. Each entry keeps a fingerprint of the request
+ * it answered, and a key reused with a different request is refused instead of replayed.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Insättningsordning med samma TTL för alla poster, så de äldsta (först utgångna) ligger först
+    private final LinkedHashMap<String, Entry> entries;
+
+    public IdempotencyService(@Value("${app.idempotency.max-entries:10000}") int maxEntries,
+                              @Value("${app.idempotency.ttl-minutes:10}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Duration.ofMinutes(ttlMinutes).toNanos();
+        this.entries = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #execute(String, String, Object, Supplier)} for requests whose scope already
+     * identifies everything they carry, such as a cancellation of one booking.
+     */
+    public <T> T execute(String scope, String key, Supplier<T> action) {
+        return execute(scope, key, null, action);
+    }
+
+    /**
+     * Runs the action once per (scope, key) within the TTL and returns the stored result for repeats.
+     * Without a key the action simply runs. A failed action is forgotten so the client can retry it.
+     * A repeat whose {@code request} is not equal to the first one's throws
+     * {@link IdempotencyKeyReusedException}. Each endpoint needs its own scope, since the stored result
+     * is replayed as the endpoint's return type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String key, Object request, Supplier<T> action) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return action.get();
+        }
+        String cacheKey = scope + "|" + key;
+        long now = System.nanoTime();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Entry existing;
+        synchronized (entries) {
+            evictExpired(now);
+            existing = entries.get(cacheKey);
+            if (existing == null) {
+                entries.put(cacheKey, new Entry(result, request, now + ttlNanos));
+            }
+        }
+
+        if (existing != null) {
+            if (!Objects.equals(existing.request, request)) {
+                throw new IdempotencyKeyReusedException("Nyckeln " + key + " har redan använts för en annan förfrågan");
+            }
+            log.debug("Replaying idempotent response for {}", cacheKey);
+            try {
+                return (T) existing.result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                if (e.getCause() instanceof Error cause) throw cause;
+                throw e;
+            }
+        }
+
+        try {
+            T value = action.get();
+            result.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Även Error och smygkastade kontrollerade undantag, annars väntar upprepningarna för evigt
+            synchronized (entries) {
+                entries.remove(cacheKey);
+            }
+            result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt - now > 0) break;
+            it.remove();
+        }
+    }
+
+    private record Entry(CompletableFuture<Object> result, Object request, long expiresAt) { }
+}
@@ -0,0 +1,158 @@
+package com.jarnvilja.service;
+
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders notification emails from the Thymeleaf templates in {@code classpath:mail/}. Every notification
+ * has a small typed model and a plain-text template, plus an HTML alternative. Templates are parsed once
+ * and kept in the engine's cache, and the shared signature is rendered once at startup and passed in as
+ * a finished string, so a send only evaluates the few expressions that differ per message.
+ */
+@Service
+public class MailTemplateService {
+
+    private static final Locale SWEDISH = Locale.forLanguageTag("sv-SE");
+
+    private final SpringTemplateEngine engine;
+    private final String textSignature;
+    private final String htmlSignature;
+
+    public MailTemplateService() {
+        // Egen motor: en TemplateEngine-böna skulle ersätta den som Spring Boot sätter upp för webbsidorna
+        this.engine = new SpringTemplateEngine();
+        engine.setEnableSpringELCompiler(true);
+        engine.addTemplateResolver(resolver(TemplateMode.TEXT, "*.txt", 1));
+        engine.addTemplateResolver(resolver(TemplateMode.HTML, "*.html", 2));
+        this.textSignature = engine.process("signature.txt", new Context(SWEDISH)).strip();
+        this.htmlSignature = engine.process("signature.html", new Context(SWEDISH)).strip();
+    }
+
+    /**
+     * A notification that can be rendered: the template's base name, its subject line and the values
+     * the template reads.
+     */
+    public sealed interface Mail {
+
+        String template();
+
+        String subject();
+
+        Map<String, Object> variables();
+    }
+
+    public record BookingConfirmed(String username, String classTitle, DayOfWeek day, LocalTime startTime) implements Mail {
+
+        public String template() { return "booking-confirmed"; }
+
+        public String subject() { return "Bokning bekräftad"; }
+
+        public Map<String, Object> variables() {
+            return namedValues("username", username, "classTitle", classTitle, "day", day, "startTime", startTime);
+        }
+    }
+
+    public record BookingCancelled(String username, String classTitle, DayOfWeek day, LocalTime startTime) implements Mail {
+
+        public String template() { return "booking-cancelled"; }
+
+        public String subject() { return "Bekräftelse på avbokning"; }
+
+        public Map<String, Object> variables() {
+            return namedValues("username", username, "classTitle", classTitle, "day", day, "startTime", startTime);
+        }
+    }
+
+    public record BookingReceipt(String classTitle) implements Mail {
+
+        public String template() { return "booking-receipt"; }
+
+        public String subject() { return "Bokningsbekräftelse"; }
+
+        public Map<String, Object> variables() {
+            return namedValues("classTitle", classTitle);
+        }
+    }
+
+    public record ClassReminder(String classTitle) implements Mail {
+
+        public String template() { return "class-reminder"; }
+
+        public String subject() { return "Påminnelse: " + classTitle; }
+
+        public Map<String, Object> variables() {
+            return namedValues("classTitle", classTitle);
+        }
+    }
+
+    public record ClassCancelledForTrainer(String classTitle) implements Mail {
+
+        public String template() { return "class-cancelled-trainer"; }
+
+        public String subject() { return "Träningspass inställt"; }
+
+        public Map<String, Object> variables() {
+            return namedValues("classTitle", classTitle);
+        }
+    }
+
+    public record ClassCancelled(String classTitle, String reason) implements Mail {
+
+        public String template() { return "class-cancelled"; }
+
+        public String subject() { return "Träningspass inställt"; }
+
+        public Map<String, Object> variables() {
+            return namedValues("classTitle", classTitle, "reason", reason);
+        }
+    }
+
+    /**
+     * A rendered email: subject, plain-text body and the HTML alternative.
+     */
+    public record Rendered(String subject, String text, String html) { }
+
+    /**
+     * Renders both bodies of a notification. The result does not depend on the recipient, so a mail
+     * that goes out unchanged to many members is rendered once and reused.
+     */
+    public Rendered render(Mail mail) {
+        Context context = new Context(SWEDISH, mail.variables());
+        context.setVariable("signature", textSignature);
+        String text = engine.process(mail.template() + ".txt", context);
+        context.setVariable("signature", htmlSignature);
+        String html = engine.process(mail.template() + ".html", context);
+        return new Rendered(mail.subject(), text, html);
+    }
+
+    // Map.of tål inte null, och ett saknat användarnamn ska inte stoppa ett utskick
+    private static Map<String, Object> namedValues(Object... namesAndValues) {
+        Map<String, Object> variables = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            variables.put((String) namesAndValues[i], namesAndValues[i + 1] != null ? namesAndValues[i + 1] : "");
+        }
+        return variables;
+    }
+
+    private static ClassLoaderTemplateResolver resolver(TemplateMode mode, String pattern, int order) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("mail/");
+        resolver.setTemplateMode(mode);
+        resolver.setResolvablePatterns(Set.of(pattern));
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+        resolver.setOrder(order);
+        return resolver;
+    }
+}
@@ -0,0 +1,279 @@
+package com.jarnvilja.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a few authenticated SMTP connections open and sends many messages over each, instead of the
+ * connect/EHLO/AUTH/QUIT round per message that {@link JavaMailSender#send(MimeMessage)} does. A batch is
+ * split across at most {@code app.mail.pool.size} connections, all sends share one rate limit
+ * ({@code app.mail.rate-per-second}), and a connection is recycled after
+ * {@code app.mail.pool.max-messages-per-connection} messages or when it has been idle too long.
+ */
+@Slf4j
+@Component
+public class MailTransportPool {
+
+    // Så många meddelanden skickas över en anslutning innan en batch delas på fler
+    private static final int MIN_CHUNK = 50;
+
+    private final JavaMailSender mailSender;
+    private final int size;
+    private final int maxMessagesPerConnection;
+    private final Duration idleTimeout;
+    private final RateLimiter rateLimiter;
+
+    private final Deque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+    private final Semaphore connections;
+    private final ExecutorService senders;
+    private final Counter openedCounter;
+    private final AtomicInteger opened = new AtomicInteger();
+
+    public MailTransportPool(JavaMailSender mailSender, MeterRegistry meterRegistry,
+                             @Value("${app.mail.pool.size:2}") int size,
+                             @Value("${app.mail.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+                             @Value("${app.mail.pool.idle-seconds:60}") long idleSeconds,
+                             @Value("${app.mail.rate-per-second:10}") double ratePerSecond) {
+        this.mailSender = mailSender;
+        this.size = Math.max(1, size);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeout = Duration.ofSeconds(idleSeconds);
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+        this.connections = new Semaphore(this.size);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(this.size, r -> {
+            Thread t = new Thread(r, "mail-sender-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.openedCounter = Counter.builder("email.transport.connections")
+                .description("SMTP connections opened by the mail transport pool")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the messages and returns one entry per message, in order: null if it was accepted by the
+     * server, otherwise the failure. Never throws for an individual message.
+     */
+    public List<RuntimeException> send(List<MimeMessage> messages) {
+        if (messages.isEmpty()) return List.of();
+        if (!(mailSender instanceof JavaMailSenderImpl)) {
+            return sendWithoutPool(messages);
+        }
+
+        int chunks = Math.min(size, (messages.size() + MIN_CHUNK - 1) / MIN_CHUNK);
+        if (chunks <= 1) {
+            return sendChunk(messages);
+        }
+        int chunkSize = (messages.size() + chunks - 1) / chunks;
+        List<Future<List<RuntimeException>>> futures = new ArrayList<>();
+        for (int from = 0; from < messages.size(); from += chunkSize) {
+            List<MimeMessage> chunk = messages.subList(from, Math.min(from + chunkSize, messages.size()));
+            futures.add(senders.submit(() -> sendChunk(chunk)));
+        }
+        List<RuntimeException> results = new ArrayList<>(messages.size());
+        for (Future<List<RuntimeException>> future : futures) {
+            try {
+                results.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MailSendException("Avbröts medan e-post skickades", e);
+            } catch (ExecutionException e) {
+                throw new MailSendException("Misslyckades att skicka e-post", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Number of SMTP connections opened since startup.
+     */
+    public int getOpenedConnections() {
+        return opened.get();
+    }
+
+    /**
+     * Closes connections that have not been used within the idle timeout.
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void closeIdle() {
+        long cutoff = System.nanoTime() - idleTimeout.toNanos();
+        Iterator<PooledTransport> it = idle.iterator();
+        while (it.hasNext()) {
+            PooledTransport pooled = it.next();
+            if (pooled.lastUsed - cutoff < 0 && idle.removeFirstOccurrence(pooled)) {
+                pooled.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdown();
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            pooled.close();
+        }
+    }
+
+    private List<RuntimeException> sendChunk(List<MimeMessage> chunk) {
+        connections.acquireUninterruptibly();
+        PooledTransport pooled = idle.pollFirst();
+        try {
+            if (pooled == null) {
+                pooled = new PooledTransport(((JavaMailSenderImpl) mailSender).getSession().getTransport(protocol()));
+            }
+            List<RuntimeException> results = new ArrayList<>(chunk.size());
+            for (MimeMessage message : chunk) {
+                rateLimiter.acquire();
+                try {
+                    results.add(sendOne(pooled, message));
+                } catch (MessagingException e) {
+                    // Anslutningen gick inte att öppna; resten av batchen får samma fel i stället för nya försök
+                    MailSendException failure = new MailSendException("Kunde inte ansluta till SMTP-servern", e);
+                    while (results.size() < chunk.size()) {
+                        results.add(failure);
+                    }
+                    break;
+                }
+            }
+            return results;
+        } catch (MessagingException e) {
+            MailSendException failure = new MailSendException("Ingen SMTP-transport tillgänglig", e);
+            return new ArrayList<>(Collections.nCopies(chunk.size(), failure));
+        } finally {
+            if (pooled != null) {
+                idle.offerFirst(pooled);
+            }
+            connections.release();
+        }
+    }
+
+    // Kastar bara om anslutningen inte går att öppna; ett avvisat meddelande returneras som fel
+    private RuntimeException sendOne(PooledTransport pooled, MimeMessage message) throws MessagingException {
+        pooled.ensureConnected();
+        try {
+            pooled.deliver(message);
+            return null;
+        } catch (MessagingException e) {
+            if (pooled.transport.isConnected()) {
+                return new MailSendException("Misslyckades att skicka e-post", e);
+            }
+        }
+        // Servern stängde en vilande anslutning; ett nytt försök på en ny anslutning
+        pooled.ensureConnected();
+        try {
+            pooled.deliver(message);
+            return null;
+        } catch (MessagingException e) {
+            return new MailSendException("Misslyckades att skicka e-post", e);
+        }
+    }
+
+    private List<RuntimeException> sendWithoutPool(List<MimeMessage> messages) {
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            return new ArrayList<>(Collections.nCopies(messages.size(), null));
+        } catch (MailException e) {
+            return new ArrayList<>(Collections.nCopies(messages.size(), e));
+        }
+    }
+
+    private String protocol() {
+        String protocol = ((JavaMailSenderImpl) mailSender).getProtocol();
+        return protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+    }
+
+    private final class PooledTransport {
+
+        private final Transport transport;
+        private int sentOnConnection;
+        private volatile long lastUsed = System.nanoTime();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void ensureConnected() throws MessagingException {
+            if (sentOnConnection >= maxMessagesPerConnection && transport.isConnected()) {
+                transport.close();
+            }
+            if (!transport.isConnected()) {
+                JavaMailSenderImpl impl = (JavaMailSenderImpl) mailSender;
+                String username = impl.getUsername() == null || impl.getUsername().isEmpty() ? null : impl.getUsername();
+                String password = impl.getPassword() == null || impl.getPassword().isEmpty() ? null : impl.getPassword();
+                transport.connect(impl.getHost(), impl.getPort(), username, password);
+                sentOnConnection = 0;
+                opened.incrementAndGet();
+                openedCounter.increment();
+            }
+        }
+
+        private void deliver(MimeMessage message) throws MessagingException {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            transport.sendMessage(message, message.getAllRecipients());
+            sentOnConnection++;
+            lastUsed = System.nanoTime();
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Failed to close SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Evenly spaced permits shared by every connection; each caller reserves the next free slot and
+     * sleeps until it arrives. A rate of zero or less disables the limit.
+     */
+    static final class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextFree = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond) {
+            this.intervalNanos = permitsPerSecond > 0 ? (long) (1_000_000_000L / permitsPerSecond) : 0;
+        }
+
+        void acquire() {
+            if (intervalNanos == 0) return;
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(nextFree, now);
+                nextFree = slot + intervalNanos;
+                wait = slot - now;
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
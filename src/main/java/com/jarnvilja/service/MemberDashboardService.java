@@ -0,0 +1,99 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the member page shows, read in a fixed number of queries: the member, every class with its
+ * trainer and today's taken seats, the member's bookings with their classes, and the member's stats
+ * counters. Sorting and the active/upcoming/past split are worked out in memory from those rows, and the
+ * search is answered by {@link ClassSearchIndex}.
+ */
+@Service
+public class MemberDashboardService {
+
+    private final MemberService memberService;
+    private final BookingService bookingService;
+    private final TrainingClassRepository trainingClassRepository;
+    private final BookingRepository bookingRepository;
+    private final MemberStatsService memberStatsService;
+    private final ClassSearchIndex classSearchIndex;
+
+    public MemberDashboardService(MemberService memberService, BookingService bookingService,
+                                  TrainingClassRepository trainingClassRepository, BookingRepository bookingRepository,
+                                  MemberStatsService memberStatsService, ClassSearchIndex classSearchIndex) {
+        this.memberService = memberService;
+        this.bookingService = bookingService;
+        this.trainingClassRepository = trainingClassRepository;
+        this.bookingRepository = bookingRepository;
+        this.memberStatsService = memberStatsService;
+        this.classSearchIndex = classSearchIndex;
+    }
+
+    /**
+     * The member page's data. {@code capacityUsed} holds today's taken seats for every listed class and
+     * {@code waitlistPositions} the queue position of each waitlisted upcoming booking.
+     */
+    public record Dashboard(User member, List<TrainingClass> classes, Map<Long, Integer> capacityUsed,
+                            List<Booking> activeBookings, List<Booking> upcomingBookings, List<Booking> pastBookings,
+                            Map<Long, Integer> waitlistPositions, MembershipStatsDTO stats) { }
+
+    /**
+     * Loads the dashboard for a member. A null or blank search lists every class; a null sort keeps the
+     * classes in id order.
+     */
+    @Transactional(readOnly = true)
+    public Dashboard getDashboard(Long memberId, String search, String sort) {
+        LocalDate today = LocalDate.now();
+        User member = memberService.getMemberById(memberId);
+
+        // Sökningen besvaras av indexet i minnet; passen och platserna kommer ändå från frågan nedan
+        Set<Long> hits = search != null && !search.isBlank() ? new HashSet<>(classSearchIndex.search(search)) : null;
+        List<TrainingClass> classes = new ArrayList<>();
+        Map<Long, Integer> capacityUsed = new HashMap<>();
+        for (Object[] row : trainingClassRepository.findAllWithSeatsTakenOn(today)) {
+            TrainingClass tc = (TrainingClass) row[0];
+            if (hits != null && !hits.contains(tc.getId())) continue;
+            classes.add(tc);
+            capacityUsed.put(tc.getId(), ((Number) row[1]).intValue());
+        }
+        if (sort != null) {
+            classes = memberService.sortClasses(classes, sort);
+        }
+
+        List<Booking> bookings = bookingRepository.findAllForMemberWithClass(memberId);
+        List<Booking> active = new ArrayList<>();
+        List<Booking> upcoming = new ArrayList<>();
+        List<Booking> past = new ArrayList<>();
+        for (Booking booking : bookings) {
+            if (booking.getBookingStatus() != BookingStatus.CANCELLED) {
+                active.add(booking);
+            }
+            // Bokningar utan datum hör varken till kommande eller tidigare, som i frågorna de ersätter
+            if (booking.getBookingDate() == null) continue;
+            if (booking.getBookingDate().isBefore(today)) {
+                past.add(booking);
+            } else {
+                upcoming.add(booking);
+            }
+        }
+
+        return new Dashboard(member, classes, capacityUsed, active, upcoming, past,
+                bookingService.getWaitlistPositions(upcoming), memberStatsService.getStats(member));
+    }
+}
@@ -32,21 +32,31 @@ public class MemberService {
     private final BookingRepository bookingRepository;
     private final TrainingClassRepository trainingClassRepository;
     private final BookingService bookingService;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
     private final PasswordEncoder passwordEncoder;
     private final DemoGuard demoGuard;
+    private final PendingExpiryService pendingExpiryService;
+    private final MailTemplateService mailTemplateService;
+    private final MemberStatsService memberStatsService;
+    private final ClassSearchIndex classSearchIndex;
 
     @Autowired
     public MemberService(UserRepository userRepository, BookingRepository bookingRepository,
                          TrainingClassRepository trainingClassRepository, BookingService bookingService,
-                         EmailService emailService, PasswordEncoder passwordEncoder, DemoGuard demoGuard) {
+                         EmailOutboxService emailOutboxService, PasswordEncoder passwordEncoder, DemoGuard demoGuard,
+                         PendingExpiryService pendingExpiryService, MailTemplateService mailTemplateService,
+                         MemberStatsService memberStatsService, ClassSearchIndex classSearchIndex) {
         this.userRepository = userRepository;
         this.bookingRepository = bookingRepository;
         this.trainingClassRepository = trainingClassRepository;
         this.bookingService = bookingService;
-        this.emailService = emailService;
+        this.emailOutboxService = emailOutboxService;
         this.passwordEncoder = passwordEncoder;
         this.demoGuard = demoGuard;
+        this.pendingExpiryService = pendingExpiryService;
+        this.mailTemplateService = mailTemplateService;
+        this.memberStatsService = memberStatsService;
+        this.classSearchIndex = classSearchIndex;
     }
 
     // Hantera medlem:
@@ -159,17 +169,10 @@ public class MemberService {
         if (booking.getBookingStatus() == BookingStatus.CONFIRMED) {
             User user = booking.getMember();
             TrainingClass trainingClass = booking.getTrainingClass();
-            try {
-                emailService.sendEmail(user.getEmail(), "Bokning bekräftad",
-                        "Hej " + user.getUsername() + ",\n\n" +
-                                "Din bokning för träningspasset " + trainingClass.getTitle() +
-                                " den " + trainingClass.getTrainingDay() + " kl. " +
-                                trainingClass.getStartTime() + " har bekräftats.\n\n" +
-                                "Vänliga hälsningar,\n" +
-                                "Järnvilja");
-            } catch (Exception e) {
-                log.warn("Failed to send booking email to {}: {}", user.getEmail(), e.getMessage());
-            }
+            // Skickas av outbox-dispatchern efter commit, inte inne i bokningstransaktionen
+            emailOutboxService.enqueue(user.getEmail(), mailTemplateService.render(
+                    new MailTemplateService.BookingConfirmed(user.getUsername(), trainingClass.getTitle(),
+                            trainingClass.getTrainingDay(), trainingClass.getStartTime())));
         }
 
         return booking;
@@ -185,18 +188,14 @@ public class MemberService {
             throw new RuntimeException("Booking is not pending and cannot be confirmed");
         }
 
+        bookingService.recordTransition(booking, BookingStatus.CONFIRMED);
         booking.setBookingStatus(BookingStatus.CONFIRMED);
         return bookingRepository.save(booking);
     }
 
-    @Transactional
+    // PENDING tar ingen plats i sessionsräknarna, så utgången kan göras som en ren bulk-UPDATE
     public void expirePendingBookings() {
-        List<Booking> pendingBookings = bookingRepository.findPendingBookingsBefore(LocalDateTime.now().minusMinutes(30));
-
-        for (Booking booking : pendingBookings) {
-            booking.setBookingStatus(BookingStatus.EXPIRED);
-            bookingRepository.save(booking);
-        }
+        pendingExpiryService.expireDue();
     }
 
     @Transactional
@@ -210,20 +209,9 @@ public class MemberService {
         User user = booking.getMember();
         TrainingClass trainingClass = booking.getTrainingClass();
 
-        try {
-            emailService.sendEmail(
-                    user.getEmail(),
-                    "Bekräftelse på avbokning",
-                    "Hej " + user.getUsername() + ",\n\n" +
-                            "Du har nu avbokat din plats till träningspasset \"" + trainingClass.getTitle() + "\" " +
-                            trainingClass.getTrainingDay() + " kl. " + trainingClass.getStartTime() + ".\n\n" +
-                            "Vi hoppas få se dig en annan gång!\n\n" +
-                            "Vänliga hälsningar,\n" +
-                            "Järnvilja"
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send cancellation email to {}: {}", user.getEmail(), e.getMessage());
-        }
+        emailOutboxService.enqueue(user.getEmail(), mailTemplateService.render(
+                new MailTemplateService.BookingCancelled(user.getUsername(), trainingClass.getTitle(),
+                        trainingClass.getTrainingDay(), trainingClass.getStartTime())));
     }
 
 
@@ -253,7 +241,7 @@ public class MemberService {
     }
 
     public List<TrainingClass> searchAvailableClasses(String search) {
-        return trainingClassRepository.findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(search, search);
+        return classSearchIndex.findClasses(search);
     }
 
     public List<TrainingClass> sortClasses(List<TrainingClass> classes, String sort) {
@@ -297,59 +285,7 @@ public class MemberService {
         User member = userRepository.findById(memberId)
                 .orElseThrow(() -> new RuntimeException("Member not found"));
 
-        List<Booking> bookings = bookingRepository.findByMemberId(memberId);
-        List<Booking> confirmed = bookings.stream()
-                .filter(b -> b.getBookingStatus() == BookingStatus.CONFIRMED)
-                .toList();
-
-        int totalBookings = confirmed.size();
-
-        String mostBooked = confirmed.stream()
-                .filter(b -> b.getTrainingClass() != null)
-                .collect(Collectors.groupingBy(b -> b.getTrainingClass().getTitle(), Collectors.counting()))
-                .entrySet().stream()
-                .max(java.util.Map.Entry.comparingByValue())
-                .map(java.util.Map.Entry::getKey)
-                .orElse("–");
-
-        MembershipStatsDTO stats = new MembershipStatsDTO(member.getId(), totalBookings, mostBooked, member.getCreatedAt());
-
-        if (member.getCreatedAt() != null) {
-            long weeks = java.time.temporal.ChronoUnit.WEEKS.between(member.getCreatedAt(), LocalDate.now());
-            stats.setAvgSessionsPerWeek(weeks > 0 ? (double) totalBookings / weeks : totalBookings);
-        }
-
-        java.util.Map<Integer, Long> weeklyMap = confirmed.stream()
-                .collect(Collectors.groupingBy(
-                        b -> b.getBookingDate().get(java.time.temporal.IsoFields.WEEK_OF_WEEK_BASED_YEAR),
-                        Collectors.counting()));
-        int streak = 0;
-        int currentWeek = LocalDate.now().get(java.time.temporal.IsoFields.WEEK_OF_WEEK_BASED_YEAR);
-        for (int w = currentWeek; w > 0; w--) {
-            if (weeklyMap.containsKey(w)) {
-                streak++;
-            } else {
-                break;
-            }
-        }
-        stats.setCurrentStreak(streak);
-
-        confirmed.stream()
-                .filter(b -> b.getTrainingClass() != null && b.getTrainingClass().getCategory() != null)
-                .collect(Collectors.groupingBy(b -> b.getTrainingClass().getCategory().name(), Collectors.counting()))
-                .forEach((cat, count) -> stats.getCategoryBreakdown().put(cat, count.intValue()));
-
-        LocalDate sixMonthsAgo = LocalDate.now().minusMonths(6);
-        confirmed.stream()
-                .filter(b -> b.getBookingDate().isAfter(sixMonthsAgo))
-                .collect(Collectors.groupingBy(
-                        b -> b.getBookingDate().getYear() + "-" + String.format("%02d", b.getBookingDate().getMonthValue()),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(java.util.Map.Entry.comparingByKey())
-                .forEach(e -> stats.getMonthlyTrend().put(e.getKey(), e.getValue().intValue()));
-
-        return stats;
+        return memberStatsService.getStats(member);
     }
 
 
@@ -0,0 +1,296 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.MemberStatsBucket;
+import com.jarnvilja.model.MemberStatsBucket.Kind;
+import com.jarnvilja.model.TrainingCategory;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.MemberStatsBucketRepository;
+import com.jarnvilja.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * Per-member training statistics kept in {@code member_stats} as counters of CONFIRMED bookings: in total,
+ * attended, per class, per category, per ISO week and per month. Every confirm, cancel and attend adjusts
+ * the counters of that one booking in the caller's transaction, so reading the stats never streams the
+ * member's booking history. The bookings table stays the source of truth; the counters are rebuilt from it
+ * one member at a time every night, which also picks up renamed classes and changes made outside the services.
+ */
+@Slf4j
+@Service
+public class MemberStatsService {
+
+    private static final int TREND_MONTHS = 6;
+
+    private final MemberStatsBucketRepository bucketRepository;
+    private final BookingRepository bookingRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean rebuildOnStartup;
+
+    public MemberStatsService(MemberStatsBucketRepository bucketRepository, BookingRepository bookingRepository,
+                              UserRepository userRepository, PlatformTransactionManager transactionManager,
+                              @Value("${app.member-stats.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.bucketRepository = bucketRepository;
+        this.bookingRepository = bookingRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    // Det en bokning bidrar med till statistiken
+    record StatsRow(Long memberId, String classTitle, TrainingCategory category, LocalDate bookingDate, boolean attended) {
+
+        static StatsRow of(Object[] row) {
+            return new StatsRow((Long) row[0], (String) row[1], (TrainingCategory) row[2], (LocalDate) row[3],
+                    Boolean.TRUE.equals(row[4]));
+        }
+
+        static StatsRow of(Booking booking) {
+            return new StatsRow(booking.getMember().getId(), booking.getTrainingClass().getTitle(),
+                    booking.getTrainingClass().getCategory(), booking.getBookingDate(), booking.isAttended());
+        }
+    }
+
+    record BucketKey(Long memberId, Kind kind, String key) { }
+
+    // Fast ordning, så att samtidiga transaktioner låser hinkarna i samma ordning
+    private static final Comparator<BucketKey> BUCKET_ORDER = Comparator.comparing(BucketKey::memberId)
+            .thenComparing(BucketKey::kind).thenComparing(BucketKey::key);
+
+    /**
+     * The member's stats, read from their counters in one query.
+     */
+    public MembershipStatsDTO getStats(User member) {
+        int total = 0;
+        int attended = 0;
+        Map<String, Integer> perClass = new HashMap<>();
+        Map<String, Integer> perCategory = new TreeMap<>();
+        Set<String> activeWeeks = new HashSet<>();
+        Map<String, Integer> perMonth = new TreeMap<>();
+        for (MemberStatsBucket bucket : bucketRepository.findByMemberId(member.getId())) {
+            if (bucket.getCount() <= 0) continue;
+            switch (bucket.getKind()) {
+                case TOTAL -> total = bucket.getCount();
+                case ATTENDED -> attended = bucket.getCount();
+                case CLASS -> perClass.put(bucket.getBucketKey(), bucket.getCount());
+                case CATEGORY -> perCategory.put(bucket.getBucketKey(), bucket.getCount());
+                case WEEK -> activeWeeks.add(bucket.getBucketKey());
+                case MONTH -> perMonth.put(bucket.getBucketKey(), bucket.getCount());
+            }
+        }
+
+        // Lika många bokningar: alfabetiskt första passet vinner, så svaret inte beror på läsordningen
+        String mostBooked = perClass.entrySet().stream()
+                .max(Map.Entry.<String, Integer>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                .map(Map.Entry::getKey)
+                .orElse("–");
+
+        MembershipStatsDTO stats = new MembershipStatsDTO(member.getId(), total, mostBooked, member.getCreatedAt());
+        stats.setAttendedSessions(attended);
+        if (member.getCreatedAt() != null) {
+            long weeks = ChronoUnit.WEEKS.between(member.getCreatedAt(), LocalDate.now());
+            stats.setAvgSessionsPerWeek(weeks > 0 ? (double) total / weeks : total);
+        }
+
+        int streak = 0;
+        for (LocalDate week = LocalDate.now(); activeWeeks.contains(weekKey(week)); week = week.minusWeeks(1)) {
+            streak++;
+        }
+        stats.setCurrentStreak(streak);
+
+        stats.getCategoryBreakdown().putAll(perCategory);
+        String firstMonth = YearMonth.now().minusMonths(TREND_MONTHS - 1).toString();
+        perMonth.forEach((month, count) -> {
+            if (month.compareTo(firstMonth) >= 0) stats.getMonthlyTrend().put(month, count);
+        });
+        return stats;
+    }
+
+    /**
+     * CONFIRMED bookings of the given members that have any, read from the TOTAL counters.
+     */
+    public Map<Long, Long> getConfirmedCounts(Collection<Long> memberIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (memberIds.isEmpty()) return counts;
+        for (Object[] row : bucketRepository.findCountsByKind(Kind.TOTAL, memberIds)) {
+            counts.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Mirrors a status change of one booking. Must be called before the new status is set on the entity,
+     * or with the old status as {@code from}.
+     */
+    @Transactional
+    public void recordTransition(Booking booking, BookingStatus from, BookingStatus to) {
+        if (!counts(booking) || from == to) return;
+        if (from == BookingStatus.CONFIRMED) {
+            apply(deltas(List.of(StatsRow.of(booking)), -1));
+        }
+        if (to == BookingStatus.CONFIRMED) {
+            apply(deltas(List.of(StatsRow.of(booking)), 1));
+        }
+    }
+
+    /**
+     * Counts newly created bookings that were admitted straight onto a seat.
+     */
+    @Transactional
+    public void recordCreated(Collection<Booking> bookings) {
+        List<StatsRow> rows = bookings.stream()
+                .filter(b -> counts(b) && b.getBookingStatus() == BookingStatus.CONFIRMED)
+                .map(StatsRow::of)
+                .toList();
+        apply(deltas(rows, 1));
+    }
+
+    /**
+     * Counts a booking that was moved from the waitlist onto a seat by id.
+     */
+    @Transactional
+    public void recordPromoted(Long bookingId) {
+        apply(deltas(rows(bookingRepository.findStatsRowsByIds(List.of(bookingId))), 1));
+    }
+
+    /**
+     * Removes bookings that were CONFIRMED before a bulk status change already written to the table.
+     */
+    @Transactional
+    public void recordReleased(Collection<Long> bookingIds) {
+        if (bookingIds.isEmpty()) return;
+        apply(deltas(rows(bookingRepository.findStatsRowsByIds(bookingIds)), -1));
+    }
+
+    /**
+     * Removes every CONFIRMED booking of a class; call it before the class's bookings are cancelled or deleted.
+     */
+    @Transactional
+    public void releaseClass(Long trainingClassId) {
+        apply(deltas(rows(bookingRepository.findConfirmedStatsRowsForClass(trainingClassId)), -1));
+    }
+
+    /**
+     * Counts a CONFIRMED booking the member showed up for; call it once, when the booking is marked attended.
+     */
+    @Transactional
+    public void recordAttended(Booking booking) {
+        if (!counts(booking) || booking.getBookingStatus() != BookingStatus.CONFIRMED) return;
+        apply(Map.of(new BucketKey(booking.getMember().getId(), Kind.ATTENDED, ""), 1));
+    }
+
+    /**
+     * Recomputes one member's counters from their bookings. The member's row lock keeps new buckets from being
+     * opened meanwhile, and deleting the old buckets before reading the bookings makes concurrent adjustments
+     * of them wait; once they get through they land on the rebuilt rows, and their bookings were not yet
+     * committed when the history was read.
+     */
+    @Transactional
+    public void rebuild(Long memberId) {
+        if (userRepository.findByIdForUpdate(memberId).isEmpty()) return;
+        bucketRepository.deleteForMember(memberId);
+        bucketRepository.saveAll(buckets(deltas(rows(bookingRepository.findConfirmedStatsRowsForMember(memberId)), 1)));
+    }
+
+    /**
+     * Recomputes every member's counters, one member per transaction, so no lock is held for longer than one
+     * member's rebuild and bookings of other members go on meanwhile.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void rebuildAll() {
+        List<Long> memberIds = userRepository.findAllIds();
+        for (Long memberId : memberIds) {
+            transactionTemplate.executeWithoutResult(status -> rebuild(memberId));
+        }
+        log.info("Member stats rebuilt for {} members", memberIds.size());
+    }
+
+    // Av som standard; slås på för första starten mot en tom member_stats, t.ex. efter en schemauppgradering
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (rebuildOnStartup) rebuildAll();
+    }
+
+    static String weekKey(LocalDate date) {
+        // Veckoår, inte kalenderår: 2024-12-30 hör till 2025-W01
+        return String.format("%d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+    }
+
+    static Map<BucketKey, Integer> deltas(List<StatsRow> rows, int sign) {
+        Map<BucketKey, Integer> deltas = new TreeMap<>(BUCKET_ORDER);
+        for (StatsRow row : rows) {
+            Long memberId = row.memberId();
+            deltas.merge(new BucketKey(memberId, Kind.TOTAL, ""), sign, Integer::sum);
+            if (row.attended()) {
+                deltas.merge(new BucketKey(memberId, Kind.ATTENDED, ""), sign, Integer::sum);
+            }
+            if (row.classTitle() != null) {
+                deltas.merge(new BucketKey(memberId, Kind.CLASS, row.classTitle()), sign, Integer::sum);
+            }
+            if (row.category() != null) {
+                deltas.merge(new BucketKey(memberId, Kind.CATEGORY, row.category().name()), sign, Integer::sum);
+            }
+            if (row.bookingDate() != null) {
+                deltas.merge(new BucketKey(memberId, Kind.WEEK, weekKey(row.bookingDate())), sign, Integer::sum);
+                deltas.merge(new BucketKey(memberId, Kind.MONTH, YearMonth.from(row.bookingDate()).toString()), sign, Integer::sum);
+            }
+        }
+        return deltas;
+    }
+
+    private void apply(Map<BucketKey, Integer> deltas) {
+        deltas.forEach((key, delta) -> {
+            if (delta == 0) return;
+            // Saknas hinken räcker det att skapa den vid ökning; en minskning av en saknad hink rättas vid nästa ombyggnad
+            if (bucketRepository.adjust(key.memberId(), key.kind(), key.key(), delta) == 0 && delta > 0) {
+                openBucket(key, delta);
+            }
+        });
+    }
+
+    /**
+     * Creates a missing counter. Callers serialize on a row lock of the member and re-probe with the UPDATE
+     * once they hold it, so two first bookings of the same week never insert the same bucket twice.
+     */
+    private void openBucket(BucketKey key, int delta) {
+        Optional<User> member = userRepository.findByIdForUpdate(key.memberId());
+        if (member.isEmpty()) return;
+        if (bucketRepository.adjust(key.memberId(), key.kind(), key.key(), delta) == 1) return;
+        bucketRepository.saveAndFlush(new MemberStatsBucket(member.get(), key.kind(), key.key(), delta));
+    }
+
+    private List<MemberStatsBucket> buckets(Map<BucketKey, Integer> counts) {
+        List<MemberStatsBucket> buckets = new ArrayList<>();
+        counts.forEach((key, count) -> buckets.add(new MemberStatsBucket(
+                userRepository.getReferenceById(key.memberId()), key.kind(), key.key(), count)));
+        return buckets;
+    }
+
+    private static List<StatsRow> rows(List<Object[]> rows) {
+        return rows.stream().map(StatsRow::of).toList();
+    }
+
+    private static boolean counts(Booking booking) {
+        return booking != null && booking.getMember() != null && booking.getMember().getId() != null
+                && booking.getTrainingClass() != null;
+    }
+}
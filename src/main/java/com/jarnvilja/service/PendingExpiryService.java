@@ -0,0 +1,114 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires PENDING bookings when their hold runs out ({@code app.booking.expiration-minutes}). Holds sit in a
+ * {@link DelayQueue} seeded from the database at startup; every tick drains the due ones and flips them to
+ * EXPIRED with one bulk UPDATE instead of loading and saving each booking.
+ */
+@Slf4j
+@Service
+public class PendingExpiryService {
+
+    // Håller IN-listan inom vad databaserna hanterar bra
+    private static final int MAX_IDS_PER_UPDATE = 1000;
+
+    private final BookingRepository bookingRepository;
+    private final BookingRollupService bookingRollupService;
+    private final Duration holdDuration;
+    private final DelayQueue<PendingHold> holds = new DelayQueue<>();
+
+    public PendingExpiryService(BookingRepository bookingRepository, BookingRollupService bookingRollupService,
+                                @Value("${app.booking.expiration-minutes:30}") long expirationMinutes) {
+        this.bookingRepository = bookingRepository;
+        this.bookingRollupService = bookingRollupService;
+        this.holdDuration = Duration.ofMinutes(expirationMinutes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        holds.clear();
+        for (Object[] row : bookingRepository.findPendingHolds()) {
+            track((Long) row[0], (LocalDateTime) row[1]);
+        }
+        log.info("Tracking {} pending booking holds", holds.size());
+    }
+
+    /**
+     * Starts tracking a PENDING booking created at the given time.
+     */
+    public void track(Long bookingId, LocalDateTime bookingTimeStamp) {
+        long dueAt = bookingTimeStamp.plus(holdDuration).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        holds.add(new PendingHold(bookingId, dueAt));
+    }
+
+    /**
+     * Bookings created before this instant are past their hold.
+     */
+    public LocalDateTime expiryThreshold() {
+        return LocalDateTime.now().minus(holdDuration);
+    }
+
+    public int getTrackedCount() {
+        return holds.size();
+    }
+
+    /**
+     * Flips every due hold to EXPIRED. Holds that were confirmed or cancelled meanwhile are skipped by the
+     * UPDATE's status condition. Returns the number of bookings expired.
+     */
+    @Scheduled(fixedDelayString = "${app.booking.expiry-tick-ms:10000}")
+    @Transactional
+    public int expireDue() {
+        List<PendingHold> due = new ArrayList<>();
+        holds.drainTo(due);
+        if (due.isEmpty()) return 0;
+
+        List<Long> ids = due.stream().map(PendingHold::bookingId).toList();
+        LocalDateTime threshold = expiryThreshold();
+        try {
+            int expired = 0;
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_UPDATE, ids.size()));
+                bookingRollupService.recordExpiring(chunk, threshold);
+                expired += bookingRepository.expirePending(chunk, threshold);
+            }
+            log.debug("Expired {} of {} due pending bookings", expired, ids.size());
+            return expired;
+        } catch (RuntimeException e) {
+            // Lägg tillbaka så att nästa tick försöker igen
+            holds.addAll(due);
+            throw e;
+        }
+    }
+
+    private record PendingHold(Long bookingId, long dueAtMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((PendingHold) other).dueAtMillis);
+        }
+    }
+}
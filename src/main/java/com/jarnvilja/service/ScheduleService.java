@@ -0,0 +1,107 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.ScheduleEntryDTO;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.TrainingClassRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * The public weekly schedule, built once from the training classes and shared by every request to
+ * {@code /traningsschema}. It is rebuilt when a {@link TrainingClassChangedEvent} says a class was
+ * created, updated or deleted, and every {@code app.schedule.refresh-ms} to pick up changes made on other
+ * nodes or outside the class service, such as a renamed trainer. Each build carries a content hash and a
+ * timestamp for conditional GETs; a rebuild that changes nothing keeps both, so clients keep getting 304s.
+ */
+@Slf4j
+@Service
+public class ScheduleService {
+
+    private final TrainingClassRepository trainingClassRepository;
+    private volatile Schedule schedule;
+
+    public ScheduleService(TrainingClassRepository trainingClassRepository) {
+        this.trainingClassRepository = trainingClassRepository;
+    }
+
+    /**
+     * Classes per weekday, Monday first and sorted by start time, with the validators of this build.
+     * Every day is present, and neither the map nor the lists can be modified.
+     */
+    public record Schedule(Map<DayOfWeek, List<ScheduleEntryDTO>> byDay, String hash, Instant lastModified) { }
+
+    public Schedule getSchedule() {
+        Schedule current = schedule;
+        return current != null ? current : rebuild();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.schedule.refresh-ms:60000}", initialDelayString = "${app.schedule.refresh-ms:60000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    // Efter commit, så att ombyggnaden ser ändringen; utan transaktion körs den direkt
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTrainingClassChanged(TrainingClassChangedEvent event) {
+        log.debug("Training class {} changed, rebuilding schedule", event.trainingClassId());
+        rebuild();
+    }
+
+    synchronized Schedule rebuild() {
+        Map<DayOfWeek, List<ScheduleEntryDTO>> grouped = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            grouped.put(day, new ArrayList<>());
+        }
+        for (TrainingClass tc : trainingClassRepository.findScheduleWithTrainer()) {
+            if (tc.getTrainingDay() == null) continue;
+            grouped.get(tc.getTrainingDay()).add(toEntry(tc));
+        }
+
+        Map<DayOfWeek, List<ScheduleEntryDTO>> byDay = new LinkedHashMap<>();
+        grouped.forEach((day, entries) -> {
+            entries.sort(Comparator.comparing(ScheduleEntryDTO::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())));
+            byDay.put(day, List.copyOf(entries));
+        });
+
+        String hash = hash(byDay);
+        Schedule previous = schedule;
+        if (previous != null && previous.hash().equals(hash)) {
+            return previous;
+        }
+        // Last-Modified har sekundupplösning
+        Schedule built = new Schedule(Collections.unmodifiableMap(byDay), hash, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        schedule = built;
+        return built;
+    }
+
+    private static ScheduleEntryDTO toEntry(TrainingClass tc) {
+        return new ScheduleEntryDTO(tc.getId(), tc.getTitle(), tc.getCategory(), tc.getStartTime(), tc.getEndTime(),
+                tc.getMatta(), tc.getTrainer() != null ? tc.getTrainer().getUsername() : null);
+    }
+
+    // Byggs av textvärden (inte hashCode, som för enum skiljer mellan JVM:er) så att alla noder får samma ETag
+    private static String hash(Map<DayOfWeek, List<ScheduleEntryDTO>> byDay) {
+        StringBuilder sb = new StringBuilder();
+        byDay.forEach((day, entries) -> {
+            sb.append(day).append('\n');
+            for (ScheduleEntryDTO e : entries) {
+                sb.append(e.getId()).append('|').append(e.getTitle()).append('|').append(e.getCategory())
+                        .append('|').append(e.getStartTime()).append('|').append(e.getEndTime())
+                        .append('|').append(e.getMatta()).append('|').append(e.getTrainerName()).append('\n');
+            }
+        });
+        return DigestUtils.md5DigestAsHex(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
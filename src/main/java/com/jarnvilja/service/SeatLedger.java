@@ -0,0 +1,242 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.ClassSession;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.ClassSessionRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Seat ledger backed by the {@code class_sessions} table. Every (trainingClassId, date) occurrence has a
+ * {@link ClassSession} row holding seatsTaken (CONFIRMED) and waitlistLength (WAITLISTED), and admission
+ * is a single conditional UPDATE, so capacity holds across several application nodes.
+ */
+@Slf4j
+@Component
+public class SeatLedger {
+
+    static final List<BookingStatus> CLAIM_STATUSES = List.of(BookingStatus.CONFIRMED, BookingStatus.WAITLISTED);
+
+    // Antal dagar framåt som sessionsrader skapas i förväg
+    private static final int SCHEDULE_HORIZON_DAYS = 7;
+
+    private static final int MAX_ADMIT_ATTEMPTS = 3;
+
+    private final ClassSessionRepository classSessionRepository;
+    private final BookingRepository bookingRepository;
+    private final TrainingClassRepository trainingClassRepository;
+
+    public SeatLedger(ClassSessionRepository classSessionRepository, BookingRepository bookingRepository,
+                      TrainingClassRepository trainingClassRepository) {
+        this.classSessionRepository = classSessionRepository;
+        this.bookingRepository = bookingRepository;
+        this.trainingClassRepository = trainingClassRepository;
+    }
+
+    public record SessionKey(Long trainingClassId, LocalDate sessionDate) { }
+
+    public record SessionCounters(int seatsTaken, int waitlistLength) { }
+
+    /**
+     * Opens the session rows that are missing from today onwards: those with active bookings and those
+     * scheduled for the coming week. Existing rows are left alone, since their counters only ever move
+     * by relative UPDATEs and other nodes may be admitting into them right now. Runs once the seeders
+     * are done and again every night.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 1 0 * * *")
+    @Transactional
+    public void openMissingSessions() {
+        LocalDate today = LocalDate.now();
+        Set<SessionKey> existing = new HashSet<>();
+        for (ClassSession session : classSessionRepository.findBySessionDateGreaterThanEqual(today)) {
+            existing.add(keyOf(session));
+        }
+
+        // Sorterat per pass, så att två noder tar passens radlås i samma ordning
+        Set<SessionKey> missing = new TreeSet<>(Comparator.comparing(SessionKey::trainingClassId)
+                .thenComparing(SessionKey::sessionDate));
+        for (Object[] row : bookingRepository.countClaimsPerSessionFrom(today, CLAIM_STATUSES)) {
+            missing.add(new SessionKey((Long) row[0], (LocalDate) row[1]));
+        }
+        List<TrainingClass> classes = trainingClassRepository.findAll();
+        for (int i = 0; i < SCHEDULE_HORIZON_DAYS; i++) {
+            LocalDate date = today.plusDays(i);
+            for (TrainingClass tc : classes) {
+                if (date.getDayOfWeek().equals(tc.getTrainingDay())) {
+                    missing.add(new SessionKey(tc.getId(), date));
+                }
+            }
+        }
+        missing.removeAll(existing);
+
+        for (SessionKey key : missing) {
+            openSession(key.trainingClassId(), key.sessionDate());
+        }
+        log.info("Seat ledger opened {} missing sessions", missing.size());
+    }
+
+    /**
+     * Recounts one session from the bookings table. The session row is locked first, so admissions to it
+     * wait and every booking that took a seat before the lock has committed by the time it is counted.
+     */
+    @Transactional
+    public SessionCounters recount(Long trainingClassId, LocalDate sessionDate) {
+        ClassSession session = classSessionRepository.findForUpdate(trainingClassId, sessionDate).orElse(null);
+        if (session == null) {
+            openSession(trainingClassId, sessionDate);
+            session = classSessionRepository.findForUpdate(trainingClassId, sessionDate)
+                    .orElseThrow(() -> new IllegalStateException("Kunde inte öppna passet " + trainingClassId + " för " + sessionDate));
+        }
+        session.setSeatsTaken((int) bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, sessionDate, List.of(BookingStatus.CONFIRMED)));
+        session.setWaitlistLength((int) bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, sessionDate, List.of(BookingStatus.WAITLISTED)));
+        return new SessionCounters(session.getSeatsTaken(), session.getWaitlistLength());
+    }
+
+    /**
+     * Claims a seat for a new booking. Returns CONFIRMED if the conditional UPDATE took a seat
+     * (below capacity and nobody waiting), otherwise the booking joins the waitlist.
+     */
+    @Transactional
+    public BookingStatus admit(Long trainingClassId, LocalDate sessionDate, int maxCapacity) {
+        for (int attempt = 0; attempt < MAX_ADMIT_ATTEMPTS; attempt++) {
+            if (classSessionRepository.takeSeatIfAvailable(trainingClassId, sessionDate, maxCapacity) == 1) {
+                return BookingStatus.CONFIRMED;
+            }
+            // Båda villkoren kan missa om raden saknas eller om en plats frigjordes emellan
+            if (classSessionRepository.joinWaitlistIfFull(trainingClassId, sessionDate, maxCapacity) == 1) {
+                return BookingStatus.WAITLISTED;
+            }
+            openSession(trainingClassId, sessionDate);
+        }
+        throw new IllegalStateException("Kunde inte öppna passet " + trainingClassId + " för " + sessionDate);
+    }
+
+    /**
+     * Applies a status change of an existing booking to its session counters.
+     */
+    @Transactional
+    public void transition(Long trainingClassId, LocalDate sessionDate, BookingStatus from, BookingStatus to) {
+        if (trainingClassId == null || sessionDate == null || from == to) return;
+        adjust(trainingClassId, sessionDate, from, -1);
+        adjust(trainingClassId, sessionDate, to, 1);
+    }
+
+    /**
+     * Moves one waitlist claim onto a seat if the session is below capacity. Returns false when the
+     * session is full or nobody is waiting; the caller picks which booking gets the seat.
+     */
+    @Transactional
+    public boolean promote(Long trainingClassId, LocalDate sessionDate, int maxCapacity) {
+        return classSessionRepository.promoteIfSeatFree(trainingClassId, sessionDate, maxCapacity) == 1;
+    }
+
+    /**
+     * Gives back several seats and waitlist places of one session at once, after a bulk cancellation.
+     */
+    @Transactional
+    public void release(Long trainingClassId, LocalDate sessionDate, int seats, int waiting) {
+        if (seats > 0) classSessionRepository.adjustSeatsTaken(trainingClassId, sessionDate, -seats);
+        if (waiting > 0) classSessionRepository.adjustWaitlistLength(trainingClassId, sessionDate, -waiting);
+    }
+
+    /**
+     * Zeroes the counters of every session of a class whose active bookings were all cancelled.
+     */
+    @Transactional
+    public void resetClass(Long trainingClassId) {
+        classSessionRepository.resetCountersForClass(trainingClassId);
+    }
+
+    /**
+     * Drops every session of a class whose bookings were all removed.
+     */
+    @Transactional
+    public void clearClass(Long trainingClassId) {
+        classSessionRepository.deleteByTrainingClassId(trainingClassId);
+    }
+
+    public int getSeatsTaken(Long trainingClassId, LocalDate sessionDate) {
+        return classSessionRepository.findByTrainingClassIdAndSessionDate(trainingClassId, sessionDate)
+                .map(ClassSession::getSeatsTaken)
+                .orElse(0);
+    }
+
+    /**
+     * Seats taken per class id on the given date, read from the session rows in one query.
+     */
+    public Map<Long, Integer> getSeatsTakenOn(LocalDate sessionDate) {
+        return classSessionRepository.findBySessionDate(sessionDate).stream()
+                .collect(Collectors.toMap(s -> s.getTrainingClass().getId(), ClassSession::getSeatsTaken));
+    }
+
+    /**
+     * Counters of all sessions from today onwards, grouped by date and class, for the actuator endpoint.
+     */
+    public Map<LocalDate, Map<Long, SessionCounters>> snapshot() {
+        Map<LocalDate, Map<Long, SessionCounters>> result = new TreeMap<>();
+        for (ClassSession session : classSessionRepository.findBySessionDateGreaterThanEqual(LocalDate.now())) {
+            result.computeIfAbsent(session.getSessionDate(), d -> new TreeMap<>())
+                    .put(session.getTrainingClass().getId(),
+                            new SessionCounters(session.getSeatsTaken(), session.getWaitlistLength()));
+        }
+        return result;
+    }
+
+    private void adjust(Long trainingClassId, LocalDate sessionDate, BookingStatus status, int delta) {
+        if (status == BookingStatus.CONFIRMED) {
+            if (classSessionRepository.adjustSeatsTaken(trainingClassId, sessionDate, delta) == 0 && delta > 0) {
+                openSession(trainingClassId, sessionDate);
+                classSessionRepository.adjustSeatsTaken(trainingClassId, sessionDate, delta);
+            }
+        } else if (status == BookingStatus.WAITLISTED) {
+            if (classSessionRepository.adjustWaitlistLength(trainingClassId, sessionDate, delta) == 0 && delta > 0) {
+                openSession(trainingClassId, sessionDate);
+                classSessionRepository.adjustWaitlistLength(trainingClassId, sessionDate, delta);
+            }
+        }
+    }
+
+    /**
+     * Creates a missing session row in the caller's transaction, seeded from the bookings. Callers that
+     * miss the row serialize on a row lock of the training class; whoever waited re-probes with an UPDATE,
+     * which sees the committed row, so only the first one inserts. No second connection is needed, which
+     * keeps the pool from starving when hundreds of first bookings arrive at once.
+     */
+    private void openSession(Long trainingClassId, LocalDate sessionDate) {
+        TrainingClass trainingClass = trainingClassRepository.findByIdForUpdate(trainingClassId)
+                .orElseThrow(() -> new RuntimeException("Training class not found"));
+        if (classSessionRepository.adjustSeatsTaken(trainingClassId, sessionDate, 0) == 1) {
+            return;
+        }
+        ClassSession session = new ClassSession(trainingClass, sessionDate);
+        session.setSeatsTaken((int) bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, sessionDate, List.of(BookingStatus.CONFIRMED)));
+        session.setWaitlistLength((int) bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
+                trainingClassId, sessionDate, List.of(BookingStatus.WAITLISTED)));
+        classSessionRepository.saveAndFlush(session);
+    }
+
+    private static SessionKey keyOf(ClassSession session) {
+        return new SessionKey(session.getTrainingClass().getId(), session.getSessionDate());
+    }
+}
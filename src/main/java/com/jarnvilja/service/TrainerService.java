@@ -32,7 +32,19 @@ public class TrainerService {
     private BookingRepository bookingRepository;
 
     @Autowired
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Autowired
+    private MailTemplateService mailTemplateService;
+
+    @Autowired
+    private MemberStatsService memberStatsService;
+
+    @Autowired
+    private BookingRollupService bookingRollupService;
 
 
     // Hämta detaljer för ett specifikt träningspass som tränaren håller
@@ -72,6 +84,12 @@ public class TrainerService {
         return bookings.stream().map(Booking::getMember).collect(Collectors.toList());
     }
 
+    // Fyller nya platser från väntelistan när passets kapacitet har höjts
+    @Transactional
+    public int promoteWaitlistAfterCapacityIncrease(Long trainingClassId, int maxCapacity) {
+        return waitlistService.promoteClass(trainingClassId, maxCapacity);
+    }
+
     // Ta bort en medlem från tränarens pass
     @Transactional
     public void removeMemberFromMyTrainingClass(Long trainerId, Long trainingClassId, Long memberId) {
@@ -85,9 +103,30 @@ public class TrainerService {
         Booking booking = bookingRepository.findByTrainingClassIdAndMemberId(trainingClassId, memberId)
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
 
+        waitlistService.transition(booking, null);
         bookingRepository.delete(booking);
     }
 
+    // Markera att en medlem kom till passet; räknas en gång i medlemmens statistik
+    @Transactional
+    public void markAttended(Long trainerId, Long bookingId) {
+        Booking booking = bookingRepository.findById(bookingId)
+                .orElseThrow(() -> new RuntimeException("Booking not found"));
+
+        User trainer = booking.getTrainingClass().getTrainer();
+        if (trainer == null || !trainer.getId().equals(trainerId)) {
+            throw new RuntimeException("Trainer does not have access to this class");
+        }
+        if (booking.getBookingStatus() != BookingStatus.CONFIRMED) {
+            throw new RuntimeException("Endast bekräftade bokningar kan markeras som närvarande.");
+        }
+        if (booking.isAttended()) return;
+
+        booking.setAttended(true);
+        bookingRepository.save(booking);
+        memberStatsService.recordAttended(booking);
+    }
+
     // Påminnelse och frånvaro:
 
     public void sendReminderForUpcomingClass(Long trainingClassId, Long trainerId) {
@@ -99,15 +138,8 @@ public class TrainerService {
             throw new RuntimeException("Du har inte behörighet att skicka påminnelser för detta pass");
         }
 
-        try {
-            emailService.sendEmail(
-                    trainingClass.getTrainer().getEmail(),
-                    "Påminnelse: " + trainingClass.getTitle(),
-                    "Ditt pass: '" + trainingClass.getTitle() + "' startar snart!"
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send email: {}", e.getMessage());
-        }
+        emailOutboxService.enqueue(trainingClass.getTrainer().getEmail(),
+                mailTemplateService.render(new MailTemplateService.ClassReminder(trainingClass.getTitle())));
     }
 
     @Transactional
@@ -118,30 +150,21 @@ public class TrainerService {
         // Markera passet som inställt
         trainingClass.setStatus(ClassStatus.CANCELLED);
 
-        try {
-            emailService.sendEmail(
-                    trainingClass.getTrainer().getEmail(),
-                    "Träningspass inställt",
-                    "Du har ställt in passet '" + trainingClass.getTitle() + "'."
-            );
-        } catch (Exception e) {
-            log.warn("Failed to send email: {}", e.getMessage());
-        }
-
-        if (trainingClass.getBookings() != null) {
-            for (Booking booking : trainingClass.getBookings()) {
-                booking.setBookingStatus(BookingStatus.CANCELLED);
-
-                try {
-                    emailService.sendEmail(
-                            booking.getMember().getEmail(),
-                            "Träningspass inställt",
-                            "Hej, ditt pass '" + trainingClass.getTitle() + "' har blivit inställt. Anledning: " + reason
-                    );
-                } catch (Exception e) {
-                    log.warn("Failed to send email: {}", e.getMessage());
-                }
-            }
+        emailOutboxService.enqueue(trainingClass.getTrainer().getEmail(),
+                mailTemplateService.render(new MailTemplateService.ClassCancelledForTrainer(trainingClass.getTitle())));
+
+        // Mottagarna läses innan avbokningen; själva avbokningen är en UPDATE-sats för hela passet
+        List<String> recipients = bookingRepository.findMemberEmailsForClass(trainingClassId, BookingStatus.ACTIVE);
+        memberStatsService.releaseClass(trainingClassId);
+        bookingRollupService.recordClassTransition(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        bookingRepository.transitionForClass(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        waitlistService.clearClass(trainingClassId);
+
+        // Samma brev till alla deltagare, så det renderas en gång
+        MailTemplateService.Rendered notice = mailTemplateService.render(
+                new MailTemplateService.ClassCancelled(trainingClass.getTitle(), reason));
+        for (String email : recipients) {
+            emailOutboxService.enqueue(email, notice);
         }
 
         // Spara ändringarna i databasen
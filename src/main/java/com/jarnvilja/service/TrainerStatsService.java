@@ -0,0 +1,120 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.TrainerStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * The trainer page's figures, aggregated in the database over the last {@value #WINDOW_WEEKS} weeks and
+ * everything booked ahead: confirmed bookings and attendance per class and day come from one GROUP BY,
+ * and the participant lists from one fetch join, so the classes' {@code bookings} collections are never
+ * loaded.
+ */
+@Service
+public class TrainerStatsService {
+
+    static final int WINDOW_WEEKS = 12;
+
+    private final TrainingClassRepository trainingClassRepository;
+    private final BookingRepository bookingRepository;
+
+    public TrainerStatsService(TrainingClassRepository trainingClassRepository, BookingRepository bookingRepository) {
+        this.trainingClassRepository = trainingClassRepository;
+        this.bookingRepository = bookingRepository;
+    }
+
+    /**
+     * The trainer page's data. {@code bookingsPerClass} and {@code participants} are keyed by class id and
+     * hold the confirmed bookings in the window.
+     */
+    public record TrainerDashboard(List<TrainingClass> classes, Map<Long, Integer> bookingsPerClass,
+                                   Map<Long, List<Booking>> participants, TrainerStatsDTO stats) { }
+
+    @Transactional(readOnly = true)
+    public TrainerDashboard getDashboard(Long trainerId) {
+        LocalDate from = windowStart();
+        List<TrainingClass> classes = trainingClassRepository.findByTrainerId(trainerId);
+
+        Map<Long, Integer> bookingsPerClass = new LinkedHashMap<>();
+        Map<Long, List<Booking>> participants = new HashMap<>();
+        for (TrainingClass tc : classes) {
+            bookingsPerClass.put(tc.getId(), 0);
+            participants.put(tc.getId(), new ArrayList<>());
+        }
+        for (Booking booking : bookingRepository.findConfirmedForTrainerFrom(trainerId, from)) {
+            participants.computeIfAbsent(booking.getTrainingClass().getId(), id -> new ArrayList<>()).add(booking);
+        }
+
+        TrainerStatsDTO stats = getStats(trainerId, classes, from, bookingsPerClass);
+        return new TrainerDashboard(classes, bookingsPerClass, participants, stats);
+    }
+
+    // Fyller bookingsPerClass (klass-id → bekräftade) och bygger statistiken ur en GROUP BY per pass och dag
+    private TrainerStatsDTO getStats(Long trainerId, List<TrainingClass> classes, LocalDate from,
+                                     Map<Long, Integer> bookingsPerClass) {
+        Map<Long, TrainingClass> classById = new HashMap<>();
+        classes.forEach(tc -> classById.put(tc.getId(), tc));
+
+        long totalConfirmed = 0;
+        long totalAttended = 0;
+        Map<DayOfWeek, Integer> bookingsByDay = new EnumMap<>(DayOfWeek.class);
+        TreeMap<LocalDate, Integer> perWeek = new TreeMap<>();
+        for (Object[] row : bookingRepository.countConfirmedForTrainerFrom(trainerId, from)) {
+            TrainingClass tc = classById.get((Long) row[0]);
+            if (tc == null) continue;
+            LocalDate date = (LocalDate) row[1];
+            int confirmed = ((Number) row[2]).intValue();
+            int attended = row[3] != null ? ((Number) row[3]).intValue() : 0;
+
+            bookingsPerClass.merge(tc.getId(), confirmed, Integer::sum);
+            totalConfirmed += confirmed;
+            totalAttended += attended;
+            if (tc.getTrainingDay() != null) {
+                bookingsByDay.merge(tc.getTrainingDay(), confirmed, Integer::sum);
+            }
+            perWeek.merge(date.with(DayOfWeek.MONDAY), confirmed, Integer::sum);
+        }
+
+        TrainerStatsDTO stats = new TrainerStatsDTO();
+        stats.setTotalClasses(classes.size());
+        stats.setTotalBookings((int) totalConfirmed);
+        stats.setAvgAttendanceRate(totalConfirmed > 0 ? (double) totalAttended / totalConfirmed * 100 : 0);
+        stats.setMostPopularDay(bookingsByDay.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .max(Map.Entry.comparingByValue())
+                .map(e -> swedishDay(e.getKey()))
+                .orElse("–"));
+        for (TrainingClass tc : classes) {
+            stats.getBookingsPerClass().put(tc.getTitle(), bookingsPerClass.getOrDefault(tc.getId(), 0));
+        }
+        // Fönstret är kortare än ett år, så veckonumret räcker som etikett; ordningen är kronologisk
+        perWeek.forEach((monday, count) ->
+                stats.getWeeklyAttendance().put("v" + monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), count));
+        return stats;
+    }
+
+    private static LocalDate windowStart() {
+        return LocalDate.now().minusWeeks(WINDOW_WEEKS);
+    }
+
+    private static String swedishDay(DayOfWeek day) {
+        return switch (day) {
+            case MONDAY -> "Måndag";
+            case TUESDAY -> "Tisdag";
+            case WEDNESDAY -> "Onsdag";
+            case THURSDAY -> "Torsdag";
+            case FRIDAY -> "Fredag";
+            case SATURDAY -> "Lördag";
+            case SUNDAY -> "Söndag";
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package com.jarnvilja.service;
+
+/**
+ * Published when a training class is created, updated or deleted, so caches built from the classes can
+ * be rebuilt. Listeners run after the surrounding transaction commits.
+ */
+public record TrainingClassChangedEvent(Long trainingClassId) { }
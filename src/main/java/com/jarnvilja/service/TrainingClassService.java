@@ -8,7 +8,9 @@ import com.jarnvilja.model.User;
 import com.jarnvilja.repository.BookingRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.repository.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
@@ -21,20 +23,29 @@ public class TrainingClassService {
     private final TrainingClassRepository trainingClassRepository;
     private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClassSearchIndex classSearchIndex;
+    private final BookingService bookingService;
 
     public TrainingClassService(TrainingClassRepository trainingClassRepository,
                                 UserRepository userRepository,
-                                BookingRepository bookingRepository) {
+                                BookingRepository bookingRepository,
+                                ApplicationEventPublisher eventPublisher,
+                                ClassSearchIndex classSearchIndex,
+                                BookingService bookingService) {
         this.trainingClassRepository = trainingClassRepository;
         this.userRepository = userRepository;
         this.bookingRepository = bookingRepository;
+        this.eventPublisher = eventPublisher;
+        this.classSearchIndex = classSearchIndex;
+        this.bookingService = bookingService;
     }
 
     // Hantera träningspass:
 
     // ✅ Skapa ett nytt träningspass
     public TrainingClass createTrainingClass(TrainingClass trainingClass) {
-        return trainingClassRepository.save(trainingClass);
+        return changed(trainingClassRepository.save(trainingClass));
     }
 
     // ✅ Uppdatera ett befintligt träningspass
@@ -48,12 +59,17 @@ public class TrainingClassService {
         trainingClass.setStartTime(updatedClass.getStartTime());
         trainingClass.setEndTime(updatedClass.getEndTime());
 
-        return trainingClassRepository.save(trainingClass);
+        return changed(trainingClassRepository.save(trainingClass));
     }
 
     // ✅ Ta bort ett träningspass
+    // Bokningarna tas bort först via bokningstjänsten, så att medlemmarnas räknare, dagssummorna och
+    // platsräknarna följer med; databasens kaskad gör inget av det
+    @Transactional
     public void deleteTrainingClass(Long trainingClassId) {
+        bookingService.deleteBookingsByClassId(trainingClassId);
         trainingClassRepository.deleteById(trainingClassId);
+        eventPublisher.publishEvent(new TrainingClassChangedEvent(trainingClassId));
     }
 
     // ✅ Hämta träningspass baserat på ID
@@ -81,7 +97,7 @@ public class TrainingClassService {
     // Schemaläggning och tillgänglighet:
 
     public TrainingClass scheduleTrainingClass(TrainingClass trainingClass) {
-        return trainingClassRepository.save(trainingClass);
+        return changed(trainingClassRepository.save(trainingClass));
     }
 
     public void updateTrainingClassSchedule(Long trainingClassId, DayOfWeek newDay, LocalTime newStartTime, LocalTime newEndTime) {
@@ -92,7 +108,7 @@ public class TrainingClassService {
         trainingClass.setStartTime(newStartTime);
         trainingClass.setEndTime(newEndTime);
 
-        trainingClassRepository.save(trainingClass);
+        changed(trainingClassRepository.save(trainingClass));
     }
 
 
@@ -107,7 +123,7 @@ public class TrainingClassService {
 
         trainingClass.setTrainer(trainer);
 
-        trainingClassRepository.save(trainingClass);
+        changed(trainingClassRepository.save(trainingClass));
     }
 
     public void removeTrainerFromTrainingClass(Long trainingClassId) {
@@ -116,7 +132,7 @@ public class TrainingClassService {
 
         trainingClass.setTrainer(null);
 
-        trainingClassRepository.save(trainingClass);
+        changed(trainingClassRepository.save(trainingClass));
     }
 
     public void addMemberToTrainingClass(Long trainingClassId, Long memberId) {
@@ -164,8 +180,16 @@ public class TrainingClassService {
 
     // Övrigt:
 
+    // Schemat på /traningsschema byggs om när ett pass har ändrats
+    private TrainingClass changed(TrainingClass trainingClass) {
+        if (trainingClass != null) {
+            eventPublisher.publishEvent(new TrainingClassChangedEvent(trainingClass.getId()));
+        }
+        return trainingClass;
+    }
+
     public List<TrainingClass> getTrainingClassByType(String type) {
-        return trainingClassRepository.findByTitleContainingIgnoreCase(type);
+        return classSearchIndex.findClasses(type);
     }
 
     public List<TrainingClass> getMemberTrainingClassHistory(Long memberId) {
@@ -0,0 +1,283 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory trigram index over the users' username, email, first and last name for the admin search.
+ * Every user gets a slot number; each three-letter sequence of the folded fields points to the sorted
+ * slots containing it, and each role to a bitmap of its slots. A query word of three letters or more is
+ * looked up by intersecting its trigrams, starting with the rarest, and the role filter is one bit test
+ * per candidate. The candidates are then checked against the text, so a hit always contains every query
+ * word in one of its fields. Kept up to date by {@link com.jarnvilja.config.UserSearchIndexListener} and rebuilt
+ * periodically to pick up users changed on other nodes.
+ */
+@Slf4j
+@Service
+public class UserSearchIndex {
+
+    static final int GRAM = 3;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final UserRepository userRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<String[]> foldedFields = new ArrayList<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<Role, BitSet> slotsByRole = new EnumMap<>(Role.class);
+    private final Map<String, Postings> postings = new HashMap<>();
+    private volatile boolean built;
+
+    public UserSearchIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * The indexed fields of one user, enough to sort and page the hits without loading them.
+     */
+    public record Entry(Long id, String username, String email, String firstName, String lastName, Role role,
+                        LocalDate createdAt) {
+
+        public static Entry of(User user) {
+            return new Entry(user.getId(), user.getUsername(), user.getEmail(), user.getFirstName(),
+                    user.getLastName(), user.getRole(), user.getCreatedAt());
+        }
+    }
+
+    /**
+     * Users whose username, email, first or last name contains every whitespace-separated word of the query,
+     * optionally with the given role, in no particular order. A blank query matches every user of the role.
+     */
+    public List<Entry> search(String query, Role role) {
+        if (!built) ensureBuilt();
+        List<String> words = words(query);
+        lock.readLock().lock();
+        try {
+            BitSet allowed = role != null ? slotsByRole.getOrDefault(role, new BitSet()) : live;
+            List<Postings> lists = new ArrayList<>();
+            for (String word : words) {
+                for (String gram : grams(word)) {
+                    Postings p = postings.get(gram);
+                    if (p == null) return List.of();
+                    lists.add(p);
+                }
+            }
+
+            List<Entry> hits = new ArrayList<>();
+            if (lists.isEmpty()) {
+                // Bara korta ord: inga trigram att slå upp, så rollens slottar prövas direkt
+                for (int slot = allowed.nextSetBit(0); slot >= 0; slot = allowed.nextSetBit(slot + 1)) {
+                    if (containsAll(foldedFields.get(slot), words)) hits.add(entries.get(slot));
+                }
+                return hits;
+            }
+            lists.sort(Comparator.comparingInt(Postings::size));
+            Postings rarest = lists.get(0);
+            for (int i = 0; i < rarest.size(); i++) {
+                int slot = rarest.get(i);
+                if (!allowed.get(slot) || !inAll(lists, slot)) continue;
+                if (containsAll(foldedFields.get(slot), words)) hits.add(entries.get(slot));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a user or replaces its previous fields. Ignored until the index has been built, since the build
+     * reads the users table anyway.
+     */
+    public synchronized void put(Entry entry) {
+        if (!built || entry.id() == null) return;
+        lock.writeLock().lock();
+        try {
+            unindex(entry.id());
+            index(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public synchronized void remove(Long id) {
+        if (!built || id == null) return;
+        lock.writeLock().lock();
+        try {
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the table at startup and then every {@code app.search.refresh-ms}, since the
+     * entity listener only sees the changes saved on this node.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.search.refresh-ms:60000}", initialDelayString = "${app.search.refresh-ms:60000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    private synchronized void ensureBuilt() {
+        if (!built) rebuild();
+    }
+
+    synchronized void rebuild() {
+        List<Object[]> rows = userRepository.findSearchRows();
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            foldedFields.clear();
+            slotById.clear();
+            freeSlots.clear();
+            live.clear();
+            slotsByRole.clear();
+            postings.clear();
+            for (Object[] row : rows) {
+                index(new Entry((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4],
+                        (Role) row[5], (LocalDate) row[6]));
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("User search index built for {} users", rows.size());
+    }
+
+    private void index(Entry entry) {
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = entries.size();
+            entries.add(entry);
+            foldedFields.add(null);
+        } else {
+            slot = freeSlots.pop();
+            entries.set(slot, entry);
+        }
+        String[] fields = fold(entry);
+        foldedFields.set(slot, fields);
+        slotById.put(entry.id(), slot);
+        live.set(slot);
+        if (entry.role() != null) slotsByRole.computeIfAbsent(entry.role(), r -> new BitSet()).set(slot);
+        for (String gram : grams(fields)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(slot);
+        }
+    }
+
+    private void unindex(Long id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) return;
+        for (String gram : grams(foldedFields.get(slot))) {
+            Postings p = postings.get(gram);
+            if (p == null) continue;
+            p.remove(slot);
+            if (p.size() == 0) postings.remove(gram);
+        }
+        live.clear(slot);
+        slotsByRole.values().forEach(bits -> bits.clear(slot));
+        entries.set(slot, null);
+        foldedFields.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    private static boolean inAll(List<Postings> lists, int slot) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(slot)) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsAll(String[] fields, List<String> words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String field : fields) {
+                if (field.contains(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    // Samma vikning som passökningen: gemener, å/ä → a och ö → o
+    private static String[] fold(Entry entry) {
+        return new String[]{fold(entry.username()), fold(entry.email()), fold(entry.firstName()), fold(entry.lastName())};
+    }
+
+    private static String fold(String value) {
+        return value != null ? ClassSearchIndex.fold(value) : "";
+    }
+
+    static List<String> words(String query) {
+        if (query == null || query.isBlank()) return List.of();
+        return Arrays.stream(WHITESPACE.split(fold(query))).filter(word -> !word.isEmpty()).toList();
+    }
+
+    static Set<String> grams(String... texts) {
+        Set<String> grams = new HashSet<>();
+        for (String text : texts) {
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                grams.add(text.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * Sorted slot numbers of one trigram. Slots are mostly handed out in increasing order, so adding one is
+     * usually an append.
+     */
+    static final class Postings {
+
+        private int[] slots = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int i) {
+            return slots[i];
+        }
+
+        boolean contains(int slot) {
+            return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+        }
+
+        void add(int slot) {
+            int at = Arrays.binarySearch(slots, 0, size, slot);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            System.arraycopy(slots, at, slots, at + 1, size - at);
+            slots[at] = slot;
+            size++;
+        }
+
+        void remove(int slot) {
+            int at = Arrays.binarySearch(slots, 0, size, slot);
+            if (at < 0) return;
+            System.arraycopy(slots, at + 1, slots, at, size - at - 1);
+            size--;
+        }
+    }
+}
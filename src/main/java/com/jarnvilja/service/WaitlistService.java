@@ -0,0 +1,383 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ordered waitlist per class session. A freed seat goes to the oldest WAITLISTED booking in the bookings
+ * table, in the same transaction, so the queue stays first come, first served across nodes. The queues in
+ * memory are a cache of the table, kept in {@code bookingTimeStamp} order so a member's position is
+ * answered without counting bookings; they are rebuilt at startup and every {@code app.waitlist.refresh-ms}
+ * to pick up bookings queued on other nodes.
+ */
+@Slf4j
+@Service
+public class WaitlistService {
+
+    private static final int DEFAULT_CAPACITY = 20;
+
+    private final BookingRepository bookingRepository;
+    private final SeatLedger seatLedger;
+    private final MemberStatsService memberStatsService;
+    private final BookingRollupService bookingRollupService;
+    private final PendingExpiryService pendingExpiryService;
+
+    private final Map<SeatLedger.SessionKey, SessionWaitlist> waitlists = new ConcurrentHashMap<>();
+    private final Map<Long, SeatLedger.SessionKey> sessionOfBooking = new ConcurrentHashMap<>();
+
+    public WaitlistService(BookingRepository bookingRepository, SeatLedger seatLedger,
+                           MemberStatsService memberStatsService, BookingRollupService bookingRollupService,
+                           PendingExpiryService pendingExpiryService) {
+        this.bookingRepository = bookingRepository;
+        this.seatLedger = seatLedger;
+        this.memberStatsService = memberStatsService;
+        this.bookingRollupService = bookingRollupService;
+        this.pendingExpiryService = pendingExpiryService;
+    }
+
+    /**
+     * An active booking as read before a bulk status change.
+     */
+    public record Claim(Long bookingId, SeatLedger.SessionKey session, BookingStatus status, int maxCapacity) { }
+
+    /**
+     * Loads every waitlist from today onwards, in the order the bookings were made. The new queues replace
+     * the old ones session by session, so positions stay readable while the refresh runs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.waitlist.refresh-ms:60000}", initialDelayString = "${app.waitlist.refresh-ms:60000}")
+    public void rebuild() {
+        List<Object[]> rows = bookingRepository.findWaitlistFrom(LocalDate.now());
+        Map<SeatLedger.SessionKey, SessionWaitlist> fresh = new HashMap<>();
+        Map<Long, SeatLedger.SessionKey> sessions = new HashMap<>();
+        for (Object[] row : rows) {
+            SeatLedger.SessionKey key = new SeatLedger.SessionKey((Long) row[1], (LocalDate) row[2]);
+            fresh.computeIfAbsent(key, k -> new SessionWaitlist()).append((Long) row[0]);
+            sessions.put((Long) row[0], key);
+        }
+        waitlists.putAll(fresh);
+        waitlists.keySet().retainAll(fresh.keySet());
+        sessionOfBooking.putAll(sessions);
+        sessionOfBooking.keySet().retainAll(sessions.keySet());
+        log.debug("Waitlists rebuilt with {} waiting bookings in {} sessions", rows.size(), fresh.size());
+    }
+
+    /**
+     * Puts a newly waitlisted booking at the back of its session's queue.
+     */
+    public void enqueue(Booking booking) {
+        SeatLedger.SessionKey key = keyOf(booking);
+        if (key == null || booking.getId() == null) return;
+        add(booking.getId(), key);
+        reloadOnRollback(key);
+    }
+
+    /**
+     * Applies a status change of a booking to the session counters, the member's stats, the daily rollup, the queue and the
+     * pending-hold timers. When a CONFIRMED
+     * booking gives up its seat, the head of the waitlist is promoted in the caller's transaction.
+     */
+    @Transactional
+    public void transition(Booking booking, BookingStatus to) {
+        transition(booking, booking.getBookingStatus(), to, true);
+    }
+
+    /**
+     * Like {@link #transition(Booking, BookingStatus)} but never promotes; used when a whole class is
+     * cancelled and every booking of the session is leaving anyway.
+     */
+    @Transactional
+    public void release(Booking booking, BookingStatus to) {
+        transition(booking, booking.getBookingStatus(), to, false);
+    }
+
+    @Transactional
+    public void transition(Booking booking, BookingStatus from, BookingStatus to, boolean promote) {
+        if (from == to) return;
+        memberStatsService.recordTransition(booking, from, to);
+        bookingRollupService.recordTransition(booking, from, to);
+        if (to == BookingStatus.PENDING && booking.getId() != null && booking.getBookingTimeStamp() != null) {
+            pendingExpiryService.track(booking.getId(), booking.getBookingTimeStamp());
+        }
+        SeatLedger.SessionKey key = keyOf(booking);
+        if (key == null) return;
+        seatLedger.transition(key.trainingClassId(), key.sessionDate(), from, to);
+
+        if (from == BookingStatus.WAITLISTED && booking.getId() != null) {
+            remove(booking.getId());
+            reloadOnRollback(key);
+        } else if (to == BookingStatus.WAITLISTED) {
+            enqueue(booking);
+        }
+        if (promote && from == BookingStatus.CONFIRMED) {
+            promote(key.trainingClassId(), key.sessionDate(), capacityOf(booking));
+        }
+    }
+
+    /**
+     * Mirrors a bulk cancellation already written to the bookings table. Counters are given back with one
+     * UPDATE per session and status, the bookings leave their queues, and every upcoming session that lost a confirmed
+     * seat promotes from its waitlist.
+     */
+    @Transactional
+    public void releaseAll(List<Claim> claims) {
+        Map<SeatLedger.SessionKey, int[]> released = new LinkedHashMap<>();
+        Map<SeatLedger.SessionKey, Integer> capacities = new HashMap<>();
+        memberStatsService.recordReleased(claims.stream()
+                .filter(claim -> claim.status() == BookingStatus.CONFIRMED)
+                .map(Claim::bookingId)
+                .toList());
+        for (Claim claim : claims) {
+            if (claim.session().sessionDate() == null) continue;
+            int[] counts = released.computeIfAbsent(claim.session(), k -> new int[3]);
+            if (claim.status() == BookingStatus.CONFIRMED) {
+                counts[0]++;
+            } else if (claim.status() == BookingStatus.WAITLISTED) {
+                counts[1]++;
+                remove(claim.bookingId());
+            } else if (claim.status() == BookingStatus.PENDING) {
+                counts[2]++;
+            }
+            capacities.put(claim.session(), claim.maxCapacity() > 0 ? claim.maxCapacity() : DEFAULT_CAPACITY);
+        }
+
+        LocalDate today = LocalDate.now();
+        released.forEach((key, counts) -> {
+            seatLedger.release(key.trainingClassId(), key.sessionDate(), counts[0], counts[1]);
+            bookingRollupService.recordMoved(key, BookingStatus.CONFIRMED, BookingStatus.CANCELLED, counts[0]);
+            bookingRollupService.recordMoved(key, BookingStatus.WAITLISTED, BookingStatus.CANCELLED, counts[1]);
+            bookingRollupService.recordMoved(key, BookingStatus.PENDING, BookingStatus.CANCELLED, counts[2]);
+            if (counts[1] > 0) reloadOnRollback(key);
+            if (counts[0] > 0 && !key.sessionDate().isBefore(today)) {
+                promote(key.trainingClassId(), key.sessionDate(), capacities.get(key));
+            }
+        });
+    }
+
+    /**
+     * Zeroes the counters and drops the queues of a class whose active bookings were all cancelled.
+     */
+    @Transactional
+    public void clearClass(Long trainingClassId) {
+        seatLedger.resetClass(trainingClassId);
+        List<SeatLedger.SessionKey> dropped = waitlists.keySet().stream()
+                .filter(k -> k.trainingClassId().equals(trainingClassId))
+                .toList();
+        for (SeatLedger.SessionKey key : dropped) {
+            waitlists.remove(key);
+            reloadOnRollback(key);
+        }
+        sessionOfBooking.values().removeIf(k -> k.trainingClassId().equals(trainingClassId));
+    }
+
+    /**
+     * Fills free seats of a session from the head of its waitlist. Returns how many were promoted.
+     */
+    @Transactional
+    public int promote(Long trainingClassId, LocalDate sessionDate, int maxCapacity) {
+        SeatLedger.SessionKey key = new SeatLedger.SessionKey(trainingClassId, sessionDate);
+        int promoted = 0;
+        while (seatLedger.promote(trainingClassId, sessionDate, maxCapacity)) {
+            Long bookingId = claimHead(key);
+            if (bookingId == null) {
+                // Räknaren sa att någon väntade men ingen hittades; lämna tillbaka platsen
+                seatLedger.transition(trainingClassId, sessionDate, BookingStatus.CONFIRMED, null);
+                break;
+            }
+            log.info("Booking {} promoted from the waitlist of class {} on {}", bookingId, trainingClassId, sessionDate);
+            memberStatsService.recordPromoted(bookingId);
+            promoted++;
+        }
+        if (promoted > 0) {
+            bookingRollupService.recordMoved(key, BookingStatus.WAITLISTED, BookingStatus.CONFIRMED, promoted);
+            reloadOnRollback(key);
+        }
+        return promoted;
+    }
+
+    /**
+     * Promotes waiting members in every upcoming session of a class, e.g. after its capacity was raised.
+     */
+    @Transactional
+    public int promoteClass(Long trainingClassId, int maxCapacity) {
+        int promoted = 0;
+        // Sessionerna läses från tabellen, så även köer som byggts upp på andra noder fylls på
+        for (LocalDate sessionDate : bookingRepository.findWaitlistedDates(trainingClassId, LocalDate.now())) {
+            promoted += promote(trainingClassId, sessionDate, maxCapacity);
+        }
+        return promoted;
+    }
+
+    /**
+     * 1-based position of a waitlisted booking in its session's queue, or empty if it is not waiting.
+     */
+    public OptionalInt getPosition(Long bookingId) {
+        SeatLedger.SessionKey key = sessionOfBooking.get(bookingId);
+        SessionWaitlist waitlist = key != null ? waitlists.get(key) : null;
+        if (waitlist == null) return OptionalInt.empty();
+        int position = waitlist.positionOf(bookingId);
+        return position > 0 ? OptionalInt.of(position) : OptionalInt.empty();
+    }
+
+    public int getWaitlistLength(Long trainingClassId, LocalDate sessionDate) {
+        SessionWaitlist waitlist = waitlists.get(new SeatLedger.SessionKey(trainingClassId, sessionDate));
+        return waitlist != null ? waitlist.size() : 0;
+    }
+
+    /**
+     * Forgets the queues of past sessions.
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void evictPastSessions() {
+        LocalDate today = LocalDate.now();
+        waitlists.keySet().removeIf(k -> k.sessionDate().isBefore(today));
+        sessionOfBooking.values().removeIf(k -> k.sessionDate().isBefore(today));
+    }
+
+    /**
+     * Re-reads one session's queue from the bookings table.
+     */
+    void reload(SeatLedger.SessionKey key) {
+        List<Long> ids = bookingRepository.findWaitlistedIds(key.trainingClassId(), key.sessionDate());
+        SessionWaitlist fresh = new SessionWaitlist();
+        ids.forEach(fresh::append);
+        SessionWaitlist previous = waitlists.put(key, fresh);
+        if (previous != null) {
+            previous.ids().forEach(id -> sessionOfBooking.remove(id, key));
+        }
+        ids.forEach(id -> sessionOfBooking.put(id, key));
+    }
+
+    // Tar den äldsta bokningen som fortfarande väntar enligt tabellen; köerna i minnet kan sakna bokningar
+    // som lagts på andra noder. En bokning som någon annan hunnit flytta hoppas över.
+    private Long claimHead(SeatLedger.SessionKey key) {
+        for (Long id : bookingRepository.findWaitlistedIds(key.trainingClassId(), key.sessionDate())) {
+            remove(id);
+            if (bookingRepository.promoteWaitlisted(id) == 1) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private void add(Long bookingId, SeatLedger.SessionKey key) {
+        waitlists.computeIfAbsent(key, k -> new SessionWaitlist()).append(bookingId);
+        sessionOfBooking.put(bookingId, key);
+    }
+
+    private void remove(Long bookingId) {
+        SeatLedger.SessionKey key = sessionOfBooking.remove(bookingId);
+        SessionWaitlist waitlist = key != null ? waitlists.get(key) : null;
+        if (waitlist != null) {
+            waitlist.remove(bookingId);
+        }
+    }
+
+    // Ändringar i minnet följer inte med en rollback, så sessionen läses om från tabellen efteråt
+    private void reloadOnRollback(SeatLedger.SessionKey key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    reload(key);
+                }
+            }
+        });
+    }
+
+    private static SeatLedger.SessionKey keyOf(Booking booking) {
+        if (booking == null || booking.getTrainingClass() == null || booking.getBookingDate() == null) return null;
+        return new SeatLedger.SessionKey(booking.getTrainingClass().getId(), booking.getBookingDate());
+    }
+
+    private static int capacityOf(Booking booking) {
+        int maxCapacity = booking.getTrainingClass().getMaxCapacity();
+        return maxCapacity > 0 ? maxCapacity : DEFAULT_CAPACITY;
+    }
+
+    /**
+     * One session's queue. Every booking gets the next sequence number; a Fenwick tree over the sequence
+     * numbers counts the entries still waiting, so a position is a prefix sum in O(log n) and removing
+     * from the middle of the queue is just as cheap.
+     */
+    static final class SessionWaitlist {
+
+        private final TreeMap<Integer, Long> order = new TreeMap<>();
+        private final Map<Long, Integer> sequenceOf = new HashMap<>();
+        private int[] tree = new int[16];
+        private int nextSequence = 1;
+
+        synchronized void append(Long bookingId) {
+            if (sequenceOf.containsKey(bookingId)) return;
+            int sequence = nextSequence++;
+            if (sequence >= tree.length) grow();
+            order.put(sequence, bookingId);
+            sequenceOf.put(bookingId, sequence);
+            update(sequence, 1);
+        }
+
+        synchronized boolean remove(Long bookingId) {
+            Integer sequence = sequenceOf.remove(bookingId);
+            if (sequence == null) return false;
+            order.remove(sequence);
+            update(sequence, -1);
+            return true;
+        }
+
+        synchronized Long pollFirst() {
+            Map.Entry<Integer, Long> first = order.firstEntry();
+            if (first == null) return null;
+            remove(first.getValue());
+            return first.getValue();
+        }
+
+        synchronized int positionOf(Long bookingId) {
+            Integer sequence = sequenceOf.get(bookingId);
+            return sequence != null ? prefixSum(sequence) : 0;
+        }
+
+        synchronized int size() {
+            return order.size();
+        }
+
+        synchronized List<Long> ids() {
+            return new ArrayList<>(order.values());
+        }
+
+        private void update(int index, int delta) {
+            for (int i = index; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private int prefixSum(int index) {
+            int sum = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        // Bygger om trädet i dubbel storlek från de poster som finns kvar
+        private void grow() {
+            tree = new int[tree.length * 2];
+            for (Integer sequence : order.keySet()) {
+                update(sequence, 1);
+            }
+        }
+    }
+}
@@ -1,19 +1,28 @@
 package com.jarnvilja.controller;
 
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.BookingPageDTO;
 import com.jarnvilja.dto.BookingStatsDTO;
 import com.jarnvilja.dto.MemberStatsDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
 import com.jarnvilja.dto.TrainingClassStatsDTO;
+import com.jarnvilja.dto.UserDTO;
 import com.jarnvilja.model.*;
+import com.jarnvilja.repository.BookingBrowseRepository;
 
 import com.jarnvilja.service.AdminService;
+import com.jarnvilja.service.TrainingClassService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
 import org.springframework.web.servlet.view.RedirectView;
 
 import java.time.LocalDate;
@@ -29,9 +38,15 @@ public class AdminControllerTest {
     @InjectMocks
     private AdminController adminController;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private AdminService adminService;
 
+    @Mock
+    private TrainingClassService trainingClassService;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -47,7 +62,7 @@ public class AdminControllerTest {
 
         when(adminService.createUser (any(User.class))).thenReturn(user);
 
-        ResponseEntity<User> createdUser  = adminController.createUser (user);
+        ResponseEntity<UserDTO> createdUser  = adminController.createUser (user);
 
         assertNotNull(createdUser );
         assertEquals("testuser", Objects.requireNonNull(createdUser.getBody()).getUsername());
@@ -106,7 +121,7 @@ public class AdminControllerTest {
         List<User> users = Arrays.asList(user1, user2);
         when(adminService.getAllUsers()).thenReturn(users);
 
-        ResponseEntity<List<User>> response = adminController.getAllUsers();
+        ResponseEntity<List<UserDTO>> response = adminController.getAllUsers();
 
         assertNotNull(response);
         assertEquals(2, response.getBody().size());
@@ -127,10 +142,10 @@ public class AdminControllerTest {
 
         when(adminService.getUserById(anyLong())).thenReturn(user1);
 
-        ResponseEntity<User> response = adminController.getUserId(user1.getId());
+        ResponseEntity<UserDTO> response = adminController.getUserId(user1.getId());
 
         assertNotNull(response);
-        assertEquals(user1, response.getBody());
+        assertEquals(new UserDTO(user1), response.getBody());
         verify(adminService, times(1)).getUserById(anyLong());
     }
 
@@ -154,13 +169,13 @@ public class AdminControllerTest {
 
         when(adminService.getUsersByRole(Role.ROLE_MEMBER)).thenReturn(users);
 
-        ResponseEntity<List<User>> response = adminController.getUsersByRole(Role.ROLE_MEMBER);
+        ResponseEntity<List<UserDTO>> response = adminController.getUsersByRole(Role.ROLE_MEMBER);
 
         assertNotNull(response);
         assertEquals(3, Objects.requireNonNull(response.getBody()).size());
-        assertEquals(user1, response.getBody().get(0));
-        assertEquals(user2, response.getBody().get(1));
-        assertEquals(user3, response.getBody().get(2));
+        assertEquals(new UserDTO(user1), response.getBody().get(0));
+        assertEquals(new UserDTO(user2), response.getBody().get(1));
+        assertEquals(new UserDTO(user3), response.getBody().get(2));
 
         verify(adminService, times(1)).getUsersByRole(Role.ROLE_MEMBER);
 
@@ -185,7 +200,7 @@ public class AdminControllerTest {
         when(adminService.assignRoleToUser(user2.getId(), newRole)).thenReturn(updatedUser);
 
         // Act
-        ResponseEntity<User> response = adminController.assignRoleToUser(user2.getId(), newRole);
+        ResponseEntity<UserDTO> response = adminController.assignRoleToUser(user2.getId(), newRole);
 
         // Assert
         Assertions.assertNotNull(response);
@@ -215,13 +230,12 @@ public class AdminControllerTest {
 
         when(adminService.resetUserPassword(userId, newPassword)).thenReturn(updatedUser);
 
-        ResponseEntity<User> response = adminController.resetUserPassword(userId, newPassword);
+        ResponseEntity<UserDTO> response = adminController.resetUserPassword(userId, newPassword);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         Assertions.assertNotNull(response.getBody());
         assertEquals("user", response.getBody().getUsername());
-        assertEquals(newPassword, response.getBody().getPassword());
 
 
         verify(adminService, times(1)).resetUserPassword(userId, newPassword);
@@ -249,13 +263,13 @@ public class AdminControllerTest {
 
         when(adminService.assignTrainerToClass(classId, trainerId)).thenReturn(updatedTrainingClass);
 
-        ResponseEntity<TrainingClass> response = adminController.assignTrainerToClass(classId, trainerId);
+        ResponseEntity<TrainingClassDTO> response = adminController.assignTrainerToClass(classId, trainerId);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         Assertions.assertNotNull(response.getBody());
-        assertEquals("trainer", response.getBody().getTrainer().getUsername());
-        assertEquals(trainerId, response.getBody().getTrainer().getId());
+        assertEquals("trainer", response.getBody().getTrainerName());
+        assertEquals(trainerId, response.getBody().getTrainerId());
         assertEquals("BJJ", response.getBody().getTitle());
 
         verify(adminService, times(1)).assignTrainerToClass(classId, trainerId);
@@ -307,12 +321,12 @@ public class AdminControllerTest {
         when(adminService.getTrainerFromClass(classId)).thenReturn(Optional.of(expectedTrainer));
 
         // Act
-        ResponseEntity<User> response = adminController.getTrainerFromClass(classId);
+        ResponseEntity<UserDTO> response = adminController.getTrainerFromClass(classId);
 
         // Assert
         Assertions.assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode()); // Förväntar oss 200 OK
-        assertEquals(expectedTrainer, response.getBody()); // Kontrollera att rätt tränare returneras
+        assertEquals(new UserDTO(expectedTrainer), response.getBody()); // Kontrollera att rätt tränare returneras
 
         verify(adminService, times(1)).getTrainerFromClass(classId);
     }
@@ -329,18 +343,37 @@ public class AdminControllerTest {
         when(adminService.getAllTrainers()).thenReturn(expectedTrainers);
 
         // Act
-        ResponseEntity<List<User>> response = adminController.getAllTrainers();
+        ResponseEntity<List<UserDTO>> response = adminController.getAllTrainers();
 
         // Assert
         Assertions.assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode()); // Förväntar oss 200 OK
-        assertEquals(expectedTrainers, response.getBody()); // Kontrollera att listan av tränare är korrekt
+        assertEquals(expectedTrainers.stream().map(UserDTO::new).toList(), response.getBody()); // Kontrollera att listan av tränare är korrekt
 
         verify(adminService, times(1)).getAllTrainers();
     }
 
 
 
+    // browseBookings() → Filtren skickas vidare och nästa markör följer med sidan (GET /bookings/browse)
+    @Test
+    void testBrowseBookings() {
+        User member = new User(1L, "john.doe@example.com", "JohnDoe", "password123", Role.ROLE_MEMBER);
+        TrainingClass trainingClass = new TrainingClass();
+        trainingClass.setId(1L);
+        Booking booking = new Booking(member, trainingClass);
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        BookingBrowseRepository.Filter filter = new BookingBrowseRepository.Filter(BookingStatus.CONFIRMED, 1L, "JohnDoe", from, null);
+
+        when(adminService.browseBookings(filter, null, 100))
+                .thenReturn(new AdminService.BookingBrowsePage(List.of(booking), "nästa"));
+
+        ResponseEntity<BookingPageDTO> response = adminController.browseBookings(BookingStatus.CONFIRMED, 1L, "JohnDoe", from, null, null, 500);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(new BookingPageDTO(List.of(new BookingDTO(booking)), "nästa"), response.getBody());
+    }
+
     // getAllBookings() → Testa att hämta alla bokningar och verifiera att listan är korrekt (GET /bookings)
     @Test
     void testGetAllBookings() {
@@ -357,7 +390,7 @@ public class AdminControllerTest {
 
         when(adminService.getAllBookings()).thenReturn(expectedBookings);
 
-        ResponseEntity<List<Booking>> response = adminController.getAllBookings();
+        ResponseEntity<List<BookingDTO>> response = adminController.getAllBookings();
 
         Assertions.assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -366,10 +399,10 @@ public class AdminControllerTest {
         // Kontrollera att varje bokning har rätt attribut
         for (int i = 0; i < expectedBookings.size(); i++) {
             Booking expectedBooking = expectedBookings.get(i);
-            Booking actualBooking = response.getBody().get(i);
+            BookingDTO actualBooking = response.getBody().get(i);
 
-            assertEquals(expectedBooking.getMember(), actualBooking.getMember());
-            assertEquals(expectedBooking.getTrainingClass(), actualBooking.getTrainingClass());
+            assertEquals(expectedBooking.getMember().getId(), actualBooking.getMemberId());
+            assertEquals(expectedBooking.getTrainingClass().getTitle(), actualBooking.getTrainingTitle());
             assertEquals(expectedBooking.getBookingDate(), actualBooking.getBookingDate());
             assertEquals(expectedBooking.getBookingTimeStamp(), actualBooking.getBookingTimeStamp());
             assertEquals(expectedBooking.getBookingStatus(), actualBooking.getBookingStatus());
@@ -405,62 +438,44 @@ public class AdminControllerTest {
 
         when(adminService.getBookingById(bookingId)).thenReturn(expectedBooking);
 
-        ResponseEntity<Booking> response = adminController.getBookingById(bookingId);
+        ResponseEntity<BookingDTO> response = adminController.getBookingById(bookingId);
 
         Assertions.assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(expectedBooking, response.getBody());
+        assertEquals(new BookingDTO(expectedBooking), response.getBody());
 
         verify(adminService, times(1)).getBookingById(bookingId);
     }
 
-    // cancelAllBookingsForClass() → Testa att avboka alla bokningar för en klass och verifiera att status ändras (DELETE /classes/{trainingClassId}/bookings)
+    // cancelAllBookingsForClass() → Testa att avboka alla bokningar för en klass och få tillbaka antalet avbokade (PATCH /classes/{trainingClassId}/bookings)
     @Test
     void testCancelAllBookingsForClass() {
         // Arrange
         Long trainingClassId = 1L;
-        User member = new User(1L, "john.doe@example.com", "JohnDoe", "password123", Role.ROLE_MEMBER);
-        TrainingClass trainingClass = new TrainingClass();
-        trainingClass.setId(trainingClassId);
-        trainingClass.setTitle("Yoga Class");
-
-        // Skapa bokningar med status PENDING
-        Booking booking1 = new Booking(member, trainingClass);
-        Booking booking2 = new Booking(member, trainingClass);
-
-        booking1.setBookingStatus(BookingStatus.PENDING);
-        booking2.setBookingStatus(BookingStatus.PENDING);
-
-        List<Booking> bookings = Arrays.asList(booking1, booking2);
-
-        // Mocka tjänsten så att den returnerar de avbokade bokningarna med status CANCELLED
-        Booking cancelledBooking1 = new Booking(member, trainingClass);
-        Booking cancelledBooking2 = new Booking(member, trainingClass);
-
-        cancelledBooking1.setBookingStatus(BookingStatus.CANCELLED);
-        cancelledBooking2.setBookingStatus(BookingStatus.CANCELLED);
-
-        List<Booking> cancelledBookings = Arrays.asList(cancelledBooking1, cancelledBooking2);
-
-        // Mocka tjänsten så att den returnerar de avbokade bokningarna
-        when(adminService.cancelAllBookingsForClass(trainingClassId)).thenReturn(cancelledBookings);
+        when(adminService.cancelAllBookingsForClass(trainingClassId)).thenReturn(2);
 
         // Act
-        ResponseEntity<List<Booking>> response = adminController.cancelAllBookingsForClass(trainingClassId);
+        ResponseEntity<Integer> response = adminController.cancelAllBookingsForClass(trainingClassId);
 
         // Assert
         Assertions.assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode()); // Förväntar oss 200 OK
-        assertEquals(2, response.getBody().size()); // Kontrollera att vi har två avbokade bokningar
-
-        // Kontrollera att statusen för varje bokning har ändrats till CANCELLED
-        for (Booking booking : response.getBody()) {
-            assertEquals(BookingStatus.CANCELLED, booking.getBookingStatus()); // Här ska vi kontrollera att statusen är CANCELLED
-        }
+        assertEquals(2, response.getBody()); // Två bokningar avbokades
 
         verify(adminService, times(1)).cancelAllBookingsForClass(trainingClassId);
     }
 
+    // deleteClass() → Testa att borttagningen går via passtjänsten, så att bokningarnas räknare följer med (POST /classes/{id}/delete)
+    @Test
+    void testDeleteClass() {
+        RedirectAttributes redirectAttributes = new RedirectAttributesModelMap();
+
+        String view = adminController.deleteClass(1L, redirectAttributes);
+
+        assertEquals("redirect:/adminPage", view);
+        verify(trainingClassService, times(1)).deleteTrainingClass(1L);
+    }
+
     // getBookingsByStatus() → Testa att hämta bokningar baserat på status och verifiera att rätt bokningar returneras (GET /bookings/status/{status})
     @Test
     void testGetBookingsByStatus() {
@@ -484,7 +499,7 @@ public class AdminControllerTest {
         when(adminService.getBookingsByStatus(status)).thenReturn(expectedBookings);
 
         // Act
-        ResponseEntity<List<Booking>> response = adminController.getBookingsByStatus(status);
+        ResponseEntity<List<BookingDTO>> response = adminController.getBookingsByStatus(status);
 
         // Assert
         Assertions.assertNotNull(response);
@@ -492,7 +507,7 @@ public class AdminControllerTest {
         assertEquals(expectedBookings.size(), response.getBody().size()); // Kontrollera att vi har rätt antal bokningar
 
         // Kontrollera att varje bokning har rätt status
-        for (Booking booking : response.getBody()) {
+        for (BookingDTO booking : response.getBody()) {
             assertEquals(status, booking.getBookingStatus()); // Kontrollera att statusen är korrekt
         }
 
@@ -592,7 +607,7 @@ public class AdminControllerTest {
         when(adminService.getBookingsByPeriod(startDate, endDate)).thenReturn(expectedBookings);
 
         // Act
-        List<Booking> actualBookings = adminController.getBookingsByPeriod(startDate, endDate).getBody(); // Hämta body från ResponseEntity
+        List<BookingDTO> actualBookings = adminController.getBookingsByPeriod(startDate, endDate).getBody(); // Hämta body från ResponseEntity
 
         // Assert
         assertNotNull(actualBookings);
@@ -622,7 +637,7 @@ public class AdminControllerTest {
         when(adminService.getAllBookingsForMember(memberId)).thenReturn(expectedBookings);
 
         // Act
-        List<Booking> actualBookings = adminController.getAllBookingsForMember(memberId).getBody(); // Hämta body från ResponseEntity
+        List<BookingDTO> actualBookings = adminController.getAllBookingsForMember(memberId).getBody(); // Hämta body från ResponseEntity
 
         // Assert
         assertNotNull(actualBookings);
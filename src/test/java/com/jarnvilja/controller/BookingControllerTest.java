@@ -1,15 +1,21 @@
 package com.jarnvilja.controller;
 
+import com.jarnvilja.dto.BatchBookingResultDTO;
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
+import com.jarnvilja.exception.IdempotencyKeyReusedException;
 import com.jarnvilja.model.*;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.repository.UserRepository;
 import com.jarnvilja.service.BookingService;
 import com.jarnvilja.service.EmailService;
+import com.jarnvilja.service.IdempotencyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -39,6 +45,9 @@ public class BookingControllerTest {
     @Mock
     private TrainingClassRepository trainingClassRepository;
 
+    @Spy
+    private IdempotencyService idempotencyService = new IdempotencyService(100, 10);
+
     @InjectMocks
     private BookingController bookingController;
 
@@ -83,21 +92,86 @@ public class BookingControllerTest {
         when(bookingService.createBooking(userId, trainingClassId)).thenReturn(booking);
 
         // Anropa createBooking-metoden i controller
-        ResponseEntity<Booking> response = bookingController.createBooking(userId, booking);
+        ResponseEntity<BookingDTO> response = bookingController.createBooking(userId, booking, null);
 
         // Verifiera att svaret är korrekt
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertEquals(trainingClass.getTitle(), response.getBody().getTrainingClass().getTitle());
+        assertEquals(trainingClass.getTitle(), response.getBody().getTrainingTitle());
 
         // Testa ogiltig bokning
         when(bookingService.isBookingValid(any(Booking.class))).thenReturn(false);
-        ResponseEntity<Booking> invalidResponse = bookingController.createBooking(userId, booking);
+        ResponseEntity<BookingDTO> invalidResponse = bookingController.createBooking(userId, booking, null);
 
         // Verifiera att svaret är 400 BAD REQUEST för ogiltig bokning
         assertEquals(HttpStatus.BAD_REQUEST, invalidResponse.getStatusCode());
     }
 
+    // createBooking() → Samma Idempotency-Key spelar upp första svaret utan att boka igen
+    @Test
+    void testCreateBookingReplaysWithIdempotencyKey() {
+        Booking booking = new Booking();
+        booking.setTrainingClass(trainingClass);
+        booking.setMember(member);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(member));
+        when(bookingService.isBookingValid(any(Booking.class))).thenReturn(true);
+        when(bookingService.createBooking(1L, 1L)).thenReturn(booking);
+
+        ResponseEntity<BookingDTO> first = bookingController.createBooking(1L, booking, "klick-1");
+        ResponseEntity<BookingDTO> second = bookingController.createBooking(1L, booking, "klick-1");
+
+        assertSame(first, second);
+        verify(bookingService, times(1)).createBooking(1L, 1L);
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    // createBooking() → Samma Idempotency-Key för ett annat pass ger 422 i stället för den första bokningen
+    @Test
+    void testCreateBookingRejectsKeyReusedForOtherClass() {
+        Booking booking = new Booking();
+        booking.setTrainingClass(trainingClass);
+        booking.setMember(member);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(member));
+        when(bookingService.isBookingValid(any(Booking.class))).thenReturn(true);
+        when(bookingService.createBooking(1L, 1L)).thenReturn(booking);
+        bookingController.createBooking(1L, booking, "klick-1");
+
+        TrainingClass otherClass = new TrainingClass();
+        otherClass.setId(2L);
+        Booking other = new Booking();
+        other.setTrainingClass(otherClass);
+        other.setMember(member);
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> bookingController.createBooking(1L, other, "klick-1"));
+        verify(bookingService, never()).createBooking(1L, 2L);
+    }
+
+    // createBookings() → Batchbokning returnerar ett resultat per pass (POST /members/{userId}/bookings/batch)
+    @Test
+    void testCreateBookingsBatch() {
+        List<BatchBookingResultDTO> results = List.of(
+                BatchBookingResultDTO.admitted(1L, BookingStatus.CONFIRMED),
+                BatchBookingResultDTO.rejected(2L, "Passet har redan startat."));
+        when(bookingService.createBookings(1L, List.of(1L, 2L))).thenReturn(results);
+
+        ResponseEntity<List<BatchBookingResultDTO>> response = bookingController.createBookings(1L, List.of(1L, 2L), null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, bookingController.createBookings(1L, List.of(), null).getStatusCode());
+    }
+
+    // createBookings() → Ett null-id i listan ger 400 utan att någon bokning görs
+    @Test
+    void testCreateBookingsRejectsNullIds() {
+        ResponseEntity<List<BatchBookingResultDTO>> response = bookingController.createBookings(1L, Arrays.asList(1L, null), null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(bookingService, never()).createBookings(anyLong(), anyList());
+    }
+
     // cancelBooking() → Testa att avboka en bokning och verifiera att status ändras (DELETE /bookings/{bookingId})
     @Test
     void testCancelBooking() {
@@ -114,7 +188,7 @@ public class BookingControllerTest {
         when(bookingService.cancelBooking(bookingId)).thenReturn(cancelledBooking);
 
         // Anropa cancelBooking-metoden i controller
-        ResponseEntity<Booking> response = bookingController.cancelBooking(bookingId);
+        ResponseEntity<BookingDTO> response = bookingController.cancelBooking(bookingId, null);
 
         // Verifiera att svaret är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -135,7 +209,7 @@ public class BookingControllerTest {
         when(bookingService.getBookingById(bookingId)).thenReturn(booking);
 
         // Anropa getBookingById-metoden i controller
-        ResponseEntity<Booking> response = bookingController.getBookingById(bookingId);
+        ResponseEntity<BookingDTO> response = bookingController.getBookingById(bookingId);
 
         // Verifiera att svaret är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -162,7 +236,7 @@ public class BookingControllerTest {
         when(bookingService.getAllBookings()).thenReturn(bookings);
 
         // Anropa getAllBookings-metoden i controller
-        ResponseEntity<List<Booking>> response = bookingController.getAllBookings();
+        ResponseEntity<List<BookingDTO>> response = bookingController.getAllBookings();
 
         // Verifiera att svaret är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -194,7 +268,7 @@ public class BookingControllerTest {
         when(bookingService.getAllBookingsByMemberId(memberId)).thenReturn(bookings);
 
         // Anropa getAllBookingsByMemberId-metoden i controller
-        ResponseEntity<List<Booking>> response = bookingController.getAllBookingsByMemberId(memberId);
+        ResponseEntity<List<BookingDTO>> response = bookingController.getAllBookingsByMemberId(memberId);
 
         // Verifiera att svaret är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -228,11 +302,11 @@ public class BookingControllerTest {
         when(userRepository.findById(1L)).thenReturn(Optional.of(new User(1L)));
 
         // Anropa createBooking och verifiera resultatet
-        ResponseEntity<Booking> response = bookingController.createBooking(1L, validBooking);
+        ResponseEntity<BookingDTO> response = bookingController.createBooking(1L, validBooking, null);
 
         // Kontrollera att svaret är 201 CREATED
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
-        assertEquals(validBooking, response.getBody());
+        assertEquals(new BookingDTO(validBooking), response.getBody());
     }
 
     // validateBookingTime() → Testa att validera bokningens tid i förhållande till träningspasset (kan vara en intern metod, men kan testas om den exponeras)
@@ -316,11 +390,11 @@ public class BookingControllerTest {
         when(bookingService.getUpcomingBookingsForMember(memberId)).thenReturn(expectedUpcomingBookings);
 
         // Anropa getUpcomingBookingsForMember och verifiera resultatet
-        ResponseEntity<List<Booking>> response = bookingController.getUpcomingBookingsForMember(memberId);
+        ResponseEntity<List<BookingDTO>> response = bookingController.getUpcomingBookingsForMember(memberId);
 
         // Kontrollera att svaret är 200 OK och att de kommande bokningarna är korrekta
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(expectedUpcomingBookings, response.getBody());
+        assertEquals(expectedUpcomingBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // getPastBookingsForMember() → Testa att hämta tidigare bokningar för en medlem och verifiera att rätt bokningar returneras (GET /members/{memberId}/bookings/past)
@@ -340,11 +414,11 @@ public class BookingControllerTest {
         when(bookingService.getPastBookingsForMember(memberId)).thenReturn(expectedPastBookings);
 
         // Anropa getPastBookingsForMember och verifiera resultatet
-        ResponseEntity<List<Booking>> response = bookingController.getPastBookingsForMember(memberId);
+        ResponseEntity<List<BookingDTO>> response = bookingController.getPastBookingsForMember(memberId);
 
         // Kontrollera att svaret är 200 OK och att de tidigare bokningarna är korrekta
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(expectedPastBookings, response.getBody());
+        assertEquals(expectedPastBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // updateBooking() → Testa att uppdatera en bokning och verifiera att ändringarna sparas (PUT /bookings/{bookingId})
@@ -358,11 +432,11 @@ public class BookingControllerTest {
         when(bookingService.updateBooking(bookingId, updatedBooking)).thenReturn(existingBooking);
 
         // Anropa updateBooking och verifiera resultatet
-        ResponseEntity<Booking> response = bookingController.updateBooking(bookingId, updatedBooking);
+        ResponseEntity<BookingDTO> response = bookingController.updateBooking(bookingId, updatedBooking);
 
         // Kontrollera att svaret är 200 OK och att den uppdaterade bokningen är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(existingBooking, response.getBody());
+        assertEquals(new BookingDTO(existingBooking), response.getBody());
     }
 
     @Test
@@ -374,7 +448,7 @@ public class BookingControllerTest {
         when(bookingService.updateBooking(bookingId, updatedBooking)).thenReturn(null);
 
         // Anropa updateBooking och verifiera resultatet
-        ResponseEntity<Booking> response = bookingController.updateBooking(bookingId, updatedBooking);
+        ResponseEntity<BookingDTO> response = bookingController.updateBooking(bookingId, updatedBooking);
 
         // Kontrollera att svaret är 404 NOT FOUND
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -390,11 +464,11 @@ public class BookingControllerTest {
         when(bookingService.confirmBooking(bookingId)).thenReturn(confirmedBooking);
 
         // Anropa confirmBooking och verifiera resultatet
-        ResponseEntity<Booking> response = bookingController.confirmBooking(bookingId);
+        ResponseEntity<BookingDTO> response = bookingController.confirmBooking(bookingId);
 
         // Kontrollera att svaret är 200 OK och att den bekräftade bokningen är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(confirmedBooking, response.getBody());
+        assertEquals(new BookingDTO(confirmedBooking), response.getBody());
     }
 
     @Test
@@ -405,7 +479,7 @@ public class BookingControllerTest {
         when(bookingService.confirmBooking(bookingId)).thenReturn(null);
 
         // Anropa confirmBooking och verifiera resultatet
-        ResponseEntity<Booking> response = bookingController.confirmBooking(bookingId);
+        ResponseEntity<BookingDTO> response = bookingController.confirmBooking(bookingId);
 
         // Kontrollera att svaret är 404 NOT FOUND
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
@@ -438,11 +512,11 @@ public class BookingControllerTest {
         when(bookingService.getAvailableTrainingClasses()).thenReturn(expectedAvailableClasses);
 
         // Anropa getAvailableTrainingClasses och verifiera resultatet
-        ResponseEntity<List<TrainingClass>> response = bookingController.getAvailableTrainingClasses();
+        ResponseEntity<List<TrainingClassDTO>> response = bookingController.getAvailableTrainingClasses();
 
         // Kontrollera att svaret är 200 OK och att listan med tillgängliga klasser är korrekt
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(expectedAvailableClasses, response.getBody());
+        assertEquals(expectedAvailableClasses.stream().map(TrainingClassDTO::new).toList(), response.getBody());
     }
 
     // sendBookingConfirmation() → Testa att skicka en bokningsbekräftelse via e-post (kan vara en intern metod, men kan testas om den exponeras)
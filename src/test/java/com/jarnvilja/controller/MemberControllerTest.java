@@ -2,9 +2,17 @@ package com.jarnvilja.controller;
 
 import org.springframework.ui.Model;
 
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.BookingTicketDTO;
 import com.jarnvilja.dto.MemberProfileDTO;
 import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
+import com.jarnvilja.dto.UserDTO;
 import com.jarnvilja.model.*;
+import com.jarnvilja.service.AuthenticatedUser;
+import com.jarnvilja.service.BookingIntakeService;
+import com.jarnvilja.service.BookingService;
+import com.jarnvilja.service.IdempotencyService;
 import com.jarnvilja.service.MemberService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +21,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.ModelMap;
@@ -42,6 +51,15 @@ public class MemberControllerTest {
     @Mock
     private org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
 
+    @Mock
+    private BookingIntakeService bookingIntakeService;
+
+    @Mock
+    private BookingService bookingService;
+
+    @Spy
+    private IdempotencyService idempotencyService = new IdempotencyService(100, 10);
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -61,11 +79,11 @@ public class MemberControllerTest {
         when(passwordEncoder.encode("password")).thenReturn("encodedPassword");
         when(memberService.createMember(any(User.class))).thenReturn(newMember);
 
-        ResponseEntity<User> response = memberController.createMember(newMember);
+        ResponseEntity<UserDTO> response = memberController.createMember(newMember);
 
         // Kontrollera att svaret är 201 CREATED
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
-        assertEquals(newMember, response.getBody());
+        assertEquals(new UserDTO(newMember), response.getBody());
     }
 
     // updateMember() → Testa att uppdatera en befintlig medlemsinformation och verifiera att ändringarna sparas (PUT /members/{memberId})
@@ -83,11 +101,11 @@ public class MemberControllerTest {
         when(memberService.updateMember(any(Long.class), any(User.class))).thenReturn(existingMember);
 
         // Anropa updateMember och verifiera resultatet
-        ResponseEntity<User> response = memberController.updateMember(1L, existingMember);
+        ResponseEntity<UserDTO> response = memberController.updateMember(1L, existingMember);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(existingMember, response.getBody());
+        assertEquals(new UserDTO(existingMember), response.getBody());
     }
 
     // deleteMember() → Testa att ta bort en medlem och verifiera att den inte längre finns (DELETE /members/{memberId})
@@ -118,11 +136,11 @@ public class MemberControllerTest {
         when(memberService.getMemberById(1L)).thenReturn(existingMember); // Detta orsakar felet
 
         // Anropa getMemberById och verifiera resultatet
-        ResponseEntity<User> response = memberController.getMemberById(1L);
+        ResponseEntity<UserDTO> response = memberController.getMemberById(1L);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(existingMember, response.getBody());
+        assertEquals(new UserDTO(existingMember), response.getBody());
     }
 
     // getAllMembers() → Testa att hämta alla medlemmar och verifiera att listan är korrekt (GET /members)
@@ -132,7 +150,7 @@ public class MemberControllerTest {
         when(memberService.getAllMembers()).thenReturn(List.of(new User(), new User()));
 
         // Anropa getAllMembers och verifiera resultatet
-        ResponseEntity<List<User>> response = memberController.getAllMembers();
+        ResponseEntity<List<UserDTO>> response = memberController.getAllMembers();
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -154,11 +172,11 @@ public class MemberControllerTest {
         when(memberService.getMemberByEmail("test@example.com")).thenReturn((existingMember));
 
         // Anropa getMemberByEmail och verifiera resultatet
-        ResponseEntity<User> response = memberController.getMemberByEmail("test@example.com");
+        ResponseEntity<UserDTO> response = memberController.getMemberByEmail("test@example.com");
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(existingMember, response.getBody());
+        assertEquals(new UserDTO(existingMember), response.getBody());
     }
 
     // updateMemberPassword() → Testa att uppdatera en medlems lösenord och verifiera att det uppdateras korrekt (PATCH /members/{memberId}/password)
@@ -180,11 +198,12 @@ public class MemberControllerTest {
         });
 
         // Anropa updateMemberPassword och verifiera resultatet
-        ResponseEntity<User> response = memberController.updateMemberPassword(1L, "newPassword");
+        ResponseEntity<UserDTO> response = memberController.updateMemberPassword(1L, "newPassword");
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("newPassword", response.getBody().getPassword()); // Kontrollera att lösenordet har uppdaterats
+        assertEquals("testuser", response.getBody().getUsername());
+        verify(memberService).updateMemberPassword(1L, "newPassword"); // Lösenordet skickas aldrig tillbaka i svaret
     }
 
     // createBooking() → Testa att skapa en bokning för en medlem och verifiera att den sparas korrekt (POST /members/{userId}/bookings)
@@ -208,7 +227,7 @@ public class MemberControllerTest {
         when(memberService.checkBookingStatus(member.getId(), trainingClass.getId())).thenReturn(message);
 
         // Act: anropa controller
-        String result = memberController.createBooking(member.getId(), trainingClass.getId(), model, redirectAttributes);
+        String result = memberController.createBooking(member.getId(), trainingClass.getId(), null, null, model, redirectAttributes);
 
         // Assert: kontrollera att vi omdirigerar till medlemssidan
         assertEquals("redirect:/memberPage", result);  // Förväntar oss en omdirigering till medlemssidan
@@ -221,6 +240,56 @@ public class MemberControllerTest {
     }
 
 
+    // enqueueBooking() → Köat läge svarar 202 med biljett och Location (POST /{memberId}/bookings/intake)
+    @Test
+    void testEnqueueBookingAccepted() {
+        BookingTicketDTO ticket = new BookingTicketDTO("abc", BookingTicketDTO.State.QUEUED, 2L, java.time.LocalDateTime.now());
+        when(bookingIntakeService.isEnabled()).thenReturn(true);
+        when(memberService.checkBookingStatus(1L, 2L)).thenReturn(null);
+        when(bookingIntakeService.submit(1L, 2L)).thenReturn(ticket);
+
+        ResponseEntity<BookingTicketDTO> response = memberController.enqueueBooking(1L, 2L);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("/memberPage/bookings/tickets/abc", response.getHeaders().getLocation().toString());
+        verify(memberService, never()).createBooking(anyLong(), anyLong());
+    }
+
+    // enqueueBooking() → Full kö ger 503
+    @Test
+    void testEnqueueBookingQueueFull() {
+        when(bookingIntakeService.isEnabled()).thenReturn(true);
+        when(bookingIntakeService.submit(1L, 2L)).thenThrow(new java.util.concurrent.RejectedExecutionException("Bokningskön är full"));
+
+        ResponseEntity<BookingTicketDTO> response = memberController.enqueueBooking(1L, 2L);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(BookingTicketDTO.State.REJECTED, response.getBody().getState());
+    }
+
+    // getBookingTicket() → Biljetten visas bara för medlemmen som lämnade in den; andra får 404 (GET /bookings/tickets/{ticketId})
+    @Test
+    void testGetBookingTicketOnlyForOwner() {
+        BookingTicketDTO ticket = new BookingTicketDTO("abc", BookingTicketDTO.State.DONE, 2L, java.time.LocalDateTime.now());
+        when(bookingIntakeService.getTicket("abc", 1L)).thenReturn(java.util.Optional.of(ticket));
+        when(bookingIntakeService.getTicket("abc", 9L)).thenReturn(java.util.Optional.empty());
+
+        assertEquals(HttpStatus.OK, memberController.getBookingTicket(currentUser(1L), "abc").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, memberController.getBookingTicket(currentUser(9L), "abc").getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, memberController.getBookingTicket(null, "abc").getStatusCode());
+    }
+
+    // getWaitlistPosition() → Köplatsen frågas med den inloggades id, så en annans bokning ger 404 (GET /bookings/{bookingId}/waitlist-position)
+    @Test
+    void testGetWaitlistPositionChecksOwner() {
+        when(bookingService.getWaitlistPosition(5L, 1L)).thenReturn(java.util.OptionalInt.of(2));
+        when(bookingService.getWaitlistPosition(5L, 9L)).thenReturn(java.util.OptionalInt.empty());
+
+        assertEquals(2, memberController.getWaitlistPosition(currentUser(1L), 5L).getBody().getPosition());
+        assertEquals(HttpStatus.NOT_FOUND, memberController.getWaitlistPosition(currentUser(9L), 5L).getStatusCode());
+        verify(bookingService, never()).getWaitlistPosition(5L);
+    }
+
     // confirmBooking() → Testa att bekräfta en bokning och verifiera att status ändras (PATCH /bookings/{bookingId}/confirm)
     @Test
     void testConfirmBooking() {
@@ -233,11 +302,11 @@ public class MemberControllerTest {
         when(memberService.confirmBooking(anyLong())).thenReturn(booking);
 
         // Anropa confirmBooking och verifiera resultatet
-        ResponseEntity<Booking> response = memberController.confirmBooking(booking.getId());
+        ResponseEntity<BookingDTO> response = memberController.confirmBooking(booking.getId());
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(booking, response.getBody());
+        assertEquals(new BookingDTO(booking), response.getBody());
     }
 
     // cancelBooking() → Testa att avboka en bokning och verifiera att status ändras (DELETE /bookings/{bookingId})
@@ -250,7 +319,7 @@ public class MemberControllerTest {
         doNothing().when(memberService).cancelBooking(anyLong());
 
         // Anropa cancelBooking och verifiera resultatet
-        RedirectView redirectView = memberController.cancelBooking(bookingId, "delete");
+        RedirectView redirectView = memberController.cancelBooking(bookingId, "delete", null);
 
         // Kontrollera att omdirigeringen är korrekt
         assertEquals("/memberPage", redirectView.getUrl()); // Kontrollera att omdirigeringen går till memberPage
@@ -278,11 +347,11 @@ public class MemberControllerTest {
         when(memberService.getBookingsForMember(anyLong())).thenReturn(mockBookings);
 
         // Anropa getBookingsForMember och verifiera resultatet
-        ResponseEntity<List<Booking>> response = memberController.getBookingsForMember(userId);
+        ResponseEntity<List<BookingDTO>> response = memberController.getBookingsForMember(userId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(mockBookings, response.getBody());
+        assertEquals(mockBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // getUpcomingBookingsForMember() → Testa att hämta kommande bokningar för en medlem och verifiera att rätt bokningar returneras (GET /members/{userId}/bookings/upcoming)
@@ -320,11 +389,11 @@ public class MemberControllerTest {
         when(memberService.getUpcomingBookingsForMember(anyLong())).thenReturn(mockUpcomingBookings);
 
         // Anropa getUpcomingBookingsForMember och verifiera resultatet
-        ResponseEntity<List<Booking>> response = memberController.getUpcomingBookingsForMember(member.getId());
+        ResponseEntity<List<BookingDTO>> response = memberController.getUpcomingBookingsForMember(member.getId());
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(mockUpcomingBookings, response.getBody());
+        assertEquals(mockUpcomingBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // getPastBookingsForMember() → Testa att hämta tidigare bokningar för en medlem och verifiera att rätt bokningar returneras (GET /members/{userId}/bookings/past)
@@ -362,11 +431,11 @@ public class MemberControllerTest {
         when(memberService.getPastBookingsForMember(anyLong())).thenReturn(mockPastBookings);
 
         // Anropa getPastBookingsForMember och verifiera resultatet
-        ResponseEntity<List<Booking>> response = memberController.getPastBookingsForMember(member.getId());
+        ResponseEntity<List<BookingDTO>> response = memberController.getPastBookingsForMember(member.getId());
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(mockPastBookings, response.getBody());
+        assertEquals(mockPastBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // getBookingById() → Testa att hämta en bokning med giltigt ID och verifiera att rätt bokning returneras (GET /bookings/{bookingId})
@@ -394,11 +463,11 @@ public class MemberControllerTest {
         when(memberService.getBookingById(anyLong())).thenReturn(mockBooking);
 
         // Anropa getBookingById och verifiera resultatet
-        ResponseEntity<Booking> response = memberController.getBookingById(mockBooking.getId());
+        ResponseEntity<BookingDTO> response = memberController.getBookingById(mockBooking.getId());
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(mockBooking, response.getBody());
+        assertEquals(new BookingDTO(mockBooking), response.getBody());
     }
 
     // getAvailableClasses() → Testa att hämta tillgängliga träningspass och verifiera att listan är korrekt (GET /classes/available)
@@ -420,12 +489,12 @@ public class MemberControllerTest {
         when(memberService.getAvailableClasses()).thenReturn(mockAvailableClasses);
 
         // Anropa getAvailableClasses och verifiera resultatet
-        ResponseEntity<List<TrainingClass>> response = memberController.getAvailableClasses();
+        ResponseEntity<List<TrainingClassDTO>> response = memberController.getAvailableClasses();
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
         // Kontrollera att listan med träningsklasser i svaret är densamma som de mockade träningsklasserna
-        assertEquals(mockAvailableClasses, response.getBody());
+        assertEquals(mockAvailableClasses.stream().map(TrainingClassDTO::new).toList(), response.getBody());
     }
 
     // getAllClassesForMember() → Testa att hämta alla klasser för en medlem och verifiera att rätt klasser returneras (GET /members/{memberId}/classes)
@@ -449,12 +518,12 @@ public class MemberControllerTest {
         when(memberService.getAllClassesForMember(memberId)).thenReturn(mockMemberClasses);
 
         // Anropa getAllClassesForMember och verifiera resultatet
-        ResponseEntity<List<TrainingClass>> response = memberController.getAllClassesForMember(memberId);
+        ResponseEntity<List<TrainingClassDTO>> response = memberController.getAllClassesForMember(memberId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
         // Kontrollera att listan med träningsklasser i svaret är densamma som de mockade träningsklasserna
-        assertEquals(mockMemberClasses, response.getBody());
+        assertEquals(mockMemberClasses.stream().map(TrainingClassDTO::new).toList(), response.getBody());
     }
 
     // getMemberProfile() → Testa att hämta medlemsprofil och verifiera att rätt information returneras (GET /members/{memberId}/profile)
@@ -496,4 +565,8 @@ public class MemberControllerTest {
         assertEquals(mockMembershipStats, response.getBody());
     }
 
+
+    private static AuthenticatedUser currentUser(Long id) {
+        return new AuthenticatedUser(new User(id, "medlem" + id + "@example.com", "medlem" + id, "hemligt123", Role.ROLE_MEMBER));
+    }
 }
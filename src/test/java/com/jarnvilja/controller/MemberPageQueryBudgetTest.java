@@ -0,0 +1,77 @@
+package com.jarnvilja.controller;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+/**
+ * Renders the member page against the seeded H2 database and counts the SQL statements the request
+ * thread sends, so a template or service change that brings back per-row queries fails the build.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.jarnvilja.controller.MemberPageQueryBudgetTest$QueryCounter")
+@AutoConfigureMockMvc
+public class MemberPageQueryBudgetTest {
+
+    // Medlemmen, passen med dagens platser, medlemmens bokningar och statistikräknarna
+    private static final int QUERY_BUDGET = 4;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    // GET /memberPage                        // Sidan håller sig inom frågebudgeten oavsett antal pass och bokningar
+    @Test
+    @WithUserDetails("member")
+    void testMemberPageStaysWithinQueryBudget() throws Exception {
+        QueryCounter.reset();
+        mockMvc.perform(get("/memberPage"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("memberPage"));
+
+        int queries = QueryCounter.count();
+        assertTrue(queries <= QUERY_BUDGET, "memberPage ran " + queries + " queries, budget is " + QUERY_BUDGET);
+    }
+
+    // getDashboard()                         // Sökning och sortering görs i minnet och kostar inga extra frågor
+    @Test
+    @WithUserDetails("member")
+    void testSearchAndSortStayWithinQueryBudget() throws Exception {
+        QueryCounter.reset();
+        mockMvc.perform(get("/memberPage").param("search", "a").param("sort", "title"))
+                .andExpect(status().isOk());
+
+        int queries = QueryCounter.count();
+        assertTrue(queries <= QUERY_BUDGET, "memberPage ran " + queries + " queries, budget is " + QUERY_BUDGET);
+    }
+
+    /**
+     * Counts statements per thread; schedulers running in the background do not touch the test's count.
+     */
+    public static class QueryCounter implements StatementInspector {
+
+        private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+        static void reset() {
+            COUNT.get()[0] = 0;
+        }
+
+        static int count() {
+            return COUNT.get()[0];
+        }
+
+        @Override
+        public String inspect(String sql) {
+            COUNT.get()[0]++;
+            return sql;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.jarnvilja.controller;
 
+import com.jarnvilja.dto.BookingDTO;
+import com.jarnvilja.dto.TrainingClassDTO;
 import com.jarnvilja.dto.TrainingClassStatsDTO;
+import com.jarnvilja.dto.UserDTO;
 import com.jarnvilja.model.Booking;
 import com.jarnvilja.model.BookingStatus;
 import com.jarnvilja.model.TrainingClass;
@@ -124,13 +127,13 @@ public class TrainerControllerTest {
         when(trainerService.getTrainingClassDetails(trainerId, trainingClassId)).thenReturn(mockTrainingClass);
 
         // Anropa metoden som ska testas
-        ResponseEntity<TrainingClass> response = trainerController.getTrainingClassDetails(trainerId, trainingClassId);
+        ResponseEntity<TrainingClassDTO> response = trainerController.getTrainingClassDetails(trainerId, trainingClassId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
         // Kontrollera att den returnerade träningspasset är korrekt
-        assertEquals(mockTrainingClass, response.getBody());
+        assertEquals(new TrainingClassDTO(mockTrainingClass), response.getBody());
     }
 
     // getBookingsForMyTrainingClass() → Testa att hämta alla bokningar för ett träningspass och verifiera att rätt bokningar returneras (GET /trainers/{trainerId}/classes/{trainingClassId}/bookings)
@@ -164,13 +167,13 @@ public class TrainerControllerTest {
         when(trainerService.getBookingsForMyTrainingClass(trainerId, trainingClassId)).thenReturn(mockBookings);
 
         // Anropa metoden som ska testas
-        ResponseEntity<List<Booking>> response = trainerController.getBookingsForMyTrainingClass(trainerId, trainingClassId);
+        ResponseEntity<List<BookingDTO>> response = trainerController.getBookingsForMyTrainingClass(trainerId, trainingClassId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
         // Kontrollera att den returnerade listan med bokningar är korrekt
-        assertEquals(mockBookings, response.getBody());
+        assertEquals(mockBookings.stream().map(BookingDTO::new).toList(), response.getBody());
     }
 
     // getMembersForMyTrainingClass() → Testa att hämta alla medlemmar som är bokade på ett träningspass och verifiera att rätt medlemmar returneras (GET /trainers/{trainerId}/classes/{trainingClassId}/members)
@@ -197,13 +200,13 @@ public class TrainerControllerTest {
         when(trainerService.getMembersForMyTrainingClass(trainerId, trainingClassId)).thenReturn(mockMembers);
 
         // Anropa metoden som ska testas
-        ResponseEntity<List<User>> response = trainerController.getMembersForMyTrainingClass(trainerId, trainingClassId);
+        ResponseEntity<List<UserDTO>> response = trainerController.getMembersForMyTrainingClass(trainerId, trainingClassId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
         // Kontrollera att den returnerade listan med medlemmar är korrekt
-        assertEquals(mockMembers, response.getBody());
+        assertEquals(mockMembers.stream().map(UserDTO::new).toList(), response.getBody());
     }
 
     // removeMemberFromMyTrainingClass() → Testa att ta bort en medlem från ett träningspass och verifiera att bokningen tas bort (DELETE /trainers/{trainerId}/classes/{trainingClassId}/members/{memberId})
@@ -300,13 +303,13 @@ public class TrainerControllerTest {
         when(trainerService.getMostPopularOfMyTrainingClasses(trainerId)).thenReturn(mockPopularClass);
 
         // Anropa metoden som ska testas
-        ResponseEntity<TrainingClass> response = trainerController.getMostPopularOfMyTrainingClasses(trainerId);
+        ResponseEntity<TrainingClassDTO> response = trainerController.getMostPopularOfMyTrainingClasses(trainerId);
 
         // Kontrollera att svaret är 200 OK
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
         // Kontrollera att den returnerade träningsklassen är korrekt
-        assertEquals(mockPopularClass, response.getBody());
+        assertEquals(new TrainingClassDTO(mockPopularClass), response.getBody());
     }
 
 }
@@ -1,9 +1,12 @@
 package com.jarnvilja.service;
 
 
+import com.jarnvilja.dto.AdminDashboardStatsDTO;
 import com.jarnvilja.dto.BookingStatsDTO;
 import com.jarnvilja.dto.MemberStatsDTO;
 import com.jarnvilja.model.*;
+import com.jarnvilja.repository.BookingBrowseRepository;
+import com.jarnvilja.repository.BookingDailyRollupRepository;
 import com.jarnvilja.repository.BookingRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
 import com.jarnvilja.repository.UserRepository;
@@ -19,8 +22,12 @@ import static org.mockito.ArgumentMatchers.any;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 
@@ -50,6 +57,27 @@ public class AdminServiceTest {
     @Mock
     private BookingRepository bookingRepository;
 
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Mock
+    private PendingExpiryService pendingExpiryService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
+    @Mock
+    private BookingDailyRollupRepository rollupRepository;
+
+    @Mock
+    private BookingRollupService bookingRollupService;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
     @InjectMocks
     private AdminService adminService;
 
@@ -368,20 +396,16 @@ public class AdminServiceTest {
     @Test
     void testCancelAllBookingsForClass() {
         Long trainingClassId = 5L;
-        Booking booking1 = new Booking(user, trainingClass);
-        Booking booking2 = new Booking(user2, trainingClass);
-        List<Booking> mockBookings = Arrays.asList(booking1, booking2);
-
-        when(bookingRepository.findByTrainingClassId(trainingClassId)).thenReturn(mockBookings);
-        when(bookingRepository.saveAll(anyList())).thenReturn(mockBookings);
+        when(bookingRepository.transitionForClass(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED))
+                .thenReturn(2);
 
-        List<Booking> result = adminService.cancelAllBookingsForClass(trainingClassId);
+        int result = adminService.cancelAllBookingsForClass(trainingClassId);
 
-        assertEquals(BookingStatus.CANCELLED, result.get(0).getBookingStatus());
-        assertEquals(BookingStatus.CANCELLED, result.get(1).getBookingStatus());
-
-        verify(bookingRepository, times(1)).findByTrainingClassId(trainingClassId);
-        verify(bookingRepository, times(1)).saveAll(mockBookings);
+        assertEquals(2, result);
+        verify(bookingRollupService, times(1)).recordClassTransition(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+        verify(waitlistService, times(1)).clearClass(trainingClassId);
+        verify(bookingRepository, never()).findByTrainingClassId(trainingClassId);
+        verify(bookingRepository, never()).saveAll(anyList());
     }
 
     // getBookingsByStatus
@@ -404,33 +428,110 @@ public class AdminServiceTest {
         verify(bookingRepository, times(1)).findByBookingStatus(status);
     }
 
-    // removeExpiredBookings()
+    // getUsersPage()                         // Sortering på bokningar sker på räknarna i databasen, utan att alla användare läses
     @Test
-    void testRemoveExpiredBookings() {
-        // Mocka repository för att returnera både giltig och expired bokning
-        LocalDateTime expiredTime = LocalDateTime.now().minusMinutes(31);  // Mer än 30 minuter gammal
-        Booking expiredBooking = new Booking(user, trainingClass);
-        expiredBooking.setBookingStatus(BookingStatus.PENDING);  // Förväntad status som utlöpt
-        expiredBooking.setBookingTimeStamp(expiredTime);
+    void testGetUsersPageSortsByBookingCounter() {
+        Page<User> expected = new PageImpl<>(List.of(user2, user), PageRequest.of(1, 20), 22);
+        when(userRepository.findPageOrderedByCounter(MemberStatsBucket.Kind.TOTAL, ROLE_MEMBER, PageRequest.of(1, 20)))
+                .thenReturn(expected);
 
-        Booking validBooking = new Booking(user, trainingClass);
-        validBooking.setBookingStatus(BookingStatus.CONFIRMED);  // Giltig bokning, inte utlöpt
-        validBooking.setBookingTimeStamp(LocalDateTime.now());  // Giltig bokning, inte utlöpt
+        Page<User> result = adminService.getUsersPage(ROLE_MEMBER, null, "bookings", 1, 20);
 
-        // Mocka repository-anrop
-        when(bookingRepository.findAll()).thenReturn(Arrays.asList(validBooking, expiredBooking));
+        assertSame(expected, result);
+        verify(userRepository, never()).findAll();
+    }
 
-        // Kör metoden för att ta bort expired bokningar
-        adminService.removeExpiredBookings();
+    // getUsersPage()                         // Sökningen går via indexet; bara sidans användare läses och ingen COUNT körs
+    @Test
+    void testGetUsersPageSearchUsesIndex() {
+        when(userSearchIndex.search("jo", ROLE_MEMBER)).thenReturn(List.of(
+                new UserSearchIndex.Entry(2L, "Jonas", "jonas@example.com", null, null, ROLE_MEMBER, null),
+                new UserSearchIndex.Entry(1L, "johan", "johan@example.com", null, null, ROLE_MEMBER, null),
+                new UserSearchIndex.Entry(3L, "Josefin", "josefin@example.com", null, null, ROLE_MEMBER, null)));
+        User johan = new User(1L);
+        User jonas = new User(2L);
+        when(userRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(jonas, johan));
+
+        Page<User> result = adminService.getUsersPage(ROLE_MEMBER, " jo ", "username", 0, 2);
+
+        assertEquals(List.of(johan, jonas), result.getContent());
+        assertEquals(3, result.getTotalElements());
+        assertEquals(2, result.getTotalPages());
+        verify(userRepository, never()).count();
+        verify(userRepository, never()).findUsersByRole(any(), any());
+    }
 
-        // Verifiera att expired bokning tas bort
-        verify(bookingRepository, times(1)).deleteAll(List.of(expiredBooking));
+    // searchUsers()                          // Prefixet viks som indexet, så "goran" rankar "Göran" före övriga träffar
+    @Test
+    void testSearchUsersRanksFoldedPrefixFirst() {
+        when(userSearchIndex.search("goran", null)).thenReturn(List.of(
+                new UserSearchIndex.Entry(1L, "agoran", "agoran@example.com", null, null, ROLE_MEMBER, null),
+                new UserSearchIndex.Entry(2L, "Göran", "goran@jarnvilja.se", "Göran", null, ROLE_TRAINER, null)));
+        User agoran = new User(1L);
+        User goran = new User(2L);
+        when(userRepository.findAllById(List.of(2L, 1L))).thenReturn(List.of(agoran, goran));
 
-        // Kontrollera att den expired bokningen verkligen var expired
-        assertTrue(expiredBooking.isExpired(), "Expired bokning ska vara utlöpt");
+        List<User> result = adminService.searchUsers("goran", null, 10);
 
-        // Kontrollera att den giltiga bokningen inte togs bort
-        assertFalse(validBooking.isExpired(), "Giltig bokning ska inte vara utlöpt");
+        assertEquals(List.of(goran, agoran), result);
+    }
+
+    // browseBookings()                       // En extra rad hämtas; finns den pekar markören på sidans sista bokning
+    @Test
+    void testBrowseBookingsReturnsCursorWhenMoreRows() {
+        Booking newest = booking(3L, LocalDate.of(2026, 3, 2));
+        Booking middle = booking(2L, LocalDate.of(2026, 3, 1));
+        Booking oldest = booking(1L, LocalDate.of(2026, 3, 1));
+        BookingBrowseRepository.Filter filter = new BookingBrowseRepository.Filter(CONFIRMED, null, null, null, null);
+        when(bookingRepository.findPageAfter(filter, null, null, 3)).thenReturn(List.of(newest, middle, oldest));
+
+        AdminService.BookingBrowsePage page = adminService.browseBookings(filter, null, 2);
+
+        assertEquals(List.of(newest, middle), page.bookings());
+        assertNotNull(page.nextCursor());
+        AdminService.BookingCursor cursor = AdminService.BookingCursor.decode(page.nextCursor());
+        assertEquals(new AdminService.BookingCursor(LocalDate.of(2026, 3, 1), 2L), cursor);
+        verify(bookingRepository, never()).count();
+    }
+
+    // browseBookings()                       // Markören söker vidare efter (datum, id); sista sidan saknar markör
+    @Test
+    void testBrowseBookingsSeeksAfterCursor() {
+        String cursor = new AdminService.BookingCursor(LocalDate.of(2026, 3, 1), 2L).encode();
+        Booking oldest = booking(1L, LocalDate.of(2026, 3, 1));
+        when(bookingRepository.findPageAfter(BookingBrowseRepository.Filter.NONE, LocalDate.of(2026, 3, 1), 2L, 3))
+                .thenReturn(List.of(oldest));
+
+        AdminService.BookingBrowsePage page = adminService.browseBookings(BookingBrowseRepository.Filter.NONE, cursor, 2);
+
+        assertEquals(List.of(oldest), page.bookings());
+        assertNull(page.nextCursor());
+    }
+
+    // browseBookings()                       // En oläsbar markör börjar om från den senaste bokningen
+    @Test
+    void testBrowseBookingsIgnoresInvalidCursor() {
+        when(bookingRepository.findPageAfter(BookingBrowseRepository.Filter.NONE, null, null, 21)).thenReturn(List.of());
+
+        AdminService.BookingBrowsePage page = adminService.browseBookings(BookingBrowseRepository.Filter.NONE, "inte-en-markör", 20);
+
+        assertTrue(page.bookings().isEmpty());
+        assertNull(page.nextCursor());
+    }
+
+    // removeExpiredBookings()
+    @Test
+    void testRemoveExpiredBookings() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(30);
+        when(pendingExpiryService.expiryThreshold()).thenReturn(threshold);
+
+        // Kör metoden för att ta bort expired bokningar
+        adminService.removeExpiredBookings();
+
+        // En DELETE-sats i databasen i stället för findAll + filtrering i Java
+        verify(bookingRepository, times(1)).deleteExpired(threshold);
+        verify(bookingRollupService, times(1)).recordExpiredDeleted(threshold);
+        verify(bookingRepository, never()).findAll();
     }
 
 
@@ -448,7 +549,7 @@ public class AdminServiceTest {
         when(bookingRepository.countByBookingStatus(BookingStatus.PENDING)).thenReturn(5L);
         when(bookingRepository.countByBookingStatus(BookingStatus.EXPIRED)).thenReturn(10L);
         when(bookingRepository.countByBookingStatus(BookingStatus.CANCELLED_BY_MEMBER)).thenReturn(20L);
-        when(bookingRepository.findMostPopularClass()).thenReturn("BJJ");
+        when(rollupRepository.findMostPopularClass()).thenReturn("BJJ");
 
         BookingStatsDTO bookingStats = adminService.getBookingStats();
 
@@ -467,7 +568,7 @@ public class AdminServiceTest {
         verify(bookingRepository, times(1)).countByBookingStatus(BookingStatus.CANCELLED_BY_MEMBER);
         verify(bookingRepository, times(1)).countByBookingStatus(BookingStatus.PENDING);
         verify(bookingRepository, times(1)).countByBookingStatus(BookingStatus.EXPIRED);
-        verify(bookingRepository, times(1)).findMostPopularClass();
+        verify(rollupRepository, times(1)).findMostPopularClass();
     }
 
 
@@ -554,7 +655,7 @@ public class AdminServiceTest {
                 new Object[]{"THAIBOXNING", 20L}
         );
 
-        when(bookingRepository.getClassStats()).thenReturn(mockStats);
+        when(rollupRepository.getClassStats()).thenReturn(mockStats);
 
         Map<String, Long> result = adminService.getClassStats();
 
@@ -563,7 +664,44 @@ public class AdminServiceTest {
         assertEquals(15L, result.get("BJJ"));
         assertEquals(20L, result.get("THAIBOXNING"));
 
-        verify(bookingRepository,times(1)).getClassStats();
+        verify(rollupRepository,times(1)).getClassStats();
+        verifyNoInteractions(bookingRepository);
+    }
+
+    // computeDashboardStats()                // Instrumentpanelen summerar dagsrullningen i stället för att läsa bokningarna
+    @Test
+    void testComputeDashboardStatsReadsRollup() {
+        LocalDate today = LocalDate.now();
+        List<Object[]> totals = Arrays.asList(
+                new Object[]{CONFIRMED, 6L},
+                new Object[]{CANCELLED, 2L});
+        List<Object[]> days = Arrays.asList(
+                new Object[]{today.minusDays(2), DayOfWeek.MONDAY, TrainingCategory.BJJ, 3L},
+                new Object[]{today.minusDays(1), DayOfWeek.TUESDAY, TrainingCategory.BJJ, 1L},
+                new Object[]{today, DayOfWeek.TUESDAY, null, 3L});
+        when(rollupRepository.sumByStatus()).thenReturn(totals);
+        when(rollupRepository.sumByDayFrom(today.minusWeeks(1))).thenReturn(days);
+
+        AdminDashboardStatsDTO stats = adminService.computeDashboardStats("week");
+
+        assertEquals(8, stats.getTotalBookings());
+        assertEquals(25.0, stats.getCancellationRate());
+        assertEquals(3L, stats.getBookingsByDay().get("Måndag"));
+        assertEquals(4L, stats.getBookingsByDay().get("Tisdag"));
+        assertEquals(0L, stats.getBookingsByDay().get("Söndag"));
+        assertEquals("Tisdag", stats.getBusiestDay());
+        assertEquals(Map.of("BJJ", 4L), stats.getBookingsByCategory());
+        assertEquals("BJJ", stats.getMostPopularClass());
+        assertEquals(3, stats.getBookingsOverTime().size());
+        assertEquals(3L, stats.getBookingsOverTime().get(today.toString()));
+        verifyNoInteractions(bookingRepository);
+    }
+
+    private Booking booking(Long id, LocalDate date) {
+        Booking booking = new Booking(user, trainingClass);
+        booking.setId(id);
+        booking.setBookingDate(date);
+        return booking;
     }
 
 }
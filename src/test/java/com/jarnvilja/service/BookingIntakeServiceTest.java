@@ -0,0 +1,129 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.BookingTicketDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingIntakeServiceTest {
+
+    @Mock
+    private MemberService memberService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BookingIntakeService intake;
+
+    @AfterEach
+    void tearDown() {
+        if (intake != null) intake.shutdown();
+    }
+
+    // submit()                                // Bokningar på samma pass behandlas i ankomstordning
+    @Test
+    void testSubmitProcessesLaneInArrivalOrder() throws Exception {
+        intake = new BookingIntakeService(memberService, meterRegistry, true, 100, 4);
+        List<Long> order = Collections.synchronizedList(new ArrayList<>());
+        when(memberService.createBooking(anyLong(), eq(1L))).thenAnswer(inv -> {
+            order.add(inv.getArgument(0));
+            return booking(inv.getArgument(0), BookingStatus.CONFIRMED);
+        });
+
+        List<BookingTicketDTO> tickets = new ArrayList<>();
+        for (long member = 1; member <= 50; member++) {
+            tickets.add(intake.submit(member, 1L));
+        }
+        BookingTicketDTO last = awaitDone(tickets.get(49).getTicketId(), 50L);
+
+        assertEquals(BookingTicketDTO.State.DONE, last.getState());
+        assertEquals(BookingStatus.CONFIRMED, last.getBookingStatus());
+        List<Long> expected = new ArrayList<>();
+        for (long member = 1; member <= 50; member++) expected.add(member);
+        assertEquals(expected, order);
+        assertEquals(50L, meterRegistry.get("booking.intake.wait").timer().count());
+    }
+
+    // submit()                                // Fel från bokningen hamnar på biljetten
+    @Test
+    void testSubmitRecordsFailureOnTicket() throws Exception {
+        intake = new BookingIntakeService(memberService, meterRegistry, true, 100, 1);
+        when(memberService.createBooking(1L, 2L)).thenThrow(new RuntimeException("Passet har redan startat."));
+
+        BookingTicketDTO ticket = awaitDone(intake.submit(1L, 2L).getTicketId(), 1L);
+
+        assertEquals(BookingTicketDTO.State.FAILED, ticket.getState());
+        assertEquals("Passet har redan startat.", ticket.getMessage());
+    }
+
+    // submit()                                // Full kö avvisar nya förfrågningar
+    @Test
+    void testSubmitRejectsWhenQueueFull() throws Exception {
+        intake = new BookingIntakeService(memberService, meterRegistry, true, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(memberService.createBooking(1L, 1L)).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return booking(1L, BookingStatus.CONFIRMED);
+        });
+
+        BookingTicketDTO first = intake.submit(1L, 1L);
+        assertThrows(RejectedExecutionException.class, () -> intake.submit(2L, 1L));
+        assertEquals(1.0, meterRegistry.get("booking.intake.rejected").counter().count());
+
+        release.countDown();
+        awaitDone(first.getTicketId(), 1L);
+    }
+
+    @Test
+    void testGetTicketUnknown() {
+        intake = new BookingIntakeService(memberService, meterRegistry, false, 10, 1);
+        assertFalse(intake.isEnabled());
+        assertTrue(intake.getTicket("saknas", 1L).isEmpty());
+    }
+
+    // getTicket()                             // En annan medlems biljett syns inte, inte ens med rätt id
+    @Test
+    void testGetTicketOnlyForOwner() throws Exception {
+        intake = new BookingIntakeService(memberService, meterRegistry, true, 10, 1);
+        when(memberService.createBooking(1L, 2L)).thenReturn(booking(5L, BookingStatus.CONFIRMED));
+
+        String ticketId = intake.submit(1L, 2L).getTicketId();
+
+        assertTrue(intake.getTicket(ticketId, 2L).isEmpty());
+        assertEquals(BookingTicketDTO.State.DONE, awaitDone(ticketId, 1L).getState());
+    }
+
+    private BookingTicketDTO awaitDone(String ticketId, Long memberId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        BookingTicketDTO ticket = intake.getTicket(ticketId, memberId).orElseThrow();
+        while (ticket.getState() == BookingTicketDTO.State.QUEUED && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ticket = intake.getTicket(ticketId, memberId).orElseThrow();
+        }
+        return ticket;
+    }
+
+    private static Booking booking(Long id, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+}
@@ -0,0 +1,161 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingDailyRollup;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingCategory;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingDailyRollupRepository;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.jarnvilja.model.BookingStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingRollupServiceTest {
+
+    @Mock
+    private BookingDailyRollupRepository rollupRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookingRollupService bookingRollupService;
+
+    private final LocalDate day = LocalDate.of(2026, 3, 2);
+    private TrainingClass bjj;
+
+    @BeforeEach
+    void setUp() {
+        bookingRollupService = new BookingRollupService(rollupRepository, bookingRepository, trainingClassRepository,
+                transactionManager, false);
+        bjj = new TrainingClass("BJJ", "BJJ", DayOfWeek.MONDAY, Matta.MATTA_1, LocalTime.of(17, 0), LocalTime.of(18, 0));
+        bjj.setId(10L);
+        bjj.setCategory(TrainingCategory.BJJ);
+    }
+
+    // recordTransition()                     // En statusändring flyttar en bokning mellan dagens två rader
+    @Test
+    void testTransitionMovesOneBooking() {
+        when(rollupRepository.adjust(anyLong(), any(), any(), anyInt())).thenReturn(1);
+
+        bookingRollupService.recordTransition(booking(CONFIRMED), CONFIRMED, CANCELLED);
+
+        verify(rollupRepository).adjust(10L, day, CONFIRMED, -1);
+        verify(rollupRepository).adjust(10L, day, CANCELLED, 1);
+        verify(rollupRepository, never()).saveAndFlush(any());
+    }
+
+    // recordTransition()                     // En borttagen bokning räknas bara ned
+    @Test
+    void testRemovedBookingOnlyDecrements() {
+        bookingRollupService.recordTransition(booking(PENDING), PENDING, null);
+
+        verify(rollupRepository).adjust(10L, day, PENDING, -1);
+        verifyNoMoreInteractions(rollupRepository);
+    }
+
+    // recordCreated()                        // Saknad rad skapas under radlås på passet, med passets kategori
+    @Test
+    void testCreateOpensMissingRow() {
+        when(rollupRepository.adjust(10L, day, WAITLISTED, 2)).thenReturn(0);
+        when(trainingClassRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(bjj));
+
+        bookingRollupService.recordCreated(List.of(booking(WAITLISTED), booking(WAITLISTED)));
+
+        ArgumentCaptor<BookingDailyRollup> created = ArgumentCaptor.forClass(BookingDailyRollup.class);
+        verify(rollupRepository).saveAndFlush(created.capture());
+        assertEquals(day, created.getValue().getRollupDate());
+        assertEquals(WAITLISTED, created.getValue().getBookingStatus());
+        assertEquals(TrainingCategory.BJJ, created.getValue().getCategory());
+        assertEquals(2, created.getValue().getCount());
+        verify(rollupRepository, times(2)).adjust(10L, day, WAITLISTED, 2);
+    }
+
+    // recordClassTransition()                // Massavbokning av ett pass flyttar raderna per dag och status
+    @Test
+    void testClassTransitionMovesGroupedRows() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{10L, day, CONFIRMED, 3L});
+        rows.add(new Object[]{10L, day, WAITLISTED, 1L});
+        when(bookingRepository.countRollupRowsForClass(10L, BookingStatus.ACTIVE)).thenReturn(rows);
+        when(rollupRepository.adjust(anyLong(), any(), any(), anyInt())).thenReturn(1);
+
+        bookingRollupService.recordClassTransition(10L, BookingStatus.ACTIVE, CANCELLED);
+
+        verify(rollupRepository).adjust(10L, day, CONFIRMED, -3);
+        verify(rollupRepository).adjust(10L, day, WAITLISTED, -1);
+        verify(rollupRepository).adjust(10L, day, CANCELLED, 4);
+    }
+
+    // recordExpiredDeleted()                 // Raderade bokningar räknas ned utan att någon rad skapas
+    @Test
+    void testExpiredDeletedDecrements() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(30);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{10L, day, EXPIRED, 2L});
+        when(bookingRepository.countRollupRowsExpiredBefore(threshold)).thenReturn(rows);
+
+        bookingRollupService.recordExpiredDeleted(threshold);
+
+        verify(rollupRepository).adjust(10L, day, EXPIRED, -2);
+        verifyNoMoreInteractions(rollupRepository);
+        verifyNoInteractions(trainingClassRepository);
+    }
+
+    // rebuildAll()                           // Ombyggnaden går ett pass i taget under passets radlås
+    @Test
+    void testRebuildAllGoesClassByClassUnderLock() {
+        when(trainingClassRepository.findAllIds()).thenReturn(List.of(10L, 11L));
+        when(trainingClassRepository.findByIdForUpdate(10L)).thenReturn(Optional.of(bjj));
+        when(trainingClassRepository.findByIdForUpdate(11L)).thenReturn(Optional.empty());
+        when(rollupRepository.backfillClass(10L)).thenReturn(3);
+
+        bookingRollupService.rebuildAll();
+
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(rollupRepository).backfillClass(10L);
+        verify(rollupRepository, never()).backfillClass(11L);
+    }
+
+    // onStartup()                            // Ingen ombyggnad vid start om det inte slagits på
+    @Test
+    void testStartupRebuildIsOffByDefault() {
+        bookingRollupService.onStartup();
+
+        verifyNoInteractions(trainingClassRepository, rollupRepository);
+    }
+
+    private Booking booking(BookingStatus status) {
+        Booking booking = new Booking(new User(), bjj);
+        booking.setBookingDate(day);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+}
@@ -1,5 +1,6 @@
 package com.jarnvilja.service;
 
+import com.jarnvilja.dto.BatchBookingResultDTO;
 import com.jarnvilja.model.*;
 import com.jarnvilja.repository.BookingRepository;
 import com.jarnvilja.repository.TrainingClassRepository;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.DayOfWeek;
@@ -19,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static com.jarnvilja.model.BookingStatus.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,7 +34,7 @@ import static org.mockito.Mockito.*;
 public class BookingServiceTest {
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
 
     @Mock
     private BookingRepository bookingRepository;
@@ -42,6 +45,24 @@ public class BookingServiceTest {
     @Mock
     private TrainingClassRepository trainingClassRepository;
 
+    @Mock
+    private SeatLedger seatLedger;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Spy
+    private MailTemplateService mailTemplateService = new MailTemplateService();
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
+    @Mock
+    private BookingRollupService bookingRollupService;
+
+    @Mock
+    private PendingExpiryService pendingExpiryService;
+
     @InjectMocks
     private BookingService bookingService;
 
@@ -106,8 +127,7 @@ public class BookingServiceTest {
         when(trainingClassRepository.findById(1L)).thenReturn(Optional.of(trainingClass));
         when(bookingRepository.findByMemberIdAndTrainingClassIdAndBookingDate(1L, 1L, LocalDate.now()))
                 .thenReturn(Collections.emptyList());
-        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(
-                eq(1L), eq(LocalDate.now()), anyList())).thenReturn(0L);
+        when(seatLedger.admit(1L, LocalDate.now(), 20)).thenReturn(CONFIRMED);
         when(bookingRepository.save(any(Booking.class))).thenReturn(booking);
 
         Booking createdBooking = bookingService.createBooking(1L, 1L);
@@ -117,6 +137,54 @@ public class BookingServiceTest {
         assertEquals(CONFIRMED, createdBooking.getBookingStatus());
 
         verify(bookingRepository, times(1)).save(any(Booking.class));
+        verify(bookingRepository, never()).countByTrainingClassIdAndBookingDateAndBookingStatusIn(any(), any(), anyList());
+    }
+
+    // createBooking() när passet är fullt  // Testar att bokningen hamnar på väntelistan när ledgern säger fullt
+    @Test
+    void testCreateBookingWaitlistedWhenFull() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(trainingClassRepository.findById(1L)).thenReturn(Optional.of(trainingClass));
+        when(bookingRepository.findByMemberIdAndTrainingClassIdAndBookingDate(1L, 1L, LocalDate.now()))
+                .thenReturn(Collections.emptyList());
+        when(seatLedger.admit(1L, LocalDate.now(), 20)).thenReturn(WAITLISTED);
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Booking createdBooking = bookingService.createBooking(1L, 1L);
+
+        assertEquals(WAITLISTED, createdBooking.getBookingStatus());
+        verify(waitlistService).enqueue(createdBooking);
+    }
+
+    // createBookings()                       // Batchbokning: ett resultat per pass, en batchinsert
+    @Test
+    void testCreateBookingsBatch() {
+        TrainingClass bookedClass = new TrainingClass();
+        bookedClass.setId(2L);
+        bookedClass.setTrainingDay(trainingClass.getTrainingDay());
+        bookedClass.setStartTime(trainingClass.getStartTime());
+
+        List<Object[]> existing = new java.util.ArrayList<>();
+        existing.add(new Object[]{2L, 99L});
+        List<Object[]> inserted = new java.util.ArrayList<>();
+        inserted.add(new Object[]{1L, 100L});
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(trainingClassRepository.findAllById(any())).thenReturn(Arrays.asList(trainingClass, bookedClass));
+        when(bookingRepository.findBookingIdsByClass(eq(1L), eq(LocalDate.now()), any())).thenReturn(existing, inserted);
+        when(seatLedger.admit(1L, LocalDate.now(), 20)).thenReturn(CONFIRMED);
+
+        List<BatchBookingResultDTO> results = bookingService.createBookings(1L, Arrays.asList(3L, 1L, 2L, 1L));
+
+        assertEquals(3, results.size());
+        assertEquals(3L, results.get(0).getTrainingClassId());
+        assertEquals(BatchBookingResultDTO.Outcome.REJECTED, results.get(0).getOutcome());
+        assertEquals(BatchBookingResultDTO.Outcome.CONFIRMED, results.get(1).getOutcome());
+        assertEquals(100L, results.get(1).getBookingId());
+        assertEquals("Du har redan bokat detta pass idag.", results.get(2).getMessage());
+        verify(userRepository, times(1)).findById(1L);
+        verify(bookingRepository).insertAll(argThat(list -> list.size() == 1));
+        verify(bookingRepository, never()).save(any(Booking.class));
     }
 
     // cancelBooking()                        // Testar avbokning av en bokning
@@ -127,6 +195,7 @@ public class BookingServiceTest {
 
         bookingService.cancelBooking(1L);
 
+        verify(waitlistService).transition(booking, CANCELLED);
         verify(bookingRepository, times(1)).findById(1L);
         verify(bookingRepository, times(1)).save(any(Booking.class));
         assertEquals(CANCELLED, booking.getBookingStatus(), "Bokningen ska ha status CANCELLED");
@@ -211,6 +280,27 @@ public class BookingServiceTest {
 
     // Bokningsstatistik:
 
+    // getBookingStats()                      // Utgångna räknas mot den konfigurerade hålltiden, inte en fast halvtimme
+    @Test
+    void testGetBookingStatsUsesConfiguredExpiry() {
+        LocalDateTime now = LocalDateTime.now();
+        when(pendingExpiryService.expiryThreshold()).thenReturn(now.minusMinutes(120));
+        Booking recentHold = stats(PENDING, now.minusMinutes(60));
+        Booking dueHold = stats(PENDING, now.minusMinutes(180));
+        Booking expired = stats(EXPIRED, now.minusDays(1));
+        when(bookingRepository.findAll()).thenReturn(List.of(recentHold, dueHold, expired, stats(CONFIRMED, now)));
+
+        assertEquals(2, bookingService.getBookingStats().getExpiredBookings());
+    }
+
+    private Booking stats(BookingStatus status, LocalDateTime timestamp) {
+        Booking booking = new Booking();
+        booking.setBookingStatus(status);
+        booking.setBookingTimeStamp(timestamp);
+        booking.setTrainingClass(trainingClass);
+        return booking;
+    }
+
     // getTotalBookingsForClass()             // Testar hämtning av totalantal bokningar för ett specifikt träningspass
     @Test
     void testGetTotalBookingsForClass() {
@@ -320,6 +410,29 @@ public class BookingServiceTest {
         assertEquals("BJJ", result.getTrainingClass().getTitle());
 
         verify(bookingRepository, times(1)).save(existingBooking);
+        verify(waitlistService, times(1)).transition(existingBooking, BookingStatus.CONFIRMED, BookingStatus.CANCELLED, true);
+        verify(waitlistService, never()).transition(any(Booking.class), any());
+    }
+
+    // updateBooking()                        // Oförändrad CONFIRMED på fullt pass med kö rör varken platsen eller kön
+    @Test
+    void testUpdateBookingKeepsSeatWhenStatusUnchanged() {
+        Booking existingBooking = new Booking(user, trainingClass);
+        existingBooking.setId(1L);
+        existingBooking.setBookingStatus(BookingStatus.CONFIRMED);
+        when(bookingRepository.findById(1L)).thenReturn(Optional.of(existingBooking));
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Booking updatedBooking = new Booking(user, trainingClass);
+        updatedBooking.setBookingStatus(BookingStatus.CONFIRMED);
+        updatedBooking.setBookingTimeStamp(LocalDateTime.of(2025, 3, 11, 18, 0));
+
+        Booking result = bookingService.updateBooking(1L, updatedBooking);
+
+        assertEquals(BookingStatus.CONFIRMED, result.getBookingStatus());
+        assertEquals(LocalDateTime.of(2025, 3, 11, 18, 0), result.getBookingTimeStamp());
+        // Ingen frisläppt plats som går till kön och ingen ny plats utöver kapaciteten
+        verifyNoInteractions(waitlistService, seatLedger);
     }
 
 
@@ -394,10 +507,10 @@ public class BookingServiceTest {
 
         bookingService.sendBookingConfirmation(booking);
 
-        verify(emailService, times(1)).sendEmail(
+        verify(emailOutboxService, times(1)).enqueue(
                 eq("test@example.com"),
-                eq("Bokningsbekräftelse"),
-                contains("Din bokning för BJJ är bekräftad")
+                argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Bokningsbekräftelse")
+                        && mail.text().contains("Din bokning för BJJ är bekräftad"))
         );
     }
 
@@ -443,26 +556,48 @@ public class BookingServiceTest {
 
     }
 
-    // cancelAllBookingsForMember()             // Testar att avboka alla bokningar för en specifik användare
+    // cancelAllBookingsForMember()             // Avbokar medlemmens aktiva bokningar i en UPDATE-sats
     @Test
     void testCancelAllBookingsForMember() {
         Long memberId = 1L;
+        LocalDate today = LocalDate.now();
+        List<Object[]> claims = new java.util.ArrayList<>();
+        claims.add(new Object[]{10L, 1L, today, CONFIRMED, 20});
+        claims.add(new Object[]{11L, 2L, today, WAITLISTED, 20});
 
-        Booking booking1 = new Booking(user, trainingClass);
-        booking1.setBookingStatus(CONFIRMED);
+        when(bookingRepository.findClaimsForMember(memberId, BookingStatus.ACTIVE)).thenReturn(claims);
+        when(bookingRepository.transitionForMember(memberId, BookingStatus.ACTIVE, CANCELLED)).thenReturn(2);
 
-        Booking booking2 = new Booking(user, trainingClass);
-        booking2.setBookingStatus(PENDING);
+        assertEquals(2, bookingService.cancelAllBookingsForMember(memberId));
 
-        List<Booking> userBookings = Arrays.asList(booking1, booking2);
+        verify(waitlistService).releaseAll(argThat(list -> list.size() == 2
+                && list.get(0).status() == CONFIRMED
+                && list.get(1).session().equals(new SeatLedger.SessionKey(2L, today))));
+        verify(bookingRepository, never()).findByMemberId(memberId);
+        verify(bookingRepository, never()).saveAll(any());
+    }
 
-        when(bookingRepository.findByMemberId(memberId)).thenReturn(userBookings);
+    // cancelAllBookingsForMember()             // Inga aktiva bokningar: ingen UPDATE
+    @Test
+    void testCancelAllBookingsForMemberWithoutActiveBookings() {
+        when(bookingRepository.findClaimsForMember(1L, BookingStatus.ACTIVE)).thenReturn(List.of());
 
-        bookingService.cancelAllBookingsForMember(memberId);
+        assertEquals(0, bookingService.cancelAllBookingsForMember(1L));
 
-        assertEquals(BookingStatus.CANCELLED, booking1.getBookingStatus());
-        assertEquals(BookingStatus.CANCELLED, booking2.getBookingStatus());
+        verify(bookingRepository, never()).transitionForMember(any(), any(), any());
+        verifyNoInteractions(waitlistService);
+    }
 
-        verify(bookingRepository, times(1)).findByMemberId(memberId);
+    // getWaitlistPosition()                    // Köplatsen visas bara för bokningens ägare
+    @Test
+    void testGetWaitlistPositionChecksOwner() {
+        when(bookingRepository.existsByIdAndMemberId(5L, 1L)).thenReturn(true);
+        when(bookingRepository.existsByIdAndMemberId(5L, 9L)).thenReturn(false);
+        when(waitlistService.getPosition(5L)).thenReturn(OptionalInt.of(3));
+
+        assertEquals(OptionalInt.of(3), bookingService.getWaitlistPosition(5L, 1L));
+        assertTrue(bookingService.getWaitlistPosition(5L, 9L).isEmpty());
+        assertTrue(bookingService.getWaitlistPosition(5L, null).isEmpty());
+        verify(waitlistService, times(1)).getPosition(5L);
     }
 }
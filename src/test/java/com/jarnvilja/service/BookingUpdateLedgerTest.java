@@ -0,0 +1,79 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import com.jarnvilja.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs updateBooking against the seeded H2 database with the real seat ledger and waitlist, so the
+ * session counters it leaves behind are the ones the next admission would see.
+ */
+@SpringBootTest
+@Transactional
+public class BookingUpdateLedgerTest {
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private SeatLedger seatLedger;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TrainingClassRepository trainingClassRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // updateBooking()                        // Oförändrad CONFIRMED på fullt pass med kö: en plats, kön står kvar
+    @Test
+    void testUnchangedConfirmedKeepsSeatOnFullSession() {
+        LocalDate today = LocalDate.now();
+        TrainingClass full = new TrainingClass("Fullt pass", "En plats", today.getDayOfWeek(), Matta.MATTA_1,
+                LocalTime.of(23, 58), LocalTime.of(23, 59));
+        full.setMaxCapacity(1);
+        full = trainingClassRepository.save(full);
+        User first = userRepository.findByUsername("member").orElseThrow();
+        User second = userRepository.findByUsername("demo").orElseThrow();
+
+        Booking confirmed = bookingService.createBooking(first.getId(), full.getId());
+        Booking waiting = bookingService.createBooking(second.getId(), full.getId());
+        assertEquals(BookingStatus.CONFIRMED, confirmed.getBookingStatus());
+        assertEquals(BookingStatus.WAITLISTED, waiting.getBookingStatus());
+
+        Booking update = new Booking(first, full);
+        update.setBookingStatus(BookingStatus.CONFIRMED);
+        update.setBookingTimeStamp(confirmed.getBookingTimeStamp());
+        bookingService.updateBooking(confirmed.getId(), update);
+        // Räknarna ändras med bulk-UPDATE, så sessionsraden läses om från databasen
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, seatLedger.getSeatsTaken(full.getId(), today));
+        assertEquals(new SeatLedger.SessionCounters(1, 1), seatLedger.recount(full.getId(), today));
+        assertEquals(BookingStatus.WAITLISTED, bookingRepository.findById(waiting.getId()).orElseThrow().getBookingStatus());
+        assertEquals(OptionalInt.of(1), bookingService.getWaitlistPosition(waiting.getId()));
+    }
+}
@@ -0,0 +1,113 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingCategory;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ClassSearchIndexTest {
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @InjectMocks
+    private ClassSearchIndex classSearchIndex;
+
+    private TrainingClass thai;
+    private TrainingClass bjj;
+    private TrainingClass fys;
+
+    @BeforeEach
+    void setUp() {
+        User goran = new User();
+        goran.setUsername("Göran");
+        thai = trainingClass(1L, "Thaiboxning", "Teknik och sparring", TrainingCategory.THAIBOXNING, goran);
+        bjj = trainingClass(2L, "BJJ Lunchpass", "Markkamp på lunchen", TrainingCategory.BJJ, null);
+        fys = trainingClass(3L, "Fys – Morgonpass", "Styrka och kondition", TrainingCategory.FYS, null);
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(List.of(thai, bjj, fys));
+        classSearchIndex.refresh();
+    }
+
+    // fold()                                 // Å, ä och ö viks till a och o, skiftläget försvinner
+    @Test
+    void testFoldRemovesSwedishDiacritics() {
+        assertEquals("goran", ClassSearchIndex.fold("Göran"));
+        assertEquals("arsavgift", ClassSearchIndex.fold("Årsavgift"));
+        assertEquals(List.of("fys", "morgonpass"), ClassSearchIndex.tokenize("Fys – Morgonpass"));
+    }
+
+    // search()                               // Hela ord, början av ord och delar inuti ord träffar; hela ord rankas först
+    @Test
+    void testSearchMatchesWordsPrefixesAndInfixes() {
+        assertEquals(List.of(2L), classSearchIndex.search("markkamp"));
+        assertEquals(List.of(1L), classSearchIndex.search("thai"));
+        assertEquals(List.of(1L), classSearchIndex.search("boxning"));
+        assertEquals(List.of(2L, 3L), classSearchIndex.search("pass"));
+        assertEquals(List.of(1L), classSearchIndex.search("goran"));
+        assertEquals(List.of(2L), classSearchIndex.search("pa lunchen"));
+    }
+
+    // search()                               // Alla sökord måste träffa; ett stavfel tolereras i längre ord
+    @Test
+    void testSearchRequiresEveryWordAndToleratesTypos() {
+        assertEquals(List.of(1L), classSearchIndex.search("Thaiboxnig"));
+        assertEquals(List.of(3L), classSearchIndex.search("styrka kondtiion"));
+        assertTrue(classSearchIndex.search("styrka markkamp").isEmpty());
+        assertTrue(classSearchIndex.search("bjx").isEmpty());
+        assertEquals(List.of(1L, 2L, 3L), classSearchIndex.search("  "));
+    }
+
+    // onTrainingClassChanged()               // Bara det ändrade passet indexeras om; borttaget pass försvinner
+    @Test
+    void testChangeReindexesOneClass() {
+        TrainingClass renamed = trainingClass(2L, "Nybörjare BJJ", "Grunder", TrainingCategory.BJJ, null);
+        when(trainingClassRepository.findByIdWithTrainer(2L)).thenReturn(Optional.of(renamed));
+        when(trainingClassRepository.findByIdWithTrainer(3L)).thenReturn(Optional.empty());
+
+        classSearchIndex.onTrainingClassChanged(new TrainingClassChangedEvent(2L));
+        classSearchIndex.onTrainingClassChanged(new TrainingClassChangedEvent(3L));
+
+        assertTrue(classSearchIndex.search("lunchpass").isEmpty());
+        assertEquals(List.of(2L), classSearchIndex.search("nyborjare"));
+        assertTrue(classSearchIndex.search("styrka").isEmpty());
+        verify(trainingClassRepository, times(1)).findScheduleWithTrainer();
+    }
+
+    // refresh()                              // Ombyggnaden tar in pass som ändrats på en annan nod
+    @Test
+    void testRefreshPicksUpChangesFromOtherNodes() {
+        TrainingClass kids = trainingClass(4L, "Barnträning", "Lek och teknik", TrainingCategory.BJJ, null);
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(List.of(thai, kids));
+
+        classSearchIndex.refresh();
+
+        assertEquals(List.of(4L), classSearchIndex.search("barn"));
+        assertTrue(classSearchIndex.search("lunchpass").isEmpty());
+        verify(trainingClassRepository, times(2)).findScheduleWithTrainer();
+    }
+
+    private TrainingClass trainingClass(Long id, String title, String description, TrainingCategory category, User trainer) {
+        TrainingClass tc = new TrainingClass(title, description, DayOfWeek.MONDAY, Matta.MATTA_1,
+                LocalTime.of(17, 0), LocalTime.of(18, 0));
+        tc.setId(id);
+        tc.setCategory(category);
+        tc.setTrainer(trainer);
+        return tc;
+    }
+}
@@ -0,0 +1,70 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.EditableContent;
+import com.jarnvilja.repository.EditableContentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ContentServiceTest {
+
+    @Mock
+    private EditableContentRepository repository;
+
+    @InjectMocks
+    private ContentService contentService;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findAll()).thenReturn(List.of(
+                new EditableContent("homepage.hero.title", "Kämpa vidare"),
+                new EditableContent("homepage.hero.subtitle", "")));
+    }
+
+    // get()                                  // Värden läses ur ögonblicksbilden; tabellen läses bara en gång
+    @Test
+    void testGetReadsSnapshot() {
+        assertEquals("Kämpa vidare", contentService.get("homepage.hero.title"));
+        assertEquals("Bli Medlem idag!", contentService.get("homepage.hero.subtitle", "Bli Medlem idag!"));
+        assertNull(contentService.get("saknas"));
+
+        verify(repository, times(1)).findAll();
+        verify(repository, never()).findByKey(any());
+    }
+
+    // saveAll()                              // Bara ändrade nycklar skrivs, i en upsert, och versionen ökar
+    @Test
+    void testSaveAllWritesChangedKeysOnce() {
+        long version = contentService.getVersion();
+
+        int written = contentService.saveAll(Map.of(
+                "homepage.hero.title", "Kämpa vidare",
+                "contact.info", "info@jarnvilja.se"));
+
+        assertEquals(1, written);
+        verify(repository, times(1)).upsertAll(eq(Map.of("contact.info", "info@jarnvilja.se")), any(LocalDateTime.class));
+        assertEquals("info@jarnvilja.se", contentService.get("contact.info"));
+        assertEquals(version + 1, contentService.getVersion());
+    }
+
+    // saveAll()                              // Oförändrat innehåll ger ingen skrivning
+    @Test
+    void testSaveAllSkipsUnchanged() {
+        assertEquals(0, contentService.saveAll(Map.of("homepage.hero.title", "Kämpa vidare")));
+
+        verify(repository, never()).upsertAll(any(), any());
+    }
+}
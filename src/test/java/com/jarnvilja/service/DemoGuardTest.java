@@ -0,0 +1,63 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DemoGuardTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private DemoGuard demoGuard;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // isDemoUser()                           // Demo-flaggan läses från principalen utan databasuppslag
+    @Test
+    void testDemoFlagFromPrincipal() {
+        User user = new User();
+        user.setId(4L);
+        user.setUsername("demo");
+        user.setPassword("x");
+        user.setRole(Role.ROLE_MEMBER);
+        user.setDemo(true);
+        AuthenticatedUser principal = new AuthenticatedUser(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        assertTrue(demoGuard.isDemoUser());
+        verifyNoInteractions(userRepository);
+    }
+
+    // isDemoUser()                           // Andra principaler slås upp på användarnamn som förut
+    @Test
+    void testFallsBackToLookupForOtherPrincipals() {
+        User user = new User();
+        user.setDemo(false);
+        when(userRepository.findByUsername("member")).thenReturn(Optional.of(user));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("member", null, List.of()));
+
+        assertFalse(demoGuard.isDemoUser());
+    }
+}
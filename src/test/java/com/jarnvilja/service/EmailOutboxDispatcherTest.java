@@ -0,0 +1,118 @@
+package com.jarnvilja.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.jarnvilja.model.EmailOutbox;
+import com.jarnvilja.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmailOutboxDispatcherTest {
+
+    // Lokal SMTP-server i stället för en riktig e-postleverantör
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // dispatch()                             // Förfallna mejl skickas via SMTP och markeras som skickade
+    @Test
+    void testDispatchDeliversDueEmails() throws Exception {
+        EmailOutboxDispatcher dispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 3);
+        EmailOutbox first = outbox(1L, "anna@example.com", 1);
+        EmailOutbox second = outbox(2L, "bo@example.com", 1);
+        when(emailOutboxRepository.findDueIds(any(), any())).thenReturn(List.of(1L, 2L));
+        when(emailOutboxRepository.findByClaimToken(anyString())).thenReturn(List.of(first, second));
+        when(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING)).thenReturn(0L);
+
+        assertEquals(2, dispatcher.dispatch());
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(2, received.length);
+        assertEquals("Bokning bekräftad", received[0].getSubject());
+        verify(emailOutboxRepository).claim(eq(List.of(1L, 2L)), anyString(), any(), any());
+        verify(emailOutboxRepository).markSent(eq(List.of(1L, 2L)), any());
+        assertEquals(2.0, meterRegistry.get("email.outbox.sent").counter().count());
+    }
+
+    // dispatch()                             // Misslyckat utskick schemaläggs om med backoff
+    @Test
+    void testDispatchSchedulesRetryWhenSmtpIsDown() throws Exception {
+        EmailOutboxDispatcher dispatcher = dispatcher(closedPort(), 3);
+        when(emailOutboxRepository.findDueIds(any(), any())).thenReturn(List.of(1L));
+        when(emailOutboxRepository.findByClaimToken(anyString())).thenReturn(List.of(outbox(1L, "anna@example.com", 1)));
+        when(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING)).thenReturn(1L);
+        when(emailOutboxRepository.findOldestPendingCreatedAt()).thenReturn(LocalDateTime.now().minusMinutes(1));
+
+        assertEquals(0, dispatcher.dispatch());
+
+        verify(emailOutboxRepository).scheduleRetry(eq(1L), argThat(next -> next.isAfter(LocalDateTime.now())), anyString());
+        verify(emailOutboxRepository, never()).markSent(any(), any());
+        assertEquals(1L, dispatcher.getBacklog());
+        assertEquals(1.0, meterRegistry.get("email.outbox.backlog").gauge().value());
+        assertTrue(meterRegistry.get("email.outbox.oldest.age").gauge().value() >= 60);
+    }
+
+    // dispatch()                             // Sista försöket parkerar raden som FAILED
+    @Test
+    void testDispatchGivesUpAfterMaxAttempts() throws Exception {
+        EmailOutboxDispatcher dispatcher = dispatcher(closedPort(), 3);
+        when(emailOutboxRepository.findDueIds(any(), any())).thenReturn(List.of(1L));
+        when(emailOutboxRepository.findByClaimToken(anyString())).thenReturn(List.of(outbox(1L, "anna@example.com", 3)));
+
+        dispatcher.dispatch();
+
+        verify(emailOutboxRepository).markFailed(eq(1L), anyString());
+        verify(emailOutboxRepository, never()).scheduleRetry(any(), any(), any());
+        assertEquals(1.0, meterRegistry.get("email.outbox.failed").counter().count());
+    }
+
+    @Test
+    void testBackoffDoublesAndIsCapped() {
+        EmailOutboxDispatcher dispatcher = dispatcher(ServerSetupTest.SMTP.getPort(), 8);
+        assertEquals(Duration.ofSeconds(30), dispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(120), dispatcher.backoff(3));
+        assertEquals(Duration.ofHours(1), dispatcher.backoff(12));
+    }
+
+    private EmailOutboxDispatcher dispatcher(int port, int maxAttempts) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        MailTransportPool pool = new MailTransportPool(mailSender, meterRegistry, 1, 100, 60, 0);
+        return new EmailOutboxDispatcher(emailOutboxRepository, new EmailService(mailSender, pool), meterRegistry,
+                50, maxAttempts, 30);
+    }
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static EmailOutbox outbox(Long id, String to, int attempts) {
+        EmailOutbox email = new EmailOutbox(to, "Bokning bekräftad", "Hej!");
+        email.setId(id);
+        email.setAttempts(attempts);
+        return email;
+    }
+}
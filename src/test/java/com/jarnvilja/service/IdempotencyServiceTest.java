@@ -0,0 +1,141 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyServiceTest {
+
+    // execute()                               // Samma nyckel kör åtgärden en gång och spelar upp resultatet
+    @Test
+    void testExecuteReplaysResultForSameKey() {
+        IdempotencyService service = new IdempotencyService(100, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = service.execute("booking:1", "abc", () -> "svar-" + calls.incrementAndGet());
+        String second = service.execute("booking:1", "abc", () -> "svar-" + calls.incrementAndGet());
+        String otherScope = service.execute("booking:2", "abc", () -> "svar-" + calls.incrementAndGet());
+
+        assertEquals("svar-1", first);
+        assertEquals("svar-1", second);
+        assertEquals("svar-2", otherScope);
+        assertEquals(2, calls.get());
+    }
+
+    // execute()                               // Misslyckad åtgärd sparas inte, så klienten kan försöka igen
+    @Test
+    void testExecuteForgetsFailures() {
+        IdempotencyService service = new IdempotencyService(100, 10);
+
+        assertThrows(RuntimeException.class, () -> service.execute("cancel:1", "abc", () -> {
+            throw new RuntimeException("Booking not found");
+        }));
+        assertEquals("ok", service.execute("cancel:1", "abc", () -> "ok"));
+    }
+
+    // execute()                               // Ett Error i åtgärden släpper en väntande upprepning och glöms
+    @Test
+    void testExecuteReleasesWaitersOnError() throws Exception {
+        IdempotencyService service = new IdempotencyService(100, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        AssertionError failure = new AssertionError("Åtgärden kraschade");
+        AtomicReference<Throwable> seenByRetry = new AtomicReference<>();
+
+        Thread owner = new Thread(() -> {
+            try {
+                service.execute("booking:1", "abc", () -> {
+                    started.countDown();
+                    awaitQuietly(fail);
+                    throw failure;
+                });
+            } catch (AssertionError expected) {
+                // Ägaren får sitt eget fel tillbaka
+            }
+        });
+        // Daemontrådar, så att en upprepning som fastnar fäller testet i stället för att hänga JVM:en
+        owner.setDaemon(true);
+        owner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread retry = new Thread(() -> {
+            try {
+                service.execute("booking:1", "abc", () -> "ny körning");
+            } catch (Throwable e) {
+                seenByRetry.set(e);
+            }
+        });
+        retry.setDaemon(true);
+        retry.start();
+        while (retry.getState() != Thread.State.WAITING && retry.isAlive()) {
+            Thread.onSpinWait();
+        }
+        fail.countDown();
+
+        retry.join(5000);
+        owner.join(5000);
+        assertFalse(retry.isAlive());
+        assertSame(failure, seenByRetry.get());
+        assertEquals(0, service.size());
+    }
+
+    // execute()                               // Ett smygkastat kontrollerat undantag glöms också, så nyckeln kan användas igen
+    @Test
+    void testExecuteForgetsSneakyCheckedFailures() {
+        IdempotencyService service = new IdempotencyService(100, 10);
+
+        assertThrows(IOException.class, () -> service.execute("cancel:1", "abc", () -> sneakyThrow(new IOException("SMTP"))));
+        assertEquals("ok", assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> service.execute("cancel:1", "abc", () -> "ok")));
+    }
+
+    // execute()                               // Utan nyckel körs åtgärden alltid, och cachen är begränsad
+    @Test
+    void testExecuteWithoutKeyAndBoundedSize() {
+        IdempotencyService service = new IdempotencyService(2, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        service.execute("s", null, calls::incrementAndGet);
+        service.execute("s", null, calls::incrementAndGet);
+        assertEquals(2, calls.get());
+
+        service.execute("s", "a", () -> 1);
+        service.execute("s", "b", () -> 2);
+        service.execute("s", "c", () -> 3);
+        assertEquals(2, service.size());
+        assertEquals(10, service.execute("s", "a", () -> 10));
+    }
+
+    // execute()                               // Samma nyckel med en annan förfrågan spelas inte upp utan avvisas
+    @Test
+    void testExecuteRejectsKeyReusedForOtherRequest() {
+        IdempotencyService service = new IdempotencyService(100, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, service.execute("api-booking:1", "abc", 10L, calls::incrementAndGet));
+        assertEquals(1, service.execute("api-booking:1", "abc", 10L, calls::incrementAndGet));
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> service.execute("api-booking:1", "abc", 20L, calls::incrementAndGet));
+        assertEquals(1, calls.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Throwable> T sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+}
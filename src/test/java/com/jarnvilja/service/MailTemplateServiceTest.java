@@ -0,0 +1,47 @@
+package com.jarnvilja.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailTemplateServiceTest {
+
+    private final MailTemplateService mailTemplateService = new MailTemplateService();
+
+    // render()                               // Textdelen får modellens värden och den gemensamma signaturen
+    @Test
+    void testRenderBookingConfirmed() {
+        MailTemplateService.Rendered mail = mailTemplateService.render(new MailTemplateService.BookingConfirmed(
+                "anna", "BJJ", DayOfWeek.MONDAY, LocalTime.of(17, 0)));
+
+        assertEquals("Bokning bekräftad", mail.subject());
+        assertEquals("Hej anna,\n\n"
+                + "Din bokning för träningspasset BJJ den MONDAY kl. 17:00 har bekräftats.\n\n"
+                + "Vänliga hälsningar,\nJärnvilja\n", mail.text());
+        assertTrue(mail.html().contains("<strong>BJJ</strong>"));
+        assertTrue(mail.html().contains("Vänliga hälsningar,<br>Järnvilja"));
+    }
+
+    // render()                               // Fritext från tränaren escapas i HTML men inte i text
+    @Test
+    void testRenderEscapesHtmlOnly() {
+        MailTemplateService.Rendered mail = mailTemplateService.render(
+                new MailTemplateService.ClassCancelled("Yoga", "<b>sjuk</b> & hemma"));
+
+        assertTrue(mail.text().contains("Anledning: <b>sjuk</b> & hemma"));
+        assertTrue(mail.html().contains("&lt;b&gt;sjuk&lt;/b&gt; &amp; hemma"));
+    }
+
+    // render()                               // Saknade värden ger tom text i stället för fel
+    @Test
+    void testRenderToleratesMissingValues() {
+        MailTemplateService.Rendered mail = mailTemplateService.render(
+                new MailTemplateService.BookingCancelled(null, "Boxning", null, null));
+
+        assertTrue(mail.text().startsWith("Hej ,"));
+        assertTrue(mail.text().contains("\"Boxning\""));
+    }
+}
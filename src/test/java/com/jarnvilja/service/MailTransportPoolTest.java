@@ -0,0 +1,114 @@
+package com.jarnvilja.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MailTransportPoolTest {
+
+    private SmtpStub smtp;
+    private MailTransportPool pool;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) pool.shutdown();
+        if (smtp != null) smtp.close();
+    }
+
+    // send()                                 // 40 avbokningsmejl går över en enda anslutning
+    @Test
+    void testBurstUsesOneConnection() throws Exception {
+        smtp = new SmtpStub(200, 2);
+        EmailService emailService = emailService(2, 100, 0);
+
+        List<RuntimeException> results = emailService.sendAll(emails(40));
+
+        assertEquals(40, results.size());
+        assertTrue(results.stream().allMatch(r -> r == null));
+        assertEquals(40, smtp.messages.get());
+        assertEquals(1, smtp.connections.get());
+        assertEquals(1, pool.getOpenedConnections());
+    }
+
+    // send()                                 // Anslutningen återanvänds mellan två utskick
+    @Test
+    void testConnectionIsReusedAcrossSends() throws Exception {
+        smtp = new SmtpStub(200, 0);
+        EmailService emailService = emailService(2, 100, 0);
+
+        emailService.sendEmail("anna@example.com", "Träningspass inställt", "Hej!");
+        emailService.sendEmail("bo@example.com", "Träningspass inställt", "Hej!");
+
+        assertEquals(2, smtp.messages.get());
+        assertEquals(1, smtp.connections.get());
+    }
+
+    // send()                                 // Stora batcher delas på poolens anslutningar, som byts efter max antal meddelanden
+    @Test
+    void testLargeBatchIsSplitAndConnectionsRecycled() throws Exception {
+        smtp = new SmtpStub(0, 0);
+        EmailService emailService = emailService(2, 30, 0);
+
+        List<RuntimeException> results = emailService.sendAll(emails(120));
+
+        assertTrue(results.stream().allMatch(r -> r == null));
+        assertEquals(120, smtp.messages.get());
+        // Två anslutningar à 60 meddelanden, var och en återöppnad efter 30
+        assertEquals(4, smtp.connections.get());
+    }
+
+    // send()                                 // Hastighetsgränsen sprider ut utskicken
+    @Test
+    void testRateLimitThrottlesSends() throws Exception {
+        smtp = new SmtpStub(0, 0);
+        EmailService emailService = emailService(1, 100, 20);
+
+        long start = System.nanoTime();
+        emailService.sendAll(emails(11));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(11, smtp.messages.get());
+        assertTrue(elapsedMillis >= 450, "11 mejl i 20/s ska ta minst en halv sekund, tog " + elapsedMillis + " ms");
+    }
+
+    // send()                                 // Nere server: alla mejl i batchen får ett fel, inget kastas
+    @Test
+    void testUnreachableServerFailsWholeBatch() throws Exception {
+        smtp = new SmtpStub(0, 0);
+        int port = smtp.getPort();
+        smtp.close();
+        smtp = null;
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(port);
+        pool = new MailTransportPool(mailSender, new SimpleMeterRegistry(), 1, 100, 60, 0);
+
+        List<RuntimeException> results = new EmailService(mailSender, pool).sendAll(emails(3));
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(r -> r != null));
+    }
+
+    private EmailService emailService(int size, int maxPerConnection, double ratePerSecond) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.getPort());
+        pool = new MailTransportPool(mailSender, new SimpleMeterRegistry(), size, maxPerConnection, 60, ratePerSecond);
+        return new EmailService(mailSender, pool);
+    }
+
+    private static List<EmailService.Email> emails(int count) {
+        List<EmailService.Email> emails = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            emails.add(new EmailService.Email("medlem" + i + "@example.com", "Träningspass inställt",
+                    "Hej, ditt pass har blivit inställt."));
+        }
+        return emails;
+    }
+}
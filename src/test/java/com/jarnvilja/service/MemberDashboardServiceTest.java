@@ -0,0 +1,133 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MemberDashboardServiceTest {
+
+    @Mock
+    private MemberService memberService;
+
+    @Mock
+    private BookingService bookingService;
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
+    @Mock
+    private ClassSearchIndex classSearchIndex;
+
+    @InjectMocks
+    private MemberDashboardService memberDashboardService;
+
+    private User member;
+    private TrainingClass bjj;
+    private TrainingClass boxning;
+
+    @BeforeEach
+    void setUp() {
+        member = new User();
+        member.setId(1L);
+        bjj = trainingClass(10L, "BJJ", "Markkamp");
+        boxning = trainingClass(20L, "Boxning", "Slag och fotarbete");
+        when(memberService.getMemberById(1L)).thenReturn(member);
+        when(trainingClassRepository.findAllWithSeatsTakenOn(LocalDate.now())).thenReturn(List.of(
+                new Object[]{bjj, 3}, new Object[]{boxning, 0}));
+    }
+
+    // getDashboard()                         // Bokningarna läses en gång och delas upp i aktiva, kommande och tidigare
+    @Test
+    void testBookingsArePartitionedInMemory() {
+        Booking upcoming = booking(100L, bjj, LocalDate.now(), BookingStatus.CONFIRMED);
+        Booking cancelled = booking(101L, bjj, LocalDate.now().plusDays(7), BookingStatus.CANCELLED);
+        Booking past = booking(102L, boxning, LocalDate.now().minusDays(7), BookingStatus.CONFIRMED);
+        List<Booking> bookings = List.of(upcoming, cancelled, past);
+        MembershipStatsDTO stats = new MembershipStatsDTO(1L, 2, "BJJ", null);
+        when(bookingRepository.findAllForMemberWithClass(1L)).thenReturn(bookings);
+        when(bookingService.getWaitlistPositions(anyList())).thenReturn(Map.of());
+        when(memberStatsService.getStats(member)).thenReturn(stats);
+
+        MemberDashboardService.Dashboard dashboard = memberDashboardService.getDashboard(1L, null, null);
+
+        assertSame(member, dashboard.member());
+        assertEquals(List.of(upcoming, past), dashboard.activeBookings());
+        assertEquals(List.of(upcoming, cancelled), dashboard.upcomingBookings());
+        assertEquals(List.of(past), dashboard.pastBookings());
+        assertSame(stats, dashboard.stats());
+        verify(bookingRepository, times(1)).findAllForMemberWithClass(1L);
+        verify(bookingService).getWaitlistPositions(List.of(upcoming, cancelled));
+        verifyNoMoreInteractions(bookingRepository);
+    }
+
+    // getDashboard()                         // Dagens tagna platser följer med passen från samma fråga
+    @Test
+    void testClassesCarryTodaysSeats() {
+        when(bookingRepository.findAllForMemberWithClass(1L)).thenReturn(List.of());
+
+        MemberDashboardService.Dashboard dashboard = memberDashboardService.getDashboard(1L, null, null);
+
+        assertEquals(List.of(bjj, boxning), dashboard.classes());
+        assertEquals(Map.of(10L, 3, 20L, 0), dashboard.capacityUsed());
+        verify(trainingClassRepository, times(1)).findAllWithSeatsTakenOn(LocalDate.now());
+        verifyNoMoreInteractions(trainingClassRepository);
+    }
+
+    // getDashboard()                         // Sökningen besvaras av indexet och filtrerar passen från samma fråga
+    @Test
+    void testSearchFiltersInMemory() {
+        when(bookingRepository.findAllForMemberWithClass(1L)).thenReturn(List.of());
+        when(classSearchIndex.search("FOTARBETE")).thenReturn(List.of(20L));
+
+        MemberDashboardService.Dashboard dashboard = memberDashboardService.getDashboard(1L, "FOTARBETE", null);
+
+        assertEquals(List.of(boxning), dashboard.classes());
+        assertEquals(Map.of(20L, 0), dashboard.capacityUsed());
+        verify(memberService, never()).sortClasses(any(), any());
+        verify(trainingClassRepository, times(1)).findAllWithSeatsTakenOn(LocalDate.now());
+        verifyNoMoreInteractions(trainingClassRepository);
+    }
+
+    private TrainingClass trainingClass(Long id, String title, String description) {
+        TrainingClass tc = new TrainingClass(title, description, DayOfWeek.MONDAY, Matta.MATTA_1,
+                LocalTime.of(17, 0), LocalTime.of(18, 0));
+        tc.setId(id);
+        return tc;
+    }
+
+    private Booking booking(Long id, TrainingClass tc, LocalDate date, BookingStatus status) {
+        Booking booking = new Booking(member, tc);
+        booking.setId(id);
+        booking.setBookingDate(date);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+}
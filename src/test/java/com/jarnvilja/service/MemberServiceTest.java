@@ -13,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.DayOfWeek;
@@ -42,7 +43,7 @@ public class MemberServiceTest {
     private TrainingClassRepository trainingClassRepository;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
 
     @Mock
     private PasswordEncoder passwordEncoder;
@@ -53,6 +54,15 @@ public class MemberServiceTest {
     @Mock
     private BookingService bookingService;
 
+    @Mock
+    private PendingExpiryService pendingExpiryService;
+
+    @Spy
+    private MailTemplateService mailTemplateService = new MailTemplateService();
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
     @InjectMocks
     private MemberService memberService;
 
@@ -187,7 +197,9 @@ public class MemberServiceTest {
         assertEquals(BookingStatus.CONFIRMED, createdBooking.getBookingStatus());
 
         verify(bookingService, times(1)).createBooking(1L, 1L);
-        verify(emailService, times(1)).sendEmail(anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).enqueue(eq("member@example.com"),
+                argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Bokning bekräftad")
+                        && mail.text().startsWith("Hej member1,")));
     }
 
     // confirmBooking()              // Kollar att PENDING bokning blir CONFIRMED
@@ -205,38 +217,13 @@ public class MemberServiceTest {
         verify(bookingRepository, times(1)).save(booking);
     }
 
-    // expirePendingBookings()       // Sätter bokningsstatus till EXPIRED om PENDING har varit längre än 30 min
+    // expirePendingBookings()       // Delegerar till utgångsmotorn som flippar förfallna PENDING i bulk
     @Test
     void testExpirePendingBookings() {
-        // Simulera att en bokning är PENDING och äldre än 30 minuter
-        Booking pendingBooking = new Booking(member, trainingClass);
-        pendingBooking.setId(10L);
-        pendingBooking.setBookingStatus(BookingStatus.PENDING);
-        pendingBooking.setBookingTimeStamp(LocalDateTime.now().minusMinutes(40)); // Mer än 30 minuter gammal
-
-        // Simulera att en bokning är PENDING men inte för gammal
-        Booking validBooking = new Booking(member, trainingClass);
-        validBooking.setBookingStatus(BookingStatus.PENDING);
-        validBooking.setBookingTimeStamp(LocalDateTime.now().minusMinutes(10)); // Mindre än 30 minuter gammal
-        validBooking.setId(11L);
-
-        // Mocka repository metoder
-        when(bookingRepository.findPendingBookingsBefore(ArgumentMatchers.any(LocalDateTime.class)))
-                .thenReturn(List.of(pendingBooking)); // Endast den gamla bokningen ska hittas
-
-        when(bookingRepository.save(any(Booking.class))).thenReturn(pendingBooking);
-
-        // Anropa metoden för att hantera utgångna bokningar
         memberService.expirePendingBookings();
 
-        // Kontrollera att den gamla bokningen nu är EXPIRED
-        assertEquals(BookingStatus.EXPIRED, pendingBooking.getBookingStatus());
-
-        // Kontrollera att den giltiga bokningen inte har förändrats
-        assertEquals(BookingStatus.PENDING, validBooking.getBookingStatus());
-
-        // Verifiera att save metoden anropades för den gamla bokningen
-        verify(bookingRepository, times(1)).save(pendingBooking);
+        verify(pendingExpiryService, times(1)).expireDue();
+        verify(bookingRepository, never()).save(any(Booking.class));
     }
 
     // cancelBooking()               // Avboka en bokning för medlem (delegerar till BookingService, skickar e-post)
@@ -248,7 +235,8 @@ public class MemberServiceTest {
         memberService.cancelBooking(1L);
 
         verify(bookingService, times(1)).cancelBooking(1L);
-        verify(emailService, times(1)).sendEmail(anyString(), anyString(), anyString());
+        verify(emailOutboxService, times(1)).enqueue(eq("member@example.com"),
+                argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Bekräftelse på avbokning")));
     }
 
     // getBookingsForMember()        // Hämta alla bokningar för medlem
@@ -392,23 +380,18 @@ public class MemberServiceTest {
     void testGetMembershipStats() {
         Long memberId = 1L;
         User member = new User(memberId, "user@example.com", "username", "password", ROLE_MEMBER);
-
-        Booking b1 = new Booking(member, new TrainingClass("BJJ", "BJJ class", DayOfWeek.MONDAY, Matta.MATTA_1, LocalTime.of(17, 0), LocalTime.of(18, 0)));
-        b1.setBookingStatus(BookingStatus.CONFIRMED);
-        Booking b2 = new Booking(member, new TrainingClass("Thaiboxning", "Muay Thai class", DayOfWeek.WEDNESDAY, Matta.MATTA_1, LocalTime.of(18, 0), LocalTime.of(19, 0)));
-        b2.setBookingStatus(BookingStatus.CONFIRMED);
-
-        List<Booking> bookings = Arrays.asList(b1, b2);
+        MembershipStatsDTO counted = new MembershipStatsDTO(memberId, 2, "BJJ", null);
 
         when(userRepository.findById(memberId)).thenReturn(Optional.of(member));
-        when(bookingRepository.findByMemberId(memberId)).thenReturn(bookings);
+        when(memberStatsService.getStats(member)).thenReturn(counted);
 
         MembershipStatsDTO stats = memberService.getMembershipStats(memberId);
 
         assertNotNull(stats);
         assertEquals(2, stats.getTotalBookings());
 
-        verify(bookingRepository, times(1)).findByMemberId(memberId);
+        // Statistiken läses från räknarna, inte genom att strömma medlemmens bokningar
+        verify(bookingRepository, never()).findByMemberId(memberId);
     }
 
 
@@ -0,0 +1,206 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.MembershipStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.MemberStatsBucket;
+import com.jarnvilja.model.MemberStatsBucket.Kind;
+import com.jarnvilja.model.TrainingCategory;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.MemberStatsBucketRepository;
+import com.jarnvilja.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MemberStatsServiceTest {
+
+    @Mock
+    private MemberStatsBucketRepository bucketRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MemberStatsService memberStatsService;
+
+    private User member;
+    private TrainingClass bjj;
+
+    @BeforeEach
+    void setUp() {
+        memberStatsService = new MemberStatsService(bucketRepository, bookingRepository, userRepository,
+                transactionManager, false);
+        member = new User();
+        member.setId(1L);
+        bjj = new TrainingClass("BJJ", "BJJ", DayOfWeek.MONDAY, Matta.MATTA_1, LocalTime.of(17, 0), LocalTime.of(18, 0));
+        bjj.setId(10L);
+        bjj.setCategory(TrainingCategory.BJJ);
+    }
+
+    // weekKey()                              // Veckan räknas i veckoår, så årsskiftet delar inte en vecka
+    @Test
+    void testWeekKeyUsesWeekBasedYear() {
+        assertEquals("2024-W52", MemberStatsService.weekKey(LocalDate.of(2024, 12, 29)));
+        assertEquals("2025-W01", MemberStatsService.weekKey(LocalDate.of(2024, 12, 30)));
+        assertEquals("2025-W01", MemberStatsService.weekKey(LocalDate.of(2025, 1, 5)));
+        assertEquals("2020-W53", MemberStatsService.weekKey(LocalDate.of(2021, 1, 3)));
+    }
+
+    // getStats()                             // Statistiken byggs av räknarna i en fråga; sviten bryts av en tom vecka
+    @Test
+    void testGetStatsReadsCounters() {
+        LocalDate today = LocalDate.now();
+        when(bucketRepository.findByMemberId(1L)).thenReturn(List.of(
+                bucket(Kind.TOTAL, "", 5),
+                bucket(Kind.ATTENDED, "", 3),
+                bucket(Kind.CLASS, "BJJ", 3),
+                bucket(Kind.CLASS, "Boxning", 3),
+                bucket(Kind.CLASS, "Yoga", 0),
+                bucket(Kind.CATEGORY, "BJJ", 5),
+                bucket(Kind.WEEK, MemberStatsService.weekKey(today), 1),
+                bucket(Kind.WEEK, MemberStatsService.weekKey(today.minusWeeks(1)), 2),
+                bucket(Kind.WEEK, MemberStatsService.weekKey(today.minusWeeks(3)), 2),
+                bucket(Kind.MONTH, YearMonth.now().toString(), 4),
+                bucket(Kind.MONTH, YearMonth.now().minusMonths(8).toString(), 1)));
+
+        MembershipStatsDTO stats = memberStatsService.getStats(member);
+
+        assertEquals(5, stats.getTotalBookings());
+        assertEquals(3, stats.getAttendedSessions());
+        assertEquals("BJJ", stats.getMostBookedClass());
+        assertEquals(2, stats.getCurrentStreak());
+        assertEquals(Map.of("BJJ", 5), stats.getCategoryBreakdown());
+        assertEquals(Map.of(YearMonth.now().toString(), 4), stats.getMonthlyTrend());
+        verifyNoInteractions(bookingRepository);
+    }
+
+    // recordTransition()                     // Avbokning av en bekräftad bokning räknar ned bokningens alla hinkar
+    @Test
+    void testCancelDecrementsEveryBucket() {
+        Booking booking = booking(LocalDate.of(2026, 1, 1), BookingStatus.CONFIRMED);
+        when(bucketRepository.adjust(anyLong(), any(), anyString(), eq(-1))).thenReturn(1);
+
+        memberStatsService.recordTransition(booking, BookingStatus.CONFIRMED, BookingStatus.CANCELLED);
+
+        verify(bucketRepository).adjust(1L, Kind.TOTAL, "", -1);
+        verify(bucketRepository).adjust(1L, Kind.CLASS, "BJJ", -1);
+        verify(bucketRepository).adjust(1L, Kind.CATEGORY, bjj.getCategory().name(), -1);
+        verify(bucketRepository).adjust(1L, Kind.WEEK, "2026-W01", -1);
+        verify(bucketRepository).adjust(1L, Kind.MONTH, "2026-01", -1);
+        verify(bucketRepository, never()).adjust(1L, Kind.ATTENDED, "", -1);
+        verify(bucketRepository, never()).saveAndFlush(any());
+    }
+
+    // recordCreated()                        // Saknad hink skapas under radlås på medlemmen
+    @Test
+    void testCreateOpensMissingBucket() {
+        Booking booking = booking(LocalDate.of(2026, 1, 1), BookingStatus.CONFIRMED);
+        when(bucketRepository.adjust(anyLong(), any(), anyString(), eq(1))).thenReturn(1);
+        when(bucketRepository.adjust(1L, Kind.WEEK, "2026-W01", 1)).thenReturn(0);
+        when(userRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(member));
+
+        memberStatsService.recordCreated(List.of(booking, booking(LocalDate.now(), BookingStatus.WAITLISTED)));
+
+        ArgumentCaptor<MemberStatsBucket> created = ArgumentCaptor.forClass(MemberStatsBucket.class);
+        verify(bucketRepository).saveAndFlush(created.capture());
+        assertEquals(Kind.WEEK, created.getValue().getKind());
+        assertEquals("2026-W01", created.getValue().getBucketKey());
+        assertEquals(1, created.getValue().getCount());
+        verify(userRepository, times(1)).findByIdForUpdate(1L);
+    }
+
+    // rebuild()                              // Ombyggnaden räknar om medlemmens hinkar från bokningshistoriken
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRebuildRecomputesFromHistory() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, "BJJ", null, LocalDate.of(2025, 12, 31), true});
+        rows.add(new Object[]{1L, "BJJ", null, LocalDate.of(2026, 1, 2), false});
+        when(userRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(member));
+        when(bookingRepository.findConfirmedStatsRowsForMember(1L)).thenReturn(rows);
+        when(userRepository.getReferenceById(1L)).thenReturn(member);
+
+        memberStatsService.rebuild(1L);
+
+        // Medlemmen låses och de gamla hinkarna raderas innan historiken läses
+        InOrder order = inOrder(userRepository, bucketRepository, bookingRepository);
+        order.verify(userRepository).findByIdForUpdate(1L);
+        order.verify(bucketRepository).deleteForMember(1L);
+        order.verify(bookingRepository).findConfirmedStatsRowsForMember(1L);
+        ArgumentCaptor<List<MemberStatsBucket>> saved = ArgumentCaptor.forClass(List.class);
+        verify(bucketRepository).saveAll(saved.capture());
+        Map<String, Integer> counts = new TreeMap<>();
+        saved.getValue().forEach(b -> counts.put(b.getKind() + ":" + b.getBucketKey(), b.getCount()));
+        assertEquals(Map.of(
+                "TOTAL:", 2,
+                "ATTENDED:", 1,
+                "CLASS:BJJ", 2,
+                "WEEK:2026-W01", 2,
+                "MONTH:2025-12", 1,
+                "MONTH:2026-01", 1), counts);
+    }
+
+    // rebuildAll()                           // Hela tabellen byggs om en medlem i taget, aldrig med en radering av allt
+    @Test
+    void testRebuildAllGoesMemberByMember() {
+        when(userRepository.findAllIds()).thenReturn(List.of(1L, 2L));
+        when(userRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(member));
+        when(userRepository.findByIdForUpdate(2L)).thenReturn(Optional.empty());
+        when(bookingRepository.findConfirmedStatsRowsForMember(1L)).thenReturn(List.of());
+
+        memberStatsService.rebuildAll();
+
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(bucketRepository).deleteForMember(1L);
+        verify(bucketRepository, never()).deleteForMember(2L);
+        verify(bucketRepository, never()).deleteAllInBatch();
+    }
+
+    // onStartup()                            // Ingen ombyggnad vid start om det inte slagits på
+    @Test
+    void testStartupRebuildIsOffByDefault() {
+        memberStatsService.onStartup();
+
+        verifyNoInteractions(userRepository, bucketRepository);
+    }
+
+    private Booking booking(LocalDate date, BookingStatus status) {
+        Booking booking = new Booking(member, bjj);
+        booking.setBookingDate(date);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+
+    private MemberStatsBucket bucket(Kind kind, String key, int count) {
+        return new MemberStatsBucket(member, kind, key, count);
+    }
+}
@@ -0,0 +1,72 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.repository.BookingRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PendingExpiryServiceTest {
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private BookingRollupService bookingRollupService;
+
+    // expireDue()                             // Endast förfallna hålltider flippas, i en bulk-UPDATE
+    @Test
+    void testExpireDueFlipsOnlyDueHolds() {
+        PendingExpiryService service = new PendingExpiryService(bookingRepository, bookingRollupService, 30);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, LocalDateTime.now().minusMinutes(45)});
+        rows.add(new Object[]{2L, LocalDateTime.now().minusMinutes(31)});
+        rows.add(new Object[]{3L, LocalDateTime.now().minusMinutes(5)});
+        when(bookingRepository.findPendingHolds()).thenReturn(rows);
+        when(bookingRepository.expirePending(eq(List.of(1L, 2L)), any(LocalDateTime.class))).thenReturn(2);
+
+        service.seed();
+        int expired = service.expireDue();
+
+        assertEquals(2, expired);
+        assertEquals(1, service.getTrackedCount());
+        verify(bookingRepository, times(1)).expirePending(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+        verify(bookingRollupService, times(1)).recordExpiring(eq(List.of(1L, 2L)), any(LocalDateTime.class));
+    }
+
+    // expireDue()                             // Konfigurerad hålltid respekteras och tom kö ger ingen UPDATE
+    @Test
+    void testExpireDueHonoursConfiguredWindow() {
+        PendingExpiryService service = new PendingExpiryService(bookingRepository, bookingRollupService, 60);
+        service.track(1L, LocalDateTime.now().minusMinutes(45));
+
+        assertEquals(0, service.expireDue());
+        verify(bookingRepository, never()).expirePending(any(), any());
+    }
+
+    // expireDue()                             // Misslyckad UPDATE lägger tillbaka hålltiderna
+    @Test
+    void testExpireDueRequeuesOnFailure() {
+        PendingExpiryService service = new PendingExpiryService(bookingRepository, bookingRollupService, 30);
+        service.track(1L, LocalDateTime.now().minusMinutes(40));
+        when(bookingRepository.expirePending(any(), any())).thenThrow(new RuntimeException("db nere"));
+
+        try {
+            service.expireDue();
+        } catch (RuntimeException ignored) {
+            // förväntat
+        }
+
+        assertEquals(1, service.getTrackedCount());
+    }
+}
@@ -0,0 +1,98 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.ScheduleEntryDTO;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ScheduleServiceTest {
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @InjectMocks
+    private ScheduleService scheduleService;
+
+    // getSchedule()                          // Alla veckodagar i ordning, passen sorterade på starttid
+    @Test
+    void testScheduleGroupsAndSortsByDay() {
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(new ArrayList<>(List.of(
+                trainingClass(1L, "Boxning", DayOfWeek.MONDAY, 18),
+                trainingClass(2L, "BJJ", DayOfWeek.MONDAY, 17),
+                trainingClass(3L, "Fys", DayOfWeek.FRIDAY, 9))));
+
+        ScheduleService.Schedule schedule = scheduleService.getSchedule();
+
+        assertEquals(List.of(DayOfWeek.values()), new ArrayList<>(schedule.byDay().keySet()));
+        assertEquals(List.of("BJJ", "Boxning"),
+                schedule.byDay().get(DayOfWeek.MONDAY).stream().map(ScheduleEntryDTO::getTitle).toList());
+        assertEquals("tränare", schedule.byDay().get(DayOfWeek.FRIDAY).get(0).getTrainerName());
+        assertTrue(schedule.byDay().get(DayOfWeek.SUNDAY).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> schedule.byDay().get(DayOfWeek.MONDAY).clear());
+    }
+
+    // getSchedule()                          // Schemat byggs en gång och delas mellan anrop
+    @Test
+    void testScheduleIsBuiltOnce() {
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(List.of(trainingClass(1L, "BJJ", DayOfWeek.MONDAY, 17)));
+
+        ScheduleService.Schedule first = scheduleService.getSchedule();
+
+        assertSame(first, scheduleService.getSchedule());
+        verify(trainingClassRepository, times(1)).findScheduleWithTrainer();
+    }
+
+    // onTrainingClassChanged()               // Ändrat pass ger ny hash; oförändrat behåller den gamla
+    @Test
+    void testRebuildOnChange() {
+        TrainingClass bjj = trainingClass(1L, "BJJ", DayOfWeek.MONDAY, 17);
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(List.of(bjj));
+        ScheduleService.Schedule first = scheduleService.getSchedule();
+
+        scheduleService.onTrainingClassChanged(new TrainingClassChangedEvent(1L));
+        assertSame(first, scheduleService.getSchedule());
+
+        bjj.setStartTime(LocalTime.of(19, 0));
+        scheduleService.onTrainingClassChanged(new TrainingClassChangedEvent(1L));
+        assertNotEquals(first.hash(), scheduleService.getSchedule().hash());
+        assertEquals(LocalTime.of(19, 0), scheduleService.getSchedule().byDay().get(DayOfWeek.MONDAY).get(0).getStartTime());
+    }
+
+    // refresh()                              // Ett tränarnamn som bytts utan händelse ger ny hash vid nästa omläsning
+    @Test
+    void testRefreshPicksUpChangesWithoutEvent() {
+        TrainingClass bjj = trainingClass(1L, "BJJ", DayOfWeek.MONDAY, 17);
+        when(trainingClassRepository.findScheduleWithTrainer()).thenReturn(List.of(bjj));
+        ScheduleService.Schedule first = scheduleService.getSchedule();
+
+        bjj.getTrainer().setUsername("ny tränare");
+        scheduleService.refresh();
+
+        assertNotEquals(first.hash(), scheduleService.getSchedule().hash());
+        assertEquals("ny tränare", scheduleService.getSchedule().byDay().get(DayOfWeek.MONDAY).get(0).getTrainerName());
+    }
+
+    private TrainingClass trainingClass(Long id, String title, DayOfWeek day, int hour) {
+        TrainingClass tc = new TrainingClass(title, title, day, Matta.MATTA_1, LocalTime.of(hour, 0), LocalTime.of(hour + 1, 0));
+        tc.setId(id);
+        User trainer = new User();
+        trainer.setUsername("tränare");
+        tc.setTrainer(trainer);
+        return tc;
+    }
+}
@@ -0,0 +1,138 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.ClassSession;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.ClassSessionRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.jarnvilja.model.BookingStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SeatLedgerTest {
+
+    @Mock
+    private ClassSessionRepository classSessionRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @InjectMocks
+    private SeatLedger seatLedger;
+
+    private final LocalDate today = LocalDate.now();
+
+    // admit()                                 // Bekräftar när villkorlig UPDATE tar en plats
+    @Test
+    void testAdmitConfirmsWhenSeatTaken() {
+        when(classSessionRepository.takeSeatIfAvailable(1L, today, 20)).thenReturn(1);
+
+        assertEquals(CONFIRMED, seatLedger.admit(1L, today, 20));
+        verify(classSessionRepository, never()).joinWaitlistIfFull(anyLong(), any(), anyInt());
+    }
+
+    // admit()                                 // Fullt pass hamnar på väntelistan
+    @Test
+    void testAdmitWaitlistsWhenFull() {
+        when(classSessionRepository.takeSeatIfAvailable(1L, today, 20)).thenReturn(0);
+        when(classSessionRepository.joinWaitlistIfFull(1L, today, 20)).thenReturn(1);
+
+        assertEquals(WAITLISTED, seatLedger.admit(1L, today, 20));
+    }
+
+    // admit()                                 // Saknad sessionsrad skapas från bokningarna och försöket görs om
+    @Test
+    void testAdmitOpensMissingSessionAndRetries() {
+        TrainingClass tc = new TrainingClass();
+        tc.setId(1L);
+        when(classSessionRepository.takeSeatIfAvailable(1L, today, 20)).thenReturn(0, 1);
+        when(classSessionRepository.joinWaitlistIfFull(1L, today, 20)).thenReturn(0);
+        when(trainingClassRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(tc));
+        when(classSessionRepository.adjustSeatsTaken(1L, today, 0)).thenReturn(0);
+        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(1L, today, List.of(CONFIRMED))).thenReturn(4L);
+
+        assertEquals(CONFIRMED, seatLedger.admit(1L, today, 20));
+
+        ArgumentCaptor<ClassSession> captor = ArgumentCaptor.forClass(ClassSession.class);
+        verify(classSessionRepository).saveAndFlush(captor.capture());
+        assertEquals(4, captor.getValue().getSeatsTaken());
+        assertEquals(today, captor.getValue().getSessionDate());
+    }
+
+    // transition()                            // Avbokning frigör en plats, utgången PENDING påverkar inget
+    @Test
+    void testTransitionAdjustsCounters() {
+        when(classSessionRepository.adjustSeatsTaken(1L, today, -1)).thenReturn(1);
+
+        seatLedger.transition(1L, today, CONFIRMED, CANCELLED);
+        seatLedger.transition(1L, today, PENDING, EXPIRED);
+
+        verify(classSessionRepository).adjustSeatsTaken(1L, today, -1);
+        verifyNoMoreInteractions(classSessionRepository);
+    }
+
+    // openMissingSessions()                   // Bara saknade sessioner öppnas; befintliga räknare rörs inte
+    @Test
+    void testOpenMissingSessionsLeavesExistingRows() {
+        TrainingClass tc = new TrainingClass();
+        tc.setId(1L);
+        tc.setTrainingDay(today.getDayOfWeek());
+        ClassSession existing = new ClassSession(tc, today);
+        existing.setSeatsTaken(9);
+        when(classSessionRepository.findBySessionDateGreaterThanEqual(today)).thenReturn(List.of(existing));
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1L, today, CONFIRMED, 5L});
+        rows.add(new Object[]{2L, today.plusDays(10), WAITLISTED, 2L});
+        when(bookingRepository.countClaimsPerSessionFrom(eq(today), anyList())).thenReturn(rows);
+        when(trainingClassRepository.findAll()).thenReturn(List.of(tc));
+        TrainingClass other = new TrainingClass();
+        other.setId(2L);
+        when(trainingClassRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(other));
+        when(classSessionRepository.adjustSeatsTaken(2L, today.plusDays(10), 0)).thenReturn(0);
+        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(2L, today.plusDays(10), List.of(CONFIRMED))).thenReturn(0L);
+        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(2L, today.plusDays(10), List.of(WAITLISTED))).thenReturn(2L);
+
+        seatLedger.openMissingSessions();
+
+        ArgumentCaptor<ClassSession> captor = ArgumentCaptor.forClass(ClassSession.class);
+        verify(classSessionRepository).saveAndFlush(captor.capture());
+        assertEquals(today.plusDays(10), captor.getValue().getSessionDate());
+        assertEquals(2, captor.getValue().getWaitlistLength());
+        assertEquals(9, existing.getSeatsTaken());
+        verify(classSessionRepository, never()).saveAll(any());
+    }
+
+    // recount()                               // Omräkningen låser sessionsraden och läser om räknarna
+    @Test
+    void testRecountLocksSessionAndCounts() {
+        TrainingClass tc = new TrainingClass();
+        tc.setId(1L);
+        ClassSession stale = new ClassSession(tc, today);
+        stale.setSeatsTaken(9);
+        when(classSessionRepository.findForUpdate(1L, today)).thenReturn(Optional.of(stale));
+        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(1L, today, List.of(CONFIRMED))).thenReturn(5L);
+        when(bookingRepository.countByTrainingClassIdAndBookingDateAndBookingStatusIn(1L, today, List.of(WAITLISTED))).thenReturn(2L);
+
+        assertEquals(new SeatLedger.SessionCounters(5, 2), seatLedger.recount(1L, today));
+        assertEquals(5, stale.getSeatsTaken());
+        assertEquals(2, stale.getWaitlistLength());
+    }
+}
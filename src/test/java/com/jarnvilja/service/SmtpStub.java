@@ -0,0 +1,89 @@
+package com.jarnvilja.service;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal SMTP server for tests. Accepts every message, counts connections and messages, and can
+ * delay the greeting and every reply to imitate a slow provider.
+ */
+class SmtpStub implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private final long greetingDelayMillis;
+    private final long replyDelayMillis;
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger messages = new AtomicInteger();
+
+    SmtpStub(long greetingDelayMillis, long replyDelayMillis) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.greetingDelayMillis = greetingDelayMillis;
+        this.replyDelayMillis = replyDelayMillis;
+        clients.execute(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                clients.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            Thread.sleep(greetingDelayMillis);
+            reply(out, "220 stub ESMTP", 0);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>", replyDelayMillis);
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // Meddelandets innehåll ignoreras
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK", replyDelayMillis);
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye", 0);
+                        return;
+                    }
+                    default -> reply(out, "250 OK", replyDelayMillis);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // Klienten stängde anslutningen
+        }
+    }
+
+    private static void reply(Writer out, String response, long delayMillis) throws IOException, InterruptedException {
+        if (delayMillis > 0) Thread.sleep(delayMillis);
+        out.write(response + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        clients.shutdownNow();
+    }
+}
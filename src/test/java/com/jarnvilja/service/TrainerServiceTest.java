@@ -1,6 +1,7 @@
 package com.jarnvilja.service;
 
 import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
 import com.jarnvilja.model.Matta;
 import com.jarnvilja.model.TrainingClass;
 import com.jarnvilja.model.User;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.DayOfWeek;
@@ -37,7 +39,19 @@ public class TrainerServiceTest {
     private BookingRepository bookingRepository;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private WaitlistService waitlistService;
+
+    @Spy
+    private MailTemplateService mailTemplateService = new MailTemplateService();
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
+    @Mock
+    private BookingRollupService bookingRollupService;
 
 
     private Long trainerId;
@@ -189,6 +203,31 @@ public class TrainerServiceTest {
        assertThrows(RuntimeException.class, () -> trainerService.removeMemberFromMyTrainingClass(1L, 100L, 2L));
    }
 
+   // markAttended(Long trainerId, Long bookingId) → Registrera närvaro; räknas en gång i medlemmens statistik
+   @Test
+   void testMarkAttended() {
+       booking.setBookingStatus(BookingStatus.CONFIRMED);
+       when(bookingRepository.findById(200L)).thenReturn(Optional.of(booking));
+
+       trainerService.markAttended(trainerId, 200L);
+       trainerService.markAttended(trainerId, 200L);
+
+       assertTrue(booking.isAttended());
+       verify(bookingRepository, times(1)).save(booking);
+       verify(memberStatsService, times(1)).recordAttended(booking);
+   }
+
+   // markAttended(Long trainerId, Long bookingId) → Endast bekräftade bokningar på egna pass kan markeras
+   @Test
+   void testMarkAttended_NotConfirmedOrNotTrainer() {
+       booking.setBookingStatus(BookingStatus.WAITLISTED);
+       when(bookingRepository.findById(200L)).thenReturn(Optional.of(booking));
+
+       assertThrows(RuntimeException.class, () -> trainerService.markAttended(trainerId, 200L));
+       assertThrows(RuntimeException.class, () -> trainerService.markAttended(3L, 200L));
+       verify(memberStatsService, never()).recordAttended(any());
+   }
+
 
     // Påminnelse och frånvaro:
 
@@ -200,10 +239,10 @@ public class TrainerServiceTest {
        trainerService.sendReminderForUpcomingClass(trainerId, trainingClassId);
 
        // Verifiera att tränaren får ett mail
-       verify(emailService, times(1)).sendEmail(
+       verify(emailOutboxService, times(1)).enqueue(
                eq(trainer.getEmail()),
-               eq("Påminnelse: " + trainingClass.getTitle()),
-               contains("Ditt pass: '" + trainingClass.getTitle() + "' startar snart!")
+               argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Påminnelse: " + trainingClass.getTitle())
+                       && mail.text().contains("Ditt pass: '" + trainingClass.getTitle() + "' startar snart!"))
        );
    }
     @Test
@@ -233,26 +272,28 @@ public class TrainerServiceTest {
        User member = new User();
        member.setEmail("member@example.com");
 
-       Booking booking = new Booking();
-       booking.setMember(member);
-       trainingClass.setBookings(List.of(booking));
-
        when(trainingClassRepository.findById(trainingClassId)).thenReturn(Optional.of(trainingClass));
+       when(bookingRepository.findMemberEmailsForClass(trainingClassId, BookingStatus.ACTIVE))
+               .thenReturn(List.of(member.getEmail()));
 
        trainerService.cancelMyTrainingClass(trainingClassId, reason);
 
+       // Hela passet avbokas i en sats
+       verify(bookingRepository).transitionForClass(trainingClassId, BookingStatus.ACTIVE, BookingStatus.CANCELLED);
+       verify(waitlistService).clearClass(trainingClassId);
+
        // Verifiera att e-post skickas till tränaren
-       verify(emailService, times(1)).sendEmail(
+       verify(emailOutboxService, times(1)).enqueue(
                eq("trainer@example.com"),
-               eq("Träningspass inställt"),
-               contains("Du har ställt in passet 'Yoga'.")
+               argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Träningspass inställt")
+                       && mail.text().contains("Du har ställt in passet 'Yoga'."))
        );
 
        // Verifiera att e-post skickas till medlemmen
-       verify(emailService, times(1)).sendEmail(
+       verify(emailOutboxService, times(1)).enqueue(
                eq("member@example.com"),
-               eq("Träningspass inställt"),
-               contains("Hej, ditt pass 'Yoga' har blivit inställt. Anledning: Jag är sjuk")
+               argThat((MailTemplateService.Rendered mail) -> mail.subject().equals("Träningspass inställt")
+                       && mail.text().contains("Hej, ditt pass 'Yoga' har blivit inställt. Anledning: Jag är sjuk"))
        );
    }
 
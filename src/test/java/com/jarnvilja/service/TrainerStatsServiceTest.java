@@ -0,0 +1,106 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.dto.TrainerStatsDTO;
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.BookingRepository;
+import com.jarnvilja.repository.TrainingClassRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TrainerStatsServiceTest {
+
+    @Mock
+    private TrainingClassRepository trainingClassRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @InjectMocks
+    private TrainerStatsService trainerStatsService;
+
+    private final LocalDate from = LocalDate.now().minusWeeks(TrainerStatsService.WINDOW_WEEKS);
+    private TrainingClass bjj;
+    private TrainingClass boxning;
+
+    @BeforeEach
+    void setUp() {
+        bjj = trainingClass(10L, "BJJ", DayOfWeek.MONDAY);
+        boxning = trainingClass(20L, "Boxning", DayOfWeek.WEDNESDAY);
+        when(trainingClassRepository.findByTrainerId(3L)).thenReturn(List.of(bjj, boxning));
+    }
+
+    // getDashboard()                         // Statistiken byggs av grupperade antal inom fönstret, inte av passens bokningslistor
+    @Test
+    void testStatsComeFromGroupedCounts() {
+        LocalDate monday = LocalDate.now().with(DayOfWeek.MONDAY);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{10L, monday, 3L, 2L});
+        rows.add(new Object[]{10L, monday.minusWeeks(1), 1L, 1L});
+        rows.add(new Object[]{20L, monday.plusDays(2), 4L, 1L});
+        when(bookingRepository.countConfirmedForTrainerFrom(3L, from)).thenReturn(rows);
+        when(bookingRepository.findConfirmedForTrainerFrom(3L, from)).thenReturn(List.of());
+
+        TrainerStatsService.TrainerDashboard dashboard = trainerStatsService.getDashboard(3L);
+        TrainerStatsDTO stats = dashboard.stats();
+
+        assertEquals(2, stats.getTotalClasses());
+        assertEquals(8, stats.getTotalBookings());
+        assertEquals(50.0, stats.getAvgAttendanceRate());
+        assertEquals("Måndag", stats.getMostPopularDay());
+        assertEquals(Map.of("BJJ", 4, "Boxning", 4), stats.getBookingsPerClass());
+        assertEquals(Map.of(10L, 4, 20L, 4), dashboard.bookingsPerClass());
+        assertEquals(List.of("v" + monday.minusWeeks(1).get(IsoFields.WEEK_OF_WEEK_BASED_YEAR),
+                "v" + monday.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)), List.copyOf(stats.getWeeklyAttendance().keySet()));
+        assertEquals(List.of(1, 7), List.copyOf(stats.getWeeklyAttendance().values()));
+    }
+
+    // getDashboard()                         // Deltagarna grupperas per pass; pass utan bokningar får en tom lista
+    @Test
+    void testParticipantsAreGroupedPerClass() {
+        Booking first = booking(100L, bjj);
+        Booking second = booking(101L, bjj);
+        when(bookingRepository.countConfirmedForTrainerFrom(3L, from)).thenReturn(List.of());
+        when(bookingRepository.findConfirmedForTrainerFrom(3L, from)).thenReturn(List.of(first, second));
+
+        TrainerStatsService.TrainerDashboard dashboard = trainerStatsService.getDashboard(3L);
+
+        assertEquals(List.of(first, second), dashboard.participants().get(10L));
+        assertEquals(List.of(), dashboard.participants().get(20L));
+        assertEquals("–", dashboard.stats().getMostPopularDay());
+        assertEquals(0, dashboard.stats().getAvgAttendanceRate());
+        assertTrue(dashboard.stats().getWeeklyAttendance().isEmpty());
+    }
+
+    private TrainingClass trainingClass(Long id, String title, DayOfWeek day) {
+        TrainingClass tc = new TrainingClass(title, title, day, Matta.MATTA_1, LocalTime.of(17, 0), LocalTime.of(18, 0));
+        tc.setId(id);
+        return tc;
+    }
+
+    private Booking booking(Long id, TrainingClass tc) {
+        Booking booking = new Booking(new User(), tc);
+        booking.setId(id);
+        booking.setBookingStatus(BookingStatus.CONFIRMED);
+        return booking;
+    }
+}
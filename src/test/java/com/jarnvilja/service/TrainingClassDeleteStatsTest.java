@@ -0,0 +1,80 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.Matta;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.TrainingClassRepository;
+import com.jarnvilja.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deletes a booked class against the seeded H2 database, so the member counters it leaves behind are the
+ * ones the stats page and the user list sorted by bookings read.
+ */
+@SpringBootTest
+@Transactional
+public class TrainingClassDeleteStatsTest {
+
+    @Autowired
+    private TrainingClassService trainingClassService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private MemberStatsService memberStatsService;
+
+    @Autowired
+    private TrainingClassRepository trainingClassRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // deleteTrainingClass()                  // Ett borttaget pass lämnar tillbaka medlemmens bekräftade bokning i räknarna
+    @Test
+    void testDeletedClassReleasesMemberCounters() {
+        User member = userRepository.findByUsername("member").orElseThrow();
+        long before = confirmedCount(member);
+        TrainingClass doomed = new TrainingClass("Borttaget pass", "Tas bort", LocalDate.now().getDayOfWeek(),
+                Matta.MATTA_2, LocalTime.of(23, 58), LocalTime.of(23, 59));
+        doomed.setMaxCapacity(5);
+        doomed = trainingClassRepository.save(doomed);
+
+        Booking booking = bookingService.createBooking(member.getId(), doomed.getId());
+        assertEquals(BookingStatus.CONFIRMED, booking.getBookingStatus());
+        assertEquals(before + 1, confirmedCount(member));
+        // Bokning och borttagning är olika anrop, så bokningens entiteter släpps som efter en request
+        entityManager.flush();
+        entityManager.clear();
+
+        trainingClassService.deleteTrainingClass(doomed.getId());
+        // Räknarna ändras med bulk-UPDATE, så hinkarna läses om från databasen
+        entityManager.flush();
+        entityManager.clear();
+
+        assertTrue(trainingClassRepository.findById(doomed.getId()).isEmpty());
+        assertEquals(before, confirmedCount(member));
+        assertEquals(before, memberStatsService.getStats(userRepository.findById(member.getId()).orElseThrow())
+                .getTotalBookings());
+    }
+
+    private long confirmedCount(User member) {
+        return memberStatsService.getConfirmedCounts(List.of(member.getId())).getOrDefault(member.getId(), 0L);
+    }
+}
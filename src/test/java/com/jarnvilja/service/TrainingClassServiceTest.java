@@ -8,8 +8,10 @@ import com.jarnvilja.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.DayOfWeek;
@@ -34,6 +36,15 @@ public class TrainingClassServiceTest {
     @Mock
     private BookingRepository bookingRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ClassSearchIndex classSearchIndex;
+
+    @Mock
+    private BookingService bookingService;
+
     @InjectMocks
     private TrainingClassService trainingClassService;
 
@@ -118,11 +129,14 @@ public class TrainingClassServiceTest {
         assertEquals(DayOfWeek.TUESDAY, result.getTrainingDay());
     }
 
-    // deleteTrainingClass()             // Ta bort ett träningspass
+    // deleteTrainingClass()             // Ta bort ett träningspass; bokningarna tas bort via bokningstjänsten först
     @Test
     void testDeleteTrainingClass() {
         trainingClassService.deleteTrainingClass(trainingClassId);
-        verify(trainingClassRepository, times(1)).deleteById(trainingClassId);
+        InOrder inOrder = inOrder(bookingService, trainingClassRepository);
+        inOrder.verify(bookingService).deleteBookingsByClassId(trainingClassId);
+        inOrder.verify(trainingClassRepository, times(1)).deleteById(trainingClassId);
+        verify(eventPublisher).publishEvent(new TrainingClassChangedEvent(trainingClassId));
     }
 
     // getTrainingClassById()            // Hämta träningspass baserat på ID
@@ -388,7 +402,7 @@ public class TrainingClassServiceTest {
 
         List<TrainingClass> boxingClasses = List.of(class1, class2);
 
-        when(trainingClassRepository.findByTitleContainingIgnoreCase(type)).thenReturn(boxingClasses);
+        when(classSearchIndex.findClasses(type)).thenReturn(boxingClasses);
 
         List<TrainingClass> result = trainingClassService.getTrainingClassByType(type);
 
@@ -0,0 +1,96 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Role;
+import com.jarnvilja.model.User;
+import com.jarnvilja.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserSearchIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findSearchRows()).thenReturn(List.of(
+                row(1L, "admin", "admin@jarnvilja.se", null, null, Role.ROLE_ADMIN),
+                row(2L, "anna_s", "anna@example.com", "Anna", "Söderström", Role.ROLE_MEMBER),
+                row(3L, "goran", "goran@jarnvilja.se", "Göran", "Persson", Role.ROLE_TRAINER),
+                row(4L, "annika", "annika@example.com", "Annika", "Berg", Role.ROLE_MEMBER)));
+        userSearchIndex.refresh();
+    }
+
+    // search()                               // Trigrammen hittar delar av användarnamn, e-post och namn, utan hänsyn till å/ä/ö
+    @Test
+    void testSearchMatchesAnyFieldFolded() {
+        assertEquals(Set.of(2L, 4L), ids(userSearchIndex.search("ANN", null)));
+        assertEquals(Set.of(2L), ids(userSearchIndex.search("soderstrom", null)));
+        assertEquals(Set.of(1L, 3L), ids(userSearchIndex.search("jarnvilja.se", null)));
+        assertEquals(Set.of(3L), ids(userSearchIndex.search("gör", null)));
+        assertTrue(userSearchIndex.search("annx", null).isEmpty());
+    }
+
+    // search()                               // Rollen filtreras med bitmappen; alla ord i frågan måste finnas
+    @Test
+    void testSearchFiltersByRoleAndEveryWord() {
+        assertEquals(Set.of(2L, 4L), ids(userSearchIndex.search("example", Role.ROLE_MEMBER)));
+        assertTrue(userSearchIndex.search("example", Role.ROLE_ADMIN).isEmpty());
+        assertEquals(Set.of(4L), ids(userSearchIndex.search("ann berg", null)));
+        assertEquals(Set.of(1L), ids(userSearchIndex.search("ad", null)));
+        assertEquals(Set.of(3L), ids(userSearchIndex.search("", Role.ROLE_TRAINER)));
+    }
+
+    // put() / remove()                       // Ändrade och borttagna användare byter poster utan ombyggnad
+    @Test
+    void testPutAndRemoveUpdateIncrementally() {
+        User renamed = new User(2L, "lindqvist@example.com", "lindqvist", "hemligt123", Role.ROLE_TRAINER);
+        userSearchIndex.put(UserSearchIndex.Entry.of(renamed));
+        userSearchIndex.remove(4L);
+        User added = new User(5L, "ny@example.com", "annelie", "hemligt123", Role.ROLE_MEMBER);
+        userSearchIndex.put(UserSearchIndex.Entry.of(added));
+
+        assertEquals(Set.of(5L), ids(userSearchIndex.search("ann", null)));
+        assertEquals(Set.of(2L), ids(userSearchIndex.search("lindq", Role.ROLE_TRAINER)));
+        assertTrue(userSearchIndex.search("lindq", Role.ROLE_MEMBER).isEmpty());
+        assertTrue(userSearchIndex.search("berg", null).isEmpty());
+        verify(userRepository, times(1)).findSearchRows();
+    }
+
+    // refresh()                              // Ombyggnaden tar in användare som ändrats på en annan nod
+    @Test
+    void testRefreshPicksUpChangesFromOtherNodes() {
+        when(userRepository.findSearchRows()).thenReturn(List.of(
+                row(1L, "admin", "admin@jarnvilja.se", null, null, Role.ROLE_ADMIN),
+                row(6L, "petra", "petra@example.com", "Petra", "Ek", Role.ROLE_MEMBER)));
+
+        userSearchIndex.refresh();
+
+        assertEquals(Set.of(6L), ids(userSearchIndex.search("petra", Role.ROLE_MEMBER)));
+        assertTrue(userSearchIndex.search("anna", null).isEmpty());
+        verify(userRepository, times(2)).findSearchRows();
+    }
+
+    private static Set<Long> ids(List<UserSearchIndex.Entry> entries) {
+        return Set.copyOf(entries.stream().map(UserSearchIndex.Entry::id).toList());
+    }
+
+    private static Object[] row(Long id, String username, String email, String firstName, String lastName, Role role) {
+        return new Object[]{id, username, email, firstName, lastName, role, LocalDate.of(2026, 1, 1)};
+    }
+}
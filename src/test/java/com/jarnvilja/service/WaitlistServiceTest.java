@@ -0,0 +1,205 @@
+package com.jarnvilja.service;
+
+import com.jarnvilja.model.Booking;
+import com.jarnvilja.model.BookingStatus;
+import com.jarnvilja.model.TrainingClass;
+import com.jarnvilja.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static com.jarnvilja.model.BookingStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class WaitlistServiceTest {
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private SeatLedger seatLedger;
+
+    @Mock
+    private MemberStatsService memberStatsService;
+
+    @Mock
+    private BookingRollupService bookingRollupService;
+
+    @Mock
+    private PendingExpiryService pendingExpiryService;
+
+    @InjectMocks
+    private WaitlistService waitlistService;
+
+    private final LocalDate today = LocalDate.now();
+    private TrainingClass trainingClass;
+
+    @BeforeEach
+    void setUp() {
+        trainingClass = new TrainingClass();
+        trainingClass.setId(1L);
+        trainingClass.setMaxCapacity(2);
+    }
+
+    // rebuild()                              // Köerna byggs upp i bokningsordning från tabellen
+    @Test
+    void testRebuildKeepsBookingOrder() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{30L, 1L, today});
+        rows.add(new Object[]{10L, 1L, today});
+        rows.add(new Object[]{20L, 2L, today});
+        when(bookingRepository.findWaitlistFrom(today)).thenReturn(rows);
+
+        waitlistService.rebuild();
+
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(30L));
+        assertEquals(OptionalInt.of(2), waitlistService.getPosition(10L));
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(20L));
+        assertEquals(2, waitlistService.getWaitlistLength(1L, today));
+    }
+
+    // transition()                           // Den som lämnar kön flyttar upp alla bakom
+    @Test
+    void testLeavingWaitlistShiftsPositions() {
+        for (long id = 1; id <= 4; id++) {
+            waitlistService.enqueue(booking(id, WAITLISTED));
+        }
+
+        waitlistService.transition(booking(2L, WAITLISTED), CANCELLED_BY_MEMBER);
+
+        verify(seatLedger).transition(1L, today, WAITLISTED, CANCELLED_BY_MEMBER);
+        assertTrue(waitlistService.getPosition(2L).isEmpty());
+        assertEquals(OptionalInt.of(2), waitlistService.getPosition(3L));
+        assertEquals(OptionalInt.of(3), waitlistService.getPosition(4L));
+        verify(seatLedger, never()).promote(anyLong(), any(), anyInt());
+    }
+
+    // transition()                           // En avbokad plats går till köns första bokning
+    @Test
+    void testCancelledSeatPromotesHead() {
+        waitlistService.enqueue(booking(11L, WAITLISTED));
+        waitlistService.enqueue(booking(12L, WAITLISTED));
+        when(seatLedger.promote(1L, today, 2)).thenReturn(true, false);
+        when(bookingRepository.findWaitlistedIds(1L, today)).thenReturn(List.of(11L, 12L));
+        when(bookingRepository.promoteWaitlisted(11L)).thenReturn(1);
+
+        waitlistService.transition(booking(5L, CONFIRMED), CANCELLED);
+
+        verify(seatLedger).transition(1L, today, CONFIRMED, CANCELLED);
+        verify(bookingRepository).promoteWaitlisted(11L);
+        verify(bookingRollupService).recordMoved(new SeatLedger.SessionKey(1L, today), WAITLISTED, CONFIRMED, 1);
+        assertTrue(waitlistService.getPosition(11L).isEmpty());
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(12L));
+    }
+
+    // transition()                           // En bokning som flyttas till PENDING får en hålltid i utgångsmotorn
+    @Test
+    void testTransitionToPendingTracksHold() {
+        Booking booking = booking(7L, CONFIRMED);
+        booking.setBookingTimeStamp(LocalDateTime.of(2026, 1, 1, 10, 0));
+
+        waitlistService.transition(booking, CONFIRMED, PENDING, false);
+
+        verify(pendingExpiryService).track(7L, LocalDateTime.of(2026, 1, 1, 10, 0));
+        verify(seatLedger).transition(1L, today, CONFIRMED, PENDING);
+    }
+
+    // promote()                              // En bokning som inte längre väntar hoppas över
+    @Test
+    void testPromoteSkipsStaleEntries() {
+        waitlistService.enqueue(booking(11L, WAITLISTED));
+        waitlistService.enqueue(booking(12L, WAITLISTED));
+        when(seatLedger.promote(1L, today, 2)).thenReturn(true, false);
+        when(bookingRepository.findWaitlistedIds(1L, today)).thenReturn(List.of(11L, 12L));
+        when(bookingRepository.promoteWaitlisted(11L)).thenReturn(0);
+        when(bookingRepository.promoteWaitlisted(12L)).thenReturn(1);
+
+        assertEquals(1, waitlistService.promote(1L, today, 2));
+        assertEquals(0, waitlistService.getWaitlistLength(1L, today));
+    }
+
+    // promote()                              // Tabellens äldsta väntande går före nodens egen kö, även om den köade på en annan nod
+    @Test
+    void testPromoteTakesOldestFromTableAcrossNodes() {
+        waitlistService.enqueue(booking(12L, WAITLISTED));
+        when(seatLedger.promote(1L, today, 2)).thenReturn(true, false);
+        when(bookingRepository.findWaitlistedIds(1L, today)).thenReturn(List.of(8L, 12L));
+        when(bookingRepository.promoteWaitlisted(8L)).thenReturn(1);
+
+        assertEquals(1, waitlistService.promote(1L, today, 2));
+
+        verify(bookingRepository, never()).promoteWaitlisted(12L);
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(12L));
+    }
+
+    // rebuild()                              // Omläsningen tar in köande från andra noder och släpper de som lämnat kön
+    @Test
+    void testRebuildRefreshesQueuesFromTable() {
+        waitlistService.enqueue(booking(12L, WAITLISTED));
+        waitlistService.enqueue(booking(13L, WAITLISTED));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{8L, 1L, today});
+        rows.add(new Object[]{12L, 1L, today});
+        when(bookingRepository.findWaitlistFrom(today)).thenReturn(rows);
+
+        waitlistService.rebuild();
+
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(8L));
+        assertEquals(OptionalInt.of(2), waitlistService.getPosition(12L));
+        assertTrue(waitlistService.getPosition(13L).isEmpty());
+    }
+
+    // promoteClass()                         // Passets köande datum läses från tabellen
+    @Test
+    void testPromoteClassUsesWaitlistedDatesFromTable() {
+        LocalDate tomorrow = today.plusDays(1);
+        when(bookingRepository.findWaitlistedDates(1L, today)).thenReturn(List.of(tomorrow));
+        when(seatLedger.promote(1L, tomorrow, 3)).thenReturn(true, false);
+        when(bookingRepository.findWaitlistedIds(1L, tomorrow)).thenReturn(List.of(21L));
+        when(bookingRepository.promoteWaitlisted(21L)).thenReturn(1);
+
+        assertEquals(1, waitlistService.promoteClass(1L, 3));
+        verify(memberStatsService).recordPromoted(21L);
+    }
+
+    // promote()                              // Ingen att flytta upp: platsen lämnas tillbaka
+    @Test
+    void testPromoteReturnsSeatWhenNobodyWaits() {
+        when(seatLedger.promote(1L, today, 2)).thenReturn(true);
+        when(bookingRepository.findWaitlistedIds(1L, today)).thenReturn(List.of());
+
+        assertEquals(0, waitlistService.promote(1L, today, 2));
+        verify(seatLedger).transition(1L, today, CONFIRMED, null);
+    }
+
+    // release()                              // Inställt pass flyttar inte upp någon
+    @Test
+    void testReleaseDoesNotPromote() {
+        waitlistService.enqueue(booking(11L, WAITLISTED));
+
+        waitlistService.release(booking(5L, CONFIRMED), CANCELLED);
+
+        verify(seatLedger, never()).promote(anyLong(), any(), anyInt());
+        assertEquals(OptionalInt.of(1), waitlistService.getPosition(11L));
+    }
+
+    private Booking booking(Long id, BookingStatus status) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setTrainingClass(trainingClass);
+        booking.setBookingDate(today);
+        booking.setBookingStatus(status);
+        return booking;
+    }
+}